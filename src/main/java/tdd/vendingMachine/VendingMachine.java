@@ -6,6 +6,7 @@ import tdd.vendingMachine.domain.exception.CashDispenserFullException;
 import tdd.vendingMachine.domain.exception.ShelfEmptyNotAvailableForSelectionException;
 import tdd.vendingMachine.state.State;
 import tdd.vendingMachine.state.StateEnum;
+import tdd.vendingMachine.state.TransactionOutcome;
 
 import java.util.NoSuchElementException;
 
@@ -23,6 +24,14 @@ public interface VendingMachine {
      */
     void addCoinToCredit(Coin coin) throws CashDispenserFullException;
 
+    /**
+     * If there is room in the coin dispenser for the given coin is credited, reports the outcome instead of
+     * throwing an exception when the dispenser is full
+     * @param coin coin to insert
+     * @return ACCEPTED if credited or DISPENSER_FULL if the coin shelf for the given coin on dispenser is full
+     */
+    TransactionOutcome tryAddCoinToCredit(Coin coin);
+
     /**
      * Should inform the current state of the vending machine
      * @return State class representing the given state
@@ -67,6 +76,15 @@ public interface VendingMachine {
      */
     void selectProductGivenShelfNumber(int shelfNumber) throws NoSuchElementException, ShelfEmptyNotAvailableForSelectionException;
 
+    /**
+     * Given a shelfNumber selects the product, reports the outcome instead of throwing an exception when the
+     * shelf is empty
+     * @param shelfNumber the number of the shelve to retrieve the product from.
+     * @return SELECTED if selected or SHELF_EMPTY if the requested shelf is empty
+     * @throws NoSuchElementException if the shelf number is invalid
+     */
+    TransactionOutcome trySelectProductGivenShelfNumber(int shelfNumber) throws NoSuchElementException;
+
 
     /**
      * Informs if the credit stack is empty
@@ -111,6 +129,20 @@ public interface VendingMachine {
      */
     int countTotalAmountProducts();
 
+    /**
+     * Finds the first shelf with products whose number is greater or equal than the given one.
+     * @param fromShelfNumber the shelf number to start from, inclusive
+     * @return the shelf number found or -1 if no shelf from the given number has products
+     */
+    int findNextAvailableShelfNumber(int fromShelfNumber);
+
+    /**
+     * Informs if the cash dispenser is unable to give change for some amount lower than the highest coin,
+     * meaning customers should insert the exact price.
+     * @return true if exact change is required
+     */
+    boolean isExactChangeOnly();
+
     /**
      * Returns the amount of products available in the given shelf
      * @param shelfNumber the shelf to check
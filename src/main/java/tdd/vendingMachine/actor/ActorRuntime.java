@@ -0,0 +1,116 @@
+package tdd.vendingMachine.actor;
+
+import lombok.NonNull;
+import tdd.vendingMachine.state.VendingSession;
+
+import java.util.InputMismatchException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author Agustin Cabra on 3/7/2017.
+ * @since 2.1
+ * Runtime executing large amounts of vending machines on a small fixed pool of worker threads. Every machine is
+ * owned by a {@link MachineActor}, the runtime only ever has one pending task per actor so a machine is processed
+ * by exactly one worker at a time and its internals stay single threaded.
+ *
+ * The runtime counts processed commands and records the time from sending to completing each of them.
+ */
+public final class ActorRuntime {
+
+    /**
+     * Commands a worker processes from one mailbox before moving to the next machine
+     */
+    public static final int DEFAULT_BATCH_SIZE = 32;
+
+    private final ExecutorService workers;
+    private final int batchSize;
+    private final AtomicLong processedCommands;
+    private final LatencyHistogram latencyHistogram;
+
+    /**
+     * Builds a runtime
+     * @param workerCount the amount of worker threads
+     * @param batchSize the commands a worker processes from one mailbox at a time
+     */
+    public ActorRuntime(int workerCount, int batchSize) {
+        if (workerCount <= 0) {
+            throw new InputMismatchException("The runtime needs at least one worker: " + workerCount);
+        }
+        if (batchSize <= 0) {
+            throw new InputMismatchException("The batch size must be positive: " + batchSize);
+        }
+        this.batchSize = batchSize;
+        this.processedCommands = new AtomicLong();
+        this.latencyHistogram = new LatencyHistogram();
+        AtomicInteger workerId = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread worker = new Thread(runnable, "vending-machine-actor-" + workerId.getAndIncrement());
+            worker.setDaemon(true);
+            return worker;
+        };
+        this.workers = Executors.newFixedThreadPool(workerCount, threadFactory);
+    }
+
+    /**
+     * Builds a runtime with the default batch size
+     * @param workerCount the amount of worker threads
+     */
+    public ActorRuntime(int workerCount) {
+        this(workerCount, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Registers the given machine on the runtime, the machine must only be used through the returned actor
+     * @param session the machine
+     * @return the actor owning the machine
+     */
+    public MachineActor spawn(@NonNull VendingSession session) {
+        return new MachineActor(session, this);
+    }
+
+    void schedule(MachineActor actor) {
+        workers.execute(actor);
+    }
+
+    void recordProcessed(long latencyNanos) {
+        processedCommands.incrementAndGet();
+        latencyHistogram.record(latencyNanos);
+    }
+
+    int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * The amount of commands processed by the runtime
+     * @return long
+     */
+    public long countProcessedCommands() {
+        return processedCommands.get();
+    }
+
+    /**
+     * The latencies from sending to completing the commands processed by the runtime
+     * @return the histogram
+     */
+    public LatencyHistogram getLatencyHistogram() {
+        return latencyHistogram;
+    }
+
+    /**
+     * Stops accepting work and waits for the queued machines to be processed
+     * @param timeout maximum time to wait
+     * @param unit unit of the timeout
+     * @return true if every worker finished before the timeout
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        workers.shutdown();
+        return workers.awaitTermination(timeout, unit);
+    }
+}
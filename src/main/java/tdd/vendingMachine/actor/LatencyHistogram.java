@@ -0,0 +1,70 @@
+package tdd.vendingMachine.actor;
+
+import java.util.InputMismatchException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * @author Agustin Cabra on 3/7/2017.
+ * @since 2.1
+ * Lock free histogram of latencies in nanoseconds with one bucket per power of two, recording is a single
+ * atomic increment so it can be fed by every worker of the runtime. Percentiles are reported as the upper
+ * bound of the bucket holding them, at most twice the real value.
+ */
+public final class LatencyHistogram {
+
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets;
+
+    public LatencyHistogram() {
+        this.buckets = new AtomicLongArray(BUCKETS);
+    }
+
+    /**
+     * Records a latency
+     * @param nanos the latency in nanoseconds, negative values are recorded as zero
+     */
+    public void record(long nanos) {
+        buckets.incrementAndGet(bucketOf(Math.max(0, nanos)));
+    }
+
+    private static int bucketOf(long nanos) {
+        return nanos == 0 ? 0 : BUCKETS - Long.numberOfLeadingZeros(nanos);
+    }
+
+    /**
+     * The amount of latencies recorded
+     * @return long
+     */
+    public long count() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += buckets.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * The upper bound of the latency below which the given percentile of the recorded latencies fall
+     * @param percentile the percentile between 0 and 100
+     * @return the latency in nanoseconds or zero if nothing was recorded
+     */
+    public long percentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new InputMismatchException("The percentile must be between 0 and 100: " + percentile);
+        }
+        long count = count();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return i == 0 ? 0 : (i == BUCKETS - 1 ? Long.MAX_VALUE : (1L << i) - 1);
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+}
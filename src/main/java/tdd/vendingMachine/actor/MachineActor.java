@@ -0,0 +1,110 @@
+package tdd.vendingMachine.actor;
+
+import lombok.NonNull;
+import org.apache.log4j.Logger;
+import tdd.vendingMachine.state.VendingSession;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * @author Agustin Cabra on 3/7/2017.
+ * @since 2.1
+ * Owner of a vending machine on an {@link ActorRuntime}. Any thread may send commands, they are queued on a
+ * lock free multi producer single consumer mailbox and executed in order by one worker at a time, so the machine
+ * itself needs no locking.
+ *
+ * The actor is scheduled on the runtime only when its mailbox goes from idle to pending, a worker drains at most
+ * a batch of commands and hands the actor back to the runtime if more are pending, so busy machines do not starve
+ * the others.
+ */
+public final class MachineActor implements Runnable {
+
+    private static final Logger logger = Logger.getLogger(MachineActor.class);
+
+    private final VendingSession session;
+    private final ActorRuntime runtime;
+    private final Queue<Envelope> mailbox;
+    private final AtomicBoolean scheduled;
+
+    /**
+     * Command queued with the time it was sent
+     */
+    private static final class Envelope {
+        private final MachineCommand command;
+        private final long sentAt;
+
+        private Envelope(MachineCommand command, long sentAt) {
+            this.command = command;
+            this.sentAt = sentAt;
+        }
+    }
+
+    MachineActor(@NonNull VendingSession session, @NonNull ActorRuntime runtime) {
+        this.session = session;
+        this.runtime = runtime;
+        this.mailbox = new ConcurrentLinkedQueue<>();
+        this.scheduled = new AtomicBoolean(false);
+    }
+
+    /**
+     * Queues a command for the machine, returns immediately
+     * @param command the command to run
+     */
+    public void tell(@NonNull MachineCommand command) {
+        mailbox.offer(new Envelope(command, System.nanoTime()));
+        if (scheduled.compareAndSet(false, true)) {
+            runtime.schedule(this);
+        }
+    }
+
+    /**
+     * Queues a query for the machine, it runs after every command previously sent
+     * @param query the query to run on the machine
+     * @param <T> type of the answer
+     * @return the answer, completed exceptionally if the query fails
+     */
+    public <T> CompletableFuture<T> ask(@NonNull Function<VendingSession, T> query) {
+        CompletableFuture<T> answer = new CompletableFuture<>();
+        tell(machine -> {
+            try {
+                answer.complete(query.apply(machine));
+            } catch (RuntimeException e) {
+                answer.completeExceptionally(e);
+            }
+        });
+        return answer;
+    }
+
+    /**
+     * Drains a batch of commands from the mailbox, invoked by the workers of the runtime only
+     */
+    @Override
+    public void run() {
+        int batch = runtime.getBatchSize();
+        Envelope envelope;
+        while (batch-- > 0 && (envelope = mailbox.poll()) != null) {
+            try {
+                envelope.command.execute(session);
+            } catch (RuntimeException e) {
+                logger.error(e);
+            }
+            runtime.recordProcessed(System.nanoTime() - envelope.sentAt);
+        }
+        scheduled.set(false);
+        if (!mailbox.isEmpty() && scheduled.compareAndSet(false, true)) {
+            runtime.schedule(this);
+        }
+    }
+
+    /**
+     * Informs if the actor has commands waiting
+     * @return boolean true if the mailbox is not empty
+     */
+    public boolean hasPendingCommands() {
+        return !mailbox.isEmpty();
+    }
+}
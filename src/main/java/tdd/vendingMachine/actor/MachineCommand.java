@@ -0,0 +1,56 @@
+package tdd.vendingMachine.actor;
+
+import lombok.NonNull;
+import tdd.vendingMachine.domain.Coin;
+import tdd.vendingMachine.state.VendingSession;
+
+/**
+ * @author Agustin Cabra on 3/7/2017.
+ * @since 2.1
+ * Command queued on the mailbox of a machine actor, executed by the single worker processing that machine.
+ */
+@FunctionalInterface
+public interface MachineCommand {
+
+    /**
+     * Runs the command on the machine owned by the actor
+     * @param session the machine
+     */
+    void execute(VendingSession session);
+
+    /**
+     * Command inserting a coin on the machine
+     * @param coin the coin to insert
+     * @return the command
+     */
+    static MachineCommand insertCoin(@NonNull Coin coin) {
+        return session -> session.insertCoin(coin);
+    }
+
+    /**
+     * Command selecting a shelf on the machine
+     * @param shelfNumber the shelf to select
+     * @return the command
+     */
+    static MachineCommand selectShelfNumber(int shelfNumber) {
+        return session -> session.selectShelfNumber(shelfNumber);
+    }
+
+    /**
+     * Command cancelling the current operation on the machine
+     * @return the command
+     */
+    static MachineCommand cancel() {
+        return VendingSession::cancel;
+    }
+
+    /**
+     * Command restocking a shelf of the machine
+     * @param shelfNumber the shelf to restock
+     * @param amount the amount of products to provision
+     * @return the command
+     */
+    static MachineCommand restock(int shelfNumber, int amount) {
+        return session -> session.restockShelf(shelfNumber, amount);
+    }
+}
@@ -0,0 +1,131 @@
+package tdd.vendingMachine.domain;
+
+import lombok.NonNull;
+
+import java.util.Arrays;
+import java.util.InputMismatchException;
+import java.util.Optional;
+
+/**
+ * @author Agustin Cabra on 3/4/2017.
+ * @since 2.1
+ * Change maker solving the bounded coin change problem exactly, unlike a greedy walk from the highest
+ * denomination it never refuses an amount that can be built with the coins available
+ * (e.g. 0.60$ as three 0.2$ coins when no 0.1$ coins are left).
+ *
+ * The solution is the one using the fewest coins, found with a dynamic programming table per denomination
+ * in units of the greatest common divisor of the denominations. The table is memoized for the last
+ * inventory seen so repeated requests against an unchanged dispenser only rebuild the plan.
+ * Instances hold the memo and are meant to be used by a single vending machine.
+ */
+public class BoundedChangeMaker implements ChangeMaker {
+
+    /**
+     * Minimum amount of units the table is built for, avoids rebuilding it for small consecutive requests
+     */
+    private static final int MIN_CEILING_UNITS = 100;
+
+    private static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private static final int COIN_COUNT = Coin.values().length;
+
+    /**
+     * Greatest common divisor of every denomination, the amount represented by a single unit of the table
+     */
+    private static final int UNIT = Coin.provideDenominationUnit();
+
+    /**
+     * Denominations expressed in units indexed by coin order
+     */
+    private static final int[] DENOMINATION_UNITS = computeDenominationUnits();
+
+    private int[] memoInventory;
+    private int memoCeiling = -1;
+
+    /**
+     * fewestCoins[order][units] is the minimum amount of coins with order lower or equal than the given order
+     * that builds the given units or UNREACHABLE.
+     */
+    private int[][] fewestCoins;
+
+    private static int[] computeDenominationUnits() {
+        int[] units = new int[COIN_COUNT];
+        for (Coin coin : Coin.values()) {
+            units[coin.order] = coin.denomination / UNIT;
+        }
+        return units;
+    }
+
+    @Override
+    public Optional<ChangePlan> makeChange(@NonNull int[] availableCoins, int amount) {
+        if (amount < 0) {
+            throw new InputMismatchException("The amount of change must be non-negative: " + amount);
+        }
+        if (availableCoins.length != COIN_COUNT) {
+            throw new InputMismatchException("Available coins must be given for every coin: " + availableCoins.length);
+        }
+        if (amount % UNIT != 0) {
+            return Optional.empty();
+        }
+        int units = amount / UNIT;
+        ensureTable(availableCoins, units);
+        if (fewestCoins[COIN_COUNT - 1][units] == UNREACHABLE) {
+            return Optional.empty();
+        }
+        return Optional.of(new ChangePlan(amount, buildPlan(availableCoins, units)));
+    }
+
+    /**
+     * Walks the table from the highest denomination down choosing per coin the amount that keeps the optimum,
+     * preferring more coins of higher denominations on ties.
+     */
+    private int[] buildPlan(int[] availableCoins, int units) {
+        int[] plan = new int[COIN_COUNT];
+        int remaining = units;
+        for (int order = COIN_COUNT - 1; order > 0; order--) {
+            int denomination = DENOMINATION_UNITS[order];
+            int target = fewestCoins[order][remaining];
+            for (int k = Math.min(availableCoins[order], remaining / denomination); k >= 0; k--) {
+                int previous = fewestCoins[order - 1][remaining - k * denomination];
+                if (previous != UNREACHABLE && previous + k == target) {
+                    plan[order] = k;
+                    remaining -= k * denomination;
+                    break;
+                }
+            }
+        }
+        plan[0] = remaining / DENOMINATION_UNITS[0];
+        return plan;
+    }
+
+    private void ensureTable(int[] availableCoins, int units) {
+        if (units <= memoCeiling && Arrays.equals(availableCoins, memoInventory)) {
+            return;
+        }
+        int ceiling = Math.max(units, MIN_CEILING_UNITS);
+        int[][] table = new int[COIN_COUNT][ceiling + 1];
+        int lowest = DENOMINATION_UNITS[0];
+        for (int amount = 0; amount <= ceiling; amount++) {
+            table[0][amount] = amount % lowest == 0 && amount / lowest <= availableCoins[0] ? amount / lowest : UNREACHABLE;
+        }
+        for (int order = 1; order < COIN_COUNT; order++) {
+            int denomination = DENOMINATION_UNITS[order];
+            int[] previousRow = table[order - 1];
+            int[] row = table[order];
+            for (int amount = 0; amount <= ceiling; amount++) {
+                int best = previousRow[amount];
+                int maxCoins = Math.min(availableCoins[order], amount / denomination);
+                for (int k = 1; k <= maxCoins; k++) {
+                    int previous = previousRow[amount - k * denomination];
+                    if (previous != UNREACHABLE && previous + k < best) {
+                        best = previous + k;
+                    }
+                }
+                row[amount] = best;
+            }
+        }
+        this.fewestCoins = table;
+        this.memoInventory = availableCoins.clone();
+        this.memoCeiling = ceiling;
+    }
+}
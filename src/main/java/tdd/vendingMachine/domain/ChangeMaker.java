@@ -0,0 +1,20 @@
+package tdd.vendingMachine.domain;
+
+import java.util.Optional;
+
+/**
+ * @author Agustin Cabra on 3/4/2017.
+ * @since 2.1
+ * Strategy used by the vending machine to decide which coins of the cash dispenser are given as change.
+ * Implementations must not modify the given coin counts, they work on a snapshot of the dispenser.
+ */
+public interface ChangeMaker {
+
+    /**
+     * Computes the coins to hand out for the given amount using only the available coins.
+     * @param availableCoins the amount of coins available per coin, indexed by {@link Coin#order}
+     * @param amount the amount in cents to give as change, must be non-negative
+     * @return the plan of coins to dispense or empty if the amount can not be built from the available coins
+     */
+    Optional<ChangePlan> makeChange(int[] availableCoins, int amount);
+}
@@ -0,0 +1,93 @@
+package tdd.vendingMachine.domain;
+
+import lombok.NonNull;
+
+import java.util.InputMismatchException;
+
+/**
+ * @author Agustin Cabra on 3/5/2017.
+ * @since 2.1
+ * Immutable description of the coins to take out of the cash dispenser to give a given amount as change.
+ * The plan is computed from a snapshot of the coin counts without touching the dispenser and then applied
+ * once through {@link CoinDispenser#dispense(ChangePlan)}, removing every coin of a denomination in a single operation.
+ */
+public final class ChangePlan {
+
+    /**
+     * Plan giving no change at all
+     */
+    public static final ChangePlan NO_CHANGE = new ChangePlan(0, new int[Coin.values().length]);
+
+    private final int amount;
+    private final int[] coins;
+
+    /**
+     * Builds a plan, the given coins array is owned by the plan after this call
+     * @param amount the amount of cents the plan gives
+     * @param coins amount of coins per coin indexed by {@link Coin#order}
+     */
+    ChangePlan(int amount, @NonNull int[] coins) {
+        if (coins.length != Coin.values().length) {
+            throw new InputMismatchException("A change plan must describe every coin: " + coins.length);
+        }
+        this.amount = amount;
+        this.coins = coins;
+    }
+
+    /**
+     * Builds the plan dispensing the given coins, used to restore plans recorded elsewhere
+     * @param coins amount of coins per coin indexed by {@link Coin#order}, copied
+     * @return the plan
+     * @throws InputMismatchException if some coin amount is negative or not every coin is described
+     */
+    public static ChangePlan of(@NonNull int[] coins) throws InputMismatchException {
+        if (coins.length != Coin.values().length) {
+            throw new InputMismatchException("A change plan must describe every coin: " + coins.length);
+        }
+        int amount = 0;
+        for (int order = 0; order < coins.length; order++) {
+            if (coins[order] < 0) {
+                throw new InputMismatchException("Coin amounts of a change plan must be non-negative: " + coins[order]);
+            }
+            amount += coins[order] * Coin.retrieveCoinByOrder(order).denomination;
+        }
+        return new ChangePlan(amount, coins.clone());
+    }
+
+    /**
+     * The amount of cents given by this plan
+     * @return int
+     */
+    public int getAmount() {
+        return amount;
+    }
+
+    /**
+     * The amount of coins of the given coin to dispense
+     * @param coin the coin to check
+     * @return int
+     */
+    public int coinsOf(@NonNull Coin coin) {
+        return coins[coin.order];
+    }
+
+    /**
+     * The total amount of coins to dispense
+     * @return int
+     */
+    public int countCoins() {
+        int total = 0;
+        for (int count : coins) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Test if the plan dispenses no coins
+     * @return boolean true if no coins are dispensed
+     */
+    public boolean isEmpty() {
+        return amount == 0;
+    }
+}
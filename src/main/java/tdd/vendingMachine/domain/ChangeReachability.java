@@ -0,0 +1,139 @@
+package tdd.vendingMachine.domain;
+
+import lombok.NonNull;
+
+import java.util.InputMismatchException;
+
+/**
+ * @author Agustin Cabra on 3/5/2017.
+ * @since 2.1
+ * Incrementally maintained table answering for every amount up to a ceiling whether it can be paid with
+ * the coins currently on the cash dispenser, making the "can I give change?" check a single array lookup
+ * conclusive both ways: inside the ceiling a false answer means no combination of the coins pays the amount.
+ *
+ * The table keeps one layer per denomination in ascending order, layer k tells the amounts payable with the
+ * coins of the denominations up to k. An amount a is payable on layer k when some a - j * d is payable on the
+ * layer below for j up to the amount of coins of denomination d, walking every residue class modulo d once
+ * keeps the distance to the last payable amount so each layer costs one pass over the ceiling. A coin
+ * provisioned or dispensed only rebuilds the layer of its denomination and the ones above, whatever the amount
+ * of coins moved.
+ *
+ * The table also tracks how many amounts below the highest denomination are payable, which drives the
+ * "exact change only" indicator.
+ */
+public class ChangeReachability implements CoinDispenserListener {
+
+    private static final int UNIT = Coin.provideDenominationUnit();
+
+    /**
+     * Highest amount in units tracked by the table
+     */
+    private final int ceilingUnits;
+
+    /**
+     * Highest amount in units that must be payable for the machine not to require exact change
+     */
+    private final int exactChangeThresholdUnits;
+
+    private final CoinDispenser coinDispenser;
+
+    /**
+     * Layers of payable amounts, layer k starts at k * (ceilingUnits + 1)
+     */
+    private final boolean[] reachable;
+    private int reachableBelowThreshold;
+
+    /**
+     * Builds the table for the given ceiling and registers it as listener of the dispenser
+     * @param ceiling the highest amount in cents tracked by the table
+     * @param coinDispenser the cash dispenser to track
+     */
+    public ChangeReachability(int ceiling, @NonNull CoinDispenser coinDispenser) {
+        if (ceiling < UNIT) {
+            throw new InputMismatchException("The ceiling must be at least the denomination unit: " + ceiling);
+        }
+        this.ceilingUnits = ceiling / UNIT;
+        int highestDenomination = 0;
+        for (Coin coin : Coin.values()) {
+            highestDenomination = Math.max(highestDenomination, coin.denomination);
+        }
+        this.exactChangeThresholdUnits = Math.min(ceilingUnits, highestDenomination / UNIT - 1);
+        this.coinDispenser = coinDispenser;
+        this.reachable = new boolean[Coin.countDenominations() * (ceilingUnits + 1)];
+        rebuildFrom(0);
+        coinDispenser.setListener(this);
+    }
+
+    /**
+     * Informs if the given amount can be paid with the coins on the dispenser.
+     * @param amount amount in cents
+     * @return true if the amount is payable, false if it is not or it is beyond the ceiling
+     */
+    public boolean isReachable(int amount) {
+        if (amount < 0 || amount % UNIT != 0 || amount / UNIT > ceilingUnits) {
+            return false;
+        }
+        return reachable[(Coin.countDenominations() - 1) * (ceilingUnits + 1) + amount / UNIT];
+    }
+
+    /**
+     * Informs if the amount is inside the range tracked by the table
+     * @param amount amount in cents
+     * @return true if the table has an answer for the amount
+     */
+    public boolean isTracked(int amount) {
+        return amount >= 0 && amount / UNIT <= ceilingUnits;
+    }
+
+    /**
+     * Informs if the dispenser is unable to give change for some amount below the highest denomination
+     * @return true if the machine should request exact change from customers
+     */
+    public boolean isExactChangeOnly() {
+        return reachableBelowThreshold < exactChangeThresholdUnits;
+    }
+
+    public int getCeiling() {
+        return ceilingUnits * UNIT;
+    }
+
+    @Override
+    public void onProvision(Coin coin, int amount) {
+        rebuildFrom(coin.order);
+    }
+
+    @Override
+    public void onDispense(Coin coin, int amount) {
+        rebuildFrom(coin.order);
+    }
+
+    /**
+     * Rebuilds the layers from the given denomination order up to the highest one
+     * @param fromOrder the order of the lowest denomination whose amount of coins changed
+     */
+    private void rebuildFrom(int fromOrder) {
+        int width = ceilingUnits + 1;
+        for (int order = fromOrder; order < Coin.countDenominations(); order++) {
+            Coin coin = Coin.retrieveCoinByOrder(order);
+            int denomination = coin.denomination / UNIT;
+            int coins = coinDispenser.getItemCount(coin);
+            int layer = order * width;
+            int below = layer - width;
+            for (int residue = 0; residue < denomination && residue <= ceilingUnits; residue++) {
+                int distance = Integer.MAX_VALUE;
+                for (int a = residue; a <= ceilingUnits; a += denomination) {
+                    boolean payableBelow = order == 0 ? a == 0 : reachable[below + a];
+                    distance = payableBelow ? 0 : distance == Integer.MAX_VALUE ? distance : distance + 1;
+                    reachable[layer + a] = distance <= coins;
+                }
+            }
+        }
+        int top = (Coin.countDenominations() - 1) * width;
+        reachableBelowThreshold = 0;
+        for (int a = 1; a <= exactChangeThresholdUnits; a++) {
+            if (reachable[top + a]) {
+                reachableBelowThreshold++;
+            }
+        }
+    }
+}
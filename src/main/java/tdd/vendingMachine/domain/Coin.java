@@ -11,10 +11,10 @@ import java.util.*;
  * Adding more enum coins should also include the coin on the following maps for proper
  * enum behaviour:
  *   1. coinLabelMap a map from labels to coins
- *   2. coinOrderMap a map from denomination order (from low to high) to coins
  *
- * This class provides two iterators one in ascending denomination order and other in descending
- * denomination order.
+ * The denomination order (from low to high) of every coin is given by its order field, coins can be traversed
+ * without allocation by order from 0 to countDenominations() - 1 using retrieveCoinByOrder. This class also
+ * provides two iterables one in ascending denomination order and other in descending denomination order.
  */
 public enum Coin implements ShelfItem {
     FIVE("5.0$", 500, 5),
@@ -37,17 +37,15 @@ public enum Coin implements ShelfItem {
     }});
 
     /**
-     * Validation map containing order given by denomination, this object provides the proper functionality of the
-     * class CoinOrderIterator which uses the keys on this map to retrieve the coins.
+     * Coins indexed by their denomination order, this array provides the proper functionality of the
+     * class CoinOrderIterator and of the allocation free traversal by order.
      */
-    private static Map<Integer, Coin> coinOrderMap = Collections.unmodifiableMap(new HashMap<Integer, Coin>() {{
-        put(0, TEN_CENTS);
-        put(1, TWENTY_CENTS);
-        put(2, FIFTY_CENTS);
-        put(3, ONE);
-        put(4, TWO);
-        put(5, FIVE);
-    }});
+    private static final Coin[] coinsByOrder = buildCoinsByOrder();
+
+    /**
+     * Greatest common divisor of every denomination, every payable amount is a multiple of it
+     */
+    private static final int DENOMINATION_UNIT = computeDenominationUnit();
 
     /**
      * label since is final can be public
@@ -60,9 +58,10 @@ public enum Coin implements ShelfItem {
     public final int denomination;
 
     /**
-     * The order according to other values starting from 1 to lowest value to highest value
+     * The order according to other values starting from 0 to lowest value to highest value,
+     * since is final can be public
      */
-    private final int order;
+    public final int order;
 
     Coin(String label, int denomination, int order) {
         this.label = label;
@@ -80,6 +79,37 @@ public enum Coin implements ShelfItem {
         return denomination;
     }
 
+    private static Coin[] buildCoinsByOrder() {
+        Coin[] coins = new Coin[values().length];
+        for (Coin coin : values()) {
+            coins[coin.order] = coin;
+        }
+        return coins;
+    }
+
+    private static int computeDenominationUnit() {
+        int gcd = 0;
+        for (Coin coin : values()) {
+            int a = gcd, b = coin.denomination;
+            while (b != 0) {
+                int t = a % b;
+                a = b;
+                b = t;
+            }
+            gcd = a;
+        }
+        return gcd;
+    }
+
+    /**
+     * Provides the greatest common divisor of every coin denomination, the smallest step between two
+     * amounts that can be built with coins
+     * @return the denomination unit in cents
+     */
+    public static int provideDenominationUnit() {
+        return DENOMINATION_UNIT;
+    }
+
     public static boolean validCoin(@NonNull String label) {
         return coinLabelMap.containsKey(label);
     }
@@ -91,17 +121,25 @@ public enum Coin implements ShelfItem {
         throw new NoSuchElementException(String.format("The current label %s is not a valid Coin", label));
     }
 
+    /**
+     * Provides the amount of coin denominations accepted
+     * @return the amount of coins, every order is lower than this value
+     */
+    public static int countDenominations() {
+        return coinsByOrder.length;
+    }
+
     /**
      * Given an order should return a coin corresponding to that order
-     * @param order a number from 0 to coinLabelMap.size() -1
+     * @param order a number from 0 to countDenominations() -1
      * @return the coin corresponding to the given order
      * @throws NoSuchElementException if no such order exists
      */
-    private static Coin retrieveCoinByOrder(int order) throws NoSuchElementException {
-        if (order < 0 && order >= coinLabelMap.size()) {
+    public static Coin retrieveCoinByOrder(int order) throws NoSuchElementException {
+        if (order < 0 || order >= coinsByOrder.length) {
             throw new NoSuchElementException("Unable to retrieve Coin by value: " + order);
         }
-        return coinOrderMap.get(order);
+        return coinsByOrder[order];
     }
 
     /**
@@ -126,7 +164,7 @@ public enum Coin implements ShelfItem {
     /**
      * This Class represents an iterator for the Coin enumeration, can iterate from high to low denomination or
      * from low to high denomination of coins, based on the constructor boolean parameter provided.
-     * This class is highly linked to the map coinOrderMap and changes to that map will reflect the iteration.
+     * This class is highly linked to the array coinsByOrder and changes to that array will reflect the iteration.
      */
     static class CoinOrderIterator implements Iterator<Coin>, Iterable<Coin> {
 
@@ -135,12 +173,12 @@ public enum Coin implements ShelfItem {
 
         CoinOrderIterator(boolean highToLow) {
             this.highToLow = highToLow;
-            this.currentOrder = highToLow ? coinOrderMap.size() - 1 :  0;
+            this.currentOrder = highToLow ? coinsByOrder.length - 1 :  0;
         }
 
         @Override
         public boolean hasNext() {
-            return highToLow ? currentOrder >= 0 : currentOrder < coinOrderMap.size();
+            return highToLow ? currentOrder >= 0 : currentOrder < coinsByOrder.length;
         }
 
         @Override
@@ -0,0 +1,229 @@
+package tdd.vendingMachine.domain;
+
+import lombok.NonNull;
+import tdd.vendingMachine.domain.exception.NotEnoughSlotsAvailableDispenserException;
+import tdd.vendingMachine.view.VendingMachineMessages;
+
+import java.util.InputMismatchException;
+
+/**
+ * @author Agustin Cabra on 3/6/2017.
+ * @since 2.1
+ * This class represents the cash dispenser of the vending machine, a coin shelf per coin denomination with
+ * the same capacity. The amount of coins is kept on a primitive array indexed by {@link Coin#order} so reading
+ * and updating the dispenser requires no hashing, boxing or iterator allocation.
+ *
+ * The total cash in cents is kept as a running sum updated on every provision and dispense, so reading it
+ * never scans the dispenser.
+ *
+ * The dispenser is not thread-safe, it is meant to be modified only by the vending machine owning it.
+ */
+public class CoinDispenser {
+
+    /**
+     * The capacity of every coin shelf of the dispenser
+     */
+    private int capacity;
+    private final int[] coinCounts;
+    private final int offset;
+    private int totalCash;
+    private CoinDispenserListener listener;
+
+    /**
+     * Builds a dispenser with the given amount of coins for every coin denomination
+     * @param capacity the capacity of every coin shelf
+     * @param coinItemCount the amount of coins loaded on every coin shelf
+     */
+    public CoinDispenser(int capacity, int coinItemCount) {
+        if (capacity <= 0) {
+            throw new InputMismatchException("Invalid capacity must be greater than zero");
+        }
+        if (coinItemCount < 0 || coinItemCount > capacity) {
+            throw new InputMismatchException("Invalid item count must equal or greater than zero and less or equal than capacity");
+        }
+        this.capacity = capacity;
+        this.coinCounts = new int[Coin.countDenominations()];
+        this.offset = 0;
+        for (int order = 0; order < coinCounts.length; order++) {
+            coinCounts[order] = coinItemCount;
+            totalCash += coinItemCount * Coin.retrieveCoinByOrder(order).denomination;
+        }
+    }
+
+    /**
+     * Builds a dispenser view over the coin counts stored on a slab shared with other dispensers, the counts of
+     * this dispenser are the slots from the given offset, one per coin denomination indexed by {@link Coin#order}
+     * @param capacity the capacity of every coin shelf
+     * @param slab the array storing the coin counts
+     * @param offset the index of the count of the first coin denomination
+     */
+    CoinDispenser(int capacity, @NonNull int[] slab, int offset) {
+        if (offset < 0 || offset + Coin.countDenominations() > slab.length) {
+            throw new InputMismatchException("Invalid offset for the coin counts: " + offset);
+        }
+        this.capacity = capacity;
+        this.coinCounts = slab;
+        this.offset = offset;
+        for (int order = 0; order < Coin.countDenominations(); order++) {
+            totalCash += slab[offset + order] * Coin.retrieveCoinByOrder(order).denomination;
+        }
+    }
+
+    private void validatePositiveAmount(int amount) {
+        if (amount < 0) {
+            throw new InputMismatchException("The amount of coins on the operation must be positive");
+        }
+    }
+
+    /**
+     * Registers the listener notified of every provision and dispense on this dispenser, replacing any previous one
+     * @param listener the listener to notify or null to stop notifying
+     */
+    public void setListener(CoinDispenserListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Provides the capacity of every coin shelf of the dispenser
+     * @return int
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Changes the capacity of every coin shelf, coins above a reduced capacity stay on the dispenser but no more
+     * coins of that denomination are accepted until it goes under the new capacity
+     * @param capacity the new capacity, must be greater than zero
+     */
+    public void resize(int capacity) {
+        if (capacity <= 0) {
+            throw new InputMismatchException("Invalid capacity must be greater than zero");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Provides the amount of coins of the given coin
+     * @param coin the coin to check
+     * @return int
+     */
+    public int getItemCount(@NonNull Coin coin) {
+        return coinCounts[offset + coin.order];
+    }
+
+    /**
+     * Test if there are no coins of the given coin
+     * @param coin the coin to check
+     * @return boolean true if empty coin shelf
+     */
+    public boolean isEmpty(@NonNull Coin coin) {
+        return coinCounts[offset + coin.order] == 0;
+    }
+
+    /**
+     * Counts the remaining available slots for the given coin
+     * @param coin the coin to check
+     * @return int
+     */
+    public int countFreeSlots(@NonNull Coin coin) {
+        return Math.max(0, capacity - coinCounts[offset + coin.order]);
+    }
+
+    /**
+     * Provides the total cash on the dispenser
+     * @return int the sum in cents of every coin denomination times the amount of coins of that denomination
+     */
+    public int totalCash() {
+        return totalCash;
+    }
+
+    /**
+     * Copies the amount of coins per coin into the given array, indexed by {@link Coin#order}
+     * @param target the array receiving the snapshot, must have a slot per coin denomination
+     * @return the given array
+     */
+    public int[] copyCoinCountsTo(@NonNull int[] target) {
+        System.arraycopy(coinCounts, offset, target, 0, Coin.countDenominations());
+        return target;
+    }
+
+    /**
+     * Provisions the given amount of coins to the dispenser
+     * @param coin the coin to provision
+     * @param amount the amount of coins to provision
+     * @return int representing the current amount of coins of the given coin after provision.
+     * @throws NotEnoughSlotsAvailableDispenserException if unable to provision because no free slots are available
+     */
+    public int provision(@NonNull Coin coin, int amount) throws NotEnoughSlotsAvailableDispenserException {
+        validatePositiveAmount(amount);
+        int freeSlots = countFreeSlots(coin);
+        if (freeSlots < amount) {
+            throw new NotEnoughSlotsAvailableDispenserException(
+                VendingMachineMessages.NOT_ENOUGH_SLOTS_AVAILABLE_DISPENSER.label, amount, freeSlots);
+        }
+        coinCounts[offset + coin.order] += amount;
+        totalCash += amount * coin.denomination;
+        if (listener != null && amount > 0) listener.onProvision(coin, amount);
+        return coinCounts[offset + coin.order];
+    }
+
+    /**
+     * Helper method to provision only one coin
+     * @param coin the coin to provision
+     * @return int the amount of coins of the given coin after provision
+     * @throws NotEnoughSlotsAvailableDispenserException if unable to provision because no free slots are available
+     */
+    public int provision(@NonNull Coin coin) throws NotEnoughSlotsAvailableDispenserException {
+        return provision(coin, 1);
+    }
+
+    /**
+     * Dispenses the given amount of coins from the dispenser
+     * @param coin the coin to dispense
+     * @param amount the amount of coins to dispense
+     * @return int representing the current amount of coins of the given coin after dispensing.
+     * @throws InputMismatchException if not enough coins are available
+     */
+    public int dispense(@NonNull Coin coin, int amount) throws InputMismatchException {
+        validatePositiveAmount(amount);
+        if (coinCounts[offset + coin.order] < amount) {
+            throw new InputMismatchException(String.format("Unable to dispense %d elements out of %d available",
+                amount, coinCounts[offset + coin.order]));
+        }
+        coinCounts[offset + coin.order] -= amount;
+        totalCash -= amount * coin.denomination;
+        if (listener != null && amount > 0) listener.onDispense(coin, amount);
+        return coinCounts[offset + coin.order];
+    }
+
+    /**
+     * Helper method to dispense one coin
+     * @param coin the coin to dispense
+     * @return int representing the current amount of coins of the given coin after dispensing.
+     * @throws InputMismatchException if no coins are available
+     */
+    public int dispense(@NonNull Coin coin) throws InputMismatchException {
+        return dispense(coin, 1);
+    }
+
+    /**
+     * Dispenses the coins of the given plan. Every coin is checked before any coin is dispensed so the
+     * dispenser is left untouched if the plan is no longer applicable.
+     * @param changePlan the plan to apply
+     * @throws InputMismatchException if the dispenser has not enough coins for the plan
+     */
+    public void dispense(@NonNull ChangePlan changePlan) throws InputMismatchException {
+        for (int order = 0; order < Coin.countDenominations(); order++) {
+            if (changePlan.coinsOf(Coin.retrieveCoinByOrder(order)) > coinCounts[offset + order]) {
+                throw new InputMismatchException(VendingMachineMessages.NOT_ENOUGH_CASH_TO_GIVE_CHANGE.label);
+            }
+        }
+        for (int order = 0; order < Coin.countDenominations(); order++) {
+            Coin coin = Coin.retrieveCoinByOrder(order);
+            if (changePlan.coinsOf(coin) > 0) {
+                dispense(coin, changePlan.coinsOf(coin));
+            }
+        }
+    }
+}
@@ -10,18 +10,16 @@ import java.util.*;
  * @author Agustin Cabra on 2/21/2017.
  * @since 1.0
  *
- * Factory class to create a coin shelf for the vending machine given imports
+ * Factory class to create the coin dispenser for the vending machine given imports
  */
 public class CoinDispenserFactory {
 
     private static final Logger logger = Logger.getLogger(CoinDispenserFactory.class);
 
-    private static final VendingMachineConfiguration vendingMachineConfiguration = new VendingMachineConfiguration();
-
     private CoinDispenserFactory() { throw new AssertionError("CoinDispenserFactory should not be instantiated"); }
 
     static VendingMachineConfiguration getConfig() {
-        return vendingMachineConfiguration;
+        return VendingMachineConfiguration.current();
     }
 
     private static void validCashImport(CashImport cashImport) {
@@ -49,64 +47,59 @@ public class CoinDispenserFactory {
         return importsMap;
     }
 
-    private static Map<Coin, Shelf<Coin>> buildShelfWithGivenCoinItemCount(int shelfCapacity, int coinItemCount) {
-        Map<Coin, Shelf<Coin>> cashDispenser = new HashMap<>();
-        int counter = 0;
-        for(Coin coin: Coin.ascendingDenominationIterable()) {
-            cashDispenser.put(coin, ShelfFactory.buildShelf(counter++, coin, shelfCapacity, coinItemCount));
-        }
-        return cashDispenser;
+    private static CoinDispenser buildShelfWithGivenCoinItemCount(int shelfCapacity, int coinItemCount) {
+        return new CoinDispenser(shelfCapacity, coinItemCount);
     }
 
     /**
-     * Builds a cash dispenser as a map of shelves based on the cash imports loaded.
+     * Builds a cash dispenser based on the cash imports loaded.
      * If the amount in a cash import exceeds the shelf's capacity the shelf will get full and
      * the remaining amount will be discarded back.
      * @param cashImportsCollection the collection of imports that want to get loaded
      * @return a coin dispenser with given amounts if capacity exceeded excess will be discarded
      */
-    public static Map<Coin, Shelf<Coin>> buildShelf(@NonNull VendingMachineConfiguration config, final @NonNull Collection<CashImport> cashImportsCollection) {
+    public static CoinDispenser buildShelf(@NonNull VendingMachineConfiguration config, final @NonNull Collection<CashImport> cashImportsCollection) {
         Map<Coin, CashImport> cashImports = provideCoinMapImport(cashImportsCollection);
-        Map<Coin, Shelf<Coin>> cashDispenser = new HashMap<>();
-        int counter = 0;
-        int configCapacity = config.getCoinShelfCapacity();
-        for(Coin c: Coin.ascendingDenominationIterable()) {
-            cashDispenser.put(c, ShelfFactory.buildShelf(counter++, c, configCapacity, 0));
-            logger.info(String.format("building coin shelf [%s]", c.label));
+        CoinDispenser cashDispenser = new CoinDispenser(config.getCoinShelfCapacity(), 0);
+        if (logger.isDebugEnabled()) {
+            for(Coin c: Coin.ascendingDenominationIterable()) {
+                logger.debug(String.format("building coin shelf [%s]", c.label));
+            }
         }
         cashImports.forEach((coin, cashImport) -> {
-            Shelf<Coin> coinShelf = cashDispenser.get(coin);
-            int freeSlots = coinShelf.countFreeSlots();
+            int freeSlots = cashDispenser.countFreeSlots(coin);
             if (cashImport.getAmount() <= freeSlots) {
-                coinShelf.provision(cashImport.getAmount());
-                logger.info(String.format("loaded [%d] coins of [%s] to the shelf", cashImport.getAmount(), coinShelf.getType().label));
+                cashDispenser.provision(coin, cashImport.getAmount());
+                if (logger.isDebugEnabled()) {
+                    logger.debug(String.format("loaded [%d] coins of [%s] to the shelf", cashImport.getAmount(), coin.label));
+                }
             } else {
                 logger.warn(String.format("discarded %d items for cashImport: %s shelf is full", (cashImport.getAmount() - freeSlots), cashImport.getLabel()) );
-                coinShelf.provision(freeSlots);
+                cashDispenser.provision(coin, freeSlots);
             }
         });
         return cashDispenser;
     }
 
     /**
-     * Builds a cash dispenser as a map of shelves based on the cash imports loaded.
+     * Builds a cash dispenser based on the cash imports loaded.
      * If the amount in a cash import exceeds the shelf's capacity the shelf will get full and
      * the remaining amount will be discarded back.
      * @param givenCashImport the import that want to get loaded
      * @return a coin dispenser with given amounts if capacity exceeded excess will be discarded
      */
-    public static Map<Coin, Shelf<Coin>> buildShelf(@NonNull CashImport givenCashImport) {
+    public static CoinDispenser buildShelf(@NonNull CashImport givenCashImport) {
         return buildShelf(getConfig(), Collections.singleton(givenCashImport));
     }
 
     /**
-     * Builds a cash dispenser as a map of shelves based on the cash imports loaded.
+     * Builds a cash dispenser based on the cash imports loaded.
      * If the amount in a cash import exceeds the shelf's capacity the shelf will get full and
      * the remaining amount will be discarded back.
      * @param cashImports the import that want to get loaded
      * @return a coin dispenser with given amounts if capacity exceeded excess will be discarded
      */
-    public static Map<Coin, Shelf<Coin>> buildShelf(@NonNull Collection<CashImport> cashImports) {
+    public static CoinDispenser buildShelf(@NonNull Collection<CashImport> cashImports) {
         return buildShelf(getConfig(), cashImports);
     }
 
@@ -115,11 +108,11 @@ public class CoinDispenserFactory {
      * @param coinItemCount the desired count must be >= 0 and <= maxCapacity
      * @return a coin dispenser for the vending machine with coinItemCount items per coin shelf
      */
-    public static Map<Coin, Shelf<Coin>> buildShelfWithGivenCoinItemCount(int coinItemCount) {
+    public static CoinDispenser buildShelfWithGivenCoinItemCount(int coinItemCount) {
         return buildShelfWithGivenCoinItemCount(getConfig().getCoinShelfCapacity(), coinItemCount);
     }
 
-    public static Map<Coin, Shelf<Coin>> buildShelfWithGivenCoinItemCount(@NonNull VendingMachineConfiguration config, int coinItemCount) {
+    public static CoinDispenser buildShelfWithGivenCoinItemCount(@NonNull VendingMachineConfiguration config, int coinItemCount) {
         return buildShelfWithGivenCoinItemCount(config.getCoinShelfCapacity(), coinItemCount);
     }
 }
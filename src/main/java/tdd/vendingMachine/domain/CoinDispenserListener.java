@@ -0,0 +1,23 @@
+package tdd.vendingMachine.domain;
+
+/**
+ * @author Agustin Cabra on 3/6/2017.
+ * @since 2.1
+ * Listener notified every time coins are provisioned to or dispensed from a cash dispenser.
+ */
+public interface CoinDispenserListener {
+
+    /**
+     * Invoked after coins were provisioned to the dispenser
+     * @param coin the coin provisioned
+     * @param amount the amount of coins provisioned
+     */
+    void onProvision(Coin coin, int amount);
+
+    /**
+     * Invoked after coins were dispensed from the dispenser
+     * @param coin the coin dispensed
+     * @param amount the amount of coins dispensed
+     */
+    void onDispense(Coin coin, int amount);
+}
@@ -0,0 +1,156 @@
+package tdd.vendingMachine.domain;
+
+import lombok.NonNull;
+import org.apache.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author Agustin Cabra on 3/8/2017.
+ * @since 2.1
+ * Watches a properties file outside the classpath and publishes a new configuration snapshot through
+ * {@link VendingMachineConfiguration#publish(VendingMachineConfiguration)} every time the file changes.
+ *
+ * The file is read on a daemon thread, machines keep selling with the previous snapshot meanwhile and apply the
+ * new one at their next transaction boundary. A file that can not be read, holds values that are not numbers or
+ * holds a shelf count or capacity lower than one or a negative highest machine id is ignored and the current snapshot is kept, so a half written
+ * or mistyped file never publishes the default values nor shelves without room. A failed reload never stops the
+ * watcher, the next change of the file is read again.
+ */
+public final class ConfigurationWatcher implements Closeable {
+
+    private static final Logger logger = Logger.getLogger(ConfigurationWatcher.class);
+
+    private final Path file;
+    private final WatchService watchService;
+    private final Thread watcherThread;
+    private final AtomicLong reloadCount;
+    private final AtomicLong rejectedReloadCount;
+    private volatile long lastReloadLatencyNanos;
+    private volatile VendingMachineConfiguration lastPublished;
+
+    private ConfigurationWatcher(Path file) throws IOException {
+        this.file = file.toAbsolutePath();
+        this.watchService = this.file.getFileSystem().newWatchService();
+        this.file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_MODIFY);
+        this.reloadCount = new AtomicLong();
+        this.rejectedReloadCount = new AtomicLong();
+        this.watcherThread = new Thread(this::watch, "vending-machine-config-watcher");
+        this.watcherThread.setDaemon(true);
+    }
+
+    /**
+     * Publishes the configuration on the given file and starts watching it
+     * @param file the properties file
+     * @return the running watcher
+     * @throws IOException if the directory of the file can not be watched
+     */
+    public static ConfigurationWatcher start(@NonNull Path file) throws IOException {
+        ConfigurationWatcher watcher = new ConfigurationWatcher(file);
+        watcher.reload(System.nanoTime());
+        watcher.watcherThread.start();
+        return watcher;
+    }
+
+    private void watch() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watchService.take();
+                long detectedAt = System.nanoTime();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    changed |= file.getFileName().equals(event.context());
+                }
+                if (changed) {
+                    try {
+                        reload(detectedAt);
+                    } catch (RuntimeException e) {
+                        logger.error("Configuration reload failed, keeping the current configuration: " + file, e);
+                        rejectedReloadCount.incrementAndGet();
+                    }
+                }
+                if (!key.reset()) {
+                    logger.warn("Stopped watching configuration file, directory no longer available: " + file);
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void reload(long detectedAt) {
+        VendingMachineConfiguration configuration;
+        try {
+            configuration = new VendingMachineConfiguration(file);
+        } catch (RuntimeException e) {
+            logger.warn("Configuration file could not be parsed, keeping the current configuration: " + file, e);
+            rejectedReloadCount.incrementAndGet();
+            return;
+        }
+        if (!configuration.isLoadedFromFile()) {
+            logger.warn("Configuration file could not be read, keeping the current configuration: " + file);
+            rejectedReloadCount.incrementAndGet();
+            return;
+        }
+        if (configuration.getProductShelfCount() < 1 || configuration.getProductShelfCapacity() < 1
+            || configuration.getCoinShelfCapacity() < 1 || configuration.getMaxMachineId() < 0) {
+            logger.warn("Configuration file holds a shelf count or capacity lower than one or a negative highest " +
+                "machine id, keeping the current configuration: " + file);
+            rejectedReloadCount.incrementAndGet();
+            return;
+        }
+        VendingMachineConfiguration.publish(configuration);
+        lastPublished = configuration;
+        lastReloadLatencyNanos = System.nanoTime() - detectedAt;
+        reloadCount.incrementAndGet();
+        logger.info(String.format("Published configuration from %s in %d us", file, lastReloadLatencyNanos / 1000));
+    }
+
+    /**
+     * The amount of snapshots published by this watcher, including the one published on start
+     * @return long
+     */
+    public long countReloads() {
+        return reloadCount.get();
+    }
+
+    /**
+     * The amount of changes of the file ignored because the file could not be read or held invalid values
+     * @return long
+     */
+    public long countRejectedReloads() {
+        return rejectedReloadCount.get();
+    }
+
+    /**
+     * The time between detecting the last change of the file and publishing its snapshot
+     * @return the latency in nanoseconds
+     */
+    public long getLastReloadLatencyNanos() {
+        return lastReloadLatencyNanos;
+    }
+
+    /**
+     * The amount of machines that applied the last snapshot published by this watcher
+     * @return int
+     */
+    public int countMachinesAffectedByLastReload() {
+        VendingMachineConfiguration configuration = lastPublished;
+        return configuration == null ? 0 : configuration.countMachinesAffected();
+    }
+
+    /**
+     * Stops watching the file, the published configuration stays current
+     * @throws IOException if the watch service fails to close
+     */
+    @Override
+    public void close() throws IOException {
+        watcherThread.interrupt();
+        watchService.close();
+    }
+}
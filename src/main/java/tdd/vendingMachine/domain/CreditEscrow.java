@@ -0,0 +1,103 @@
+package tdd.vendingMachine.domain;
+
+import lombok.NonNull;
+import tdd.vendingMachine.domain.exception.NotEnoughSlotsAvailableDispenserException;
+import tdd.vendingMachine.view.VendingMachineMessages;
+
+/**
+ * @author Agustin Cabra on 3/6/2017.
+ * @since 2.1
+ * Holds the coins inserted by the customer until the sell is completed or the credit is returned.
+ * Coins are kept as one int counter per denomination indexed by {@link Coin#order}, so adding a coin,
+ * checking how many coins of a denomination are held and moving the whole escrow cost O(denominations)
+ * and allocate nothing.
+ *
+ * The escrow is not thread-safe, it is meant to be modified only by the vending machine owning it.
+ */
+public class CreditEscrow {
+
+    private final int[] coinCounts;
+    private int coinCount;
+
+    public CreditEscrow() {
+        this.coinCounts = new int[Coin.countDenominations()];
+    }
+
+    /**
+     * Adds a coin to the escrow
+     * @param coin the inserted coin
+     */
+    public void add(@NonNull Coin coin) {
+        coinCounts[coin.order]++;
+        coinCount++;
+    }
+
+    /**
+     * Removes every coin of the given denomination from the escrow
+     * @param coin the coin to remove
+     * @return the amount of coins removed
+     */
+    public int removeAll(@NonNull Coin coin) {
+        int removed = coinCounts[coin.order];
+        coinCounts[coin.order] = 0;
+        coinCount -= removed;
+        return removed;
+    }
+
+    /**
+     * Provides the amount of coins of the given denomination held
+     * @param coin the coin to check
+     * @return int
+     */
+    public int countCoins(@NonNull Coin coin) {
+        return coinCounts[coin.order];
+    }
+
+    /**
+     * Provides the total amount of coins held
+     * @return int
+     */
+    public int countCoins() {
+        return coinCount;
+    }
+
+    /**
+     * Test if no coins are held
+     * @return boolean true if the escrow is empty
+     */
+    public boolean isEmpty() {
+        return coinCount == 0;
+    }
+
+    /**
+     * Moves every coin held to the given dispenser, the escrow keeps its coins. The dispenser is checked
+     * for free slots before any coin is moved so it is left untouched if not every coin fits.
+     * @param coinDispenser the dispenser receiving the coins
+     * @throws NotEnoughSlotsAvailableDispenserException if some coin does not fit
+     */
+    public void provisionTo(@NonNull CoinDispenser coinDispenser) throws NotEnoughSlotsAvailableDispenserException {
+        for (int order = 0; order < coinCounts.length; order++) {
+            int freeSlots = coinDispenser.countFreeSlots(Coin.retrieveCoinByOrder(order));
+            if (freeSlots < coinCounts[order]) {
+                throw new NotEnoughSlotsAvailableDispenserException(
+                    VendingMachineMessages.NOT_ENOUGH_SLOTS_AVAILABLE_DISPENSER.label, coinCounts[order], freeSlots);
+            }
+        }
+        for (int order = 0; order < coinCounts.length; order++) {
+            Coin coin = Coin.retrieveCoinByOrder(order);
+            if (coinCounts[order] > 0) {
+                coinDispenser.provision(coin, coinCounts[order]);
+            }
+        }
+    }
+
+    /**
+     * Drops every coin held
+     */
+    public void clear() {
+        for (int order = 0; order < coinCounts.length; order++) {
+            coinCounts[order] = 0;
+        }
+        coinCount = 0;
+    }
+}
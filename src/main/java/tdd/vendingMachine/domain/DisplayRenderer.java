@@ -0,0 +1,168 @@
+package tdd.vendingMachine.domain;
+
+import org.apache.log4j.Logger;
+import tdd.vendingMachine.view.DisplayEvent;
+
+import java.util.InputMismatchException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * @author Agustin Cabra on 3/7/2017.
+ * @since 2.1
+ * Renders the messages of every vending machine display on a background daemon thread, so the
+ * thread running a transaction never blocks on console I/O.
+ *
+ * Display events are rendered to text on the renderer thread, so building the text never costs the transaction.
+ * Events are published to a preallocated ring buffer, producers claim a slot with a compare and set on the
+ * next sequence and publish it by storing the sequence on the slot, the single renderer thread consumes slots
+ * in order. When the renderer falls behind and the ring is full the message is dropped and counted instead of
+ * blocking the publisher, the display still keeps it as current message and on its history.
+ */
+public final class DisplayRenderer {
+
+    private static final Logger logger = Logger.getLogger(DisplayRenderer.class);
+
+    /**
+     * Amount of slots on the ring of the shared renderer, must be a power of two
+     */
+    static final int DEFAULT_RING_CAPACITY = 1024;
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final DisplayRenderer sharedRenderer = new DisplayRenderer(DEFAULT_RING_CAPACITY,
+        message -> System.out.println("VENDING MACHINE: " + message));
+
+    private final DisplayEvent[] events;
+    private final AtomicLongArray publishedSequences;
+    private final int mask;
+    private final AtomicLong nextSequence;
+    private final AtomicLong droppedMessages;
+    private volatile long consumedSequence;
+    private volatile DisplaySink sink;
+    private volatile Thread rendererThread;
+
+    DisplayRenderer(int capacity, DisplaySink sink) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new InputMismatchException("The ring capacity must be a power of two: " + capacity);
+        }
+        this.events = new DisplayEvent[capacity];
+        this.publishedSequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            publishedSequences.set(i, -1);
+        }
+        this.mask = capacity - 1;
+        this.nextSequence = new AtomicLong();
+        this.droppedMessages = new AtomicLong();
+        this.sink = sink;
+    }
+
+    /**
+     * Provides the renderer shared by every display
+     * @return the shared renderer
+     */
+    public static DisplayRenderer getSharedRenderer() {
+        return sharedRenderer;
+    }
+
+    /**
+     * Replaces the destination of the rendered messages
+     * @param sink the new destination
+     */
+    public void setSink(DisplaySink sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * Publishes an event to be rendered, never blocks.
+     * @param event the event to render
+     * @return true if published, false if dropped since the ring is full
+     */
+    public boolean publish(DisplayEvent event) {
+        long sequence;
+        do {
+            sequence = nextSequence.get();
+            if (sequence - consumedSequence >= events.length) {
+                droppedMessages.incrementAndGet();
+                return false;
+            }
+        } while (!nextSequence.compareAndSet(sequence, sequence + 1));
+        int slot = (int) (sequence & mask);
+        events[slot] = event;
+        publishedSequences.lazySet(slot, sequence);
+        ensureRendererStarted();
+        return true;
+    }
+
+    /**
+     * Renders every message already published, to be used by the renderer thread only.
+     * @return the amount of messages rendered
+     */
+    private int drain() {
+        int rendered = 0;
+        long sequence = consumedSequence;
+        int slot = (int) (sequence & mask);
+        while (publishedSequences.get(slot) == sequence) {
+            DisplayEvent event = events[slot];
+            events[slot] = null;
+            consumedSequence = ++sequence;
+            try {
+                sink.render(event.render());
+            } catch (RuntimeException e) {
+                logger.error("unable to render display message", e);
+            }
+            rendered++;
+            slot = (int) (sequence & mask);
+        }
+        return rendered;
+    }
+
+    private void ensureRendererStarted() {
+        if (rendererThread == null) {
+            synchronized (this) {
+                if (rendererThread == null) {
+                    Thread thread = new Thread(this::renderLoop, "vending-machine-display-renderer");
+                    thread.setDaemon(true);
+                    thread.start();
+                    rendererThread = thread;
+                }
+            }
+        }
+    }
+
+    private void renderLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            if (drain() == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Waits until every message published so far was rendered
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @return true if every message was rendered, false if the timeout elapsed first
+     */
+    public boolean awaitRendered(long timeout, TimeUnit unit) {
+        long published = nextSequence.get();
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (consumedSequence < published) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+        return true;
+    }
+
+    /**
+     * Counts the messages dropped since the ring was full
+     * @return long
+     */
+    public long countDroppedMessages() {
+        return droppedMessages.get();
+    }
+}
@@ -0,0 +1,15 @@
+package tdd.vendingMachine.domain;
+
+/**
+ * @author Agustin Cabra on 3/7/2017.
+ * @since 2.1
+ * Destination of the messages rendered by the {@link DisplayRenderer}, invoked only from the renderer thread.
+ */
+public interface DisplaySink {
+
+    /**
+     * Renders the given message
+     * @param message the message to render
+     */
+    void render(String message);
+}
@@ -0,0 +1,214 @@
+package tdd.vendingMachine.domain;
+
+import lombok.NonNull;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * @author Agustin Cabra on 3/8/2017.
+ * @since 2.1
+ * Compact store of the shelf and coin counts of a fleet of machines sharing the same product layout.
+ *
+ * Counts are laid out as struct of arrays: the product counts of every machine live on one contiguous slab
+ * indexed by (machine, shelf) and the coin counts on another indexed by (machine, coin order), products and
+ * capacities are kept once for the whole fleet. A machine costs four bytes per shelf and per coin denomination
+ * and fleet wide scans walk the slabs sequentially.
+ *
+ * {@link Shelf} and {@link CoinDispenser} views over the slabs let a machine be operated as usual, views write
+ * through to the store. Views are built once per machine and handed again on every request, since the running
+ * cash total of a dispenser view is cached and the slab slots of a machine must be written under a single lock.
+ * A machine is operated by a single vending machine, see {@link #claimMachine(int)}.
+ */
+public final class FleetInventory {
+
+    private final Product[] products;
+    private final int productShelfCapacity;
+    private final int coinShelfCapacity;
+    private final int machineCount;
+    private final AtomicIntegerArray productCounts;
+    private final int[] coinCounts;
+    private final AtomicReferenceArray<Map<Integer, Shelf<Product>>> productShelfViews;
+    private final AtomicReferenceArray<CoinDispenser> coinDispenserViews;
+    private final BitSet claimedMachines;
+
+    /**
+     * Builds the store with the given amount of items on every shelf of every machine
+     * @param products the product of every shelf, the shelf id is the position on the list
+     * @param productShelfCapacity the capacity of every product shelf
+     * @param productItemCount the amount of items loaded on every product shelf
+     * @param coinShelfCapacity the capacity of every coin shelf
+     * @param coinItemCount the amount of coins loaded per coin denomination
+     * @param machineCount the amount of machines
+     */
+    public FleetInventory(@NonNull List<Product> products, int productShelfCapacity, int productItemCount,
+                          int coinShelfCapacity, int coinItemCount, int machineCount) {
+        if (machineCount < 0) throw new InputMismatchException("Machine amount must be non-negative");
+        if (productShelfCapacity <= 0 || coinShelfCapacity <= 0) {
+            throw new InputMismatchException("Invalid capacity must be greater than zero");
+        }
+        if (productItemCount < 0 || productItemCount > productShelfCapacity
+            || coinItemCount < 0 || coinItemCount > coinShelfCapacity) {
+            throw new InputMismatchException("Invalid item count must equal or greater than zero and less or equal than capacity");
+        }
+        this.products = products.toArray(new Product[products.size()]);
+        this.productShelfCapacity = productShelfCapacity;
+        this.coinShelfCapacity = coinShelfCapacity;
+        this.machineCount = machineCount;
+        int[] initialProductCounts = new int[Math.multiplyExact(machineCount, this.products.length)];
+        Arrays.fill(initialProductCounts, productItemCount);
+        this.productCounts = new AtomicIntegerArray(initialProductCounts);
+        this.coinCounts = new int[Math.multiplyExact(machineCount, Coin.countDenominations())];
+        Arrays.fill(coinCounts, coinItemCount);
+        this.productShelfViews = new AtomicReferenceArray<>(machineCount);
+        this.coinDispenserViews = new AtomicReferenceArray<>(machineCount);
+        this.claimedMachines = new BitSet(machineCount);
+    }
+
+    private void validMachineId(int machineId) throws NoSuchElementException {
+        if (machineId < 0 || machineId >= machineCount) {
+            throw new NoSuchElementException("Machine not available on the fleet: " + machineId);
+        }
+    }
+
+    /**
+     * The amount of machines on the store
+     * @return int
+     */
+    public int countMachines() {
+        return machineCount;
+    }
+
+    /**
+     * The amount of product shelves of every machine
+     * @return int
+     */
+    public int countShelvesPerMachine() {
+        return products.length;
+    }
+
+    /**
+     * Provides the amount of items on the given shelf of the given machine
+     * @param machineId the machine id
+     * @param shelfId the shelf id
+     * @return int
+     * @throws NoSuchElementException if the machine or the shelf are not available
+     */
+    public int countProductsOnShelf(int machineId, int shelfId) throws NoSuchElementException {
+        validMachineId(machineId);
+        if (shelfId < 0 || shelfId >= products.length) {
+            throw new NoSuchElementException("Shelf not available on the machine: " + shelfId);
+        }
+        return productCounts.get(machineId * products.length + shelfId);
+    }
+
+    /**
+     * Counts the products left on the given machine
+     * @param machineId the machine id
+     * @return int
+     * @throws NoSuchElementException if the machine is not available
+     */
+    public int countProducts(int machineId) throws NoSuchElementException {
+        validMachineId(machineId);
+        int total = 0;
+        int from = machineId * products.length;
+        for (int i = from; i < from + products.length; i++) {
+            total += productCounts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Counts the products left on the whole fleet
+     * @return long
+     */
+    public long countTotalProducts() {
+        long total = 0;
+        for (int i = 0; i < productCounts.length(); i++) {
+            total += productCounts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Counts the machines with every shelf empty
+     * @return int
+     */
+    public int countSoldOutMachines() {
+        int soldOut = 0;
+        int index = 0;
+        for (int machineId = 0; machineId < machineCount; machineId++) {
+            boolean empty = true;
+            for (int shelfId = 0; shelfId < products.length; shelfId++, index++) {
+                empty &= productCounts.get(index) == 0;
+            }
+            if (empty) soldOut++;
+        }
+        return soldOut;
+    }
+
+    /**
+     * Provides the amount of coins of the given coin on the given machine
+     * @param machineId the machine id
+     * @param coin the coin to check
+     * @return int
+     * @throws NoSuchElementException if the machine is not available
+     */
+    public int countCoins(int machineId, @NonNull Coin coin) throws NoSuchElementException {
+        validMachineId(machineId);
+        return coinCounts[machineId * Coin.countDenominations() + coin.order];
+    }
+
+    /**
+     * Claims the given machine for the vending machine about to operate its views, a machine can be claimed once
+     * @param machineId the machine id
+     * @throws NoSuchElementException if the machine is not available
+     * @throws IllegalStateException if the machine was already claimed
+     */
+    public void claimMachine(int machineId) throws NoSuchElementException, IllegalStateException {
+        validMachineId(machineId);
+        synchronized (claimedMachines) {
+            if (claimedMachines.get(machineId)) {
+                throw new IllegalStateException("Machine already operated by a vending machine: " + machineId);
+            }
+            claimedMachines.set(machineId);
+        }
+    }
+
+    /**
+     * Provides the views of the product shelves of the given machine, writing through to the store
+     * @param machineId the machine id
+     * @return the shelves indexed by shelf id, the same instances on every call
+     * @throws NoSuchElementException if the machine is not available
+     */
+    public Map<Integer, Shelf<Product>> provideProductShelves(int machineId) throws NoSuchElementException {
+        validMachineId(machineId);
+        Map<Integer, Shelf<Product>> productShelves = productShelfViews.get(machineId);
+        if (productShelves != null) {
+            return productShelves;
+        }
+        productShelves = new HashMap<>((int) (products.length / 0.75f) + 1);
+        int from = machineId * products.length;
+        for (int shelfId = 0; shelfId < products.length; shelfId++) {
+            productShelves.put(shelfId, new Shelf<>(shelfId, products[shelfId], productShelfCapacity, productCounts, from + shelfId));
+        }
+        return productShelfViews.compareAndSet(machineId, null, productShelves) ? productShelves : productShelfViews.get(machineId);
+    }
+
+    /**
+     * Provides the view of the coin dispenser of the given machine, writing through to the store
+     * @param machineId the machine id
+     * @return the coin dispenser, the same instance on every call
+     * @throws NoSuchElementException if the machine is not available
+     */
+    public CoinDispenser provideCoinDispenser(int machineId) throws NoSuchElementException {
+        validMachineId(machineId);
+        CoinDispenser coinDispenser = coinDispenserViews.get(machineId);
+        if (coinDispenser != null) {
+            return coinDispenser;
+        }
+        coinDispenser = new CoinDispenser(coinShelfCapacity, coinCounts, machineId * Coin.countDenominations());
+        return coinDispenserViews.compareAndSet(machineId, null, coinDispenser) ? coinDispenser : coinDispenserViews.get(machineId);
+    }
+}
@@ -44,4 +44,9 @@ public class Product implements ShelfItem{
         return getType().equals(product.getType());
 
     }
+
+    @Override
+    public int hashCode() {
+        return 31 * price + (type != null ? type.hashCode() : 0);
+    }
 }
@@ -0,0 +1,105 @@
+package tdd.vendingMachine.domain;
+
+import lombok.NonNull;
+import org.apache.commons.lang3.StringUtils;
+import tdd.vendingMachine.view.VendingMachineMessages;
+
+import java.util.Arrays;
+import java.util.InputMismatchException;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author Agustin Cabra on 3/8/2017.
+ * @since 2.1
+ * Flyweight catalog of products, interns products by (type, price) so every shelf and machine listing the same
+ * product shares one instance, and gives each product a compact id assigned in interning order from zero.
+ *
+ * Looking up an already interned product does not lock, interning a new product is serialized and copies the
+ * id table, catalogs are expected to hold a few hundred products at most.
+ */
+public final class ProductCatalog {
+
+    private final Map<Product, Integer> ids;
+    private final Object internLock;
+    private volatile Product[] products;
+
+    public ProductCatalog() {
+        this.ids = new ConcurrentHashMap<>();
+        this.internLock = new Object();
+        this.products = new Product[0];
+    }
+
+    /**
+     * Provides the catalog instance of the product with the given price and type, adding it if missing
+     * @param price the price of the product
+     * @param type the type of the product
+     * @return the shared product instance
+     */
+    public Product intern(int price, String type) {
+        return intern(new Product(price, type));
+    }
+
+    /**
+     * Provides the catalog instance equal to the given product, adding the given one if missing
+     * @param product the product
+     * @return the shared product instance
+     */
+    public Product intern(@NonNull Product product) {
+        Integer id = ids.get(product);
+        if (id != null) {
+            return products[id];
+        }
+        if (StringUtils.isEmpty(product.getType())) {
+            throw new InputMismatchException(VendingMachineMessages.SHELF_TYPE_MUST_NOT_BE_EMPTY.label);
+        }
+        synchronized (internLock) {
+            id = ids.get(product);
+            if (id == null) {
+                id = products.length;
+                Product[] grown = Arrays.copyOf(products, id + 1);
+                grown[id] = product;
+                products = grown;
+                ids.put(product, id);
+            }
+            return products[id];
+        }
+    }
+
+    /**
+     * Provides the id of the given product
+     * @param product the product
+     * @return the id of the product
+     * @throws NoSuchElementException if the product is not on the catalog
+     */
+    public int idOf(@NonNull Product product) throws NoSuchElementException {
+        Integer id = ids.get(product);
+        if (id == null) {
+            throw new NoSuchElementException("Product not available on the catalog: " + product.getType());
+        }
+        return id;
+    }
+
+    /**
+     * Provides the product with the given id
+     * @param id the product id
+     * @return the product
+     * @throws NoSuchElementException if no product has the given id
+     */
+    public Product provideProduct(int id) throws NoSuchElementException {
+        Product[] snapshot = products;
+        if (id < 0 || id >= snapshot.length) {
+            throw new NoSuchElementException("Product id not available on the catalog: " + id);
+        }
+        return snapshot[id];
+    }
+
+    /**
+     * The amount of products on the catalog
+     * @return int
+     */
+    public int size() {
+        return ids.size();
+    }
+}
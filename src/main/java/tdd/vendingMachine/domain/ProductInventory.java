@@ -0,0 +1,86 @@
+package tdd.vendingMachine.domain;
+
+import lombok.NonNull;
+
+import java.util.BitSet;
+import java.util.InputMismatchException;
+import java.util.Map;
+
+/**
+ * @author Agustin Cabra on 3/6/2017.
+ * @since 2.1
+ * Aggregate over the product shelves of a vending machine kept up to date incrementally, it holds the total
+ * amount of products and the set of non empty shelf ids so sold out checks and the lookup of the next
+ * available shelf do not scan the shelves.
+ *
+ * Updates are expected from one thread at a time, the product count is volatile so it can be read without locking.
+ */
+public class ProductInventory implements ShelfListener<Product> {
+
+    private final BitSet nonEmptyShelves;
+    private volatile int productCount;
+
+    /**
+     * Builds the aggregate for the given shelves and registers it as listener of every shelf
+     * @param productShelves the product shelves indexed by shelf id
+     */
+    public ProductInventory(@NonNull Map<Integer, Shelf<Product>> productShelves) {
+        this.nonEmptyShelves = new BitSet();
+        for (Shelf<Product> shelf : productShelves.values()) {
+            if (shelf.id < 0) {
+                throw new InputMismatchException("Shelf ids must be non negative: " + shelf.id);
+            }
+            productCount += shelf.getItemCount();
+            nonEmptyShelves.set(shelf.id, !shelf.isEmpty());
+            shelf.setListener(this);
+        }
+    }
+
+    /**
+     * The total amount of products on the shelves
+     * @return int
+     */
+    public int countProducts() {
+        return productCount;
+    }
+
+    /**
+     * Test if every shelf is empty
+     * @return boolean true if no products are left
+     */
+    public boolean isSoldOut() {
+        return productCount == 0;
+    }
+
+    /**
+     * Test if the shelf with the given id has products
+     * @param shelfId the shelf id
+     * @return boolean true if the shelf has at least one product
+     */
+    public boolean hasProducts(int shelfId) {
+        return shelfId >= 0 && nonEmptyShelves.get(shelfId);
+    }
+
+    /**
+     * Finds the first non empty shelf with id greater or equal than the given one
+     * @param fromShelfId the shelf id to start from, inclusive
+     * @return the id of the shelf found or -1 if every shelf from the given id is empty
+     */
+    public int nextAvailableShelf(int fromShelfId) {
+        return nonEmptyShelves.nextSetBit(Math.max(0, fromShelfId));
+    }
+
+    @Override
+    public void onProvision(Shelf<Product> shelf, int amount) {
+        productCount += amount;
+        nonEmptyShelves.set(shelf.id);
+    }
+
+    @Override
+    public void onDispense(Shelf<Product> shelf, int amount) {
+        productCount -= amount;
+        if (shelf.isEmpty()) {
+            nonEmptyShelves.clear(shelf.id);
+        }
+    }
+}
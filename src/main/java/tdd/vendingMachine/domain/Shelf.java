@@ -4,24 +4,42 @@ import tdd.vendingMachine.domain.exception.NotEnoughSlotsAvailableDispenserExcep
 import tdd.vendingMachine.view.VendingMachineMessages;
 
 import java.util.InputMismatchException;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 /**
  * @author Agustin on 2/19/2017.
  * @since 1.0
  * This class represents a shelf that contains products of the same type
+ *
+ * The amount of items is kept on a slot of an {@link AtomicIntegerArray}, a standalone shelf owns a single slot
+ * array while shelves built as views of a fleet store share one contiguous slab.
  */
 public class Shelf<T extends ShelfItem> {
 
     public final int id;
     public final T type;
-    public final int capacity;
-    private final AtomicInteger itemCount;
+    private volatile int capacity;
+    private final AtomicIntegerArray slab;
+    private final int slot;
+    private ShelfListener<T> listener;
 
     Shelf(int id, T type, int capacity, int itemCount) {
+        this(id, type, capacity, new AtomicIntegerArray(new int[]{itemCount}), 0);
+    }
+
+    /**
+     * Builds a shelf view over the given slot of a slab shared with other shelves
+     * @param id the shelf id
+     * @param type the type of item of the shelf
+     * @param capacity the capacity of the shelf
+     * @param slab the array storing the item counts
+     * @param slot the index of the item count of this shelf
+     */
+    Shelf(int id, T type, int capacity, AtomicIntegerArray slab, int slot) {
         this.type = type;
         this.capacity = capacity;
-        this.itemCount = new AtomicInteger(itemCount);
+        this.slab = slab;
+        this.slot = slot;
         this.id = id;
     }
 
@@ -31,12 +49,40 @@ public class Shelf<T extends ShelfItem> {
         }
     }
 
+    /**
+     * Registers the listener notified of every provision and dispense on this shelf, replacing any previous one
+     * @param listener the listener to notify or null to stop notifying
+     */
+    public void setListener(ShelfListener<T> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Provides the maximum amount of items the shelf accepts
+     * @return int
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Changes the maximum amount of items the shelf accepts, items above a reduced capacity stay on the shelf
+     * but no more items are accepted until the shelf goes under the new capacity
+     * @param capacity the new capacity, must be greater than zero
+     */
+    public void resize(int capacity) {
+        if (capacity <= 0) {
+            throw new InputMismatchException("Invalid capacity must be greater than zero");
+        }
+        this.capacity = capacity;
+    }
+
     /**
      * Provides the amount of items in the shelf
      * @return int
      */
     public int getItemCount() {
-        return itemCount.get();
+        return slab.get(slot);
     }
 
     /**
@@ -44,7 +90,7 @@ public class Shelf<T extends ShelfItem> {
      * @return boolean true if empty shelf
      */
     public boolean isEmpty() {
-        return itemCount.get() == 0;
+        return slab.get(slot) == 0;
     }
 
     /**
@@ -60,7 +106,7 @@ public class Shelf<T extends ShelfItem> {
      * @return int
      */
     public int countFreeSlots() {
-        return capacity - itemCount.get();
+        return Math.max(0, capacity - slab.get(slot));
     }
 
     /**
@@ -71,12 +117,17 @@ public class Shelf<T extends ShelfItem> {
      */
     public int provision(int amount) throws NotEnoughSlotsAvailableDispenserException {
         validatePositiveAmount(amount);
-        int freeSlots = countFreeSlots();
-        if (freeSlots >= amount) {
-            return itemCount.addAndGet(amount);
-        }
-        throw new NotEnoughSlotsAvailableDispenserException(
-            VendingMachineMessages.NOT_ENOUGH_SLOTS_AVAILABLE_DISPENSER.label, amount, freeSlots);
+        int before;
+        do {
+            before = slab.get(slot);
+            int freeSlots = Math.max(0, capacity - before);
+            if (freeSlots < amount) {
+                throw new NotEnoughSlotsAvailableDispenserException(
+                    VendingMachineMessages.NOT_ENOUGH_SLOTS_AVAILABLE_DISPENSER.label, amount, freeSlots);
+            }
+        } while (!slab.compareAndSet(slot, before, before + amount));
+        if (listener != null && amount > 0) listener.onProvision(this, amount);
+        return before + amount;
     }
 
     /**
@@ -96,10 +147,15 @@ public class Shelf<T extends ShelfItem> {
      */
     public int dispense(int amount) throws InputMismatchException {
         validatePositiveAmount(amount);
-        if(itemCount.get() >= amount) {
-            return itemCount.addAndGet(-amount);
-        }
-        throw new InputMismatchException(String.format("Unable to dispense %d elements out of %d available", amount, itemCount.get()));
+        int before;
+        do {
+            before = slab.get(slot);
+            if (before < amount) {
+                throw new InputMismatchException(String.format("Unable to dispense %d elements out of %d available", amount, before));
+            }
+        } while (!slab.compareAndSet(slot, before, before - amount));
+        if (listener != null && amount > 0) listener.onDispense(this, amount);
+        return before - amount;
     }
 
     /**
@@ -123,7 +179,7 @@ public class Shelf<T extends ShelfItem> {
     public int hashCode() {
         int result = id * 31 + type.hashCode();
         result = 31 * result + capacity;
-        result = 31 * result + itemCount.get();
+        result = 31 * result + slab.get(slot);
         return result;
     }
 }
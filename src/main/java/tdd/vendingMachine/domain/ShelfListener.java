@@ -0,0 +1,24 @@
+package tdd.vendingMachine.domain;
+
+/**
+ * @author Agustin Cabra on 3/5/2017.
+ * @since 2.1
+ * Listener notified every time the amount of items of a shelf changes, allows to keep aggregates
+ * over shelves updated incrementally instead of scanning the shelves.
+ */
+public interface ShelfListener<T extends ShelfItem> {
+
+    /**
+     * Invoked after items were provisioned to the shelf
+     * @param shelf the shelf that changed
+     * @param amount the amount of items provisioned
+     */
+    void onProvision(Shelf<T> shelf, int amount);
+
+    /**
+     * Invoked after items were dispensed from the shelf
+     * @param shelf the shelf that changed
+     * @param amount the amount of items dispensed
+     */
+    void onDispense(Shelf<T> shelf, int amount);
+}
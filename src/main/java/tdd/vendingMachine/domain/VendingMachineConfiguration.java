@@ -1,17 +1,29 @@
 package tdd.vendingMachine.domain;
 
+import lombok.NonNull;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.Logger;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * @author Agustin Cabra on 2/21/2017.
  * @since 1.0
  * Class representing the VendingMachine configuration, which read from properties file or a given file in the
  * resources main folder. In case of failure reading from file loads the default specified values.
+ *
+ * Instances are immutable snapshots. The snapshot shared by the factories and the machines they build is
+ * provided by {@link #current()}, it is read from the default file once and replaced atomically by
+ * {@link #publish(VendingMachineConfiguration)}, so building machines does no file I/O after the first load.
+ * Every publication increases the configuration generation, the snapshot and its generation are replaced in a
+ * single step. Running machines compare the current snapshot with the one they applied to pick up new shelf
+ * capacities at their next transaction boundary.
  */
 public class VendingMachineConfiguration {
 
@@ -19,12 +31,13 @@ public class VendingMachineConfiguration {
     private static final Logger logger = Logger.getLogger(VendingMachineConfiguration.class);
 
     /**
-     * Indicates whether the properties where loaded from file successfully
+     * The snapshot shared by the factories and the machines they build, loaded on first use, with its
+     * generation increased after every publication of a snapshot
      */
-    private static boolean ready;
+    private static final AtomicReference<Publication> currentPublication = new AtomicReference<>();
 
     /**
-     * The properties file to read from
+     * The properties read from file or null if reading failed and the defaults are used
      */
     private final Properties prop;
 
@@ -46,16 +59,39 @@ public class VendingMachineConfiguration {
     protected static final String SHELF_CAPACITY_DEFAULT = "10";
     protected static final String COIN_SHELF_CAPACITY_KEY = "vendingmachine.coinShelfCapacity";
     protected static final String COIN_SHELF_CAPACITY_DEFAULT = "100";
-    private int coinShelfCapacity;
+    protected static final String CHANGE_REACHABILITY_CEILING_KEY = "vendingmachine.changeReachabilityCeiling";
+    protected static final String CHANGE_REACHABILITY_CEILING_DEFAULT = "1000";
+    protected static final String MAX_MACHINE_ID_KEY = "vendingmachine.maxMachineId";
+    protected static final String MAX_MACHINE_ID_DEFAULT = "1048575";
+    protected static final String FAST_TRANSITIONS_KEY = "vendingmachine.fastTransitions";
+    protected static final String FAST_TRANSITIONS_DEFAULT = "false";
+    private final int coinShelfCapacity;
+
+    /**
+     * The highest amount in cents for which the machine tracks if change can be given
+     */
+    private final int changeReachabilityCeiling;
+
+    /**
+     * The highest machine id accepted on a fleet, fleets index machines by id
+     */
+    private final int maxMachineId;
+
+    /**
+     * Indicates whether state transitions skip the invariant validation
+     */
+    private final boolean fastTransitionsEnabled;
+
+    /**
+     * The amount of machines that applied this snapshot after it was published
+     */
+    private final AtomicInteger machinesAffected = new AtomicInteger();
 
     /**
      * Default constructor initializes properties from default file
      */
     public VendingMachineConfiguration() {
-        this.prop = init(null);
-        this.productShelfCount = Integer.parseInt(retrieveProperty(SHELF_COUNT_KEY, SHELF_COUNT_DEFAULT));
-        this.productShelfCapacity = Integer.parseInt(retrieveProperty(SHELF_CAPACITY_KEY, SHELF_CAPACITY_DEFAULT));
-        this.coinShelfCapacity = Integer.parseInt(retrieveProperty(COIN_SHELF_CAPACITY_KEY, COIN_SHELF_CAPACITY_DEFAULT));
+        this(init(null));
     }
 
     /**
@@ -63,34 +99,121 @@ public class VendingMachineConfiguration {
      * @param configFile a string representing the file's name inside the resources folder.
      */
     public VendingMachineConfiguration(String configFile) {
-        this.prop = init(configFile);
+        this(init(configFile));
+    }
+
+    /**
+     * Constructor providing a configuration file outside the classpath
+     * @param externalFile the path of the properties file
+     */
+    public VendingMachineConfiguration(@NonNull Path externalFile) {
+        this(initFromPath(externalFile));
+    }
+
+    private VendingMachineConfiguration(Properties prop) {
+        this.prop = prop;
         this.productShelfCount = Integer.parseInt(retrieveProperty(SHELF_COUNT_KEY, SHELF_COUNT_DEFAULT));
         this.productShelfCapacity = Integer.parseInt(retrieveProperty(SHELF_CAPACITY_KEY, SHELF_CAPACITY_DEFAULT));
         this.coinShelfCapacity = Integer.parseInt(retrieveProperty(COIN_SHELF_CAPACITY_KEY, COIN_SHELF_CAPACITY_DEFAULT));
+        this.changeReachabilityCeiling = Integer.parseInt(retrieveProperty(CHANGE_REACHABILITY_CEILING_KEY, CHANGE_REACHABILITY_CEILING_DEFAULT));
+        this.maxMachineId = Integer.parseInt(retrieveProperty(MAX_MACHINE_ID_KEY, MAX_MACHINE_ID_DEFAULT));
+        this.fastTransitionsEnabled = Boolean.parseBoolean(retrieveProperty(FAST_TRANSITIONS_KEY, FAST_TRANSITIONS_DEFAULT));
+    }
+
+    /**
+     * Provides the configuration shared by the factories and the machines they build, reading the default file
+     * on first use
+     * @return the current configuration snapshot
+     */
+    public static VendingMachineConfiguration current() {
+        Publication publication = currentPublication.get();
+        if (publication != null) {
+            return publication.configuration;
+        }
+        synchronized (currentPublication) {
+            currentPublication.compareAndSet(null, new Publication(new VendingMachineConfiguration(), 0));
+            return currentPublication.get().configuration;
+        }
+    }
+
+    /**
+     * Replaces the shared configuration, machines built afterwards use the given snapshot. The snapshot and the
+     * increased generation are published together, readers never see one without the other.
+     * @param configuration the new configuration snapshot
+     * @return the replaced snapshot or null if none was loaded yet
+     */
+    public static VendingMachineConfiguration publish(@NonNull VendingMachineConfiguration configuration) {
+        Publication replaced = currentPublication.getAndUpdate(publication ->
+            new Publication(configuration, publication == null ? 1 : publication.generation + 1));
+        return replaced == null ? null : replaced.configuration;
+    }
+
+    /**
+     * The generation of the shared configuration, increased after every publication
+     * @return long
+     */
+    public static long currentGeneration() {
+        Publication publication = currentPublication.get();
+        return publication == null ? 0 : publication.generation;
+    }
+
+    /**
+     * Records a machine applied this snapshot, invoked by the machines picking up a published snapshot
+     */
+    public void recordMachineAffected() {
+        machinesAffected.incrementAndGet();
+    }
+
+    /**
+     * The amount of machines that applied this snapshot after it was published
+     * @return int
+     */
+    public int countMachinesAffected() {
+        return machinesAffected.get();
     }
 
     private String retrieveProperty(String key, String valueDefault) {
-        return ready ? prop.getProperty(key, valueDefault) : valueDefault;
+        return prop != null ? prop.getProperty(key, valueDefault) : valueDefault;
     }
 
     /**
-     * This method attempts to read the properties from configuration file in case of failure the ready property
-     * indicates defaults must be used.
-     * @return the
+     * This method attempts to read the properties from configuration file
+     * @return the properties read or null if reading failed and the defaults must be used
      */
     private static Properties init(String file) {
         Properties prop = new Properties();
-        try {
-            String loadFromFile = StringUtils.isEmpty(file) ? DEFAULT_CONFIG_FILE : file;
-            InputStream resourceAsStream = VendingMachineConfiguration.class.getClassLoader()
-                .getResourceAsStream(loadFromFile);
+        String loadFromFile = StringUtils.isEmpty(file) ? DEFAULT_CONFIG_FILE : file;
+        try (InputStream resourceAsStream = VendingMachineConfiguration.class.getClassLoader()
+            .getResourceAsStream(loadFromFile)) {
             prop.load(resourceAsStream);
-            ready = true;
+            return prop;
         } catch (IOException | NullPointerException e) {
             logger.error("Failed loading properties from the given file: " + file);
-            ready = false;
+            return null;
+        }
+    }
+
+    /**
+     * Reads the properties from a file outside the classpath
+     * @return the properties read or null if reading failed and the defaults must be used
+     */
+    private static Properties initFromPath(Path file) {
+        Properties prop = new Properties();
+        try (InputStream inputStream = Files.newInputStream(file)) {
+            prop.load(inputStream);
+            return prop;
+        } catch (IOException | IllegalArgumentException e) {
+            logger.error("Failed loading properties from the given file: " + file);
+            return null;
         }
-        return prop;
+    }
+
+    /**
+     * Indicates whether the properties where loaded from file successfully
+     * @return boolean false if the default values are used
+     */
+    public boolean isLoadedFromFile() {
+        return prop != null;
     }
 
     public int getProductShelfCount() {
@@ -104,4 +227,29 @@ public class VendingMachineConfiguration {
     public int getCoinShelfCapacity() {
         return coinShelfCapacity;
     }
+
+    public int getChangeReachabilityCeiling() {
+        return changeReachabilityCeiling;
+    }
+
+    public int getMaxMachineId() {
+        return maxMachineId;
+    }
+
+    public boolean isFastTransitionsEnabled() {
+        return fastTransitionsEnabled;
+    }
+
+    /**
+     * A published snapshot and its generation
+     */
+    private static final class Publication {
+        private final VendingMachineConfiguration configuration;
+        private final long generation;
+
+        private Publication(VendingMachineConfiguration configuration, long generation) {
+            this.configuration = configuration;
+            this.generation = generation;
+        }
+    }
 }
@@ -1,36 +1,86 @@
 package tdd.vendingMachine.domain;
 
-import org.apache.log4j.Logger;
+import tdd.vendingMachine.view.DisplayEvent;
 
-import java.util.Observable;
-import java.util.Observer;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * @author Agustin Cabra on 2/20/2017.
  * @since 1.0
  *
  * Class Representing Vending machine display.
+ * The current event is updated synchronously while rendering happens on the {@link DisplayRenderer}, the
+ * display also keeps a bounded history with the most recent events for diagnostics. Events are turned into
+ * text only when read.
  */
 public class VendingMachineDisplay {
 
-    private static final Logger logger = Logger.getLogger(VendingMachineDisplay.class);
+    /**
+     * Amount of messages kept on the history, must be a power of two
+     */
+    static final int HISTORY_SIZE = 32;
 
-    private String currentMessage = "";
+    private final DisplayRenderer renderer;
+    private final DisplayEvent[] history;
+    private volatile DisplayEvent currentEvent = DisplayEvent.EMPTY;
+    private long eventCount;
+
+    public VendingMachineDisplay() {
+        this(DisplayRenderer.getSharedRenderer());
+    }
+
+    VendingMachineDisplay(DisplayRenderer renderer) {
+        this.renderer = renderer;
+        this.history = new DisplayEvent[HISTORY_SIZE];
+    }
 
     /**
      * Returns the last requested label to be displayed on the screen
      * @return
      */
     public String getCurrentMessage() {
-        return this.currentMessage;
+        return this.currentEvent.render();
+    }
+
+    /**
+     * Returns the last event sent to the display
+     * @return the current event
+     */
+    public DisplayEvent getCurrentEvent() {
+        return this.currentEvent;
+    }
+
+    /**
+     * Provides the most recent messages from the oldest to the newest, at most {@link #HISTORY_SIZE}
+     * @return a new list with the recent messages
+     */
+    public synchronized List<String> getRecentMessages() {
+        int size = (int) Math.min(eventCount, HISTORY_SIZE);
+        List<String> recentMessages = new ArrayList<>(size);
+        for (long i = eventCount - size; i < eventCount; i++) {
+            recentMessages.add(history[(int) (i & (HISTORY_SIZE - 1))].render());
+        }
+        return recentMessages;
+    }
+
+    /**
+     * Updates the current event and publishes it to be displayed, never blocks on rendering
+     * @param event the event to display
+     */
+    public void update(DisplayEvent event) {
+        synchronized (this) {
+            history[(int) (eventCount++ & (HISTORY_SIZE - 1))] = event;
+        }
+        this.currentEvent = event;
+        renderer.publish(event);
     }
 
     /**
-     * Displays the label and updates the currentMessage variable
+     * Displays the label and updates the current message
      * @param message the label to display
      */
-    public void update(String message) { //TODO: TODO01 perhaps improve the storage to a more concise approach using an event stack.
-        this.currentMessage = message;
-        System.out.println("VENDING MACHINE: " + currentMessage);
+    public void update(String message) {
+        update(DisplayEvent.text(message));
     }
 }
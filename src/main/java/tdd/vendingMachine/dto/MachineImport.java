@@ -0,0 +1,46 @@
+package tdd.vendingMachine.dto;
+
+import lombok.NonNull;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author Agustin Cabra on 3/9/2017.
+ * @since 2.1
+ * The product and cash imports of one machine of a fleet import file
+ */
+public class MachineImport {
+
+    private final int machineId;
+    private final long order;
+    private final List<ProductImport> productImports;
+    private final List<CashImport> cashImports;
+
+    public MachineImport(int machineId, long order, @NonNull List<ProductImport> productImports, @NonNull List<CashImport> cashImports) {
+        this.machineId = machineId;
+        this.order = order;
+        this.productImports = Collections.unmodifiableList(productImports);
+        this.cashImports = Collections.unmodifiableList(cashImports);
+    }
+
+    public int getMachineId() {
+        return machineId;
+    }
+
+    /**
+     * Orders the imports as their rows appear on the file, lower first
+     * @return long
+     */
+    public long getOrder() {
+        return order;
+    }
+
+    public List<ProductImport> getProductImports() {
+        return productImports;
+    }
+
+    public List<CashImport> getCashImports() {
+        return cashImports;
+    }
+}
@@ -0,0 +1,41 @@
+package tdd.vendingMachine.persistence;
+
+import org.skife.jdbi.v2.sqlobject.Binder;
+import org.skife.jdbi.v2.sqlobject.BinderFactory;
+import org.skife.jdbi.v2.sqlobject.BindingAnnotation;
+
+import java.lang.annotation.Annotation;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * @author Agustin Cabra on 3/12/2017.
+ * @since 2.1
+ * Binds the fields of a {@link TransactionRow} by name calling its getters directly, transaction rows are written
+ * once per machine event and binding them as beans looks every property up by reflection on every row.
+ */
+@BindingAnnotation(BindTransactionRow.Factory.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.PARAMETER)
+public @interface BindTransactionRow {
+
+    final class Factory implements BinderFactory {
+
+        private static final Binder<BindTransactionRow, TransactionRow> BINDER = (statement, annotation, row) -> statement
+            .bind("runId", row.getRunId())
+            .bind("sequence", row.getSequence())
+            .bind("machineId", row.getMachineId())
+            .bind("type", row.getType())
+            .bind("coin", row.getCoin())
+            .bind("shelfNumber", row.getShelfNumber())
+            .bind("amount", row.getAmount())
+            .bind("changeAmount", row.getChangeAmount());
+
+        @Override
+        public Binder build(Annotation annotation) {
+            return BINDER;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package tdd.vendingMachine.persistence;
+
+import lombok.NonNull;
+
+/**
+ * @author Agustin Cabra on 3/12/2017.
+ * @since 2.1
+ * Row of the coin levels of a machine, one per coin held by its cash dispenser.
+ */
+public final class CoinLevelRow {
+
+    private final int machineId;
+    private final String coin;
+    private final int itemCount;
+
+    public CoinLevelRow(int machineId, @NonNull String coin, int itemCount) {
+        this.machineId = machineId;
+        this.coin = coin;
+        this.itemCount = itemCount;
+    }
+
+    public int getMachineId() {
+        return machineId;
+    }
+
+    public String getCoin() {
+        return coin;
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+}
@@ -0,0 +1,126 @@
+package tdd.vendingMachine.persistence;
+
+import org.skife.jdbi.v2.sqlobject.Bind;
+import org.skife.jdbi.v2.sqlobject.BindBean;
+import org.skife.jdbi.v2.sqlobject.SqlBatch;
+import org.skife.jdbi.v2.sqlobject.SqlQuery;
+import org.skife.jdbi.v2.sqlobject.SqlUpdate;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * @author Agustin Cabra on 3/12/2017.
+ * @since 2.1
+ * JDBI data access object of the machine tables: the transaction history is append only and keyed by the run
+ * writing it and the sequence of the event within the run, since sequences start over on every run. The shelf
+ * and coin levels hold the last levels written per machine. Every statement is plain SQL, levels are upserted
+ * updating the existing rows and inserting the rows no update matched, so the tables work on any database and
+ * not only on the embedded H2 of the tests. Drivers not reporting the count of every statement of a batch
+ * ({@link Statement#SUCCESS_NO_INFO}) cost one existence query per level written.
+ */
+public abstract class MachineDao {
+
+    @SqlUpdate("CREATE TABLE IF NOT EXISTS machine_transaction (run_id CHAR(36) NOT NULL, sequence BIGINT NOT NULL, " +
+        "machine_id INT NOT NULL, type VARCHAR(32) NOT NULL, coin VARCHAR(8), shelf_number INT, amount INT, " +
+        "change_amount INT, PRIMARY KEY (run_id, sequence))")
+    public abstract void createTransactionTable();
+
+    @SqlUpdate("CREATE TABLE IF NOT EXISTS shelf_level (machine_id INT NOT NULL, shelf_number INT NOT NULL, " +
+        "product VARCHAR(255) NOT NULL, price INT NOT NULL, item_count INT NOT NULL, PRIMARY KEY (machine_id, shelf_number))")
+    public abstract void createShelfLevelTable();
+
+    @SqlUpdate("CREATE TABLE IF NOT EXISTS coin_level (machine_id INT NOT NULL, coin VARCHAR(8) NOT NULL, " +
+        "item_count INT NOT NULL, PRIMARY KEY (machine_id, coin))")
+    public abstract void createCoinLevelTable();
+
+    @SqlBatch("INSERT INTO machine_transaction (run_id, sequence, machine_id, type, coin, shelf_number, amount, change_amount) " +
+        "VALUES (:runId, :sequence, :machineId, :type, :coin, :shelfNumber, :amount, :changeAmount)")
+    public abstract void insertTransactions(@BindTransactionRow Iterable<TransactionRow> transactions);
+
+    @SqlBatch("UPDATE shelf_level SET product = :product, price = :price, item_count = :itemCount " +
+        "WHERE machine_id = :machineId AND shelf_number = :shelfNumber")
+    public abstract int[] updateShelfLevels(@BindBean Iterable<ShelfLevelRow> shelfLevels);
+
+    @SqlBatch("INSERT INTO shelf_level (machine_id, shelf_number, product, price, item_count) " +
+        "VALUES (:machineId, :shelfNumber, :product, :price, :itemCount)")
+    public abstract void insertShelfLevels(@BindBean Iterable<ShelfLevelRow> shelfLevels);
+
+    @SqlBatch("UPDATE coin_level SET item_count = :itemCount WHERE machine_id = :machineId AND coin = :coin")
+    public abstract int[] updateCoinLevels(@BindBean Iterable<CoinLevelRow> coinLevels);
+
+    @SqlBatch("INSERT INTO coin_level (machine_id, coin, item_count) VALUES (:machineId, :coin, :itemCount)")
+    public abstract void insertCoinLevels(@BindBean Iterable<CoinLevelRow> coinLevels);
+
+    /**
+     * Writes the given shelf levels, replacing the levels of the same machine and shelf, must run inside a
+     * transaction
+     * @param shelfLevels the shelf levels
+     */
+    public void mergeShelfLevels(List<ShelfLevelRow> shelfLevels) {
+        List<ShelfLevelRow> missing = notUpdated(shelfLevels, updateShelfLevels(shelfLevels),
+            row -> countShelfLevels(row.getMachineId(), row.getShelfNumber()) > 0);
+        if (!missing.isEmpty()) {
+            insertShelfLevels(missing);
+        }
+    }
+
+    /**
+     * Writes the given coin levels, replacing the levels of the same machine and coin, must run inside a
+     * transaction
+     * @param coinLevels the coin levels
+     */
+    public void mergeCoinLevels(List<CoinLevelRow> coinLevels) {
+        List<CoinLevelRow> missing = notUpdated(coinLevels, updateCoinLevels(coinLevels),
+            row -> countCoinLevels(row.getMachineId(), row.getCoin()) > 0);
+        if (!missing.isEmpty()) {
+            insertCoinLevels(missing);
+        }
+    }
+
+    /**
+     * Selects the rows the update batch did not match, a count other than 0 or 1 tells nothing of the row, the
+     * driver may report {@link Statement#SUCCESS_NO_INFO}, so the row is looked up
+     * @param rows the rows updated
+     * @param updateCounts the update count of every row
+     * @param exists tests a row is on the table
+     * @param <T> the row type
+     * @return the rows to insert
+     */
+    static <T> List<T> notUpdated(List<T> rows, int[] updateCounts, Predicate<T> exists) {
+        List<T> missing = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            int updateCount = i < updateCounts.length ? updateCounts[i] : Statement.SUCCESS_NO_INFO;
+            if (updateCount == 0 || (updateCount != 1 && !exists.test(rows.get(i)))) {
+                missing.add(rows.get(i));
+            }
+        }
+        return missing;
+    }
+
+    @SqlQuery("SELECT COUNT(*) FROM shelf_level WHERE machine_id = :machineId AND shelf_number = :shelfNumber")
+    public abstract long countShelfLevels(@Bind("machineId") int machineId, @Bind("shelfNumber") int shelfNumber);
+
+    @SqlQuery("SELECT COUNT(*) FROM coin_level WHERE machine_id = :machineId AND coin = :coin")
+    public abstract long countCoinLevels(@Bind("machineId") int machineId, @Bind("coin") String coin);
+
+    @SqlQuery("SELECT COUNT(*) FROM machine_transaction")
+    public abstract long countTransactions();
+
+    @SqlQuery("SELECT COUNT(*) FROM machine_transaction WHERE type = :type")
+    public abstract long countTransactionsOfType(@Bind("type") String type);
+
+    @SqlQuery("SELECT COUNT(*) FROM machine_transaction WHERE run_id = :runId")
+    public abstract long countTransactionsOfRun(@Bind("runId") String runId);
+
+    @SqlQuery("SELECT item_count FROM shelf_level WHERE machine_id = :machineId AND shelf_number = :shelfNumber")
+    public abstract Integer findShelfItemCount(@Bind("machineId") int machineId, @Bind("shelfNumber") int shelfNumber);
+
+    @SqlQuery("SELECT item_count FROM coin_level WHERE machine_id = :machineId AND coin = :coin")
+    public abstract Integer findCoinItemCount(@Bind("machineId") int machineId, @Bind("coin") String coin);
+
+    @SqlQuery("SELECT COALESCE(SUM(item_count), 0) FROM shelf_level")
+    public abstract long sumShelfItemCounts();
+}
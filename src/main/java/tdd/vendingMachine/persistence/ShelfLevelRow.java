@@ -0,0 +1,45 @@
+package tdd.vendingMachine.persistence;
+
+import lombok.NonNull;
+
+/**
+ * @author Agustin Cabra on 3/12/2017.
+ * @since 2.1
+ * Row of the inventory of a machine, one per shelf.
+ */
+public final class ShelfLevelRow {
+
+    private final int machineId;
+    private final int shelfNumber;
+    private final String product;
+    private final int price;
+    private final int itemCount;
+
+    public ShelfLevelRow(int machineId, int shelfNumber, @NonNull String product, int price, int itemCount) {
+        this.machineId = machineId;
+        this.shelfNumber = shelfNumber;
+        this.product = product;
+        this.price = price;
+        this.itemCount = itemCount;
+    }
+
+    public int getMachineId() {
+        return machineId;
+    }
+
+    public int getShelfNumber() {
+        return shelfNumber;
+    }
+
+    public String getProduct() {
+        return product;
+    }
+
+    public int getPrice() {
+        return price;
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+}
@@ -0,0 +1,65 @@
+package tdd.vendingMachine.persistence;
+
+import lombok.NonNull;
+
+/**
+ * @author Agustin Cabra on 3/12/2017.
+ * @since 2.1
+ * Row of the transaction history, one per machine event moving credit, coins or products, keyed by the run of the
+ * persister writing it and the sequence of the event. Values the event does not carry are null.
+ */
+public final class TransactionRow {
+
+    private final String runId;
+    private final long sequence;
+    private final int machineId;
+    private final String type;
+    private final String coin;
+    private final Integer shelfNumber;
+    private final Integer amount;
+    private final Integer changeAmount;
+
+    public TransactionRow(@NonNull String runId, long sequence, int machineId, @NonNull String type, String coin,
+                          Integer shelfNumber, Integer amount, Integer changeAmount) {
+        this.runId = runId;
+        this.sequence = sequence;
+        this.machineId = machineId;
+        this.type = type;
+        this.coin = coin;
+        this.shelfNumber = shelfNumber;
+        this.amount = amount;
+        this.changeAmount = changeAmount;
+    }
+
+    public String getRunId() {
+        return runId;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public int getMachineId() {
+        return machineId;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getCoin() {
+        return coin;
+    }
+
+    public Integer getShelfNumber() {
+        return shelfNumber;
+    }
+
+    public Integer getAmount() {
+        return amount;
+    }
+
+    public Integer getChangeAmount() {
+        return changeAmount;
+    }
+}
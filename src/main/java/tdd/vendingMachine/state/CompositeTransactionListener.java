@@ -0,0 +1,89 @@
+package tdd.vendingMachine.state;
+
+import lombok.NonNull;
+import tdd.vendingMachine.domain.ChangePlan;
+import tdd.vendingMachine.domain.Coin;
+
+import java.util.List;
+
+/**
+ * @author Agustin Cabra on 3/11/2017.
+ * @since 2.1
+ * Listener forwarding every notification to several listeners in the order they were attached, so a machine
+ * can be journaled and emit events at the same time. A listener failing stops the notification, the listeners
+ * after it are not notified.
+ */
+final class CompositeTransactionListener implements TransactionListener {
+
+    private final TransactionListener[] listeners;
+
+    private CompositeTransactionListener(TransactionListener[] listeners) {
+        this.listeners = listeners;
+    }
+
+    /**
+     * Combines the given listeners
+     * @param listeners the listeners in notification order
+     * @return {@link TransactionListener#NONE} if none is given, the listener if one is given or a listener
+     * notifying every one of them
+     */
+    static TransactionListener of(@NonNull List<TransactionListener> listeners) {
+        if (listeners.isEmpty()) {
+            return TransactionListener.NONE;
+        }
+        if (listeners.size() == 1) {
+            return listeners.get(0);
+        }
+        return new CompositeTransactionListener(listeners.toArray(new TransactionListener[listeners.size()]));
+    }
+
+    @Override
+    public void onCredit(Coin coin) {
+        for (TransactionListener listener : listeners) listener.onCredit(coin);
+    }
+
+    @Override
+    public void onSelection(int shelfNumber) {
+        for (TransactionListener listener : listeners) listener.onSelection(shelfNumber);
+    }
+
+    @Override
+    public void onSell(int shelfNumber, ChangePlan changePlan) {
+        for (TransactionListener listener : listeners) listener.onSell(shelfNumber, changePlan);
+    }
+
+    @Override
+    public void onRefund(Coin coin, int amount) {
+        for (TransactionListener listener : listeners) listener.onRefund(coin, amount);
+    }
+
+    @Override
+    public void onRestock(int shelfNumber, int amount) {
+        for (TransactionListener listener : listeners) listener.onRestock(shelfNumber, amount);
+    }
+
+    @Override
+    public void onStateChange(StateEnum state) {
+        for (TransactionListener listener : listeners) listener.onStateChange(state);
+    }
+
+    @Override
+    public void onEscrowProvisioned() {
+        for (TransactionListener listener : listeners) listener.onEscrowProvisioned();
+    }
+
+    @Override
+    public void onChangeDispensed(ChangePlan changePlan) {
+        for (TransactionListener listener : listeners) listener.onChangeDispensed(changePlan);
+    }
+
+    @Override
+    public void onProductDispensed(int shelfNumber) {
+        for (TransactionListener listener : listeners) listener.onProductDispensed(shelfNumber);
+    }
+
+    @Override
+    public void onCoinsTakenFromDispenser(Coin coin, int amount) {
+        for (TransactionListener listener : listeners) listener.onCoinsTakenFromDispenser(coin, amount);
+    }
+}
@@ -0,0 +1,404 @@
+package tdd.vendingMachine.state;
+
+import lombok.NonNull;
+import tdd.vendingMachine.VendingMachine;
+import tdd.vendingMachine.domain.Coin;
+import tdd.vendingMachine.domain.Product;
+import tdd.vendingMachine.domain.exception.CashDispenserFullException;
+import tdd.vendingMachine.domain.exception.ShelfEmptyNotAvailableForSelectionException;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * @author Agustin Cabra on 3/6/2017.
+ * @since 2.1
+ * Thread safe vending machine meant to be reached by several threads at once (customer panel, remote top up,
+ * maintenance console).
+ *
+ * Concurrency model: a single writer lock per machine. Every operation touching the selection, the credit
+ * escrow, the cash dispenser, the display or the state runs on the wrapped machine while holding the lock, so
+ * operations are linearized in lock acquisition order. After every locked operation the credit, the amount of
+ * products and the current state are published to volatile fields, which {@link #provideCredit()},
+ * {@link #countTotalAmountProducts()}, {@link #isSoldOut()}, {@link #provideCurrentStateEnum()} and
+ * {@link #provideCurrentState()} read without locking, observing the machine as it was after the last completed
+ * operation. Every other read takes the lock.
+ *
+ * The states returned by {@link #provideCurrentState()} are wrappers running the current state of the wrapped
+ * machine once the lock is taken, so driving the machine through them is as safe as through this class: a state
+ * kept while another caller moves the machine on runs the state the machine is in, not the one it was taken in.
+ *
+ * The wrapped machine must not be used directly once wrapped, its states call back the wrapped machine and
+ * rely on the lock taken by this class.
+ */
+public final class ConcurrentVendingMachine implements VendingSession {
+
+    private final VendingMachineImpl delegate;
+    private final ReentrantLock writeLock;
+
+    //published after every locked operation
+    private volatile int publishedCredit;
+    private volatile int publishedProductCount;
+    private volatile StateEnum publishedState;
+
+    /**
+     * Locked wrappers of the states of the wrapped machine indexed by {@link StateEnum#ordinal()}
+     */
+    private final State[] lockedStates;
+
+    ConcurrentVendingMachine(@NonNull VendingMachineImpl delegate) {
+        this.delegate = delegate;
+        this.writeLock = new ReentrantLock();
+        this.lockedStates = new State[StateEnum.values().length];
+        for (StateEnum state : StateEnum.values()) {
+            lockedStates[state.ordinal()] = new LockedState(state);
+        }
+        this.writeLock.lock();
+        try {
+            publish();
+        } finally {
+            this.writeLock.unlock();
+        }
+    }
+
+    /**
+     * Publishes the values read without locking, must be called holding the lock
+     */
+    private void publish() {
+        this.publishedCredit = delegate.provideCredit();
+        this.publishedProductCount = delegate.countTotalAmountProducts();
+        this.publishedState = delegate.provideCurrentStateEnum();
+    }
+
+    /**
+     * Releases the lock after publishing the values read without locking
+     */
+    private void publishAndUnlock() {
+        try {
+            publish();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void insertCoin(Coin money) {
+        writeLock.lock();
+        try {
+            delegate.insertCoin(money);
+        } finally {
+            publishAndUnlock();
+        }
+    }
+
+    @Override
+    public void selectShelfNumber(int shelfNumber) {
+        writeLock.lock();
+        try {
+            delegate.selectShelfNumber(shelfNumber);
+        } finally {
+            publishAndUnlock();
+        }
+    }
+
+    @Override
+    public void cancel() {
+        writeLock.lock();
+        try {
+            delegate.cancel();
+        } finally {
+            publishAndUnlock();
+        }
+    }
+
+    @Override
+    public void restockShelf(int shelfNumber, int amount) {
+        writeLock.lock();
+        try {
+            delegate.restockShelf(shelfNumber, amount);
+        } finally {
+            publishAndUnlock();
+        }
+    }
+
+    @Override
+    public void addCoinToCredit(Coin coin) throws CashDispenserFullException {
+        writeLock.lock();
+        try {
+            delegate.addCoinToCredit(coin);
+        } finally {
+            publishAndUnlock();
+        }
+    }
+
+    @Override
+    public TransactionOutcome tryAddCoinToCredit(Coin coin) {
+        writeLock.lock();
+        try {
+            return delegate.tryAddCoinToCredit(coin);
+        } finally {
+            publishAndUnlock();
+        }
+    }
+
+    @Override
+    public State provideCurrentState() {
+        return lockedStates[publishedState.ordinal()];
+    }
+
+    /**
+     * The current state as enum
+     * @return the state enum
+     */
+    public StateEnum provideCurrentStateEnum() {
+        return publishedState;
+    }
+
+    @Override
+    public void showMessageOnDisplay(String message) {
+        writeLock.lock();
+        try {
+            delegate.showMessageOnDisplay(message);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void displayProductPrice(int shelfNumber) {
+        writeLock.lock();
+        try {
+            delegate.displayProductPrice(shelfNumber);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Product provideSelectedProduct() {
+        writeLock.lock();
+        try {
+            return delegate.provideSelectedProduct();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public int provideCredit() {
+        return publishedCredit;
+    }
+
+    @Override
+    public void undoProductSelection() {
+        writeLock.lock();
+        try {
+            delegate.undoProductSelection();
+        } finally {
+            publishAndUnlock();
+        }
+    }
+
+    @Override
+    public void selectProductGivenShelfNumber(int shelfNumber) throws NoSuchElementException, ShelfEmptyNotAvailableForSelectionException {
+        writeLock.lock();
+        try {
+            delegate.selectProductGivenShelfNumber(shelfNumber);
+        } finally {
+            publishAndUnlock();
+        }
+    }
+
+    @Override
+    public TransactionOutcome trySelectProductGivenShelfNumber(int shelfNumber) throws NoSuchElementException {
+        writeLock.lock();
+        try {
+            return delegate.trySelectProductGivenShelfNumber(shelfNumber);
+        } finally {
+            publishAndUnlock();
+        }
+    }
+
+    @Override
+    public boolean isCreditStackEmpty() {
+        writeLock.lock();
+        try {
+            return delegate.isCreditStackEmpty();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isSoldOut() {
+        return publishedProductCount == 0;
+    }
+
+    @Override
+    public void returnAllCreditToBucket() {
+        writeLock.lock();
+        try {
+            delegate.returnAllCreditToBucket();
+        } finally {
+            publishAndUnlock();
+        }
+    }
+
+    @Override
+    public int getCreditStackSize() {
+        writeLock.lock();
+        try {
+            return delegate.getCreditStackSize();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public String getDisplayCurrentMessage() {
+        writeLock.lock();
+        try {
+            return delegate.getDisplayCurrentMessage();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public int calculatePendingBalance() throws NoSuchElementException {
+        writeLock.lock();
+        try {
+            return delegate.calculatePendingBalance();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public int countTotalAmountProducts() {
+        return publishedProductCount;
+    }
+
+    @Override
+    public int findNextAvailableShelfNumber(int fromShelfNumber) {
+        writeLock.lock();
+        try {
+            return delegate.findNextAvailableShelfNumber(fromShelfNumber);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isExactChangeOnly() {
+        writeLock.lock();
+        try {
+            return delegate.isExactChangeOnly();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public int countProductsOnShelf(int shelfNumber) throws NoSuchElementException {
+        writeLock.lock();
+        try {
+            return delegate.countProductsOnShelf(shelfNumber);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void sendStateTo(StateEnum state) {
+        writeLock.lock();
+        try {
+            delegate.sendStateTo(state);
+        } finally {
+            publishAndUnlock();
+        }
+    }
+
+    /**
+     * The wrapped machine, to be read only while holding the lock, see {@link #runLocked(Consumer)}
+     * @return the wrapped machine
+     */
+    VendingMachineImpl getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Runs the given action on the wrapped machine holding the lock, used to take consistent snapshots
+     * @param action the action reading the wrapped machine
+     */
+    void runLocked(@NonNull Consumer<VendingMachineImpl> action) {
+        writeLock.lock();
+        try {
+            action.accept(delegate);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Counts the total cash in the cash dispenser
+     * @return the cash in the dispenser
+     */
+    int countCashInDispenser() {
+        writeLock.lock();
+        try {
+            return delegate.countCashInDispenser();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Runs the current state of the wrapped machine while holding the lock, the state enum it was provided for
+     * only names it
+     */
+    private final class LockedState implements State {
+
+        private final StateEnum state;
+
+        private LockedState(StateEnum state) {
+            this.state = state;
+        }
+
+        @Override
+        public void insertCoin(Coin coin) {
+            writeLock.lock();
+            try {
+                delegate.provideCurrentState().insertCoin(coin);
+            } finally {
+                publishAndUnlock();
+            }
+        }
+
+        @Override
+        public void selectShelfNumber(int shelfNumber) {
+            writeLock.lock();
+            try {
+                delegate.provideCurrentState().selectShelfNumber(shelfNumber);
+            } finally {
+                publishAndUnlock();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            writeLock.lock();
+            try {
+                delegate.provideCurrentState().cancel();
+            } finally {
+                publishAndUnlock();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return state.name();
+        }
+    }
+}
@@ -1,11 +1,7 @@
 package tdd.vendingMachine.state;
 
 import org.apache.log4j.Logger;
-import tdd.vendingMachine.VendingMachine;
 import tdd.vendingMachine.domain.Coin;
-import tdd.vendingMachine.domain.exception.CashDispenserFullException;
-import tdd.vendingMachine.domain.exception.ShelfEmptyNotAvailableForSelectionException;
-import tdd.vendingMachine.domain.exception.UnableToProvideBalanceException;
 import tdd.vendingMachine.view.VendingMachineMessages;
 
 import java.util.NoSuchElementException;
@@ -30,13 +26,12 @@ public class CreditNotSelectedProductState implements State {
     @Override
     public void insertCoin(Coin coin) {
         try {
-            vendingMachine.addCoinToCredit(coin);
-        } catch (CashDispenserFullException cashDispenserFullException) {
-            logger.error(cashDispenserFullException);
-            this.vendingMachine.showMessageOnDisplay(String.format("[%s] %s",
-                cashDispenserFullException.getMessage(),
-                VendingMachineMessages.provideCashToDisplay(cashDispenserFullException.getAmountDeclined()))
-            );
+            if (vendingMachine.tryAddCoinToCredit(coin) == TransactionOutcome.DISPENSER_FULL) {
+                this.vendingMachine.showMessageOnDisplay(String.format("[%s] %s",
+                    VendingMachineMessages.CASH_NOT_ACCEPTED_DISPENSER_FULL.label,
+                    VendingMachineMessages.provideCashToDisplay(coin.denomination))
+                );
+            }
         } catch (Exception uoe) {
             logger.error(uoe);
             vendingMachine.showMessageOnDisplay(VendingMachineMessages.buildWarningMessageWithoutSubject(VendingMachineMessages.TECHNICAL_ERROR.label));
@@ -47,9 +42,18 @@ public class CreditNotSelectedProductState implements State {
     @Override
     public void selectShelfNumber(int shelfNumber) {
         try {
-            vendingMachine.selectProductGivenShelfNumber(shelfNumber);
+            if (vendingMachine.trySelectProductGivenShelfNumber(shelfNumber) == TransactionOutcome.SHELF_EMPTY) {
+                this.vendingMachine.showMessageOnDisplay(VendingMachineMessages.buildWarningMessageWithSubject(
+                    VendingMachineMessages.UNABLE_TO_SELECT_EMPTY_SHELF.label,
+                    shelfNumber, false)
+                );
+                return;
+            }
             vendingMachine.displayProductPrice(shelfNumber);
-            vendingMachine.attemptSell();
+            TransactionOutcome outcome = vendingMachine.sellOrCompensate();
+            if (outcome == TransactionOutcome.NO_CHANGE || outcome == TransactionOutcome.SHELF_EMPTY) {
+                return;
+            }
             if (vendingMachine.provideCurrentState().equals(this)) {
                 vendingMachine.sendStateTo(InsufficientCreditState.state);
             }
@@ -58,16 +62,6 @@ public class CreditNotSelectedProductState implements State {
             vendingMachine.showMessageOnDisplay(
                 VendingMachineMessages.buildWarningMessageWithSubject(VendingMachineMessages.SHELF_NUMBER_NOT_AVAILABLE.label,
                     shelfNumber, false));
-        } catch (ShelfEmptyNotAvailableForSelectionException e) {
-            logger.error(e);
-            this.vendingMachine.showMessageOnDisplay(VendingMachineMessages.buildWarningMessageWithSubject(
-                VendingMachineMessages.UNABLE_TO_SELECT_EMPTY_SHELF.label,
-                e.getShelfNumber(), false)
-            );
-        } catch (UnableToProvideBalanceException unableToProvideBalanceException) {
-            logger.error(unableToProvideBalanceException);
-            vendingMachine.rollBackSell(unableToProvideBalanceException.getMessage(),
-                unableToProvideBalanceException.getPendingBalance());
         } catch (Exception uoe) {
             logger.error(uoe);
             vendingMachine.showMessageOnDisplay(VendingMachineMessages.buildWarningMessageWithoutSubject(VendingMachineMessages.TECHNICAL_ERROR.label));
@@ -79,7 +73,7 @@ public class CreditNotSelectedProductState implements State {
     public void cancel() {
         try {
             vendingMachine.returnAllCreditToBucket();
-            vendingMachine.sendStateTo(ReadyState.state);
+            vendingMachine.sendStateTo(vendingMachine.isSoldOut() ? SoldOutState.state : ReadyState.state);
         } catch (Exception e) {
             logger.error(e);
             vendingMachine.showMessageOnDisplay(VendingMachineMessages.buildWarningMessageWithoutSubject(VendingMachineMessages.TECHNICAL_ERROR.label));
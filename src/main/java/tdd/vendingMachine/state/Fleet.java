@@ -0,0 +1,200 @@
+package tdd.vendingMachine.state;
+
+import lombok.NonNull;
+import tdd.vendingMachine.domain.*;
+import tdd.vendingMachine.validation.VendingMachineValidator;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * @author Agustin Cabra on 3/8/2017.
+ * @since 2.1
+ * Fleet of vending machines keyed by machine id, machines are kept on an array indexed by id. Fleets built from
+ * a template number machines from zero, fleets imported from a file keep the ids of the file and may have gaps.
+ *
+ * Machines of a fleet are built in bulk from a template: the template is validated once against the
+ * configuration, then the shelf and coin counts of every machine are laid out on a {@link FleetInventory} and
+ * every machine operates its views of it without reading the configuration nor validating again. Machines are
+ * built in parallel across the available cores, products are immutable so every machine shares the product
+ * instances of the template.
+ */
+public final class Fleet implements Iterable<VendingSession> {
+
+    private final VendingSession[] machines;
+    private final int machineCount;
+
+    /**
+     * The store of the counts of the machines built from a template, null for fleets built from other sources
+     */
+    private final FleetInventory fleetInventory;
+
+    /**
+     * Builds a fleet over the given array indexed by machine id
+     * @param machines the machines, null where the fleet has no machine
+     * @param machineCount the amount of non null machines
+     */
+    Fleet(VendingSession[] machines, int machineCount) {
+        this(machines, machineCount, null);
+    }
+
+    private Fleet(VendingSession[] machines, int machineCount, FleetInventory fleetInventory) {
+        this.machines = machines;
+        this.machineCount = machineCount;
+        this.fleetInventory = fleetInventory;
+    }
+
+    /**
+     * Builds a fleet holding the given machines
+     * @param config the configuration bounding the machine ids
+     * @param machines the machines keyed by machine id
+     * @return the fleet
+     * @throws InputMismatchException if a machine id is negative or above the highest machine id configured
+     */
+    static Fleet of(@NonNull VendingMachineConfiguration config, @NonNull Map<Integer, ? extends VendingSession> machines) {
+        int maxMachineId = -1;
+        for (Integer machineId : machines.keySet()) {
+            validMachineId(config, machineId);
+            maxMachineId = Math.max(maxMachineId, machineId);
+        }
+        VendingSession[] sessions = new VendingSession[maxMachineId + 1];
+        machines.forEach((machineId, machine) -> sessions[machineId] = machine);
+        return new Fleet(sessions, machines.size());
+    }
+
+    /**
+     * Builds a fleet of machines with shelves containing the given list of products and the productItemCount for
+     * each product and a coin dispenser with coinItemCount per coin denomination
+     * @param config the configuration shared by every machine
+     * @param products the products available on every machine
+     * @param productItemCount the amount of each product
+     * @param coinItemCount the amount of coins per denomination in the cash dispenser
+     * @param machineCount the amount of machines
+     * @return the fleet
+     */
+    static Fleet build(@NonNull VendingMachineConfiguration config, @NonNull Collection<Product> products,
+                       int productItemCount, int coinItemCount, int machineCount) {
+        if (machineCount < 0) throw new InputMismatchException("Machine amount must be non-negative");
+        if (productItemCount < 0) throw new InputMismatchException("Product amount must be non-negative");
+        if (coinItemCount < 0) throw new InputMismatchException("Coin amount must be non-negative");
+        Product[] template = products.toArray(new Product[products.size()]);
+        int productShelfCapacity = config.getProductShelfCapacity();
+        int coinShelfCapacity = config.getCoinShelfCapacity();
+        VendingMachineValidator.validateNewVendingMachineParameters(config,
+            buildProductShelves(template, productShelfCapacity, productItemCount),
+            new CoinDispenser(coinShelfCapacity, coinItemCount));
+
+        int changeReachabilityCeiling = VendingMachineImpl.provideChangeReachabilityCeiling(config);
+        FleetInventory fleetInventory = new FleetInventory(Arrays.asList(template), productShelfCapacity, productItemCount,
+            coinShelfCapacity, coinItemCount, machineCount);
+        VendingSession[] machines = new VendingSession[machineCount];
+        IntStream.range(0, machineCount).parallel().forEach(machineId -> {
+            fleetInventory.claimMachine(machineId);
+            SharedInventory inventory = new SharedInventory(fleetInventory.provideProductShelves(machineId),
+                fleetInventory.provideCoinDispenser(machineId), new BoundedChangeMaker(), changeReachabilityCeiling);
+            machines[machineId] = new VendingMachineImpl(config, inventory);
+        });
+        return new Fleet(machines, machineCount, fleetInventory);
+    }
+
+    /**
+     * Validates a machine id read from outside the fleet, machines are indexed by id so ids are bounded by the
+     * configuration
+     * @param config the configuration bounding the machine ids
+     * @param machineId the machine id
+     * @throws InputMismatchException if the machine id is negative or above the highest machine id configured
+     */
+    static void validMachineId(@NonNull VendingMachineConfiguration config, int machineId) throws InputMismatchException {
+        if (machineId < 0 || machineId > config.getMaxMachineId()) {
+            throw new InputMismatchException(String.format("Machine id must be between 0 and %d: %d",
+                config.getMaxMachineId(), machineId));
+        }
+    }
+
+    private static Map<Integer, Shelf<Product>> buildProductShelves(Product[] products, int capacity, int itemCount) {
+        Map<Integer, Shelf<Product>> productShelves = new HashMap<>((int) (products.length / 0.75f) + 1);
+        for (int id = 0; id < products.length; id++) {
+            productShelves.put(id, ShelfFactory.buildShelf(id, products[id], capacity, itemCount));
+        }
+        return productShelves;
+    }
+
+    /**
+     * Provides the machine with the given id
+     * @param machineId the machine id
+     * @return the machine
+     * @throws NoSuchElementException if the fleet has no such machine
+     */
+    public VendingSession getMachine(int machineId) throws NoSuchElementException {
+        if (machineId < 0 || machineId >= machines.length || machines[machineId] == null) {
+            throw new NoSuchElementException("Machine not available on the fleet: " + machineId);
+        }
+        return machines[machineId];
+    }
+
+    /**
+     * One more than the highest machine id of the fleet
+     * @return int
+     */
+    int machineIdBound() {
+        return machines.length;
+    }
+
+    /**
+     * Provides the machine with the given id, the id must be lower than {@link #machineIdBound()}
+     * @param machineId the machine id
+     * @return the machine or null if the fleet has no machine with such id
+     */
+    VendingSession findMachine(int machineId) {
+        return machines[machineId];
+    }
+
+    /**
+     * The amount of machines of the fleet
+     * @return int
+     */
+    public int countMachines() {
+        return machineCount;
+    }
+
+    /**
+     * Counts the products left on every machine of the fleet
+     * @return long
+     */
+    public long countTotalAmountProducts() {
+        if (fleetInventory != null) {
+            return fleetInventory.countTotalProducts();
+        }
+        long total = 0;
+        for (VendingSession machine : machines) {
+            if (machine != null) {
+                total += machine.countTotalAmountProducts();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Stream over the machines of the fleet in machine id order
+     * @return a sequential stream, it can be turned parallel by the caller
+     */
+    public Stream<VendingSession> stream() {
+        return machineCount == machines.length ? Arrays.stream(machines) : Arrays.stream(machines).filter(Objects::nonNull);
+    }
+
+    @Override
+    public Iterator<VendingSession> iterator() {
+        return stream().iterator();
+    }
+
+    @Override
+    public void forEach(@NonNull Consumer<? super VendingSession> action) {
+        for (VendingSession machine : machines) {
+            if (machine != null) {
+                action.accept(machine);
+            }
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package tdd.vendingMachine.state;
+
+import lombok.NonNull;
+import org.apache.log4j.Logger;
+import org.skife.jdbi.v2.DBI;
+import tdd.vendingMachine.domain.Coin;
+import tdd.vendingMachine.domain.CoinDispenser;
+import tdd.vendingMachine.domain.Product;
+import tdd.vendingMachine.domain.Shelf;
+import tdd.vendingMachine.persistence.CoinLevelRow;
+import tdd.vendingMachine.persistence.MachineDao;
+import tdd.vendingMachine.persistence.ShelfLevelRow;
+import tdd.vendingMachine.persistence.TransactionRow;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.EnumSet;
+import java.util.InputMismatchException;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * @author Agustin Cabra on 3/12/2017.
+ * @since 2.1
+ * Persists a fleet through {@link MachineDao}: a background thread tails the {@link MachineEventLog} of the fleet
+ * and, every flush interval, writes the new events to the transaction history and the current shelf and coin
+ * levels of the machines they touched, all in one database transaction batched by the given size. Machines
+ * only append their events to the log, so sells never wait on the database. Selections and state changes move
+ * no credit, coins nor products and are left to the event log, they are about half the events of a sell.
+ *
+ * Machines notify the shelf and cash changes while holding the commit lock of their inventory, so the levels
+ * read under that lock after reading the events are at least as recent as the events written with them.
+ * Events compacted by the log before being flushed are counted as lost, the levels of every machine are
+ * written again on the following flush. A failed flush is retried from the same sequence on the next one.
+ *
+ * Event sequences start over with every event log, so the transactions are keyed by a run id drawn at random
+ * when the persister starts and the sequence: several runs keep appending to the same history.
+ */
+public final class FleetPersister implements Closeable {
+
+    private static final Logger logger = Logger.getLogger(FleetPersister.class);
+
+    /**
+     * Event types written to the transaction history
+     */
+    private static final Set<MachineEvent.Type> TRANSACTION_TYPES =
+        EnumSet.complementOf(EnumSet.of(MachineEvent.Type.SHELF_SELECTED, MachineEvent.Type.STATE_CHANGED));
+
+    private final Fleet fleet;
+    private final MachineEventLog eventLog;
+    private final DBI dbi;
+    private final int batchSize;
+    private final String runId;
+    private final ReentrantLock flushLock;
+    private final BitSet dirtyMachines;
+    private final ScheduledExecutorService flusher;
+    private long nextSequence;
+    private long persistedTransactions;
+    private long lostEvents;
+    private long flushes;
+
+    private FleetPersister(Fleet fleet, MachineEventLog eventLog, DBI dbi, int batchSize) {
+        this.fleet = fleet;
+        this.eventLog = eventLog;
+        this.dbi = dbi;
+        this.batchSize = batchSize;
+        this.runId = UUID.randomUUID().toString();
+        this.flushLock = new ReentrantLock();
+        this.dirtyMachines = new BitSet(fleet.machineIdBound());
+        this.dirtyMachines.set(0, fleet.machineIdBound());
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "vending-machine-persister");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.nextSequence = eventLog.firstRetainedSequence();
+    }
+
+    /**
+     * Creates the tables if missing and starts flushing the events of the log of the given fleet
+     * @param fleet the fleet attached to the event log
+     * @param eventLog the event log
+     * @param dbi the database
+     * @param flushIntervalMillis the milliseconds between the end of a flush and the start of the next one
+     * @param batchSize the amount of rows per batch statement
+     * @return the persister
+     */
+    public static FleetPersister start(@NonNull Fleet fleet, @NonNull MachineEventLog eventLog, @NonNull DBI dbi,
+                                       long flushIntervalMillis, int batchSize) {
+        if (flushIntervalMillis < 1) throw new InputMismatchException("Flush interval must be positive: " + flushIntervalMillis);
+        if (batchSize < 1) throw new InputMismatchException("Batch size must be positive: " + batchSize);
+        dbi.withHandle(handle -> {
+            MachineDao machineDao = handle.attach(MachineDao.class);
+            machineDao.createTransactionTable();
+            machineDao.createShelfLevelTable();
+            machineDao.createCoinLevelTable();
+            return null;
+        });
+        FleetPersister persister = new FleetPersister(fleet, eventLog, dbi, batchSize);
+        persister.flusher.scheduleWithFixedDelay(() -> {
+            try {
+                persister.flush();
+            } catch (RuntimeException e) {
+                logger.error("flush failed, retrying on the next one", e);
+            }
+        }, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        return persister;
+    }
+
+    /**
+     * Writes the events appended since the last flush and the levels of the machines they touched
+     * @return the amount of transactions written
+     */
+    public long flush() {
+        flushLock.lock();
+        try {
+            List<MachineEvent> events = new ArrayList<>();
+            long readSequence = readEvents(events);
+            List<TransactionRow> transactions = new ArrayList<>(events.size());
+            for (MachineEvent event : events) {
+                if (TRANSACTION_TYPES.contains(event.type)) {
+                    transactions.add(toRow(event));
+                }
+                if (event.machineId < fleet.machineIdBound()) {
+                    dirtyMachines.set(event.machineId);
+                }
+            }
+            List<ShelfLevelRow> shelfLevels = new ArrayList<>();
+            List<CoinLevelRow> coinLevels = new ArrayList<>();
+            for (int machineId = dirtyMachines.nextSetBit(0); machineId >= 0; machineId = dirtyMachines.nextSetBit(machineId + 1)) {
+                VendingSession machine = fleet.findMachine(machineId);
+                if (machine != null) {
+                    readLevels(machineId, MachineSnapshotCodec.unwrap(machine), shelfLevels, coinLevels);
+                }
+            }
+            if (transactions.isEmpty() && shelfLevels.isEmpty() && coinLevels.isEmpty()) {
+                nextSequence = readSequence;
+                return 0;
+            }
+            long start = System.nanoTime();
+            dbi.inTransaction((handle, status) -> {
+                MachineDao machineDao = handle.attach(MachineDao.class);
+                for (int from = 0; from < transactions.size(); from += batchSize) {
+                    machineDao.insertTransactions(transactions.subList(from, Math.min(transactions.size(), from + batchSize)));
+                }
+                for (int from = 0; from < shelfLevels.size(); from += batchSize) {
+                    machineDao.mergeShelfLevels(shelfLevels.subList(from, Math.min(shelfLevels.size(), from + batchSize)));
+                }
+                for (int from = 0; from < coinLevels.size(); from += batchSize) {
+                    machineDao.mergeCoinLevels(coinLevels.subList(from, Math.min(coinLevels.size(), from + batchSize)));
+                }
+                return null;
+            });
+            nextSequence = readSequence;
+            dirtyMachines.clear();
+            persistedTransactions += transactions.size();
+            flushes++;
+            logger.debug(String.format("flushed %d transactions and %d shelf levels in %d ms", transactions.size(),
+                shelfLevels.size(), (System.nanoTime() - start) / 1_000_000));
+            return transactions.size();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Reads the events from the next sequence to flush on, skipping the events compacted meanwhile
+     * @param events receives the events
+     * @return the sequence following the last event read
+     */
+    private long readEvents(List<MachineEvent> events) {
+        while (true) {
+            try {
+                return eventLog.read(nextSequence, events::add);
+            } catch (NoSuchElementException e) {
+                long firstRetainedSequence = eventLog.firstRetainedSequence();
+                logger.warn(String.format("events %d to %d compacted before being flushed", nextSequence, firstRetainedSequence - 1));
+                lostEvents += firstRetainedSequence - nextSequence;
+                nextSequence = firstRetainedSequence;
+                dirtyMachines.set(0, fleet.machineIdBound());
+            }
+        }
+    }
+
+    private TransactionRow toRow(MachineEvent event) {
+        return new TransactionRow(runId, event.sequence, event.machineId, event.type.name(),
+            event.coin != null ? event.coin.label : null,
+            event.shelfNumber >= 0 ? event.shelfNumber : null,
+            event.amount >= 0 ? event.amount : null,
+            event.changePlan != null ? event.changePlan.getAmount() : null);
+    }
+
+    private static void readLevels(int machineId, VendingMachineImpl machine, List<ShelfLevelRow> shelfLevels,
+                                   List<CoinLevelRow> coinLevels) {
+        SharedInventory inventory = machine.getInventory();
+        inventory.lock();
+        try {
+            for (Shelf<Product> shelf : inventory.getShelves()) {
+                shelfLevels.add(new ShelfLevelRow(machineId, shelf.id, shelf.type.getType(), shelf.type.getPrice(),
+                    shelf.getItemCount()));
+            }
+            CoinDispenser coinDispenser = inventory.getCoinDispenser();
+            for (int order = 0; order < Coin.countDenominations(); order++) {
+                Coin coin = Coin.retrieveCoinByOrder(order);
+                coinLevels.add(new CoinLevelRow(machineId, coin.label, coinDispenser.getItemCount(coin)));
+            }
+        } finally {
+            inventory.unlock();
+        }
+    }
+
+    /**
+     * The id keying the transactions written by this persister
+     * @return String
+     */
+    public String getRunId() {
+        return runId;
+    }
+
+    /**
+     * The amount of transactions written
+     * @return long
+     */
+    public long countPersistedTransactions() {
+        flushLock.lock();
+        try {
+            return persistedTransactions;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * The amount of events compacted by the event log before being written
+     * @return long
+     */
+    public long countLostEvents() {
+        flushLock.lock();
+        try {
+            return lostEvents;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * The amount of flushes writing something
+     * @return long
+     */
+    public long countFlushes() {
+        flushLock.lock();
+        try {
+            return flushes;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Stops the background flushes and flushes the events appended up to now
+     */
+    @Override
+    public void close() {
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(1, TimeUnit.MINUTES)) {
+                logger.warn("background flush did not finish in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+}
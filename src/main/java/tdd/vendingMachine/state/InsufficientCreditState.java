@@ -2,9 +2,6 @@ package tdd.vendingMachine.state;
 
 import org.apache.log4j.Logger;
 import tdd.vendingMachine.domain.Coin;
-import tdd.vendingMachine.domain.exception.CashDispenserFullException;
-import tdd.vendingMachine.domain.exception.ShelfEmptyNotAvailableForSelectionException;
-import tdd.vendingMachine.domain.exception.UnableToProvideBalanceException;
 import tdd.vendingMachine.view.VendingMachineMessages;
 
 import java.util.NoSuchElementException;
@@ -30,18 +27,14 @@ public class InsufficientCreditState implements State {
     @Override
     public void insertCoin(Coin coin) {
         try {
-            vendingMachine.addCoinToCredit(coin);
-            vendingMachine.attemptSell();
-        } catch (CashDispenserFullException cashDispenserFullException) {
-            logger.error(cashDispenserFullException);
-            String message = String.format("%s %s: %s", coin.label,
-                cashDispenserFullException.getMessage(),
-                VendingMachineMessages.provideCashToDisplay(this.vendingMachine.provideCredit()));
-            this.vendingMachine.showMessageOnDisplay(message);
-        } catch (UnableToProvideBalanceException unableToProvideBalanceException) {
-            logger.error(unableToProvideBalanceException);
-            vendingMachine.rollBackSell(unableToProvideBalanceException.getMessage(),
-                unableToProvideBalanceException.getPendingBalance());
+            if (vendingMachine.tryAddCoinToCredit(coin) == TransactionOutcome.DISPENSER_FULL) {
+                String message = String.format("%s %s: %s", coin.label,
+                    VendingMachineMessages.CASH_NOT_ACCEPTED_DISPENSER_FULL.label,
+                    VendingMachineMessages.provideCashToDisplay(this.vendingMachine.provideCredit()));
+                this.vendingMachine.showMessageOnDisplay(message);
+                return;
+            }
+            vendingMachine.sellOrCompensate();
         } catch (Exception uoe) {
             logger.error(uoe);
             vendingMachine.showMessageOnDisplay(VendingMachineMessages.buildWarningMessageWithoutSubject(VendingMachineMessages.TECHNICAL_ERROR.label));
@@ -53,9 +46,15 @@ public class InsufficientCreditState implements State {
     @Override
     public void selectShelfNumber(int shelfNumber) {
         try {
-            vendingMachine.selectProductGivenShelfNumber(shelfNumber);
+            if (vendingMachine.trySelectProductGivenShelfNumber(shelfNumber) == TransactionOutcome.SHELF_EMPTY) {
+                vendingMachine.showMessageOnDisplay(
+                    VendingMachineMessages.buildWarningMessageWithSubject(VendingMachineMessages.UNABLE_TO_SELECT_EMPTY_SHELF.label,
+                        shelfNumber, false)
+                );
+                return;
+            }
             vendingMachine.displayProductPrice(shelfNumber);
-            vendingMachine.attemptSell();
+            vendingMachine.sellOrCompensate();
         } catch (NoSuchElementException nse) {
             logger.error(nse);
             vendingMachine.showMessageOnDisplay(String.format("%s, [%s] %s: %s",
@@ -64,16 +63,6 @@ public class InsufficientCreditState implements State {
                 VendingMachineMessages.PENDING.label,
                 VendingMachineMessages.provideCashToDisplay(vendingMachine.calculatePendingBalance()))
             );
-        } catch (UnableToProvideBalanceException unableToProvideBalanceException) {
-            logger.error(unableToProvideBalanceException);
-            vendingMachine.rollBackSell(unableToProvideBalanceException.getMessage(),
-                unableToProvideBalanceException.getPendingBalance());
-        } catch (ShelfEmptyNotAvailableForSelectionException shelfEmptyException) {
-            logger.error(shelfEmptyException);
-            vendingMachine.showMessageOnDisplay(
-                VendingMachineMessages.buildWarningMessageWithSubject(shelfEmptyException.getMessage(),
-                    shelfEmptyException.getShelfNumber(), false)
-            );
         } catch (Exception uoe) {
             logger.error(uoe);
             vendingMachine.showMessageOnDisplay(VendingMachineMessages.buildWarningMessageWithoutSubject(VendingMachineMessages.TECHNICAL_ERROR.label));
@@ -88,7 +77,7 @@ public class InsufficientCreditState implements State {
             vendingMachine.undoProductSelection();
             vendingMachine.showMessageOnDisplay(VendingMachineMessages.CANCEL.label);
             vendingMachine.returnAllCreditToBucket();
-            vendingMachine.sendStateTo(ReadyState.state);
+            vendingMachine.sendStateTo(vendingMachine.isSoldOut() ? SoldOutState.state : ReadyState.state);
         } catch (Exception e) {
             logger.error(e);
             vendingMachine.showMessageOnDisplay(VendingMachineMessages.buildWarningMessageWithoutSubject(VendingMachineMessages.TECHNICAL_ERROR.label));
@@ -0,0 +1,116 @@
+package tdd.vendingMachine.state;
+
+import lombok.NonNull;
+import tdd.vendingMachine.domain.ChangePlan;
+import tdd.vendingMachine.domain.Coin;
+
+/**
+ * @author Agustin Cabra on 3/11/2017.
+ * @since 2.1
+ * Immutable domain event emitted by a vending machine for every change of its credit, selection, stock, cash or
+ * state, see {@link MachineEventLog}. The state of a machine is the fold of its events over the snapshot taken
+ * before the first of them, {@link #applyTo(VendingMachineImpl)} is the step of the fold.
+ *
+ * Fields not carried by the type of the event are null, or -1 for numbers:
+ *   COIN_CREDITED               coin
+ *   SHELF_SELECTED              shelfNumber, -1 when the selection is dropped
+ *   PRODUCT_SOLD                shelfNumber, changePlan
+ *   CREDIT_REFUNDED             coin, amount of coins
+ *   SHELF_RESTOCKED             shelfNumber, amount of products
+ *   STATE_CHANGED               state
+ *   ESCROW_PROVISIONED          -
+ *   CHANGE_DISPENSED            changePlan
+ *   PRODUCT_DISPENSED           shelfNumber
+ *   COINS_TAKEN_FROM_DISPENSER  coin, amount of coins
+ */
+public final class MachineEvent {
+
+    public enum Type {
+        COIN_CREDITED,
+        SHELF_SELECTED,
+        PRODUCT_SOLD,
+        CREDIT_REFUNDED,
+        SHELF_RESTOCKED,
+        STATE_CHANGED,
+        ESCROW_PROVISIONED,
+        CHANGE_DISPENSED,
+        PRODUCT_DISPENSED,
+        COINS_TAKEN_FROM_DISPENSER
+    }
+
+    private static final int NONE = -1;
+
+    public final long sequence;
+    public final int machineId;
+    public final Type type;
+    public final Coin coin;
+    public final int shelfNumber;
+    public final int amount;
+    public final ChangePlan changePlan;
+    public final StateEnum state;
+
+    private MachineEvent(long sequence, int machineId, Type type, Coin coin, int shelfNumber, int amount,
+                         ChangePlan changePlan, StateEnum state) {
+        this.sequence = sequence;
+        this.machineId = machineId;
+        this.type = type;
+        this.coin = coin;
+        this.shelfNumber = shelfNumber;
+        this.amount = amount;
+        this.changePlan = changePlan;
+        this.state = state;
+    }
+
+    static MachineEvent ofCoin(long sequence, int machineId, @NonNull Type type, @NonNull Coin coin, int amount) {
+        return new MachineEvent(sequence, machineId, type, coin, NONE, amount, null, null);
+    }
+
+    static MachineEvent ofShelf(long sequence, int machineId, @NonNull Type type, int shelfNumber, int amount) {
+        return new MachineEvent(sequence, machineId, type, null, shelfNumber, amount, null, null);
+    }
+
+    static MachineEvent ofChange(long sequence, int machineId, @NonNull Type type, int shelfNumber, @NonNull ChangePlan changePlan) {
+        return new MachineEvent(sequence, machineId, type, null, shelfNumber, NONE, changePlan, null);
+    }
+
+    static MachineEvent ofState(long sequence, int machineId, @NonNull StateEnum state) {
+        return new MachineEvent(sequence, machineId, Type.STATE_CHANGED, null, NONE, NONE, null, state);
+    }
+
+    static MachineEvent of(long sequence, int machineId, @NonNull Type type) {
+        return new MachineEvent(sequence, machineId, type, null, NONE, NONE, null, null);
+    }
+
+    /**
+     * Applies the effect of the event to the given machine
+     * @param machine the machine with the state it had before the event
+     */
+    void applyTo(@NonNull VendingMachineImpl machine) {
+        TransactionListener replay = machine.new Replay();
+        switch (type) {
+            case COIN_CREDITED: replay.onCredit(coin); break;
+            case SHELF_SELECTED: replay.onSelection(shelfNumber); break;
+            case PRODUCT_SOLD: replay.onSell(shelfNumber, changePlan); break;
+            case CREDIT_REFUNDED: replay.onRefund(coin, amount); break;
+            case SHELF_RESTOCKED: replay.onRestock(shelfNumber, amount); break;
+            case STATE_CHANGED: replay.onStateChange(state); break;
+            case ESCROW_PROVISIONED: replay.onEscrowProvisioned(); break;
+            case CHANGE_DISPENSED: replay.onChangeDispensed(changePlan); break;
+            case PRODUCT_DISPENSED: replay.onProductDispensed(shelfNumber); break;
+            case COINS_TAKEN_FROM_DISPENSER: replay.onCoinsTakenFromDispenser(coin, amount); break;
+            default: throw new IllegalStateException("Unknown event type: " + type);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder().append('#').append(sequence).append(" machine ").append(machineId)
+            .append(' ').append(type);
+        if (coin != null) text.append(" coin=").append(coin.label);
+        if (shelfNumber != NONE) text.append(" shelf=").append(shelfNumber);
+        if (amount != NONE) text.append(" amount=").append(amount);
+        if (changePlan != null) text.append(" change=").append(changePlan.getAmount());
+        if (state != null) text.append(" state=").append(state);
+        return text.toString();
+    }
+}
@@ -0,0 +1,416 @@
+package tdd.vendingMachine.state;
+
+import lombok.NonNull;
+import org.apache.log4j.Logger;
+import tdd.vendingMachine.domain.ChangePlan;
+import tdd.vendingMachine.domain.Coin;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.InputMismatchException;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * @author Agustin Cabra on 3/11/2017.
+ * @since 2.1
+ * Event sourced view of a fleet: every machine attached emits a {@link MachineEvent} once each change is applied
+ * and the events are appended, in sequence order, to segments of a fixed amount of events. The state of the fleet is the
+ * fold of the retained events over the snapshot of the log, see {@link #rebuildFleet()}. Analytics, audit and
+ * replication read the same events through {@link #read(long, Consumer)} instead of the display messages.
+ *
+ * Compaction keeps the replay bounded: once more than the given amount of segments are sealed, a background
+ * thread folds the oldest sealed segments over the snapshot, writes the new snapshot and drops them. Folding
+ * works on a copy restored from the snapshot so the machines keep operating meanwhile, readers asking for
+ * compacted events get a {@link NoSuchElementException} and restart from {@link #rebuildFleet()}. Events failing
+ * to fold would fail again on every retry, so a failed background compaction stops the background compaction
+ * for good and is reported by {@link #getCompactionFailure()}, the events keep being appended and retained.
+ *
+ * Segments are cut by amount of events, not by operation, so a compacted snapshot may hold a machine between
+ * two steps of an operation: it is restored trusting its state and the events following complete the step.
+ * Appending takes a lock shared by every machine of the log, sealed segments are never modified.
+ */
+public final class MachineEventLog implements Closeable {
+
+    private static final Logger logger = Logger.getLogger(MachineEventLog.class);
+
+    private final int segmentSize;
+    private final int maxSealedSegments;
+    private final ReentrantLock appendLock;
+    private final ReentrantLock compactionLock;
+    private final List<MachineEvent[]> sealedSegments;
+    private final AtomicBoolean compacting;
+    private final ExecutorService compactor;
+    private MachineEvent[] currentSegment;
+    private int currentSize;
+    private long nextSequence;
+    private byte[] snapshot;
+    private long snapshotSequence;
+    private long compactions;
+    private volatile RuntimeException compactionFailure;
+
+    private MachineEventLog(byte[] snapshot, int segmentSize, int maxSealedSegments) {
+        this.segmentSize = segmentSize;
+        this.maxSealedSegments = maxSealedSegments;
+        this.appendLock = new ReentrantLock();
+        this.compactionLock = new ReentrantLock();
+        this.sealedSegments = new ArrayList<>();
+        this.compacting = new AtomicBoolean();
+        this.compactor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "vending-machine-event-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.currentSegment = new MachineEvent[segmentSize];
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Takes the snapshot the log starts from and attaches every machine of the fleet
+     * @param fleet the fleet, no machine must be operating meanwhile
+     * @param segmentSize the amount of events per segment
+     * @param maxSealedSegments the amount of sealed segments retained before compacting
+     * @return the log
+     */
+    public static MachineEventLog attach(@NonNull Fleet fleet, int segmentSize, int maxSealedSegments) {
+        if (segmentSize < 1) throw new InputMismatchException("Segment size must be positive: " + segmentSize);
+        if (maxSealedSegments < 0) throw new InputMismatchException("Sealed segments must be non-negative: " + maxSealedSegments);
+        MachineEventLog log = new MachineEventLog(writeSnapshot(fleet), segmentSize, maxSealedSegments);
+        for (int machineId = 0; machineId < fleet.machineIdBound(); machineId++) {
+            VendingSession machine = fleet.findMachine(machineId);
+            if (machine != null) {
+                MachineSnapshotCodec.unwrap(machine).addTransactionListener(log.new EventEmitter(machineId));
+            }
+        }
+        return log;
+    }
+
+    private static byte[] writeSnapshot(Fleet fleet) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            MachineSnapshotCodec.writeFleet(fleet, Channels.newChannel(out));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static Fleet readSnapshot(byte[] snapshot) {
+        try {
+            return MachineSnapshotCodec.readFleet(Channels.newChannel(new ByteArrayInputStream(snapshot)), false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Appends the event built for the next sequence, sealing the current segment once full
+     * @param machineId the machine emitting the event
+     * @param factory builds the event given its sequence
+     */
+    private void append(int machineId, EventFactory factory) {
+        boolean compact;
+        appendLock.lock();
+        try {
+            currentSegment[currentSize++] = factory.build(nextSequence++, machineId);
+            if (currentSize < segmentSize) {
+                return;
+            }
+            sealedSegments.add(currentSegment);
+            currentSegment = new MachineEvent[segmentSize];
+            currentSize = 0;
+            compact = sealedSegments.size() > maxSealedSegments;
+        } finally {
+            appendLock.unlock();
+        }
+        if (compact) {
+            requestCompaction();
+        }
+    }
+
+    /**
+     * Starts a background compaction unless one is running or one failed, segments sealed while it runs are
+     * compacted by the next one it requests when done
+     */
+    private void requestCompaction() {
+        if (compactionFailure != null || !compacting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            compactor.execute(() -> {
+                boolean compacted = false;
+                try {
+                    compact();
+                    compacted = true;
+                } catch (RuntimeException e) {
+                    compactionFailure = e;
+                    logger.error("compaction failed, background compaction stopped", e);
+                } finally {
+                    compacting.set(false);
+                }
+                if (compacted && exceedsSealedSegments()) {
+                    requestCompaction();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            compacting.set(false);
+        }
+    }
+
+    private boolean exceedsSealedSegments() {
+        appendLock.lock();
+        try {
+            return sealedSegments.size() > maxSealedSegments;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Folds every sealed segment over the snapshot and drops them, the events of the current segment are kept
+     * @return the amount of events compacted
+     */
+    public long compact() {
+        compactionLock.lock();
+        try {
+            byte[] base;
+            List<MachineEvent[]> segments;
+            appendLock.lock();
+            try {
+                base = snapshot;
+                segments = new ArrayList<>(sealedSegments);
+            } finally {
+                appendLock.unlock();
+            }
+            if (segments.isEmpty()) {
+                return 0;
+            }
+            long start = System.nanoTime();
+            Fleet fleet = readSnapshot(base);
+            for (MachineEvent[] segment : segments) {
+                fold(fleet, segment, segment.length);
+            }
+            byte[] compacted = writeSnapshot(fleet);
+            long events = (long) segments.size() * segmentSize;
+            appendLock.lock();
+            try {
+                sealedSegments.subList(0, segments.size()).clear();
+                snapshot = compacted;
+                snapshotSequence += events;
+                compactions++;
+            } finally {
+                appendLock.unlock();
+            }
+            logger.debug(String.format("compacted %d events in %d ms, snapshot of %d bytes", events,
+                (System.nanoTime() - start) / 1_000_000, compacted.length));
+            return events;
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+
+    private static void fold(Fleet fleet, MachineEvent[] events, int count) {
+        for (int i = 0; i < count; i++) {
+            MachineEvent event = events[i];
+            if (event.machineId >= fleet.machineIdBound() || fleet.findMachine(event.machineId) == null) {
+                throw new IllegalStateException("Event of a machine not on the snapshot: " + event);
+            }
+            event.applyTo(MachineSnapshotCodec.unwrap(fleet.findMachine(event.machineId)));
+        }
+    }
+
+    /**
+     * Rebuilds the fleet folding the retained events over the snapshot, the machines rebuilt are not attached
+     * @return the fleet as it was after the last event appended
+     */
+    public Fleet rebuildFleet() {
+        byte[] base;
+        List<MachineEvent[]> segments;
+        MachineEvent[] current;
+        int count;
+        appendLock.lock();
+        try {
+            base = snapshot;
+            segments = new ArrayList<>(sealedSegments);
+            current = currentSegment;
+            count = currentSize;
+        } finally {
+            appendLock.unlock();
+        }
+        Fleet fleet = readSnapshot(base);
+        for (MachineEvent[] segment : segments) {
+            fold(fleet, segment, segment.length);
+        }
+        fold(fleet, current, count);
+        return fleet;
+    }
+
+    /**
+     * Hands the retained events from the given sequence on, in sequence order, to the given consumer
+     * @param fromSequence the sequence of the first event to read
+     * @param consumer receives the events
+     * @return the sequence following the last event read, to continue reading from
+     * @throws NoSuchElementException if the events from the given sequence were compacted
+     */
+    public long read(long fromSequence, @NonNull Consumer<? super MachineEvent> consumer) throws NoSuchElementException {
+        long firstSequence;
+        List<MachineEvent[]> segments;
+        appendLock.lock();
+        try {
+            if (fromSequence < snapshotSequence) {
+                throw new NoSuchElementException("Events compacted up to sequence: " + snapshotSequence);
+            }
+            firstSequence = snapshotSequence;
+            segments = new ArrayList<>(sealedSegments);
+            segments.add(Arrays.copyOf(currentSegment, currentSize));
+        } finally {
+            appendLock.unlock();
+        }
+        long sequence = firstSequence;
+        for (MachineEvent[] segment : segments) {
+            for (MachineEvent event : segment) {
+                if (sequence++ >= fromSequence) {
+                    consumer.accept(event);
+                }
+            }
+        }
+        return Math.max(sequence, fromSequence);
+    }
+
+    /**
+     * The sequence of the first event retained, every event before it is folded on the snapshot
+     * @return long
+     */
+    public long firstRetainedSequence() {
+        appendLock.lock();
+        try {
+            return snapshotSequence;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * The sequence the next event appended will get
+     * @return long
+     */
+    public long nextSequence() {
+        appendLock.lock();
+        try {
+            return nextSequence;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * The amount of compactions done
+     * @return long
+     */
+    public long countCompactions() {
+        appendLock.lock();
+        try {
+            return compactions;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * The failure that stopped the background compaction
+     * @return the failure or null if every background compaction succeeded
+     */
+    public RuntimeException getCompactionFailure() {
+        return compactionFailure;
+    }
+
+    /**
+     * Stops the compaction thread, the events appended afterwards are retained until {@link #compact()} is called
+     */
+    @Override
+    public void close() {
+        compactor.shutdown();
+    }
+
+    /**
+     * Builds an event given its sequence and machine id
+     */
+    @FunctionalInterface
+    private interface EventFactory {
+        MachineEvent build(long sequence, int machineId);
+    }
+
+    /**
+     * Listener emitting the events of one machine
+     */
+    private final class EventEmitter implements TransactionListener {
+
+        private final int machineId;
+
+        EventEmitter(int machineId) {
+            this.machineId = machineId;
+        }
+
+        @Override
+        public void onCredit(Coin coin) {
+            append(machineId, (sequence, id) -> MachineEvent.ofCoin(sequence, id, MachineEvent.Type.COIN_CREDITED, coin, -1));
+        }
+
+        @Override
+        public void onSelection(int shelfNumber) {
+            append(machineId, (sequence, id) -> MachineEvent.ofShelf(sequence, id, MachineEvent.Type.SHELF_SELECTED, shelfNumber, -1));
+        }
+
+        @Override
+        public void onSell(int shelfNumber, ChangePlan changePlan) {
+            append(machineId, (sequence, id) -> MachineEvent.ofChange(sequence, id, MachineEvent.Type.PRODUCT_SOLD, shelfNumber, changePlan));
+        }
+
+        @Override
+        public void onRefund(Coin coin, int amount) {
+            append(machineId, (sequence, id) -> MachineEvent.ofCoin(sequence, id, MachineEvent.Type.CREDIT_REFUNDED, coin, amount));
+        }
+
+        @Override
+        public void onRestock(int shelfNumber, int amount) {
+            append(machineId, (sequence, id) -> MachineEvent.ofShelf(sequence, id, MachineEvent.Type.SHELF_RESTOCKED, shelfNumber, amount));
+        }
+
+        @Override
+        public void onStateChange(StateEnum state) {
+            append(machineId, (sequence, id) -> MachineEvent.ofState(sequence, id, state));
+        }
+
+        @Override
+        public void onEscrowProvisioned() {
+            append(machineId, (sequence, id) -> MachineEvent.of(sequence, id, MachineEvent.Type.ESCROW_PROVISIONED));
+        }
+
+        @Override
+        public void onChangeDispensed(ChangePlan changePlan) {
+            append(machineId, (sequence, id) -> MachineEvent.ofChange(sequence, id, MachineEvent.Type.CHANGE_DISPENSED, -1, changePlan));
+        }
+
+        @Override
+        public void onProductDispensed(int shelfNumber) {
+            append(machineId, (sequence, id) -> MachineEvent.ofShelf(sequence, id, MachineEvent.Type.PRODUCT_DISPENSED, shelfNumber, -1));
+        }
+
+        @Override
+        public void onCoinsTakenFromDispenser(Coin coin, int amount) {
+            append(machineId, (sequence, id) -> MachineEvent.ofCoin(sequence, id, MachineEvent.Type.COINS_TAKEN_FROM_DISPENSER, coin, amount));
+        }
+    }
+}
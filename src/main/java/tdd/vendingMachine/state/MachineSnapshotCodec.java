@@ -0,0 +1,366 @@
+package tdd.vendingMachine.state;
+
+import lombok.NonNull;
+import tdd.vendingMachine.domain.*;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * @author Agustin Cabra on 3/10/2017.
+ * @since 2.1
+ * Versioned binary snapshot of vending machines written to and read from NIO channels. A snapshot keeps what a
+ * restart loses when machines are rebuilt from the CSV imports: the stock left on every shelf, the coins on the
+ * dispenser, the coins held on the escrow with the credit, the selected shelf and the current state.
+ *
+ * Layout, big endian:
+ * <pre>
+ * header   magic int, version short, denominations byte
+ * products count int, then per product: price int, type length unsigned short, type UTF-8 bytes
+ * machines count int, then per machine:
+ *          id int, state ordinal byte, selected shelf short (-1 if none), credit int,
+ *          coin capacity int, per denomination in coin order: dispenser coins int, escrow coins int,
+ *          shelves count short, then per shelf: id short, product index int, capacity int, item count int
+ * </pre>
+ * Products are written once per snapshot and referenced by index, restored products are interned on the
+ * catalog of {@link VendingMachineFactory}. Both directions go through a fixed direct buffer so the memory used
+ * does not depend on the amount of machines.
+ *
+ * Restored machines share the current configuration snapshot and are validated against it, a snapshot of a
+ * session not qualifying for its recorded state is rejected.
+ */
+public final class MachineSnapshotCodec {
+
+    static final int MAGIC = 0x564D534E;
+    static final short VERSION = 1;
+
+    private static final int BUFFER_SIZE = 1 << 17;
+
+    private MachineSnapshotCodec() {
+        throw new AssertionError("MachineSnapshotCodec should not be instantiated");
+    }
+
+    /**
+     * Writes the snapshot of a single machine
+     * @param machine the machine, built by {@link VendingMachineFactory}
+     * @param channel the channel receiving the snapshot
+     * @throws IOException if the channel fails
+     * @throws InputMismatchException if the machine implementation can not be snapshotted
+     */
+    public static void write(@NonNull VendingSession machine, @NonNull WritableByteChannel channel) throws IOException {
+        VendingSession[] machines = {machine};
+        writeMachines(machines, 1, channel);
+    }
+
+    /**
+     * Reads the snapshot of a single machine
+     * @param channel the channel holding the snapshot
+     * @return the restored machine
+     * @throws IOException if the channel fails or ends before the snapshot does
+     * @throws InputMismatchException if the snapshot is not a single machine snapshot of a supported version
+     */
+    public static VendingSession read(@NonNull ReadableByteChannel channel) throws IOException {
+        Fleet fleet = readFleet(channel);
+        if (fleet.countMachines() != 1) {
+            throw new InputMismatchException("Expected the snapshot of one machine, found: " + fleet.countMachines());
+        }
+        return fleet.iterator().next();
+    }
+
+    /**
+     * Writes the snapshot of every machine of the fleet keeping the machine ids
+     * @param fleet the fleet
+     * @param channel the channel receiving the snapshot
+     * @throws IOException if the channel fails
+     * @throws InputMismatchException if some machine implementation can not be snapshotted
+     */
+    public static void writeFleet(@NonNull Fleet fleet, @NonNull WritableByteChannel channel) throws IOException {
+        VendingSession[] machines = new VendingSession[fleet.machineIdBound()];
+        for (int machineId = 0; machineId < machines.length; machineId++) {
+            machines[machineId] = fleet.findMachine(machineId);
+        }
+        writeMachines(machines, fleet.countMachines(), channel);
+    }
+
+    /**
+     * Reads the snapshot of a fleet
+     * @param channel the channel holding the snapshot
+     * @return the restored fleet keyed by the machine ids of the snapshot
+     * @throws IOException if the channel fails or ends before the snapshot does
+     * @throws InputMismatchException if the snapshot is malformed or of an unsupported version
+     */
+    public static Fleet readFleet(@NonNull ReadableByteChannel channel) throws IOException {
+        return readFleet(channel, true);
+    }
+
+    /**
+     * Reads the snapshot of a fleet
+     * @param channel the channel holding the snapshot
+     * @param checkingStates false to trust snapshots taken between two steps of an operation, see
+     *                       {@link VendingMachineImpl#restoreSession(int, int[], int, StateEnum, boolean)}
+     * @return the restored fleet keyed by the machine ids of the snapshot
+     * @throws IOException if the channel fails or ends before the snapshot does
+     * @throws InputMismatchException if the snapshot is malformed or of an unsupported version
+     */
+    static Fleet readFleet(@NonNull ReadableByteChannel channel, boolean checkingStates) throws IOException {
+        Decoder decoder = new Decoder(channel);
+        decoder.require(Integer.BYTES + Short.BYTES + Byte.BYTES);
+        int magic = decoder.buffer.getInt();
+        if (magic != MAGIC) {
+            throw new InputMismatchException("Not a machine snapshot, magic: " + Integer.toHexString(magic));
+        }
+        short version = decoder.buffer.getShort();
+        if (version != VERSION) {
+            throw new InputMismatchException("Unsupported machine snapshot version: " + version);
+        }
+        int denominations = decoder.buffer.get();
+        if (denominations != Coin.countDenominations()) {
+            throw new InputMismatchException("Snapshot coin denominations do not match: " + denominations);
+        }
+        Product[] products = readProducts(decoder);
+
+        decoder.require(Integer.BYTES);
+        int machineCount = decoder.buffer.getInt();
+        if (machineCount < 0) throw new InputMismatchException("Machine amount must be non-negative: " + machineCount);
+        VendingMachineConfiguration config = VendingMachineFactory.getConfig();
+        if (machineCount > config.getMaxMachineId() + 1L) {
+            throw new InputMismatchException("Machine amount exceeds the machine ids configured: " + machineCount);
+        }
+        int changeReachabilityCeiling = VendingMachineImpl.provideChangeReachabilityCeiling(config);
+        int[] ids = new int[machineCount];
+        VendingMachineImpl[] restored = new VendingMachineImpl[machineCount];
+        int maxMachineId = -1;
+        for (int i = 0; i < machineCount; i++) {
+            decoder.require(Integer.BYTES);
+            ids[i] = decoder.buffer.getInt();
+            if (ids[i] <= maxMachineId) {
+                throw new InputMismatchException("Machine ids must be written in increasing order: " + ids[i]);
+            }
+            Fleet.validMachineId(config, ids[i]);
+            maxMachineId = ids[i];
+            restored[i] = readMachine(decoder, products, config, changeReachabilityCeiling, checkingStates);
+        }
+        VendingSession[] machines = new VendingSession[maxMachineId + 1];
+        for (int i = 0; i < machineCount; i++) {
+            machines[ids[i]] = restored[i];
+        }
+        return new Fleet(machines, machineCount);
+    }
+
+    private static void writeMachines(VendingSession[] machines, int machineCount, WritableByteChannel channel) throws IOException {
+        VendingMachineImpl[] sessions = new VendingMachineImpl[machines.length];
+        Map<Product, Integer> productIndexes = new LinkedHashMap<>();
+        for (int machineId = 0; machineId < machines.length; machineId++) {
+            if (machines[machineId] != null) {
+                sessions[machineId] = unwrap(machines[machineId]);
+                for (Shelf<Product> shelf : sessions[machineId].getInventory().getShelves()) {
+                    productIndexes.putIfAbsent(shelf.getType(), productIndexes.size());
+                }
+            }
+        }
+
+        Encoder encoder = new Encoder(channel);
+        encoder.require(Integer.BYTES + Short.BYTES + Byte.BYTES + Integer.BYTES);
+        encoder.buffer.putInt(MAGIC).putShort(VERSION).put((byte) Coin.countDenominations());
+        encoder.buffer.putInt(productIndexes.size());
+        for (Product product : productIndexes.keySet()) {
+            byte[] type = product.getType().getBytes(StandardCharsets.UTF_8);
+            if (type.length > 0xFFFF) throw new InputMismatchException("Product type too long: " + type.length);
+            encoder.require(Integer.BYTES + Short.BYTES + type.length);
+            encoder.buffer.putInt(product.getPrice()).putShort((short) type.length).put(type);
+        }
+        encoder.require(Integer.BYTES);
+        encoder.buffer.putInt(machineCount);
+        for (int machineId = 0; machineId < sessions.length; machineId++) {
+            if (sessions[machineId] != null) {
+                writeMachine(encoder, machineId, machines[machineId], sessions[machineId], productIndexes);
+            }
+        }
+        encoder.flush();
+    }
+
+    /**
+     * Provides the machine implementation behind the given session
+     * @param machine the session
+     * @return the machine
+     * @throws InputMismatchException if the session is not backed by a {@link VendingMachineImpl}
+     */
+    static VendingMachineImpl unwrap(VendingSession machine) throws InputMismatchException {
+        if (machine instanceof VendingMachineImpl) {
+            return (VendingMachineImpl) machine;
+        }
+        if (machine instanceof ConcurrentVendingMachine) {
+            return ((ConcurrentVendingMachine) machine).getDelegate();
+        }
+        throw new InputMismatchException("Unable to snapshot machine: " + machine.getClass().getSimpleName());
+    }
+
+    private static void writeMachine(Encoder encoder, int machineId, VendingSession machine, VendingMachineImpl session,
+                                     Map<Product, Integer> productIndexes) throws IOException {
+        if (machine instanceof ConcurrentVendingMachine) {
+            IOException[] failure = new IOException[1];
+            ((ConcurrentVendingMachine) machine).runLocked(wrapped -> {
+                try {
+                    writeSession(encoder, machineId, wrapped, productIndexes);
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+        } else {
+            writeSession(encoder, machineId, session, productIndexes);
+        }
+    }
+
+    private static void writeSession(Encoder encoder, int machineId, VendingMachineImpl session,
+                                     Map<Product, Integer> productIndexes) throws IOException {
+        SharedInventory inventory = session.getInventory();
+        inventory.lock();
+        try {
+            Collection<Shelf<Product>> shelves = inventory.getShelves();
+            CoinDispenser coinDispenser = inventory.getCoinDispenser();
+            encoder.require(Integer.BYTES + Byte.BYTES + Short.BYTES + Integer.BYTES + Integer.BYTES
+                + Coin.countDenominations() * 2 * Integer.BYTES + Short.BYTES
+                + shelves.size() * (Short.BYTES + 3 * Integer.BYTES));
+            ByteBuffer buffer = encoder.buffer;
+            buffer.putInt(machineId)
+                .put((byte) session.provideCurrentStateEnum().ordinal())
+                .putShort((short) session.provideSelectedShelfNumber())
+                .putInt(session.provideCredit())
+                .putInt(coinDispenser.getCapacity());
+            for (int order = 0; order < Coin.countDenominations(); order++) {
+                Coin coin = Coin.retrieveCoinByOrder(order);
+                buffer.putInt(coinDispenser.getItemCount(coin)).putInt(session.countEscrowCoins(coin));
+            }
+            buffer.putShort((short) shelves.size());
+            for (Shelf<Product> shelf : shelves) {
+                buffer.putShort((short) shelf.id)
+                    .putInt(productIndexes.get(shelf.getType()))
+                    .putInt(shelf.getCapacity())
+                    .putInt(shelf.getItemCount());
+            }
+        } finally {
+            inventory.unlock();
+        }
+    }
+
+    private static Product[] readProducts(Decoder decoder) throws IOException {
+        decoder.require(Integer.BYTES);
+        int productCount = decoder.buffer.getInt();
+        if (productCount < 0) throw new InputMismatchException("Product amount must be non-negative: " + productCount);
+        ProductCatalog productCatalog = VendingMachineFactory.getProductCatalog();
+        Product[] products = new Product[productCount];
+        for (int i = 0; i < productCount; i++) {
+            decoder.require(Integer.BYTES + Short.BYTES);
+            int price = decoder.buffer.getInt();
+            byte[] type = new byte[decoder.buffer.getShort() & 0xFFFF];
+            decoder.require(type.length);
+            decoder.buffer.get(type);
+            products[i] = productCatalog.intern(price, new String(type, StandardCharsets.UTF_8));
+        }
+        return products;
+    }
+
+    private static VendingMachineImpl readMachine(Decoder decoder, Product[] products, VendingMachineConfiguration config,
+                                                  int changeReachabilityCeiling, boolean checkingState) throws IOException {
+        int denominations = Coin.countDenominations();
+        decoder.require(Byte.BYTES + Short.BYTES + Integer.BYTES + Integer.BYTES + denominations * 2 * Integer.BYTES + Short.BYTES);
+        ByteBuffer buffer = decoder.buffer;
+        int stateOrdinal = buffer.get();
+        if (stateOrdinal < 0 || stateOrdinal >= StateEnum.values().length) {
+            throw new InputMismatchException("Unknown machine state: " + stateOrdinal);
+        }
+        int selectedShelfNumber = buffer.getShort();
+        int credit = buffer.getInt();
+        CoinDispenser coinDispenser = new CoinDispenser(buffer.getInt(), 0);
+        int[] escrowCoinCounts = new int[denominations];
+        for (int order = 0; order < denominations; order++) {
+            int coinCount = buffer.getInt();
+            if (coinCount > 0) {
+                coinDispenser.provision(Coin.retrieveCoinByOrder(order), coinCount);
+            }
+            escrowCoinCounts[order] = buffer.getInt();
+        }
+
+        int shelfCount = buffer.getShort();
+        if (shelfCount < 0) throw new InputMismatchException("Shelf amount must be non-negative: " + shelfCount);
+        decoder.require(shelfCount * (Short.BYTES + 3 * Integer.BYTES));
+        Map<Integer, Shelf<Product>> productShelves = new HashMap<>((int) (shelfCount / 0.75f) + 1);
+        for (int i = 0; i < shelfCount; i++) {
+            int shelfId = buffer.getShort();
+            int productIndex = buffer.getInt();
+            if (productIndex < 0 || productIndex >= products.length) {
+                throw new InputMismatchException("Unknown product index: " + productIndex);
+            }
+            productShelves.put(shelfId, ShelfFactory.buildShelf(shelfId, products[productIndex], buffer.getInt(), buffer.getInt()));
+        }
+
+        VendingMachineImpl machine = new VendingMachineImpl(config, SharedInventory.build(config, productShelves, coinDispenser,
+            new BoundedChangeMaker(), changeReachabilityCeiling));
+        machine.restoreSession(credit, escrowCoinCounts, selectedShelfNumber, StateEnum.values()[stateOrdinal], checkingState);
+        return machine;
+    }
+
+    /**
+     * Buffered writer flushing to the channel whenever the next record does not fit
+     */
+    private static final class Encoder {
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer;
+
+        Encoder(WritableByteChannel channel) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+
+        void require(int bytes) throws IOException {
+            if (bytes > buffer.capacity()) throw new InputMismatchException("Snapshot record too large: " + bytes);
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Buffered reader refilling from the channel whenever the next record is not fully buffered
+     */
+    private static final class Decoder {
+        private final ReadableByteChannel channel;
+        private final ByteBuffer buffer;
+
+        Decoder(ReadableByteChannel channel) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            this.buffer.flip();
+        }
+
+        void require(int bytes) throws IOException {
+            if (bytes > buffer.capacity()) throw new InputMismatchException("Snapshot record too large: " + bytes);
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("Machine snapshot ends before its last record");
+                }
+            }
+            buffer.flip();
+        }
+    }
+}
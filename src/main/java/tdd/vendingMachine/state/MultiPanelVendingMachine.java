@@ -0,0 +1,73 @@
+package tdd.vendingMachine.state;
+
+import lombok.NonNull;
+import tdd.vendingMachine.domain.VendingMachineConfiguration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.InputMismatchException;
+import java.util.List;
+
+/**
+ * @author Agustin Cabra on 3/7/2017.
+ * @since 2.1
+ * Vending machine unit with several customer panels in front of one inventory and one coin dispenser.
+ * Every panel is a {@link VendingSession} with its own credit, selection and state, meant to be driven by a
+ * single thread; panels only synchronize with each other while committing a sell or touching the dispenser.
+ */
+public final class MultiPanelVendingMachine {
+
+    private final SharedInventory inventory;
+    private final List<VendingSession> panels;
+
+    MultiPanelVendingMachine(@NonNull VendingMachineConfiguration config, @NonNull SharedInventory inventory, int panelCount) {
+        if (panelCount <= 0) {
+            throw new InputMismatchException("A vending machine needs at least one panel: " + panelCount);
+        }
+        this.inventory = inventory;
+        List<VendingSession> sessions = new ArrayList<>(panelCount);
+        for (int i = 0; i < panelCount; i++) {
+            sessions.add(new VendingMachineImpl(config, inventory));
+        }
+        this.panels = Collections.unmodifiableList(sessions);
+    }
+
+    /**
+     * Provides the session of the given panel
+     * @param panelNumber the panel number, from zero
+     * @return the session of the panel
+     * @throws IndexOutOfBoundsException if the machine has no such panel
+     */
+    public VendingSession getPanel(int panelNumber) {
+        return panels.get(panelNumber);
+    }
+
+    /**
+     * The amount of customer panels of the machine
+     * @return int
+     */
+    public int countPanels() {
+        return panels.size();
+    }
+
+    /**
+     * Counts the products left on the shared inventory
+     * @return int
+     */
+    public int countTotalAmountProducts() {
+        return inventory.getProductInventory().countProducts();
+    }
+
+    /**
+     * Counts the cash on the shared coin dispenser
+     * @return int
+     */
+    public int countCashInDispenser() {
+        inventory.lock();
+        try {
+            return inventory.getCoinDispenser().totalCash();
+        } finally {
+            inventory.unlock();
+        }
+    }
+}
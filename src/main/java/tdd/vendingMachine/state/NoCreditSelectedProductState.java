@@ -2,9 +2,6 @@ package tdd.vendingMachine.state;
 
 import org.apache.log4j.Logger;
 import tdd.vendingMachine.domain.Coin;
-import tdd.vendingMachine.domain.exception.CashDispenserFullException;
-import tdd.vendingMachine.domain.exception.ShelfEmptyNotAvailableForSelectionException;
-import tdd.vendingMachine.domain.exception.UnableToProvideBalanceException;
 import tdd.vendingMachine.view.VendingMachineMessages;
 
 import java.util.NoSuchElementException;
@@ -29,21 +26,20 @@ public class NoCreditSelectedProductState implements State {
     @Override
     public void insertCoin(Coin coin) {
         try {
-            vendingMachine.addCoinToCredit(coin);
-            vendingMachine.attemptSell();
+            if (vendingMachine.tryAddCoinToCredit(coin) == TransactionOutcome.DISPENSER_FULL) {
+                String message = String.format("%s %s: %s", coin.label,
+                    VendingMachineMessages.CASH_NOT_ACCEPTED_DISPENSER_FULL.label,
+                    VendingMachineMessages.provideCashToDisplay(this.vendingMachine.provideCredit()));
+                this.vendingMachine.showMessageOnDisplay(message);
+                return;
+            }
+            TransactionOutcome outcome = vendingMachine.sellOrCompensate();
+            if (outcome == TransactionOutcome.NO_CHANGE || outcome == TransactionOutcome.SHELF_EMPTY) {
+                return;
+            }
             if (vendingMachine.provideCurrentState().equals(this)) {
                 vendingMachine.sendStateTo(InsufficientCreditState.state);
             }
-        } catch (CashDispenserFullException cashDispenserFullException) {
-            logger.error(cashDispenserFullException);
-            String message = String.format("%s %s: %s", coin.label,
-                cashDispenserFullException.getMessage(),
-                VendingMachineMessages.provideCashToDisplay(this.vendingMachine.provideCredit()));
-            this.vendingMachine.showMessageOnDisplay(message);
-        } catch (UnableToProvideBalanceException unableToProvideBalanceException) {
-            logger.error(unableToProvideBalanceException);
-            vendingMachine.rollBackSell(unableToProvideBalanceException.getMessage(),
-                unableToProvideBalanceException.getPendingBalance());
         } catch (Exception uoe) {
             logger.error(uoe);
             vendingMachine.showMessageOnDisplay(VendingMachineMessages.buildWarningMessageWithoutSubject(VendingMachineMessages.TECHNICAL_ERROR.label));
@@ -54,19 +50,19 @@ public class NoCreditSelectedProductState implements State {
     @Override
     public void selectShelfNumber(int shelfNumber) {
         try {
-            vendingMachine.selectProductGivenShelfNumber(shelfNumber);
+            if (vendingMachine.trySelectProductGivenShelfNumber(shelfNumber) == TransactionOutcome.SHELF_EMPTY) {
+                this.vendingMachine.showMessageOnDisplay(VendingMachineMessages.buildWarningMessageWithSubject(
+                    VendingMachineMessages.UNABLE_TO_SELECT_EMPTY_SHELF.label,
+                    shelfNumber, false)
+                );
+                return;
+            }
             vendingMachine.displayProductPrice(shelfNumber);
         } catch (NoSuchElementException nse) {
             logger.error(nse);
             vendingMachine.showMessageOnDisplay(
                 VendingMachineMessages.buildWarningMessageWithSubject(VendingMachineMessages.SHELF_NUMBER_NOT_AVAILABLE.label,
                     shelfNumber, false));
-        } catch (ShelfEmptyNotAvailableForSelectionException e) {
-            logger.error(e);
-            this.vendingMachine.showMessageOnDisplay(VendingMachineMessages.buildWarningMessageWithSubject(
-                VendingMachineMessages.UNABLE_TO_SELECT_EMPTY_SHELF.label,
-                e.getShelfNumber(), false)
-            );
         } catch (Exception uoe) {
             logger.error(uoe);
             vendingMachine.showMessageOnDisplay(VendingMachineMessages.buildWarningMessageWithoutSubject(VendingMachineMessages.TECHNICAL_ERROR.label));
@@ -78,7 +74,7 @@ public class NoCreditSelectedProductState implements State {
     public void cancel() {
         try {
             vendingMachine.undoProductSelection();
-            vendingMachine.sendStateTo(ReadyState.state);
+            vendingMachine.sendStateTo(vendingMachine.isSoldOut() ? SoldOutState.state : ReadyState.state);
         } catch (Exception e) {
             logger.error(e);
             vendingMachine.showMessageOnDisplay(VendingMachineMessages.buildWarningMessageWithoutSubject(VendingMachineMessages.TECHNICAL_ERROR.label));
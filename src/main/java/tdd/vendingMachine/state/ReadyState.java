@@ -2,8 +2,6 @@ package tdd.vendingMachine.state;
 
 import org.apache.log4j.Logger;
 import tdd.vendingMachine.domain.Coin;
-import tdd.vendingMachine.domain.exception.CashDispenserFullException;
-import tdd.vendingMachine.domain.exception.ShelfEmptyNotAvailableForSelectionException;
 import tdd.vendingMachine.VendingMachine;
 import tdd.vendingMachine.view.VendingMachineMessages;
 
@@ -28,13 +26,13 @@ public class ReadyState implements State {
     @Override
     public void insertCoin(Coin coin) {
         try {
-            vendingMachine.addCoinToCredit(coin);
+            if (vendingMachine.tryAddCoinToCredit(coin) == TransactionOutcome.DISPENSER_FULL) {
+                this.vendingMachine.showMessageOnDisplay(String.format("%s %s: %s", coin.label,
+                    VendingMachineMessages.CASH_NOT_ACCEPTED_DISPENSER_FULL.label,
+                    VendingMachineMessages.provideCashToDisplay(this.vendingMachine.provideCredit())));
+                return;
+            }
             vendingMachine.sendStateTo(CreditNotSelectedProductState.state);
-        } catch (CashDispenserFullException cashDispenserFullException) {
-            logger.error(cashDispenserFullException);
-            this.vendingMachine.showMessageOnDisplay(String.format("%s %s: %s", coin.label,
-                VendingMachineMessages.CASH_NOT_ACCEPTED_DISPENSER_FULL.label,
-                VendingMachineMessages.provideCashToDisplay(this.vendingMachine.provideCredit())));
         } catch (Exception uoe) {
             logger.error(uoe);
             vendingMachine.showMessageOnDisplay(VendingMachineMessages.buildWarningMessageWithoutSubject(VendingMachineMessages.TECHNICAL_ERROR.label));
@@ -45,18 +43,17 @@ public class ReadyState implements State {
     @Override
     public void selectShelfNumber(int shelfNumber) {
         try {
-            vendingMachine.selectProductGivenShelfNumber(shelfNumber);
+            if (vendingMachine.trySelectProductGivenShelfNumber(shelfNumber) == TransactionOutcome.SHELF_EMPTY) {
+                vendingMachine.showMessageOnDisplay(String.format("%s: %d",
+                    VendingMachineMessages.UNABLE_TO_SELECT_EMPTY_SHELF.label, shelfNumber));
+                return;
+            }
             vendingMachine.displayProductPrice(shelfNumber);
             vendingMachine.sendStateTo(NoCreditSelectedProductState.state);
         } catch (NoSuchElementException nse) {
             logger.error(nse);
             vendingMachine.showMessageOnDisplay(
                 VendingMachineMessages.buildWarningMessageWithSubject(VendingMachineMessages.SHELF_NUMBER_NOT_AVAILABLE.label, shelfNumber, false));
-        } catch (ShelfEmptyNotAvailableForSelectionException shelfEmptyException) {
-            logger.error(shelfEmptyException);
-            vendingMachine.showMessageOnDisplay(String.format("%s: %d",
-                shelfEmptyException.getMessage(),
-                shelfEmptyException.getShelfNumber()));
         } catch (Exception uoe) {
             logger.error(uoe);
             vendingMachine.showMessageOnDisplay(VendingMachineMessages.buildWarningMessageWithoutSubject(VendingMachineMessages.TECHNICAL_ERROR.label));
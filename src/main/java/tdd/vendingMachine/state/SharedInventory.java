@@ -0,0 +1,195 @@
+package tdd.vendingMachine.state;
+
+import lombok.NonNull;
+import tdd.vendingMachine.domain.*;
+import tdd.vendingMachine.validation.VendingMachineValidator;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * @author Agustin Cabra on 3/7/2017.
+ * @since 2.1
+ * The product shelves, the coin dispenser and the change tables of a vending machine, shared by every customer
+ * session (panel) in front of them.
+ *
+ * Sessions keep their credit, selection and state to themselves and only take the commit lock of the inventory
+ * to move stock and coins: a sell checks the shelf still has products, plans the change and applies both while
+ * holding the lock, so panels never reserve stock or change before committing and do not serialize on each
+ * other while customers insert coins or browse products.
+ *
+ * Coins held on the escrow of a session keep a slot of the dispenser reserved, the amount of reserved slots is
+ * computed from the escrows registered by the sessions.
+ *
+ * The inventory remembers the configuration generation it applied, when a new snapshot is published the first
+ * session starting a transaction while no session holds coins on its escrow resizes the shelves and the
+ * dispenser to the new capacities. A capacity is never reduced below the items a shelf or a coin slot holds.
+ */
+final class SharedInventory {
+
+    private final Map<Integer, Shelf<Product>> productShelves;
+    private final ProductInventory productInventory;
+    private final CoinDispenser coinDispenser;
+    private final ChangeMaker changeMaker;
+    private final ChangeReachability changeReachability;
+    private final int[] coinCountsSnapshot;
+    private final List<CreditEscrow> sessionEscrows;
+    private final ReentrantLock commitLock;
+    private volatile long appliedGeneration;
+
+    SharedInventory(@NonNull Map<Integer, Shelf<Product>> productShelves, @NonNull CoinDispenser coinDispenser,
+                    @NonNull ChangeMaker changeMaker, int changeReachabilityCeiling) {
+        this.productShelves = productShelves;
+        this.productInventory = new ProductInventory(productShelves);
+        this.coinDispenser = coinDispenser;
+        this.changeMaker = changeMaker;
+        this.changeReachability = new ChangeReachability(changeReachabilityCeiling, coinDispenser);
+        this.coinCountsSnapshot = new int[Coin.countDenominations()];
+        this.sessionEscrows = new CopyOnWriteArrayList<>();
+        this.commitLock = new ReentrantLock();
+        this.appliedGeneration = VendingMachineConfiguration.currentGeneration();
+    }
+
+    /**
+     * Validates the given shelves and dispenser against the configuration and builds the inventory
+     * @param config the configuration of the machine
+     * @param productShelves the product shelves
+     * @param coinDispenser the coin dispenser
+     * @param changeMaker the strategy to plan change
+     * @param changeReachabilityCeiling the highest amount in cents tracked by the change reachability table
+     * @return the inventory
+     */
+    static SharedInventory build(@NonNull VendingMachineConfiguration config, @NonNull Map<Integer, Shelf<Product>> productShelves,
+                                 @NonNull CoinDispenser coinDispenser, @NonNull ChangeMaker changeMaker, int changeReachabilityCeiling) {
+        VendingMachineValidator.validateNewVendingMachineParameters(config, productShelves, coinDispenser);
+        return new SharedInventory(productShelves, coinDispenser, changeMaker, changeReachabilityCeiling);
+    }
+
+    /**
+     * Acquires the commit lock, every access to the coin dispenser, the change tables or the non empty shelves
+     * set must hold it
+     */
+    void lock() {
+        commitLock.lock();
+    }
+
+    /**
+     * Releases the commit lock
+     */
+    void unlock() {
+        commitLock.unlock();
+    }
+
+    /**
+     * Applies the shelf capacities of the current configuration if a snapshot was published since the last one
+     * applied, checking the generation does not lock so sessions only serialize when a snapshot is applied. The
+     * snapshot is deferred while a session holds coins on its escrow. Items above a reduced capacity stay on their
+     * shelves but no more are accepted until the shelf goes under the new capacity.
+     * @return true if a new snapshot was applied
+     */
+    boolean applyPublishedConfiguration() {
+        if (VendingMachineConfiguration.currentGeneration() == appliedGeneration) {
+            return false;
+        }
+        commitLock.lock();
+        try {
+            long generation = VendingMachineConfiguration.currentGeneration();
+            if (generation == appliedGeneration || !isIdle()) {
+                return false;
+            }
+            VendingMachineConfiguration configuration = VendingMachineConfiguration.current();
+            if (VendingMachineConfiguration.currentGeneration() != generation) {
+                //published meanwhile, the snapshot read may be of the newer generation and is applied on the next call
+                return false;
+            }
+            for (Shelf<Product> shelf : productShelves.values()) {
+                shelf.resize(configuration.getProductShelfCapacity());
+            }
+            coinDispenser.resize(configuration.getCoinShelfCapacity());
+            appliedGeneration = generation;
+            configuration.recordMachineAffected();
+            return true;
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    /**
+     * Tests no session holds coins on its escrow
+     * @return boolean
+     */
+    private boolean isIdle() {
+        for (CreditEscrow creditEscrow : sessionEscrows) {
+            if (!creditEscrow.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Registers the escrow of a session so its coins keep their dispenser slots reserved
+     * @param creditEscrow the escrow of the session
+     */
+    void registerEscrow(@NonNull CreditEscrow creditEscrow) {
+        sessionEscrows.add(creditEscrow);
+    }
+
+    /**
+     * Counts the dispenser slots of the given coin held by the escrows of every session
+     * @param coin the coin to check
+     * @return the amount of reserved slots
+     */
+    int countReservedSlots(Coin coin) {
+        int reserved = 0;
+        for (CreditEscrow creditEscrow : sessionEscrows) {
+            reserved += creditEscrow.countCoins(coin);
+        }
+        return reserved;
+    }
+
+    /**
+     * Takes a snapshot of the amount of coins available on the cash dispenser, the snapshot array is
+     * reused between calls so the commit lock must be held while using it.
+     * @return the amount of coins per coin indexed by coin order
+     */
+    int[] snapshotCoinCounts() {
+        return coinDispenser.copyCoinCountsTo(coinCountsSnapshot);
+    }
+
+    /**
+     * Provides the shelf with the given number
+     * @param shelfNumber the shelf number
+     * @return the shelf or null if the machine has no such shelf
+     */
+    Shelf<Product> getShelf(int shelfNumber) {
+        return productShelves.get(shelfNumber);
+    }
+
+    /**
+     * Provides every product shelf of the machine
+     * @return the shelves, not to be modified
+     */
+    Collection<Shelf<Product>> getShelves() {
+        return productShelves.values();
+    }
+
+    ProductInventory getProductInventory() {
+        return productInventory;
+    }
+
+    CoinDispenser getCoinDispenser() {
+        return coinDispenser;
+    }
+
+    ChangeMaker getChangeMaker() {
+        return changeMaker;
+    }
+
+    ChangeReachability getChangeReachability() {
+        return changeReachability;
+    }
+}
@@ -0,0 +1,210 @@
+package tdd.vendingMachine.state;
+
+import lombok.NonNull;
+import tdd.vendingMachine.VendingMachine;
+import tdd.vendingMachine.validation.VendingMachineValidator;
+
+import java.util.InputMismatchException;
+import java.util.NoSuchElementException;
+
+/**
+ * @author Agustin Cabra on 3/6/2017.
+ * @since 2.1
+ * Precomputed transition table of a vending machine, for every {@link StateEnum} it holds the state instance
+ * the machine moves to, the invariant the machine must satisfy to enter it and the states it may move to, all
+ * indexed by the ordinal of the enum. The allowed targets of a state are a bit mask over the target ordinals,
+ * so checking a transition is legal is one lookup and one bit test. Every transition is checked, staying on
+ * the same state is always allowed.
+ *
+ * Invariant validation can be switched off (production fast path), in that case transitions still check the
+ * allowed targets but skip the checks done by {@link VendingMachineValidator}, some of them walk every product
+ * shelf and build their diagnostic messages. Tests and canary machines keep it on.
+ */
+final class StateTransitionTable {
+
+    /**
+     * Invariant a vending machine must satisfy before entering a state
+     */
+    @FunctionalInterface
+    interface TransitionInvariant {
+        /**
+         * @param vendingMachine the machine about to transition
+         * @throws IllegalStateException if the machine does not qualify for the target state
+         */
+        void check(VendingMachine vendingMachine) throws IllegalStateException;
+    }
+
+    /**
+     * Invariant of states any machine can enter
+     */
+    static final TransitionInvariant NO_INVARIANT = vendingMachine -> {};
+
+    private final State[] targets;
+    private final TransitionInvariant[] invariants;
+    private final int[] allowedTargets;
+    private final boolean validating;
+
+    /**
+     * Builds a table
+     * @param targets the state instance for every state indexed by {@link StateEnum#ordinal()}
+     * @param invariants the invariant for every state indexed by {@link StateEnum#ordinal()}
+     * @param allowedTargets the mask of the states every state may move to indexed by {@link StateEnum#ordinal()},
+     *                       see {@link #maskOf(StateEnum...)}
+     * @param validating true if the invariants are checked on every transition
+     */
+    StateTransitionTable(@NonNull State[] targets, @NonNull TransitionInvariant[] invariants, @NonNull int[] allowedTargets,
+                         boolean validating) {
+        int statesCount = StateEnum.values().length;
+        if (targets.length != statesCount || invariants.length != statesCount || allowedTargets.length != statesCount) {
+            throw new InputMismatchException("A transition table must describe every state: " + statesCount);
+        }
+        for (int i = 0; i < statesCount; i++) {
+            if (targets[i] == null || invariants[i] == null) {
+                throw new InputMismatchException("Missing transition for state: " + StateEnum.values()[i]);
+            }
+        }
+        this.targets = targets.clone();
+        this.invariants = invariants.clone();
+        this.allowedTargets = allowedTargets.clone();
+        for (int i = 0; i < statesCount; i++) {
+            this.allowedTargets[i] |= 1 << i;
+        }
+        this.validating = validating;
+    }
+
+    /**
+     * Builds the mask of the given states
+     * @param states the states
+     * @return the mask with the bit of the ordinal of every given state set
+     */
+    static int maskOf(StateEnum... states) {
+        int mask = 0;
+        for (StateEnum state : states) {
+            mask |= 1 << state.ordinal();
+        }
+        return mask;
+    }
+
+    /**
+     * Builds the table of the vending machine states with the invariants of {@link VendingMachineValidator} and
+     * the transitions the states perform
+     * @param soldOutState the sold out state
+     * @param readyState the ready state
+     * @param insufficientCreditState the insufficient credit state
+     * @param creditNotSelectedProductState the credit not selected product state
+     * @param noCreditSelectedProductState the no credit selected product state
+     * @param technicalErrorState the technical error state
+     * @param validating true if the invariants are checked on every transition
+     * @return the table
+     */
+    static StateTransitionTable build(State soldOutState, State readyState, State insufficientCreditState,
+                                      State creditNotSelectedProductState, State noCreditSelectedProductState,
+                                      State technicalErrorState, boolean validating) {
+        int statesCount = StateEnum.values().length;
+        State[] targets = new State[statesCount];
+        TransitionInvariant[] invariants = new TransitionInvariant[statesCount];
+        int[] allowedTargets = new int[statesCount];
+        targets[StateEnum.TECHNICAL_ERROR.ordinal()] = technicalErrorState;
+        invariants[StateEnum.TECHNICAL_ERROR.ordinal()] = NO_INVARIANT;
+        allowedTargets[StateEnum.TECHNICAL_ERROR.ordinal()] = 0;
+        targets[StateEnum.SOLD_OUT.ordinal()] = soldOutState;
+        invariants[StateEnum.SOLD_OUT.ordinal()] = VendingMachineValidator::validateToSoldOutState;
+        allowedTargets[StateEnum.SOLD_OUT.ordinal()] = maskOf(StateEnum.READY, StateEnum.TECHNICAL_ERROR);
+        targets[StateEnum.READY.ordinal()] = readyState;
+        invariants[StateEnum.READY.ordinal()] = VendingMachineValidator::validateToReadyState;
+        allowedTargets[StateEnum.READY.ordinal()] = maskOf(StateEnum.SOLD_OUT, StateEnum.CREDIT_NOT_SELECTED_PRODUCT,
+            StateEnum.NO_CREDIT_SELECTED_PRODUCT, StateEnum.TECHNICAL_ERROR);
+        targets[StateEnum.INSUFFICIENT_CREDIT.ordinal()] = insufficientCreditState;
+        invariants[StateEnum.INSUFFICIENT_CREDIT.ordinal()] = VendingMachineValidator::validateToInsufficientCreditState;
+        allowedTargets[StateEnum.INSUFFICIENT_CREDIT.ordinal()] = maskOf(StateEnum.SOLD_OUT, StateEnum.READY,
+            StateEnum.CREDIT_NOT_SELECTED_PRODUCT, StateEnum.TECHNICAL_ERROR);
+        targets[StateEnum.CREDIT_NOT_SELECTED_PRODUCT.ordinal()] = creditNotSelectedProductState;
+        invariants[StateEnum.CREDIT_NOT_SELECTED_PRODUCT.ordinal()] = VendingMachineValidator::validateCreditNotSelectedProductState;
+        allowedTargets[StateEnum.CREDIT_NOT_SELECTED_PRODUCT.ordinal()] = maskOf(StateEnum.SOLD_OUT, StateEnum.READY,
+            StateEnum.INSUFFICIENT_CREDIT, StateEnum.TECHNICAL_ERROR);
+        targets[StateEnum.NO_CREDIT_SELECTED_PRODUCT.ordinal()] = noCreditSelectedProductState;
+        invariants[StateEnum.NO_CREDIT_SELECTED_PRODUCT.ordinal()] = VendingMachineValidator::validateToNoCreditSelectedProductState;
+        allowedTargets[StateEnum.NO_CREDIT_SELECTED_PRODUCT.ordinal()] = maskOf(StateEnum.SOLD_OUT, StateEnum.READY,
+            StateEnum.INSUFFICIENT_CREDIT, StateEnum.CREDIT_NOT_SELECTED_PRODUCT, StateEnum.TECHNICAL_ERROR);
+        return new StateTransitionTable(targets, invariants, allowedTargets, validating);
+    }
+
+    /**
+     * Resolves the state the given machine moves to from its current state, checking the transition is allowed and,
+     * if validating, the invariant of the target
+     * @param from the current state instance of the machine
+     * @param target the target state
+     * @param vendingMachine the machine about to transition
+     * @return the state instance to set as current state
+     * @throws IllegalStateException if the transition is not allowed or, if validating, the machine does not qualify
+     * for the target state
+     * @throws NoSuchElementException if the current state is not one of the table
+     */
+    State transitionTo(@NonNull State from, @NonNull StateEnum target, VendingMachine vendingMachine)
+        throws IllegalStateException, NoSuchElementException {
+        StateEnum current = stateOf(from);
+        if (!isAllowed(current, target)) {
+            throw new IllegalStateException(String.format("Transition not allowed from %s to %s", current, target));
+        }
+        if (validating) {
+            invariants[target.ordinal()].check(vendingMachine);
+        }
+        return targets[target.ordinal()];
+    }
+
+    /**
+     * Resolves the state instance of the given state checking only its invariant, whether validating or not, meant
+     * for machines restored on a state rather than moving to it
+     * @param target the target state
+     * @param vendingMachine the machine entering the state
+     * @return the state instance to set as current state
+     * @throws IllegalStateException if the machine does not qualify for the target state
+     */
+    State enter(@NonNull StateEnum target, VendingMachine vendingMachine) throws IllegalStateException {
+        int index = target.ordinal();
+        invariants[index].check(vendingMachine);
+        return targets[index];
+    }
+
+    /**
+     * Informs if a machine on the given state may move to the target state
+     * @param from the current state
+     * @param target the target state
+     * @return boolean
+     */
+    boolean isAllowed(@NonNull StateEnum from, @NonNull StateEnum target) {
+        return (allowedTargets[from.ordinal()] & (1 << target.ordinal())) != 0;
+    }
+
+    /**
+     * Informs if the invariants are checked on every transition
+     * @return boolean
+     */
+    boolean isValidating() {
+        return validating;
+    }
+
+    /**
+     * Resolves the state instance of the given state enum without checking its invariant
+     * @param state the state enum
+     * @return the state instance of this table
+     */
+    State stateFor(@NonNull StateEnum state) {
+        return targets[state.ordinal()];
+    }
+
+    /**
+     * Resolves the state enum of the given state instance of this table
+     * @param state a state instance of this table
+     * @return the state enum
+     * @throws NoSuchElementException if the state is not one of the table
+     */
+    StateEnum stateOf(@NonNull State state) throws NoSuchElementException {
+        for (int i = 0; i < targets.length; i++) {
+            if (targets[i] == state) {
+                return StateEnum.values()[i];
+            }
+        }
+        throw new NoSuchElementException("State not described by the transition table: " + state);
+    }
+}
@@ -0,0 +1,559 @@
+package tdd.vendingMachine.state;
+
+import lombok.NonNull;
+import org.apache.log4j.Logger;
+import tdd.vendingMachine.domain.ChangePlan;
+import tdd.vendingMachine.domain.Coin;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.InputMismatchException;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * @author Agustin Cabra on 3/10/2017.
+ * @since 2.1
+ * Journal of the changes of the machines of a fleet. Every machine attached notifies the journal once it applied
+ * a change (see {@link TransactionListener}) and the change is appended as a record to a memory mapped window of
+ * the journal file, so a crash in the middle of a transaction loses none of the steps already applied and a
+ * step failing is never recorded. Closing the journal detaches the machines attached.
+ *
+ * Records are {@code length int, crc int, sequence long, type byte, machine id int, fields}, the CRC32 covers
+ * everything after it and sequences grow by one from the base sequence written on the file header. Reading stops
+ * at the first record torn by a crash: a zero length, a bad CRC or an unexpected sequence.
+ *
+ * Group commit: the mapped window is forced to the device once every {@code groupCommitSize} records and on
+ * {@link #commit()}, a size of one forces every record. Records not forced yet survive a crash of the process
+ * but not one of the operating system.
+ *
+ * A checkpoint writes a snapshot of the fleet prefixed by the next sequence and then restarts the journal from
+ * that sequence, recovery restores the checkpoint and replays the records from its sequence on. Checkpoints must
+ * be taken while no machine of the fleet is operating.
+ */
+public final class TransactionJournal implements Closeable {
+
+    private static final Logger logger = Logger.getLogger(TransactionJournal.class);
+
+    static final int MAGIC = 0x564D4A4C;
+    static final int CHECKPOINT_MAGIC = 0x564D4350;
+    static final short VERSION = 1;
+
+    static final byte CREDIT = 1;
+    static final byte SELECTION = 2;
+    static final byte SELL = 3;
+    static final byte REFUND = 4;
+    static final byte RESTOCK = 5;
+    static final byte STATE_CHANGE = 6;
+    static final byte ESCROW_PROVISIONED = 7;
+    static final byte CHANGE_DISPENSED = 8;
+    static final byte PRODUCT_DISPENSED = 9;
+    static final byte COINS_TAKEN_FROM_DISPENSER = 10;
+
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = Integer.BYTES + Integer.BYTES;
+    private static final int MAX_PAYLOAD_SIZE = Long.BYTES + Byte.BYTES + Integer.BYTES + Integer.BYTES
+        + Coin.countDenominations() * Integer.BYTES;
+    private static final int DEFAULT_WINDOW_SIZE = 16 << 20;
+
+    private final FileChannel channel;
+    private final int windowSize;
+    private final int groupCommitSize;
+    private final ReentrantLock appendLock;
+    private final List<MachineJournal> attachedMachines;
+    private final CRC32 crc;
+    private final ByteBuffer payload;
+    private final MappedByteBuffer header;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long nextSequence;
+    private int pendingRecords;
+    private long appendedRecords;
+    private long commits;
+
+    private TransactionJournal(FileChannel channel, int windowSize, int groupCommitSize) throws IOException {
+        this.channel = channel;
+        this.windowSize = windowSize;
+        this.groupCommitSize = groupCommitSize;
+        this.appendLock = new ReentrantLock();
+        this.attachedMachines = new ArrayList<>();
+        this.crc = new CRC32();
+        this.payload = ByteBuffer.allocate(MAX_PAYLOAD_SIZE);
+        this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        if (header.getInt(0) != MAGIC) {
+            header.putInt(0, MAGIC).putShort(4, VERSION).putLong(8, 0);
+            header.force();
+        } else if (header.getShort(4) != VERSION) {
+            throw new InputMismatchException("Unsupported journal version: " + header.getShort(4));
+        }
+        Tail tail = scan(channel, windowSize, null, Long.MAX_VALUE);
+        this.nextSequence = tail.nextSequence;
+        mapWindow(tail.position);
+    }
+
+    /**
+     * Opens the journal on the given file, creating it if missing, new records are appended after the last
+     * valid record found
+     * @param file the journal file
+     * @param groupCommitSize the amount of records forced together to the device, at least one
+     * @return the journal
+     * @throws IOException if the file can not be opened or mapped
+     */
+    public static TransactionJournal open(@NonNull Path file, int groupCommitSize) throws IOException {
+        return open(file, groupCommitSize, DEFAULT_WINDOW_SIZE);
+    }
+
+    static TransactionJournal open(Path file, int groupCommitSize, int windowSize) throws IOException {
+        if (groupCommitSize < 1) throw new InputMismatchException("Group commit size must be positive: " + groupCommitSize);
+        if (windowSize < RECORD_HEADER_SIZE + MAX_PAYLOAD_SIZE) throw new InputMismatchException("Window too small: " + windowSize);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            return new TransactionJournal(channel, windowSize, groupCommitSize);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void mapWindow(long position) throws IOException {
+        this.windowStart = position;
+        this.window = channel.map(FileChannel.MapMode.READ_WRITE, position, windowSize);
+    }
+
+    /**
+     * Attaches every machine of the fleet, their changes are appended from now on keyed by machine id
+     * @param fleet the fleet
+     */
+    public void attach(@NonNull Fleet fleet) {
+        for (int machineId = 0; machineId < fleet.machineIdBound(); machineId++) {
+            VendingSession machine = fleet.findMachine(machineId);
+            if (machine != null) {
+                attach(machineId, machine);
+            }
+        }
+    }
+
+    /**
+     * Attaches a machine, its changes are appended from now on with the given machine id
+     * @param machineId the machine id
+     * @param machine the machine, built by {@link VendingMachineFactory}
+     * @throws InputMismatchException if the machine implementation can not be journaled
+     */
+    public void attach(int machineId, @NonNull VendingSession machine) {
+        MachineJournal machineJournal = new MachineJournal(machineId, MachineSnapshotCodec.unwrap(machine));
+        machineJournal.machine.addTransactionListener(machineJournal);
+        appendLock.lock();
+        try {
+            attachedMachines.add(machineJournal);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Forces every record appended to the device
+     */
+    public void commit() {
+        appendLock.lock();
+        try {
+            forcePending();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void forcePending() {
+        if (pendingRecords > 0) {
+            window.force();
+            pendingRecords = 0;
+            commits++;
+        }
+    }
+
+    /**
+     * Appends the record prepared on the payload buffer, forcing it if the group is complete
+     */
+    private void append() {
+        payload.flip();
+        crc.reset();
+        crc.update(payload.array(), 0, payload.limit());
+        int recordSize = RECORD_HEADER_SIZE + payload.limit();
+        try {
+            if (window.remaining() < recordSize) {
+                forcePending();
+                mapWindow(windowStart + window.position());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to extend the journal", e);
+        }
+        window.putInt(payload.limit()).putInt((int) crc.getValue()).put(payload);
+        appendedRecords++;
+        if (++pendingRecords >= groupCommitSize) {
+            forcePending();
+        }
+    }
+
+    /**
+     * Starts a record on the payload buffer, must be called holding the append lock
+     */
+    private ByteBuffer startRecord(byte type, int machineId) {
+        payload.clear();
+        return payload.putLong(nextSequence++).put(type).putInt(machineId);
+    }
+
+    /**
+     * Writes a checkpoint of the fleet and restarts the journal after it. The checkpoint is written to a
+     * temporary file moved over the given one once forced, a crash leaves either the previous checkpoint or the
+     * new one and the journal records needed by it.
+     * @param fleet the fleet, no machine must be operating meanwhile
+     * @param checkpointFile the checkpoint file
+     * @throws IOException if the checkpoint can not be written
+     */
+    public void checkpoint(@NonNull Fleet fleet, @NonNull Path checkpointFile) throws IOException {
+        appendLock.lock();
+        try {
+            forcePending();
+            long sequence = nextSequence;
+            Path temporary = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+            try (FileChannel checkpoint = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer prefix = ByteBuffer.allocate(Integer.BYTES + Short.BYTES + Long.BYTES);
+                prefix.putInt(CHECKPOINT_MAGIC).putShort(VERSION).putLong(sequence).flip();
+                while (prefix.hasRemaining()) {
+                    checkpoint.write(prefix);
+                }
+                MachineSnapshotCodec.writeFleet(fleet, checkpoint);
+                checkpoint.force(true);
+            }
+            Files.move(temporary, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            header.putLong(8, sequence);
+            header.force();
+            mapWindow(HEADER_SIZE);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Restores the fleet of a checkpoint and replays the records of the journal appended after it
+     * @param checkpointFile the checkpoint file
+     * @param journalFile the journal file
+     * @return the fleet as it was after the last record that reached the journal, no machine is attached
+     * @throws IOException if the files can not be read
+     * @throws InputMismatchException if the files are not a checkpoint and a journal or do not match
+     */
+    public static Fleet recover(@NonNull Path checkpointFile, @NonNull Path journalFile) throws IOException {
+        long start = System.nanoTime();
+        Fleet fleet;
+        long sequence;
+        try (FileChannel checkpoint = FileChannel.open(checkpointFile, StandardOpenOption.READ)) {
+            ByteBuffer prefix = ByteBuffer.allocate(Integer.BYTES + Short.BYTES + Long.BYTES);
+            while (prefix.hasRemaining()) {
+                if (checkpoint.read(prefix) < 0) throw new EOFException("Checkpoint ends before its header");
+            }
+            prefix.flip();
+            if (prefix.getInt() != CHECKPOINT_MAGIC || prefix.getShort() != VERSION) {
+                throw new InputMismatchException("Not a journal checkpoint: " + checkpointFile);
+            }
+            sequence = prefix.getLong();
+            fleet = MachineSnapshotCodec.readFleet(checkpoint);
+        }
+        long restored = System.nanoTime();
+        Tail tail;
+        if (Files.exists(journalFile)) {
+            try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.READ)) {
+                tail = scan(channel, DEFAULT_WINDOW_SIZE, fleet, sequence);
+            }
+        } else {
+            tail = new Tail(0, sequence, 0);
+        }
+        logger.info(String.format("checkpoint restored in %d ms, %d journal records replayed in %d ms",
+            (restored - start) / 1_000_000, tail.replayed, (System.nanoTime() - restored) / 1_000_000));
+        return fleet;
+    }
+
+    /**
+     * Reads the records of a journal until the first torn one, replaying on the given fleet the records from the
+     * given sequence on
+     * @param channel the journal file
+     * @param windowSize the size of the windows mapped
+     * @param fleet the fleet to replay on or null to only find the tail
+     * @param fromSequence the first sequence to replay
+     * @return the tail of the journal
+     */
+    private static Tail scan(FileChannel channel, int windowSize, Fleet fleet, long fromSequence) throws IOException {
+        long size = channel.size();
+        if (size < HEADER_SIZE) {
+            return new Tail(HEADER_SIZE, 0, 0);
+        }
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+        if (header.getInt(0) != MAGIC) throw new InputMismatchException("Not a transaction journal");
+        if (header.getShort(4) != VERSION) throw new InputMismatchException("Unsupported journal version: " + header.getShort(4));
+        long expectedSequence = header.getLong(8);
+        if (fleet != null && expectedSequence > fromSequence) {
+            throw new InputMismatchException("Journal starts after the checkpoint: " + expectedSequence + " > " + fromSequence);
+        }
+        CRC32 crc = new CRC32();
+        byte[] record = new byte[MAX_PAYLOAD_SIZE];
+        long position = HEADER_SIZE;
+        long replayed = 0;
+        ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(windowSize, size - position));
+        long windowStart = position;
+        while (true) {
+            if (window.remaining() < RECORD_HEADER_SIZE + MAX_PAYLOAD_SIZE && windowStart + window.limit() < size) {
+                windowStart += window.position();
+                window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(windowSize, size - windowStart));
+            }
+            if (window.remaining() < RECORD_HEADER_SIZE) {
+                break;
+            }
+            int length = window.getInt(window.position());
+            if (length <= Long.BYTES || length > MAX_PAYLOAD_SIZE || window.remaining() < RECORD_HEADER_SIZE + length) {
+                break;
+            }
+            int checksum = window.getInt(window.position() + Integer.BYTES);
+            window.position(window.position() + RECORD_HEADER_SIZE);
+            window.get(record, 0, length);
+            crc.reset();
+            crc.update(record, 0, length);
+            ByteBuffer fields = ByteBuffer.wrap(record, 0, length);
+            if ((int) crc.getValue() != checksum || fields.getLong() != expectedSequence) {
+                break;
+            }
+            if (fleet != null && expectedSequence >= fromSequence) {
+                replay(fleet, fields);
+                replayed++;
+            }
+            expectedSequence++;
+            position = windowStart + window.position();
+        }
+        return new Tail(position, expectedSequence, replayed);
+    }
+
+    private static void replay(Fleet fleet, ByteBuffer fields) {
+        byte type = fields.get();
+        int machineId = fields.getInt();
+        if (machineId < 0 || machineId >= fleet.machineIdBound() || fleet.findMachine(machineId) == null) {
+            throw new InputMismatchException("Journal record of a machine not on the checkpoint: " + machineId);
+        }
+        TransactionListener replay = MachineSnapshotCodec.unwrap(fleet.findMachine(machineId)).new Replay();
+        switch (type) {
+            case CREDIT: replay.onCredit(Coin.retrieveCoinByOrder(fields.get())); break;
+            case SELECTION: replay.onSelection(fields.getInt()); break;
+            case SELL: replay.onSell(fields.getInt(), readChangePlan(fields)); break;
+            case REFUND: replay.onRefund(Coin.retrieveCoinByOrder(fields.get()), fields.getInt()); break;
+            case RESTOCK: replay.onRestock(fields.getInt(), fields.getInt()); break;
+            case STATE_CHANGE: replay.onStateChange(StateEnum.values()[fields.get()]); break;
+            case ESCROW_PROVISIONED: replay.onEscrowProvisioned(); break;
+            case CHANGE_DISPENSED: replay.onChangeDispensed(readChangePlan(fields)); break;
+            case PRODUCT_DISPENSED: replay.onProductDispensed(fields.getInt()); break;
+            case COINS_TAKEN_FROM_DISPENSER: replay.onCoinsTakenFromDispenser(Coin.retrieveCoinByOrder(fields.get()), fields.getInt()); break;
+            default: throw new InputMismatchException("Unknown journal record type: " + type);
+        }
+    }
+
+    private static ChangePlan readChangePlan(ByteBuffer fields) {
+        int[] coins = new int[Coin.countDenominations()];
+        for (int order = 0; order < coins.length; order++) {
+            coins[order] = fields.getInt();
+        }
+        return ChangePlan.of(coins);
+    }
+
+    private static void writeChangePlan(ByteBuffer fields, ChangePlan changePlan) {
+        for (int order = 0; order < Coin.countDenominations(); order++) {
+            fields.putInt(changePlan.coinsOf(Coin.retrieveCoinByOrder(order)));
+        }
+    }
+
+    /**
+     * The amount of records appended since the journal was opened
+     * @return long
+     */
+    public long countAppendedRecords() {
+        appendLock.lock();
+        try {
+            return appendedRecords;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * The amount of times records were forced to the device since the journal was opened
+     * @return long
+     */
+    public long countCommits() {
+        appendLock.lock();
+        try {
+            return commits;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        appendLock.lock();
+        try {
+            for (MachineJournal machineJournal : attachedMachines) {
+                machineJournal.machine.removeTransactionListener(machineJournal);
+            }
+            attachedMachines.clear();
+            forcePending();
+            channel.close();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Position and next sequence after the last valid record of a journal
+     */
+    private static final class Tail {
+        private final long position;
+        private final long nextSequence;
+        private final long replayed;
+
+        Tail(long position, long nextSequence, long replayed) {
+            this.position = position;
+            this.nextSequence = nextSequence;
+            this.replayed = replayed;
+        }
+    }
+
+    /**
+     * Listener appending the changes of one machine
+     */
+    private final class MachineJournal implements TransactionListener {
+
+        private final int machineId;
+        private final VendingMachineImpl machine;
+
+        MachineJournal(int machineId, VendingMachineImpl machine) {
+            this.machineId = machineId;
+            this.machine = machine;
+        }
+
+        @Override
+        public void onCredit(Coin coin) {
+            appendLock.lock();
+            try {
+                startRecord(CREDIT, machineId).put((byte) coin.order);
+                append();
+            } finally {
+                appendLock.unlock();
+            }
+        }
+
+        @Override
+        public void onSelection(int shelfNumber) {
+            appendLock.lock();
+            try {
+                startRecord(SELECTION, machineId).putInt(shelfNumber);
+                append();
+            } finally {
+                appendLock.unlock();
+            }
+        }
+
+        @Override
+        public void onSell(int shelfNumber, ChangePlan changePlan) {
+            appendLock.lock();
+            try {
+                writeChangePlan(startRecord(SELL, machineId).putInt(shelfNumber), changePlan);
+                append();
+            } finally {
+                appendLock.unlock();
+            }
+        }
+
+        @Override
+        public void onRefund(Coin coin, int amount) {
+            appendLock.lock();
+            try {
+                startRecord(REFUND, machineId).put((byte) coin.order).putInt(amount);
+                append();
+            } finally {
+                appendLock.unlock();
+            }
+        }
+
+        @Override
+        public void onRestock(int shelfNumber, int amount) {
+            appendLock.lock();
+            try {
+                startRecord(RESTOCK, machineId).putInt(shelfNumber).putInt(amount);
+                append();
+            } finally {
+                appendLock.unlock();
+            }
+        }
+
+        @Override
+        public void onStateChange(StateEnum state) {
+            appendLock.lock();
+            try {
+                startRecord(STATE_CHANGE, machineId).put((byte) state.ordinal());
+                append();
+            } finally {
+                appendLock.unlock();
+            }
+        }
+
+        @Override
+        public void onEscrowProvisioned() {
+            appendLock.lock();
+            try {
+                startRecord(ESCROW_PROVISIONED, machineId);
+                append();
+            } finally {
+                appendLock.unlock();
+            }
+        }
+
+        @Override
+        public void onChangeDispensed(ChangePlan changePlan) {
+            appendLock.lock();
+            try {
+                writeChangePlan(startRecord(CHANGE_DISPENSED, machineId), changePlan);
+                append();
+            } finally {
+                appendLock.unlock();
+            }
+        }
+
+        @Override
+        public void onProductDispensed(int shelfNumber) {
+            appendLock.lock();
+            try {
+                startRecord(PRODUCT_DISPENSED, machineId).putInt(shelfNumber);
+                append();
+            } finally {
+                appendLock.unlock();
+            }
+        }
+
+        @Override
+        public void onCoinsTakenFromDispenser(Coin coin, int amount) {
+            appendLock.lock();
+            try {
+                startRecord(COINS_TAKEN_FROM_DISPENSER, machineId).put((byte) coin.order).putInt(amount);
+                append();
+            } finally {
+                appendLock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package tdd.vendingMachine.state;
+
+import tdd.vendingMachine.domain.ChangePlan;
+import tdd.vendingMachine.domain.Coin;
+
+/**
+ * @author Agustin Cabra on 3/10/2017.
+ * @since 2.1
+ * Listener notified by a vending machine once it applied a change to its credit, selection, stock, cash or
+ * state, a change failing is never notified. Each notification describes the whole effect of one step:
+ * replaying the notifications in order on a machine restored from an earlier snapshot rebuilds the same
+ * machine, see {@link VendingMachineImpl.Replay}.
+ *
+ * Notifications come from the thread operating the machine, the changes to the stock and the cash are notified
+ * while still holding the commit lock of the inventory. Several listeners are combined by
+ * {@link CompositeTransactionListener}.
+ */
+interface TransactionListener {
+
+    /**
+     * Listener of machines not journaled
+     */
+    TransactionListener NONE = new TransactionListener() {
+        @Override public void onCredit(Coin coin) {}
+        @Override public void onSelection(int shelfNumber) {}
+        @Override public void onSell(int shelfNumber, ChangePlan changePlan) {}
+        @Override public void onRefund(Coin coin, int amount) {}
+        @Override public void onRestock(int shelfNumber, int amount) {}
+        @Override public void onStateChange(StateEnum state) {}
+        @Override public void onEscrowProvisioned() {}
+        @Override public void onChangeDispensed(ChangePlan changePlan) {}
+        @Override public void onProductDispensed(int shelfNumber) {}
+        @Override public void onCoinsTakenFromDispenser(Coin coin, int amount) {}
+    };
+
+    /**
+     * A coin is added to the escrow and the credit
+     * @param coin the coin
+     */
+    void onCredit(Coin coin);
+
+    /**
+     * The selection changes
+     * @param shelfNumber the selected shelf number or -1 if the selection is dropped
+     */
+    void onSelection(int shelfNumber);
+
+    /**
+     * A sell is committed: the escrow goes to the dispenser, the change leaves it, one product leaves the shelf,
+     * the escrow, the credit and the selection are cleared
+     * @param shelfNumber the shelf of the product sold
+     * @param changePlan the change given
+     */
+    void onSell(int shelfNumber, ChangePlan changePlan);
+
+    /**
+     * Coins of the escrow are returned to the customer, discounting them from the credit
+     * @param coin the coin returned
+     * @param amount the amount of coins
+     */
+    void onRefund(Coin coin, int amount);
+
+    /**
+     * Products are added to a shelf
+     * @param shelfNumber the shelf number
+     * @param amount the amount of products
+     */
+    void onRestock(int shelfNumber, int amount);
+
+    /**
+     * The machine moves to another state
+     * @param state the new state
+     */
+    void onStateChange(StateEnum state);
+
+    /**
+     * The coins of the escrow are copied to the dispenser, the escrow keeps them
+     */
+    void onEscrowProvisioned();
+
+    /**
+     * The pending balance is given from the dispenser and the credit goes to zero
+     * @param changePlan the change given
+     */
+    void onChangeDispensed(ChangePlan changePlan);
+
+    /**
+     * The selected product leaves the shelf and the escrow is cleared
+     * @param shelfNumber the shelf of the product
+     */
+    void onProductDispensed(int shelfNumber);
+
+    /**
+     * Coins leave the dispenser to compensate coins provisioned from the escrow
+     * @param coin the coin
+     * @param amount the amount of coins
+     */
+    void onCoinsTakenFromDispenser(Coin coin, int amount);
+}
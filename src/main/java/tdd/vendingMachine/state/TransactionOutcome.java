@@ -0,0 +1,45 @@
+package tdd.vendingMachine.state;
+
+/**
+ * @author Agustin Cabra on 3/7/2017.
+ * @since 2.1
+ * Outcome of a customer operation on the vending machine. Expected declines (full dispenser, empty shelf,
+ * no change) are reported as outcomes so the states branch on them without building exceptions, exceptions
+ * are kept for real faults.
+ */
+public enum TransactionOutcome {
+    /**
+     * The coin was added to the credit
+     */
+    ACCEPTED,
+
+    /**
+     * The coin was rejected since the dispenser has no room for it
+     */
+    DISPENSER_FULL,
+
+    /**
+     * The product was selected
+     */
+    SELECTED,
+
+    /**
+     * The product was not selected since the shelf is empty
+     */
+    SHELF_EMPTY,
+
+    /**
+     * The product was dispensed and the change given
+     */
+    SOLD,
+
+    /**
+     * No sell was attempted since no product is selected or the credit does not cover its price
+     */
+    PENDING_CREDIT,
+
+    /**
+     * The sell was not completed since the dispenser can not give the change
+     */
+    NO_CHANGE
+}
@@ -6,11 +6,17 @@ import tdd.vendingMachine.VendingMachine;
 import tdd.vendingMachine.domain.*;
 import tdd.vendingMachine.dto.CashImport;
 import tdd.vendingMachine.dto.ProductImport;
+import tdd.vendingMachine.util.CsvImportReader;
 import tdd.vendingMachine.util.FileReaderHelper;
+import tdd.vendingMachine.util.FleetImportReader;
 import tdd.vendingMachine.validation.VendingMachineValidator;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -21,7 +27,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class VendingMachineFactory {
 
     private static final Logger logger = Logger.getLogger(VendingMachineFactory.class);
-    private static final VendingMachineConfiguration vendingMachineConfiguration = new VendingMachineConfiguration();
+    private static final ProductCatalog productCatalog = new ProductCatalog();
 
     private VendingMachineFactory() {
         throw new AssertionError("VendingMachineFactory should not be instantiated");
@@ -31,7 +37,7 @@ public class VendingMachineFactory {
         AtomicInteger id = new AtomicInteger(0);
         Map<Integer, Shelf<Product>> productShelf = new HashMap<>();
         for (Product product: products) {
-            Shelf<Product> singleShelf = ShelfFactory.buildShelf(id.getAndIncrement(), product,
+            Shelf<Product> singleShelf = ShelfFactory.buildShelf(id.getAndIncrement(), productCatalog.intern(product),
                 getConfig().getProductShelfCapacity(), amount);
             productShelf.put(singleShelf.id, singleShelf);
         }
@@ -39,7 +45,41 @@ public class VendingMachineFactory {
     }
 
     static VendingMachineConfiguration getConfig() {
-        return vendingMachineConfiguration;
+        return VendingMachineConfiguration.current();
+    }
+
+    /**
+     * Validates the given shelves and dispenser and builds a machine sharing the given configuration snapshot
+     * @param config the configuration
+     * @param productShelves the product shelves
+     * @param coinDispenser the coin dispenser
+     * @return a vending machine
+     */
+    private static VendingMachineImpl buildVendingMachine(VendingMachineConfiguration config, Map<Integer, Shelf<Product>> productShelves,
+                                                          CoinDispenser coinDispenser) {
+        return new VendingMachineImpl(config, buildSharedInventory(config, productShelves, coinDispenser));
+    }
+
+    private static SharedInventory buildSharedInventory(VendingMachineConfiguration config, Map<Integer, Shelf<Product>> productShelves,
+                                                        CoinDispenser coinDispenser) {
+        return SharedInventory.build(config, productShelves, coinDispenser, new BoundedChangeMaker(),
+            VendingMachineImpl.provideChangeReachabilityCeiling(config));
+    }
+
+    /**
+     * The catalog interning the products of every machine built by this factory
+     * @return the product catalog
+     */
+    public static ProductCatalog getProductCatalog() {
+        return productCatalog;
+    }
+
+    private static List<Product> internProducts(Collection<Product> products) {
+        List<Product> interned = new ArrayList<>(products.size());
+        for (Product product : products) {
+            interned.add(productCatalog.intern(product));
+        }
+        return interned;
     }
 
     /**
@@ -59,9 +99,8 @@ public class VendingMachineFactory {
     public static VendingMachine buildSoldOutVendingMachineNoCash(@NonNull List<Product> products) {
         Map<Integer, Shelf<Product>> productShelves = buildProductShelf(products, 0);
         VendingMachineConfiguration config = getConfig();
-        Map<Coin, Shelf<Coin>> coinShelves = CoinDispenserFactory.buildShelfWithGivenCoinItemCount(config, 0);
-        VendingMachineValidator.validateNewVendingMachineParameters(config, productShelves, coinShelves);
-        return new VendingMachineImpl(productShelves, coinShelves);
+        CoinDispenser coinDispenser = CoinDispenserFactory.buildShelfWithGivenCoinItemCount(config, 0);
+        return buildVendingMachine(config, productShelves, coinDispenser);
     }
 
     /**
@@ -77,20 +116,18 @@ public class VendingMachineFactory {
         if(coinItemCount < 0) throw new InputMismatchException("Coin amount must be non-negative");
         Map<Integer, Shelf<Product>> productShelves = buildProductShelf(products, productItemCount);
         VendingMachineConfiguration config = getConfig();
-        Map<Coin, Shelf<Coin>> coinShelves = CoinDispenserFactory.buildShelfWithGivenCoinItemCount(config, coinItemCount);
-        VendingMachineValidator.validateNewVendingMachineParameters(config, productShelves, coinShelves);
-        return new VendingMachineImpl(productShelves, coinShelves);
+        CoinDispenser coinDispenser = CoinDispenserFactory.buildShelfWithGivenCoinItemCount(config, coinItemCount);
+        return buildVendingMachine(config, productShelves, coinDispenser);
     }
 
     /**
      * Method mean to be used by unit testing to allow flexible creation of productShelves
      * @param productShelves the productShelves
-     * @param coinShelves the coinShelves
+     * @param coinDispenser the coinDispenser
      * @return a vending machine with given shelves
      */
-    public static VendingMachine customVendingMachineForTesting(Map<Integer, Shelf<Product>> productShelves, Map<Coin, Shelf<Coin>> coinShelves) {
-        VendingMachineValidator.validateNewVendingMachineParameters(getConfig(), productShelves, coinShelves);
-        return new VendingMachineImpl(productShelves, coinShelves);
+    public static VendingMachine customVendingMachineForTesting(Map<Integer, Shelf<Product>> productShelves, CoinDispenser coinDispenser) {
+        return buildVendingMachine(getConfig(), productShelves, coinDispenser);
     }
 
     /**
@@ -104,7 +141,7 @@ public class VendingMachineFactory {
         int productShelfCapacity = getConfig().getProductShelfCapacity();
         for (ProductImport productImport: productImports) {
             Shelf<Product> productShelf = ShelfFactory.buildShelf(idShelfCounter++,
-                new Product(productImport.getPrice(), productImport.getType()), productShelfCapacity, productImport.getItemCount());
+                productCatalog.intern(productImport.getPrice(), productImport.getType()), productShelfCapacity, productImport.getItemCount());
             productShelves.put(productShelf.id, productShelf);
             logger.info(String.format("Shelf id: %d has %d items of product [%s] ", idShelfCounter - 1,
                 productImport.getItemCount(), productImport.getType()));
@@ -123,9 +160,138 @@ public class VendingMachineFactory {
         InputStream streamProducts = VendingMachineFactory.class.getClassLoader().getResourceAsStream("products.csv");
         List<ProductImport> productImports = FileReaderHelper.retrieveProductsImportFromFileStream(streamProducts).orElse(Collections.emptyList());
         VendingMachineConfiguration config = getConfig();
-        Map<Coin, Shelf<Coin>> cashDispenser = CoinDispenserFactory.buildShelf(config, cashImports);
+        CoinDispenser cashDispenser = CoinDispenserFactory.buildShelf(config, cashImports);
         Map<Integer, Shelf<Product>> productShelves = VendingMachineFactory.buildProductShelfFromCashImports(productImports);
-        VendingMachineValidator.validateNewVendingMachineParameters(config, productShelves, cashDispenser);
-        return new VendingMachineImpl(productShelves, cashDispenser);
+        return buildVendingMachine(config, productShelves, cashDispenser);
+    }
+
+    /**
+     * Wraps the given vending machine into a thread safe one, the given machine must not be used directly afterwards
+     * @param vendingMachine a vending machine built by this factory
+     * @return a thread safe vending machine operating the given one
+     */
+    public static ConcurrentVendingMachine buildConcurrentVendingMachine(@NonNull VendingMachine vendingMachine) {
+        if (vendingMachine instanceof ConcurrentVendingMachine) {
+            return (ConcurrentVendingMachine) vendingMachine;
+        }
+        if (!(vendingMachine instanceof VendingMachineImpl)) {
+            throw new InputMismatchException("Unable to wrap vending machine: " + vendingMachine.getClass().getName());
+        }
+        return new ConcurrentVendingMachine((VendingMachineImpl) vendingMachine);
+    }
+
+    /**
+     * Builds a vending machine unit with the given amount of customer panels sharing shelves containing the given
+     * list of products and the productItemCount for each product and a coinDispenser with coinItemCount per coin
+     * @param products the products available for the vending machine
+     * @param productItemCount the amount of each product
+     * @param coinItemCount the amount of coins per denomination in the cashDispenser
+     * @param panelCount the amount of customer panels
+     * @return a multi panel vending machine
+     */
+    public static MultiPanelVendingMachine buildMultiPanelVendingMachine(@NonNull Collection<Product> products, int productItemCount,
+                                                                         int coinItemCount, int panelCount) {
+        if(productItemCount < 0) throw new InputMismatchException("Product amount must be non-negative");
+        if(coinItemCount < 0) throw new InputMismatchException("Coin amount must be non-negative");
+        Map<Integer, Shelf<Product>> productShelves = buildProductShelf(products, productItemCount);
+        VendingMachineConfiguration config = getConfig();
+        CoinDispenser coinDispenser = CoinDispenserFactory.buildShelfWithGivenCoinItemCount(config, coinItemCount);
+        return new MultiPanelVendingMachine(config, buildSharedInventory(config, productShelves, coinDispenser), panelCount);
+    }
+
+    /**
+     * Builds a fleet of vending machines with shelves containing the given list of products and the
+     * productItemCount for each product and a coinDispenser with coinItemCount per coin denomination, the
+     * configuration is read and validated once for the whole fleet
+     * @param products the products available on every machine
+     * @param productItemCount the amount of each product
+     * @param coinItemCount the amount of coins per denomination in the cashDispenser
+     * @param machineCount the amount of machines
+     * @return a fleet of vending machines
+     */
+    public static Fleet buildFleet(@NonNull Collection<Product> products, int productItemCount, int coinItemCount, int machineCount) {
+        return Fleet.build(getConfig(), internProducts(products), productItemCount, coinItemCount, machineCount);
+    }
+
+    /**
+     * Builds a compact store of the shelf and coin counts of a fleet of machines with shelves containing the
+     * given list of products and the productItemCount for each product and coinItemCount per coin denomination,
+     * the layout is validated once against the configuration
+     * @param products the products available on every machine
+     * @param productItemCount the amount of each product
+     * @param coinItemCount the amount of coins per denomination
+     * @param machineCount the amount of machines
+     * @return the fleet inventory
+     */
+    public static FleetInventory buildFleetInventory(@NonNull List<Product> products, int productItemCount, int coinItemCount, int machineCount) {
+        VendingMachineConfiguration config = getConfig();
+        FleetInventory fleetInventory = new FleetInventory(internProducts(products), config.getProductShelfCapacity(), productItemCount,
+            config.getCoinShelfCapacity(), coinItemCount, machineCount);
+        VendingMachineValidator.validateNewVendingMachineParameters(config, buildProductShelf(products, productItemCount),
+            CoinDispenserFactory.buildShelfWithGivenCoinItemCount(config, coinItemCount));
+        return fleetInventory;
+    }
+
+    /**
+     * Builds a vending machine operating the shelves and coins of the given machine of a fleet inventory, every
+     * change made by the machine is written through to the fleet inventory. Every machine of the fleet inventory
+     * is operated by a single vending machine.
+     * @param fleetInventory the fleet inventory
+     * @param machineId the id of the machine on the fleet inventory
+     * @return a vending machine
+     * @throws IllegalStateException if a vending machine was already built on the given machine
+     */
+    public static VendingSession buildVendingMachineOnFleetInventory(@NonNull FleetInventory fleetInventory, int machineId) {
+        fleetInventory.claimMachine(machineId);
+        return buildVendingMachine(getConfig(), fleetInventory.provideProductShelves(machineId),
+            fleetInventory.provideCoinDispenser(machineId));
+    }
+
+    /**
+     * Builds a fleet from a fleet import file, see {@link FleetImportReader} for the format. Chunks of the file are
+     * parsed in parallel on the given pool and every machine is built as soon as its rows are parsed.
+     * @param file the fleet import file
+     * @param pool the pool parsing the file and building the machines
+     * @param errors receives the rejected rows and machines
+     * @return a fleet with the machines imported, keyed by the machine ids of the file
+     * @throws IOException if the file can not be read
+     */
+    public static Fleet buildFleetFromImportFile(@NonNull Path file, @NonNull ForkJoinPool pool,
+                                                 @NonNull CsvImportReader.LineErrorListener errors) throws IOException {
+        VendingMachineConfiguration config = getConfig();
+        Map<Integer, Map.Entry<Long, VendingSession>> machines = new ConcurrentHashMap<>();
+        FleetImportReader.read(file, pool, machineImport -> {
+            Fleet.validMachineId(config, machineImport.getMachineId());
+            VendingSession machine = buildVendingMachine(config, buildProductShelves(config, machineImport.getProductImports()),
+                CoinDispenserFactory.buildShelf(config, machineImport.getCashImports()));
+            //the reader rejects every import of a repeated machine id but the first one on the file
+            machines.merge(machineImport.getMachineId(), new AbstractMap.SimpleImmutableEntry<>(machineImport.getOrder(), machine),
+                (kept, imported) -> kept.getKey() <= imported.getKey() ? kept : imported);
+        }, errors);
+        Map<Integer, VendingSession> fleet = new HashMap<>((int) (machines.size() / 0.75f) + 1);
+        machines.forEach((machineId, machine) -> fleet.put(machineId, machine.getValue()));
+        return Fleet.of(config, fleet);
+    }
+
+    /**
+     * Builds a fleet from a fleet import file parsing it on the common fork join pool
+     * @param file the fleet import file
+     * @param errors receives the rejected rows and machines
+     * @return a fleet with the machines imported, keyed by the machine ids of the file
+     * @throws IOException if the file can not be read
+     */
+    public static Fleet buildFleetFromImportFile(@NonNull Path file, @NonNull CsvImportReader.LineErrorListener errors) throws IOException {
+        return buildFleetFromImportFile(file, ForkJoinPool.commonPool(), errors);
+    }
+
+    private static Map<Integer, Shelf<Product>> buildProductShelves(VendingMachineConfiguration config, List<ProductImport> productImports) {
+        Map<Integer, Shelf<Product>> productShelves = new HashMap<>((int) (productImports.size() / 0.75f) + 1);
+        int productShelfCapacity = config.getProductShelfCapacity();
+        for (ProductImport productImport : productImports) {
+            Shelf<Product> productShelf = ShelfFactory.buildShelf(productShelves.size(),
+                productCatalog.intern(productImport.getPrice(), productImport.getType()), productShelfCapacity, productImport.getItemCount());
+            productShelves.put(productShelf.id, productShelf);
+        }
+        return productShelves;
     }
 }
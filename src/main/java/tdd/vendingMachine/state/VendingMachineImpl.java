@@ -8,17 +8,21 @@ import tdd.vendingMachine.domain.exception.CashDispenserFullException;
 import tdd.vendingMachine.domain.exception.NotEnoughSlotsAvailableDispenserException;
 import tdd.vendingMachine.domain.exception.ShelfEmptyNotAvailableForSelectionException;
 import tdd.vendingMachine.domain.exception.UnableToProvideBalanceException;
-import tdd.vendingMachine.util.Constants;
-import tdd.vendingMachine.validation.VendingMachineValidator;
+import tdd.vendingMachine.view.DisplayEvent;
 import tdd.vendingMachine.view.VendingMachineMessages;
 
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 
-public final class VendingMachineImpl implements VendingMachine {
+public final class VendingMachineImpl implements VendingSession {
 
     private static final Logger logger = Logger.getLogger(VendingMachineImpl.class);
 
+    /**
+     * Ceiling used for the change reachability table when the configuration provides none
+     */
+    private static final int DEFAULT_CHANGE_REACHABILITY_CEILING = 1000;
+
     private final VendingMachineConfiguration vendingMachineConfiguration;
 
     //States
@@ -28,27 +32,61 @@ public final class VendingMachineImpl implements VendingMachine {
     private final State noCreditSelectedProductState;
     private final State creditNotSelectedProductState;
     private final State technicalErrorState;
+    private final StateTransitionTable transitionTable;
 
     //states
     private final VendingMachineDisplay display;
     private final AtomicInteger credit;
-    private final Stack<Coin> creditStack;
-    private final Map<Integer, Shelf<Product>> productShelves;
-    private final Map<Coin, Shelf<Coin>> coinShelves;
+    private final CreditEscrow creditEscrow;
+    private final SharedInventory inventory;
+    private final ProductInventory productInventory;
+    private final CoinDispenser coinDispenser;
 
     //mutable fields
     private Shelf<Product> selectedShelf;
     private State currentState;
+    private final List<TransactionListener> transactionListeners;
+    private TransactionListener transactionListener;
+
+    /**
+     * Builds a machine reading its own configuration from file, {@link VendingMachineFactory} builds machines
+     * sharing the configuration snapshot instead
+     * @param productShelves the product shelves
+     * @param coinDispenser the coin dispenser
+     */
+    VendingMachineImpl(@NonNull Map<Integer, Shelf<Product>> productShelves, @NonNull CoinDispenser coinDispenser) {
+        this(productShelves, coinDispenser, new BoundedChangeMaker());
+    }
 
-    VendingMachineImpl(@NonNull Map<Integer, Shelf<Product>> productShelves, @NonNull Map<Coin, Shelf<Coin>> coinShelves) {
-        vendingMachineConfiguration = new VendingMachineConfiguration();
-        VendingMachineValidator.validateNewVendingMachineParameters(vendingMachineConfiguration, productShelves, coinShelves);
-        this.productShelves = productShelves;
-        this.coinShelves = Collections.unmodifiableMap(coinShelves);
+    VendingMachineImpl(@NonNull Map<Integer, Shelf<Product>> productShelves, @NonNull CoinDispenser coinDispenser,
+                       @NonNull ChangeMaker changeMaker) {
+        this(new VendingMachineConfiguration(), productShelves, coinDispenser, changeMaker);
+    }
+
+    private VendingMachineImpl(VendingMachineConfiguration vendingMachineConfiguration, Map<Integer, Shelf<Product>> productShelves,
+                               CoinDispenser coinDispenser, ChangeMaker changeMaker) {
+        this(vendingMachineConfiguration, SharedInventory.build(vendingMachineConfiguration, productShelves, coinDispenser,
+            changeMaker, provideChangeReachabilityCeiling(vendingMachineConfiguration)));
+    }
+
+    /**
+     * Builds a machine operating the given inventory, possibly shared with other sessions, with an already loaded
+     * configuration snapshot
+     * @param vendingMachineConfiguration the configuration
+     * @param inventory the inventory, already validated
+     */
+    VendingMachineImpl(@NonNull VendingMachineConfiguration vendingMachineConfiguration, @NonNull SharedInventory inventory) {
+        this.vendingMachineConfiguration = vendingMachineConfiguration;
+        this.inventory = inventory;
+        this.productInventory = inventory.getProductInventory();
+        this.coinDispenser = inventory.getCoinDispenser();
         this.credit = new AtomicInteger(0);
         this.selectedShelf = null;
+        this.transactionListeners = new ArrayList<>(2);
+        this.transactionListener = TransactionListener.NONE;
         this.display = new VendingMachineDisplay();
-        this.creditStack = new Stack<>();
+        this.creditEscrow = new CreditEscrow();
+        inventory.registerEscrow(creditEscrow);
 
         this.soldOutState = new SoldOutState(this);
         this.readyState = new ReadyState(this);
@@ -56,18 +94,92 @@ public final class VendingMachineImpl implements VendingMachine {
         this.insufficientCreditState = new InsufficientCreditState(this);
         this.creditNotSelectedProductState = new CreditNotSelectedProductState(this);
         this.technicalErrorState = new TechnicalErrorState(this);
+        this.transitionTable = StateTransitionTable.build(soldOutState, readyState, insufficientCreditState,
+            creditNotSelectedProductState, noCreditSelectedProductState, technicalErrorState,
+            !vendingMachineConfiguration.isFastTransitionsEnabled());
 
-        int availableProducts = productShelves.values().stream()
-            .mapToInt(Shelf::getItemCount)
-            .reduce(Constants.SUM_INT_IDENTITY, Constants.SUM_INT_BINARY_OPERATOR);
-        this.currentState = availableProducts > 0 ? readyState : soldOutState;
+        this.currentState = productInventory.isSoldOut() ? soldOutState : readyState;
     }
 
-    public final void insertCoin(Coin money) { currentState.insertCoin(money); }
+    /**
+     * The ceiling of the change reachability table given by the configuration or the default one
+     * @param vendingMachineConfiguration the configuration
+     * @return the ceiling in cents
+     */
+    static int provideChangeReachabilityCeiling(VendingMachineConfiguration vendingMachineConfiguration) {
+        int reachabilityCeiling = vendingMachineConfiguration.getChangeReachabilityCeiling();
+        return reachabilityCeiling > 0 ? reachabilityCeiling : DEFAULT_CHANGE_REACHABILITY_CEILING;
+    }
+
+    @Override
+    public final void insertCoin(Coin money) {
+        applyPublishedConfigurationOnTransactionStart();
+        syncIdleState();
+        currentState.insertCoin(money);
+    }
 
-    public final void selectShelfNumber(int shelfNumber) { currentState.selectShelfNumber(shelfNumber); }
+    @Override
+    public final void selectShelfNumber(int shelfNumber) {
+        applyPublishedConfigurationOnTransactionStart();
+        syncIdleState();
+        currentState.selectShelfNumber(shelfNumber);
+    }
+
+    /**
+     * Picks up the shelf capacities of a newly published configuration when no transaction is in progress
+     */
+    private void applyPublishedConfigurationOnTransactionStart() {
+        if (credit.get() == 0 && selectedShelf == null) {
+            inventory.applyPublishedConfiguration();
+        }
+    }
+
+    @Override
+    public final void cancel() {
+        syncIdleState();
+        currentState.cancel();
+    }
+
+    /**
+     * Resolves the current state, a session with no customer operating it is ready or sold out depending on the
+     * products left on the inventory, which other sessions sharing it may have sold or restocked
+     * @return the current state
+     */
+    private State resolveCurrentState() {
+        State state = currentState;
+        if (state == readyState || state == soldOutState) {
+            return productInventory.isSoldOut() ? soldOutState : readyState;
+        }
+        return state;
+    }
+
+    /**
+     * Moves a session with no customer operating it to the ready or sold out state of the inventory, notifying
+     * the listener of the change
+     */
+    private void syncIdleState() {
+        State state = resolveCurrentState();
+        if (state != currentState) {
+            currentState = state;
+            transactionListener.onStateChange(state == soldOutState ? StateEnum.SOLD_OUT : StateEnum.READY);
+        }
+    }
 
-    public final void cancel() { currentState.cancel(); }
+    @Override
+    public final void restockShelf(int shelfNumber, int amount) throws NoSuchElementException, NotEnoughSlotsAvailableDispenserException {
+        validShelfNumber(shelfNumber);
+        inventory.applyPublishedConfiguration();
+        inventory.lock();
+        try {
+            inventory.getShelf(shelfNumber).provision(amount);
+            if (amount > 0) {
+                transactionListener.onRestock(shelfNumber, amount);
+            }
+        } finally {
+            inventory.unlock();
+        }
+        syncIdleState();
+    }
 
     /**
      * Throws exception if given shelfNumber is invalid
@@ -76,7 +188,7 @@ public final class VendingMachineImpl implements VendingMachine {
      * @throws NoSuchElementException if shelf is not available on the vending machine
      */
     private void validShelfNumber(int shelfNumber) throws NoSuchElementException {
-        if (null == productShelves.get(shelfNumber)) {
+        if (null == inventory.getShelf(shelfNumber)) {
             throw new NoSuchElementException(
                 VendingMachineMessages.buildWarningMessageWithSubject(VendingMachineMessages.SHELF_NUMBER_NOT_AVAILABLE.label, shelfNumber, false)
             );
@@ -95,13 +207,18 @@ public final class VendingMachineImpl implements VendingMachine {
     }
 
     /**
-     * Utility method to evaluate if there is room to store given coin
+     * Utility method to evaluate if there is room to store given coin, the slots held by the coins on the
+     * escrow of every session sharing the dispenser are not available
      * @param coin coin to insert in the machine
      * @return true if room is available for given coin
      */
     final boolean dispenserHasCoinSlotAvailable(final Coin coin) {
-        long existingCoinsOnCreditStack = creditStack.stream().filter(coin::equals).count();
-        return coinShelves.get(coin).countFreeSlots() - existingCoinsOnCreditStack > 0;
+        inventory.lock();
+        try {
+            return coinDispenser.countFreeSlots(coin) - inventory.countReservedSlots(coin) > 0;
+        } finally {
+            inventory.unlock();
+        }
     }
 
     /**
@@ -109,73 +226,104 @@ public final class VendingMachineImpl implements VendingMachine {
      * @return a int resulting of the sum of every coin.shelf.denomination times amounts of coins of that denomination
      */
     final int countCashInDispenser() {
-        return coinShelves.entrySet().stream()
-            .filter(entry -> !entry.getValue().isEmpty())
-            .mapToInt(nonEmptyEntry -> nonEmptyEntry.getKey().denomination * nonEmptyEntry.getValue().getItemCount())
-            .reduce(Constants.SUM_INT_IDENTITY, Constants.SUM_INT_BINARY_OPERATOR);
+        inventory.lock();
+        try {
+            return coinDispenser.totalCash();
+        } finally {
+            inventory.unlock();
+        }
     }
 
     /**
      * Validates if is possible to give change when pending balance < 0 [the sames as if credit is
      * less than selectedProduct.price] based on the existing cash on the coin dispenser.
+     * The reachability table answers amounts up to its ceiling with a single lookup, only amounts beyond it are planned.
      * @param changeRequested the requested amount to return from the cash dispenser
      * @return true if possible or false otherwise
      */
     final boolean canGiveChangeFromCashDispenser(int changeRequested) {
-        if (changeRequested > 0) return true;
-        if (countCashInDispenser() <= Math.abs(changeRequested)) return false;
-
-        Stack<Coin> changeStack = new Stack<>();
-        int pending = Math.abs(changeRequested);
-        Iterator<Coin> order = Coin.descendingDenominationIterable().iterator();
-        while(pending > 0 && order.hasNext()) {
-            Coin coin = order.next();
-            Shelf<Coin> coinShelf = coinShelves.get(coin);
-            while(!coinShelf.isEmpty() && pending >= coin.denomination) {
-                coinShelf.dispense();
-                changeStack.push(coin);
-                pending -= changeStack.peek().denomination;
+        if (changeRequested >= 0) return true;
+        inventory.lock();
+        try {
+            ChangeReachability changeReachability = inventory.getChangeReachability();
+            if (changeReachability.isTracked(-changeRequested)) {
+                return changeReachability.isReachable(-changeRequested);
             }
+            return planChange(changeRequested, false).isPresent();
+        } finally {
+            inventory.unlock();
         }
-        while(!changeStack.isEmpty()) { //provision back the cash dispenser with exact amount taken
-            coinShelves.get(changeStack.pop()).provision();
+    }
+
+    /**
+     * Plans the change for the given balance from a snapshot of the cash dispenser, the dispenser is not modified.
+     * Must be called holding the commit lock of the inventory.
+     * @param balance the pending balance, a negative value represents the change to give
+     * @param includeEscrow true to plan as if the coins on the credit escrow were already on the dispenser
+     * @return the plan to give the change or empty if not possible with the existing cash on the coin dispenser
+     */
+    private Optional<ChangePlan> planChange(int balance, boolean includeEscrow) {
+        if (balance >= 0) return Optional.of(ChangePlan.NO_CHANGE);
+        int change = Math.abs(balance);
+        int availableCash = coinDispenser.totalCash() + (includeEscrow ? credit.get() : 0);
+        if (availableCash < change) return Optional.empty();
+        int[] availableCoins = inventory.snapshotCoinCounts();
+        if (includeEscrow) {
+            for (int order = 0; order < availableCoins.length; order++) {
+                availableCoins[order] += creditEscrow.countCoins(Coin.retrieveCoinByOrder(order));
+            }
         }
-        return pending == 0;
+        return inventory.getChangeMaker().makeChange(availableCoins, change);
     }
 
     /**
-     * Moves the money from the stack to the vending machine's cash dispenser, the credit
+     * Moves the money from the credit escrow to the vending machine's cash dispenser, the credit
      * remains the same since no product has been given.
      * @throws NotEnoughSlotsAvailableDispenserException if unable to provision because no free slots are available
      */
     final void provisionCreditStackCashToDispenser() throws NotEnoughSlotsAvailableDispenserException {
-        for (Coin coin: creditStack) {
-            coinShelves.get(coin).provision();
+        inventory.lock();
+        try {
+            creditEscrow.provisionTo(coinDispenser);
+            transactionListener.onEscrowProvisioned();
+        } finally {
+            inventory.unlock();
         }
     }
+
     /**
      * Drops the pending balance to the coin dispense bucket if is possible to build the amount from the
-     * coins available on the cash dispenser otherwise throws an exception.
+     * coins available on the cash dispenser otherwise throws an exception. The change is planned once from a
+     * snapshot of the dispenser and then applied, the dispenser is untouched if no plan exists.
      * @throws UnableToProvideBalanceException if is not possible to provide such amount from the cash dispenser.
      */
     final void dispenseCurrentBalance() throws UnableToProvideBalanceException {
         int balance = calculatePendingBalance();
-        if (!canGiveChangeFromCashDispenser(balance)) {
-            throw new UnableToProvideBalanceException(VendingMachineMessages.NOT_ENOUGH_CASH_TO_GIVE_CHANGE.label, balance);
-        }
-        int pending = Math.abs(balance);
-        Iterator<Coin> order = Coin.descendingDenominationIterable().iterator();
-        while(pending > 0 && order.hasNext()) {
-            Coin coin = order.next();
-            Shelf<Coin> coinShelf = coinShelves.get(coin);
-            while(!coinShelf.isEmpty() && pending >= coin.denomination) {
-                coinShelf.dispense();
+        ChangePlan changePlan;
+        inventory.lock();
+        try {
+            changePlan = planChange(balance, false)
+                .orElseThrow(() -> new UnableToProvideBalanceException(VendingMachineMessages.NOT_ENOUGH_CASH_TO_GIVE_CHANGE.label, balance));
+            coinDispenser.dispense(changePlan);
+            transactionListener.onChangeDispensed(changePlan);
+        } finally {
+            inventory.unlock();
+        }
+        displayChange(changePlan);
+    }
+
+    /**
+     * Shows on the display every coin of the given plan dropped to the coin dispense bucket and clears the credit
+     * @param changePlan the plan dispensed for the current pending balance
+     */
+    private void displayChange(ChangePlan changePlan) {
+        int pending = changePlan.getAmount();
+        for (int order = Coin.countDenominations() - 1; order >= 0; order--) {
+            Coin coin = Coin.retrieveCoinByOrder(order);
+            for (int i = 0; i < changePlan.coinsOf(coin); i++) {
                 pending -= coin.denomination;
-                this.display.update(
-                    String.format("[%s] %s: %s", VendingMachineMessages.provideCashToDisplay(coin.denomination),
-                        VendingMachineMessages.PENDING_BALANCE_RETURNED_TO_BUCKET.label,
-                        VendingMachineMessages.provideCashToDisplay(-pending))
-                );
+                this.display.update(DisplayEvent.ofCash(coin.denomination,
+                    VendingMachineMessages.PENDING_BALANCE_RETURNED_TO_BUCKET, -pending));
             }
         }
         this.credit.set(0);//credit goes to zero since all the cash has been credited
@@ -188,9 +336,27 @@ public final class VendingMachineImpl implements VendingMachine {
     final void dispenseSelectedProductToBucketAndClearCreditStack() throws NoSuchElementException {
         validateSelectedProduct();
         Product product = this.selectedShelf.getType();
-        this.selectedShelf.dispense();
-        while (!creditStack.isEmpty()) creditStack.pop();
-        display.update(String.format("[%s] %s", product.getType(), VendingMachineMessages.DISPENSED_TO_BUCKET.label));
+        inventory.lock();
+        try {
+            this.selectedShelf.dispense();
+            creditEscrow.clear();
+            transactionListener.onProductDispensed(this.selectedShelf.id);
+        } finally {
+            inventory.unlock();
+        }
+        display.update(DisplayEvent.of(product.getType(), VendingMachineMessages.DISPENSED_TO_BUCKET));
+    }
+
+    /**
+     * Regular sell execution method, see {@link #trySell()}, reporting a sell not completed for lack of
+     * change as an exception.
+     * @throws UnableToProvideBalanceException If unable to provide change
+     */
+    final void attemptSell() throws UnableToProvideBalanceException {
+        if (trySell() == TransactionOutcome.NO_CHANGE) {
+            throw new UnableToProvideBalanceException(VendingMachineMessages.NOT_ENOUGH_CASH_TO_GIVE_CHANGE.label,
+                calculatePendingBalance());
+        }
     }
 
     /**
@@ -201,23 +367,64 @@ public final class VendingMachineImpl implements VendingMachine {
      *      c. dispense the product to the pickup bucket
      *      d. remove the selection of the product
      *      e. pass the machine to readyState
-     *      f. return true
-     *   or return false.
-     * @throws UnableToProvideBalanceException If unable to provide change
+     *      f. return SOLD
+     *   or return PENDING_CREDIT.
+     *  The product and the change are taken while holding the commit lock of the inventory: if another session
+     *  took the last product of the shelf meanwhile the selection is dropped and SHELF_EMPTY is returned, if the
+     *  change can not be given NO_CHANGE is returned so the caller rolls back the sell, in both cases the credit
+     *  stays on the escrow and neither the dispenser nor the shelves are modified. The sell is notified to the
+     *  listener once applied, a sell failing to provision the escrow is never recorded.
+     * @return the outcome of the sell
      */
-    final void attemptSell() throws UnableToProvideBalanceException {
-        if (this.provideSelectedProduct() != null
-            && Integer.compare(this.provideCredit(), this.provideSelectedProduct().getPrice()) >= 0) {
-            this.provisionCreditStackCashToDispenser();
-            this.dispenseCurrentBalance();
-            this.dispenseSelectedProductToBucketAndClearCreditStack();
-            this.undoProductSelection();
-            if (this.isSoldOut()) {
-                this.currentState = soldOutState;
-            } else {
-                this.setStateToReadyState();
+    final TransactionOutcome trySell() {
+        if (this.provideSelectedProduct() == null
+            || Integer.compare(this.provideCredit(), this.provideSelectedProduct().getPrice()) < 0) {
+            return TransactionOutcome.PENDING_CREDIT;
+        }
+        Product product = this.selectedShelf.getType();
+        ChangePlan changePlan;
+        inventory.lock();
+        try {
+            if (this.selectedShelf.isEmpty()) {
+                this.undoProductSelection();
+                return TransactionOutcome.SHELF_EMPTY;
+            }
+            Optional<ChangePlan> plan = planChange(calculatePendingBalance(), true);
+            if (!plan.isPresent()) {
+                return TransactionOutcome.NO_CHANGE;
             }
+            changePlan = plan.get();
+            creditEscrow.provisionTo(coinDispenser);
+            coinDispenser.dispense(changePlan);
+            this.selectedShelf.dispense();
+            creditEscrow.clear();
+            transactionListener.onSell(this.selectedShelf.id, changePlan);
+        } finally {
+            inventory.unlock();
+        }
+        this.displayChange(changePlan);
+        display.update(DisplayEvent.of(product.getType(), VendingMachineMessages.DISPENSED_TO_BUCKET));
+        this.selectedShelf = null;//cleared by the sell notified to the listener
+        this.sendStateTo(this.isSoldOut() ? StateEnum.SOLD_OUT : StateEnum.READY);
+        return TransactionOutcome.SOLD;
+    }
+
+    /**
+     * Runs {@link #trySell()} and compensates a sell not completed: without change the sell is rolled back
+     * returning the credit, if the shelf was emptied by another session the credit is kept so the customer
+     * selects another product.
+     * @return the outcome of the sell
+     */
+    final TransactionOutcome sellOrCompensate() {
+        TransactionOutcome outcome = trySell();
+        if (outcome == TransactionOutcome.NO_CHANGE) {
+            rollBackSell(VendingMachineMessages.NOT_ENOUGH_CASH_TO_GIVE_CHANGE.label, calculatePendingBalance());
+        } else if (outcome == TransactionOutcome.SHELF_EMPTY) {
+            showMessageOnDisplay(VendingMachineMessages.buildWarningMessageWithoutSubject(
+                VendingMachineMessages.UNABLE_TO_SELECT_EMPTY_SHELF.label));
+            sendStateTo(StateEnum.CREDIT_NOT_SELECTED_PRODUCT);
         }
+        return outcome;
     }
 
     /**
@@ -225,16 +432,42 @@ public final class VendingMachineImpl implements VendingMachine {
      * the total cash to pickup cash bucket and compensate the cash dispenser
      */
     final void returnCreditStackToBucketUpdatingCashDispenser() {
-        while (!creditStack.isEmpty()) {
-            this.coinShelves.get(creditStack.peek()).dispense();
-            this.credit.addAndGet(-creditStack.peek().denomination);
-            display.update(String.format("[%s] %s: %s", creditStack.pop().label, VendingMachineMessages.RETURN_TO_BUCKET_CREDIT.label,
-                VendingMachineMessages.provideCashToDisplay(this.credit.get())));
+        for (int order = Coin.countDenominations() - 1; order >= 0; order--) {
+            Coin coin = Coin.retrieveCoinByOrder(order);
+            int coinsToReturn = creditEscrow.countCoins(coin);
+            if (coinsToReturn > 0) {
+                inventory.lock();
+                try {
+                    this.coinDispenser.dispense(coin, coinsToReturn);
+                    transactionListener.onCoinsTakenFromDispenser(coin, coinsToReturn);
+                } finally {
+                    inventory.unlock();
+                }
+                returnEscrowCoinsToBucket(coin);
+            }
+        }
+    }
+
+    /**
+     * Returns every coin of the given denomination held on the credit escrow to the pickup bucket,
+     * discounting them from the credit.
+     * @param coin the coin to return
+     */
+    private void returnEscrowCoinsToBucket(Coin coin) {
+        int coinsToReturn = creditEscrow.removeAll(coin);
+        for (int i = 0; i < coinsToReturn; i++) {
+            this.credit.addAndGet(-coin.denomination);
+            display.update(DisplayEvent.of(DisplayEvent.Layout.SUBJECT_LABEL_CASH, coin.label,
+                VendingMachineMessages.RETURN_TO_BUCKET_CREDIT, this.credit.get()));
+        }
+        if (coinsToReturn > 0) {
+            transactionListener.onRefund(coin, coinsToReturn);
         }
     }
 
     /**
-     * Compensation task meant to be run in case of failure to perform sell
+     * Compensation task meant to be run in case of failure to perform sell, since a sell not completed leaves the
+     * dispenser untouched the credit escrow is returned to the pickup bucket as is.
      * if state unable to perform task machine will enter on technical error state
      * @param exceptionMessage the exception message received from sell transaction
      * @param pendingBalance the current pending balance
@@ -249,29 +482,45 @@ public final class VendingMachineImpl implements VendingMachine {
             )
         );
         this.undoProductSelection();
-        this.returnCreditStackToBucketUpdatingCashDispenser();
-        this.setStateToReadyState();
+        for (int order = Coin.countDenominations() - 1; order >= 0; order--) {
+            returnEscrowCoinsToBucket(Coin.retrieveCoinByOrder(order));
+        }
+        this.sendStateTo(this.isSoldOut() ? StateEnum.SOLD_OUT : StateEnum.READY);
     }
 
     @Override
     public final State provideCurrentState() {
-        return currentState;
+        return resolveCurrentState();
     }
 
     @Override
     public final void addCoinToCredit(Coin coin) throws CashDispenserFullException {
-        if (!dispenserHasCoinSlotAvailable(coin)) {
+        if (tryAddCoinToCredit(coin) == TransactionOutcome.DISPENSER_FULL) {
             throw new CashDispenserFullException(VendingMachineMessages.CASH_NOT_ACCEPTED_DISPENSER_FULL.label, coin.denomination);
         }
-        credit.addAndGet(coin.denomination);
-        creditStack.push(coin);
+    }
+
+    @Override
+    public final TransactionOutcome tryAddCoinToCredit(Coin coin) {
+        inventory.lock();
+        try {
+            if (!dispenserHasCoinSlotAvailable(coin)) {
+                return TransactionOutcome.DISPENSER_FULL;
+            }
+            creditEscrow.add(coin);
+            credit.addAndGet(coin.denomination);
+            transactionListener.onCredit(coin);
+        } finally {
+            inventory.unlock();
+        }
         if (null == selectedShelf) {
-            this.display.update(String.format("%s %s: %s", coin.label, VendingMachineMessages.CASH_ACCEPTED_NEW_CREDIT.label,
-                VendingMachineMessages.provideCashToDisplay(credit.get())));
+            this.display.update(DisplayEvent.of(DisplayEvent.Layout.INLINE_SUBJECT_LABEL_CASH, coin.label,
+                VendingMachineMessages.CASH_ACCEPTED_NEW_CREDIT, credit.get()));
         } else {
-            this.display.update(String.format("[%s], %s: %s", selectedShelf.getType().getType(), VendingMachineMessages.PENDING.label,
-                VendingMachineMessages.provideCashToDisplay(calculatePendingBalance())));
+            this.display.update(DisplayEvent.of(DisplayEvent.Layout.SUBJECT_COMMA_LABEL_CASH, selectedShelf.getType().getType(),
+                VendingMachineMessages.PENDING, calculatePendingBalance()));
         }
+        return TransactionOutcome.ACCEPTED;
     }
 
     @Override
@@ -282,10 +531,10 @@ public final class VendingMachineImpl implements VendingMachine {
     @Override
     public final void displayProductPrice(int shelfNumber) throws NoSuchElementException {
         validShelfNumber(shelfNumber);
-        Product product = productShelves.get(shelfNumber).getType();
+        Product product = inventory.getShelf(shelfNumber).getType();
         int toDisplay = this.selectedShelf == null ? product.getPrice() : calculatePendingBalance();
-        String message = this.selectedShelf == null ? VendingMachineMessages.PRICE.label : VendingMachineMessages.PENDING.label;
-        display.update(String.format("[%s] %s: %s", product.provideType(), message, VendingMachineMessages.provideCashToDisplay(toDisplay)));
+        VendingMachineMessages message = this.selectedShelf == null ? VendingMachineMessages.PRICE : VendingMachineMessages.PENDING;
+        display.update(DisplayEvent.of(DisplayEvent.Layout.SUBJECT_LABEL_CASH, product.provideType(), message, toDisplay));
     }
 
     @Override
@@ -300,46 +549,56 @@ public final class VendingMachineImpl implements VendingMachine {
 
     @Override
     public final void undoProductSelection() {
-        this.selectedShelf = null;
+        if (this.selectedShelf != null) {
+            this.selectedShelf = null;
+            transactionListener.onSelection(-1);
+        }
     }
 
     @Override
     public final void returnAllCreditToBucket() {
-        if (creditStack.isEmpty()) {
-            display.update(VendingMachineMessages.NO_CREDIT_AVAILABLE.label);
+        if (creditEscrow.isEmpty()) {
+            display.update(DisplayEvent.of(VendingMachineMessages.NO_CREDIT_AVAILABLE));
         } else {
-            while(!creditStack.isEmpty()) {
-                credit.addAndGet(-creditStack.peek().denomination);
-                display.update(String.format("[%s] %s: %s", creditStack.pop().label, VendingMachineMessages.RETURN_TO_BUCKET_CREDIT.label,
-                    VendingMachineMessages.provideCashToDisplay(this.credit.get())));
+            for (int order = Coin.countDenominations() - 1; order >= 0; order--) {
+                returnEscrowCoinsToBucket(Coin.retrieveCoinByOrder(order));
             }
         }
     }
 
     @Override
     public final void selectProductGivenShelfNumber(int shelfNumber) throws NoSuchElementException, ShelfEmptyNotAvailableForSelectionException {
-        validShelfNumber(shelfNumber);
-        Shelf<Product> shelf = productShelves.get(shelfNumber);
-        if (shelf.getItemCount() <= 0) {
+        if (trySelectProductGivenShelfNumber(shelfNumber) == TransactionOutcome.SHELF_EMPTY) {
             throw new ShelfEmptyNotAvailableForSelectionException(
                 VendingMachineMessages.UNABLE_TO_SELECT_EMPTY_SHELF.label, shelfNumber);
         }
+    }
+
+    @Override
+    public final TransactionOutcome trySelectProductGivenShelfNumber(int shelfNumber) throws NoSuchElementException {
+        validShelfNumber(shelfNumber);
+        Shelf<Product> shelf = inventory.getShelf(shelfNumber);
+        if (shelf.getItemCount() <= 0) {
+            return TransactionOutcome.SHELF_EMPTY;
+        }
         this.selectedShelf = shelf;
+        transactionListener.onSelection(shelfNumber);
+        return TransactionOutcome.SELECTED;
     }
 
     @Override
     public final boolean isCreditStackEmpty() {
-        return creditStack.empty();
+        return creditEscrow.isEmpty();
     }
 
     @Override
     public boolean isSoldOut() {
-        return countTotalAmountProducts() == 0;
+        return productInventory.isSoldOut();
     }
 
     @Override
     public final int getCreditStackSize() {
-        return creditStack.size();
+        return creditEscrow.countCoins();
     }
 
     @Override
@@ -355,86 +614,236 @@ public final class VendingMachineImpl implements VendingMachine {
 
     @Override
     public int countTotalAmountProducts() {
-        return productShelves.values().stream()
-            .mapToInt(Shelf::getItemCount)
-            .reduce(Constants.SUM_INT_IDENTITY, Constants.SUM_INT_BINARY_OPERATOR);
+        return productInventory.countProducts();
+    }
+
+    @Override
+    public int findNextAvailableShelfNumber(int fromShelfNumber) {
+        inventory.lock();
+        try {
+            return productInventory.nextAvailableShelf(fromShelfNumber);
+        } finally {
+            inventory.unlock();
+        }
+    }
+
+    @Override
+    public boolean isExactChangeOnly() {
+        inventory.lock();
+        try {
+            return inventory.getChangeReachability().isExactChangeOnly();
+        } finally {
+            inventory.unlock();
+        }
     }
 
     @Override
     public int countProductsOnShelf(int shelfNumber) throws NoSuchElementException{
         validShelfNumber(shelfNumber);
-        return productShelves.get(shelfNumber).getItemCount();
+        return inventory.getShelf(shelfNumber).getItemCount();
+    }
+
+    @Override
+    public void sendStateTo(@NonNull StateEnum state) {
+        syncIdleState();
+        State previous = currentState;
+        this.currentState = transitionTable.transitionTo(previous, state, this);
+        if (currentState != previous) {
+            transactionListener.onStateChange(state);
+        }
     }
 
     /**
-     * Attempts to set the vending machine to soldOut state
+     * The current state as enum
+     * @return the state enum
      */
-    private void setStateToSoldOutState() {
-        VendingMachineValidator.validateToSoldOutState(this);
-        this.currentState = soldOutState;
+    final StateEnum provideCurrentStateEnum() {
+        return transitionTable.stateOf(resolveCurrentState());
     }
 
     /**
-     * Attempts to send the vending machine to ReadyState
+     * The number of the selected shelf
+     * @return the shelf number or -1 if no product is selected
      */
-    private void setStateToReadyState() {
-        VendingMachineValidator.validateToReadyState(this);
-        this.currentState = readyState;
+    final int provideSelectedShelfNumber() {
+        return selectedShelf == null ? -1 : selectedShelf.id;
     }
 
     /**
-     * Attempts to send the vending machine to InsufficientCreditState
+     * Provides the amount of coins of the given denomination held on the credit escrow
+     * @param coin the coin to check
+     * @return int
      */
-    private void setStateToInsufficientCreditState() {
-        VendingMachineValidator.validateToInsufficientCreditState(this);
-        this.currentState = insufficientCreditState;
+    final int countEscrowCoins(Coin coin) {
+        return creditEscrow.countCoins(coin);
+    }
+
+    final SharedInventory getInventory() {
+        return inventory;
     }
 
     /**
-     * Attempts to send the vending machine to NoCreditSelectedProductState
+     * Restores the credit, the escrow, the selection and the state of a session, meant for machines just built
+     * from a snapshot. The invariant of the target state is checked against the restored session unless trusted.
+     * @param restoredCredit the credit
+     * @param escrowCoinCounts the amount of coins held on the escrow indexed by coin order
+     * @param selectedShelfNumber the selected shelf number or -1 if no product is selected
+     * @param state the state of the session
+     * @param checkingState false to trust a session captured between two steps of an operation, which may not
+     *                      qualify for its state until the following steps are replayed
+     * @throws NoSuchElementException if the selected shelf does not exist
+     * @throws IllegalStateException if checking the state and the session does not qualify for it
      */
-    private void setStateToNoCreditSelectedProductState() {
-        VendingMachineValidator.validateToNoCreditSelectedProductState(this);
-        this.currentState = noCreditSelectedProductState;
+    final void restoreSession(int restoredCredit, @NonNull int[] escrowCoinCounts, int selectedShelfNumber,
+                              @NonNull StateEnum state, boolean checkingState) throws NoSuchElementException, IllegalStateException {
+        if (restoredCredit < 0) throw new InputMismatchException("Credit must be non-negative: " + restoredCredit);
+        if (selectedShelfNumber >= 0) {
+            validShelfNumber(selectedShelfNumber);
+        }
+        creditEscrow.clear();
+        for (int order = 0; order < escrowCoinCounts.length; order++) {
+            Coin coin = Coin.retrieveCoinByOrder(order);
+            for (int i = 0; i < escrowCoinCounts[order]; i++) {
+                creditEscrow.add(coin);
+            }
+        }
+        credit.set(restoredCredit);
+        selectedShelf = selectedShelfNumber >= 0 ? inventory.getShelf(selectedShelfNumber) : null;
+        if (checkingState) {
+            currentState = transitionTable.enter(state, this);
+        } else {
+            currentState = transitionTable.stateFor(state);
+        }
     }
 
     /**
-     * Attempts to send the vending machine to NotSelectedProductState
+     * Adds a listener notified after every change of the machine, see {@link TransactionListener}. Listeners are
+     * notified in the order they were added, the machine must not be operating meanwhile.
+     * @param transactionListener the listener
+     * @throws IllegalStateException if the listener was already added
      */
-    private void setStateToCreditNotSelectedProductState() {
-        VendingMachineValidator.validateCreditNotSelectedProductState(this);
-        this.currentState = creditNotSelectedProductState;
+    final void addTransactionListener(@NonNull TransactionListener transactionListener) throws IllegalStateException {
+        if (transactionListeners.contains(transactionListener)) {
+            throw new IllegalStateException("Transaction listener already added: " + transactionListener);
+        }
+        transactionListeners.add(transactionListener);
+        this.transactionListener = CompositeTransactionListener.of(transactionListeners);
     }
 
     /**
-     * Sets the machine state to technical error state
+     * Removes a listener added, the machine must not be operating meanwhile
+     * @param transactionListener the listener
+     * @return true if the listener was added
      */
-    private void setStateToTechnicalErrorState() {
-        this.currentState = technicalErrorState;
+    final boolean removeTransactionListener(@NonNull TransactionListener transactionListener) {
+        boolean removed = transactionListeners.remove(transactionListener);
+        this.transactionListener = CompositeTransactionListener.of(transactionListeners);
+        return removed;
     }
 
-    @Override
-    public void sendStateTo(StateEnum state) {
-        switch (state) {
-            case TECHNICAL_ERROR:
-                setStateToTechnicalErrorState();
-                break;
-            case SOLD_OUT:
-                setStateToSoldOutState();
-                break;
-            case READY:
-                setStateToReadyState();
-                break;
-            case INSUFFICIENT_CREDIT:
-                setStateToInsufficientCreditState();
-                break;
-            case CREDIT_NOT_SELECTED_PRODUCT:
-                setStateToCreditNotSelectedProductState();
-                break;
-            case NO_CREDIT_SELECTED_PRODUCT:
-                setStateToNoCreditSelectedProductState();
-                break;
-            default: throw new NoSuchElementException("the given state was not found in the system");
+    /**
+     * Replays the changes notified to a {@link TransactionListener}, applying their effect without checking the
+     * rules of the states, notifying the listener nor updating the display. Meant for machines restored from a
+     * snapshot taken before the first change replayed.
+     */
+    final class Replay implements TransactionListener {
+
+        @Override
+        public void onCredit(Coin coin) {
+            creditEscrow.add(coin);
+            credit.addAndGet(coin.denomination);
+        }
+
+        @Override
+        public void onSelection(int shelfNumber) {
+            if (shelfNumber >= 0) {
+                validShelfNumber(shelfNumber);
+            }
+            selectedShelf = shelfNumber >= 0 ? inventory.getShelf(shelfNumber) : null;
+        }
+
+        @Override
+        public void onSell(int shelfNumber, ChangePlan changePlan) {
+            validShelfNumber(shelfNumber);
+            inventory.lock();
+            try {
+                creditEscrow.provisionTo(coinDispenser);
+                coinDispenser.dispense(changePlan);
+                inventory.getShelf(shelfNumber).dispense();
+                creditEscrow.clear();
+            } finally {
+                inventory.unlock();
+            }
+            credit.set(0);
+            selectedShelf = null;
+        }
+
+        @Override
+        public void onRefund(Coin coin, int amount) {
+            if (creditEscrow.countCoins(coin) != amount) {
+                throw new IllegalStateException("Escrow does not hold the refunded coins: " + coin.label + " " + amount);
+            }
+            creditEscrow.removeAll(coin);
+            credit.addAndGet(-coin.denomination * amount);
+        }
+
+        @Override
+        public void onRestock(int shelfNumber, int amount) {
+            validShelfNumber(shelfNumber);
+            inventory.lock();
+            try {
+                inventory.getShelf(shelfNumber).provision(amount);
+            } finally {
+                inventory.unlock();
+            }
+        }
+
+        @Override
+        public void onStateChange(StateEnum state) {
+            currentState = transitionTable.transitionTo(resolveCurrentState(), state, VendingMachineImpl.this);
+        }
+
+        @Override
+        public void onEscrowProvisioned() {
+            inventory.lock();
+            try {
+                creditEscrow.provisionTo(coinDispenser);
+            } finally {
+                inventory.unlock();
+            }
+        }
+
+        @Override
+        public void onChangeDispensed(ChangePlan changePlan) {
+            inventory.lock();
+            try {
+                coinDispenser.dispense(changePlan);
+            } finally {
+                inventory.unlock();
+            }
+            credit.set(0);
+        }
+
+        @Override
+        public void onProductDispensed(int shelfNumber) {
+            validShelfNumber(shelfNumber);
+            inventory.lock();
+            try {
+                inventory.getShelf(shelfNumber).dispense();
+                creditEscrow.clear();
+            } finally {
+                inventory.unlock();
+            }
+        }
+
+        @Override
+        public void onCoinsTakenFromDispenser(Coin coin, int amount) {
+            inventory.lock();
+            try {
+                coinDispenser.dispense(coin, amount);
+            } finally {
+                inventory.unlock();
+            }
         }
     }
 }
@@ -0,0 +1,39 @@
+package tdd.vendingMachine.state;
+
+import tdd.vendingMachine.VendingMachine;
+import tdd.vendingMachine.domain.Coin;
+
+/**
+ * @author Agustin Cabra on 3/7/2017.
+ * @since 2.1
+ * A customer panel of a vending machine. The session holds the credit, the selected product and the state of
+ * one customer and operates an inventory that may be shared with the sessions of other panels of the same unit.
+ */
+public interface VendingSession extends VendingMachine {
+
+    /**
+     * Inserts a coin on the panel
+     * @param money the coin inserted
+     */
+    void insertCoin(Coin money);
+
+    /**
+     * Selects a shelf on the panel
+     * @param shelfNumber the shelf selected
+     */
+    void selectShelfNumber(int shelfNumber);
+
+    /**
+     * Cancels the current operation on the panel
+     */
+    void cancel();
+
+    /**
+     * Provisions products to a shelf, a sold out session with no customer operating it becomes ready again
+     * @param shelfNumber the shelf to restock
+     * @param amount the amount of products to provision
+     * @throws java.util.NoSuchElementException if the machine has no such shelf
+     * @throws tdd.vendingMachine.domain.exception.NotEnoughSlotsAvailableDispenserException if the shelf has no room for the products
+     */
+    void restockShelf(int shelfNumber, int amount);
+}
@@ -0,0 +1,374 @@
+package tdd.vendingMachine.util;
+
+import lombok.NonNull;
+import tdd.vendingMachine.dto.CashImport;
+import tdd.vendingMachine.dto.ProductImport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.InputMismatchException;
+import java.util.function.Consumer;
+
+/**
+ * @author Agustin Cabra on 3/9/2017.
+ * @since 2.1
+ * Streaming reader of the product and cash CSV imports. Rows are parsed straight from a {@link ByteBuffer}:
+ * numbers are read from the bytes without building strings, only the type or label of a row is decoded, and
+ * every import is handed to a consumer as soon as its row is parsed.
+ *
+ * Files are memory mapped one window at a time and streams are read through a fixed buffer, so the memory used
+ * does not depend on the amount of rows. A row failing to parse is reported to the error listener with its line
+ * number and skipped, the rest of the file is still imported.
+ *
+ * Product rows are {@code type,price,itemCount} and cash rows are {@code label,amount}, blank lines are ignored.
+ */
+public final class CsvImportReader {
+
+    /**
+     * Listener of the rows rejected while importing
+     */
+    @FunctionalInterface
+    public interface LineErrorListener {
+        /**
+         * @param lineNumber the line number of the rejected row, from one
+         * @param reason the reason the row was rejected
+         */
+        void onError(long lineNumber, String reason);
+    }
+
+    /**
+     * The amount of rows imported and rejected by a read
+     */
+    public static final class ImportSummary {
+        private final long imported;
+        private final long rejected;
+
+        ImportSummary(long imported, long rejected) {
+            this.imported = imported;
+            this.rejected = rejected;
+        }
+
+        public long countImported() {
+            return imported;
+        }
+
+        public long countRejected() {
+            return rejected;
+        }
+    }
+
+    /**
+     * Size of the file region mapped at once
+     */
+    static final int DEFAULT_MAPPING_WINDOW = 64 * 1024 * 1024;
+
+    /**
+     * Size of the buffer used to read streams, no row can be longer
+     */
+    static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    private CsvImportReader() {
+        throw new AssertionError("CsvImportReader should not be instantiated");
+    }
+
+    /**
+     * Reads the product imports of the given file
+     * @param file the csv file
+     * @param consumer receives every product import parsed
+     * @param errors receives every rejected row
+     * @return the amount of rows imported and rejected
+     * @throws IOException if the file can not be read
+     */
+    public static ImportSummary readProductImports(@NonNull Path file, @NonNull Consumer<? super ProductImport> consumer,
+                                                   @NonNull LineErrorListener errors) throws IOException {
+        return read(file, new LineParser<>(3, 3, CsvImportReader::toProductImport, consumer, errors), DEFAULT_MAPPING_WINDOW);
+    }
+
+    /**
+     * Reads the product imports of the given stream, the stream is not closed
+     * @param inputStream the csv stream
+     * @param consumer receives every product import parsed
+     * @param errors receives every rejected row
+     * @return the amount of rows imported and rejected
+     * @throws IOException if the stream can not be read
+     */
+    public static ImportSummary readProductImports(@NonNull InputStream inputStream, @NonNull Consumer<? super ProductImport> consumer,
+                                                   @NonNull LineErrorListener errors) throws IOException {
+        return read(inputStream, new LineParser<>(3, 3, CsvImportReader::toProductImport, consumer, errors));
+    }
+
+    /**
+     * Reads the cash imports of the given file
+     * @param file the csv file
+     * @param consumer receives every cash import parsed
+     * @param errors receives every rejected row
+     * @return the amount of rows imported and rejected
+     * @throws IOException if the file can not be read
+     */
+    public static ImportSummary readCashImports(@NonNull Path file, @NonNull Consumer<? super CashImport> consumer,
+                                                @NonNull LineErrorListener errors) throws IOException {
+        return read(file, new LineParser<>(2, 2, CsvImportReader::toCashImport, consumer, errors), DEFAULT_MAPPING_WINDOW);
+    }
+
+    /**
+     * Reads the cash imports of the given stream, the stream is not closed
+     * @param inputStream the csv stream
+     * @param consumer receives every cash import parsed
+     * @param errors receives every rejected row
+     * @return the amount of rows imported and rejected
+     * @throws IOException if the stream can not be read
+     */
+    public static ImportSummary readCashImports(@NonNull InputStream inputStream, @NonNull Consumer<? super CashImport> consumer,
+                                                @NonNull LineErrorListener errors) throws IOException {
+        return read(inputStream, new LineParser<>(2, 2, CsvImportReader::toCashImport, consumer, errors));
+    }
+
+    private static ProductImport toProductImport(LineParser<?> parser, ByteBuffer buffer) {
+        return toProductImport(parser, buffer, 0);
+    }
+
+    private static CashImport toCashImport(LineParser<?> parser, ByteBuffer buffer) {
+        return toCashImport(parser, buffer, 0);
+    }
+
+    /**
+     * Maps the fields of the current row from the given one as {@code type,price,itemCount}
+     */
+    static ProductImport toProductImport(LineParser<?> parser, ByteBuffer buffer, int firstField) {
+        String type = parser.stringField(buffer, firstField);
+        return new ProductImport(type, parser.intField(buffer, firstField + 1), parser.intField(buffer, firstField + 2));
+    }
+
+    /**
+     * Maps the fields of the current row from the given one as {@code label,amount}
+     */
+    static CashImport toCashImport(LineParser<?> parser, ByteBuffer buffer, int firstField) {
+        String label = parser.stringField(buffer, firstField);
+        return new CashImport(label, parser.intField(buffer, firstField + 1));
+    }
+
+    /**
+     * Reads a file mapping it one window at a time, every window starts at the first row not parsed yet
+     */
+    static <T> ImportSummary read(Path file, LineParser<T> parser, int mappingWindow) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                long length = Math.min(mappingWindow, size - position);
+                boolean endOfInput = position + length == size;
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                parser.parse(window, endOfInput);
+                if (window.position() == 0 && !endOfInput) {
+                    throw new IOException(String.format("Line %d is longer than the mapping window of %d bytes",
+                        parser.lineNumber + 1, mappingWindow));
+                }
+                position += window.position();
+            }
+        }
+        return parser.summary();
+    }
+
+    private static <T> ImportSummary read(InputStream inputStream, LineParser<T> parser) throws IOException {
+        ReadableByteChannel channel = Channels.newChannel(inputStream);
+        ByteBuffer buffer = ByteBuffer.allocate(STREAM_BUFFER_SIZE);
+        boolean endOfInput = false;
+        while (!endOfInput) {
+            endOfInput = channel.read(buffer) < 0;
+            buffer.flip();
+            parser.parse(buffer, endOfInput);
+            if (!endOfInput && buffer.position() == 0 && buffer.limit() == buffer.capacity()) {
+                throw new IOException(String.format("Line %d is longer than the buffer of %d bytes",
+                    parser.lineNumber + 1, STREAM_BUFFER_SIZE));
+            }
+            buffer.compact();
+        }
+        return parser.summary();
+    }
+
+    /**
+     * Maps the fields of a parsed row to an import
+     */
+    @FunctionalInterface
+    interface RowMapper<T> {
+        T map(LineParser<?> parser, ByteBuffer buffer);
+    }
+
+    /**
+     * Splits the rows of a buffer into fields and maps them, the bounds of the fields of the current row are kept
+     * on reusable arrays
+     */
+    static final class LineParser<T> {
+
+        private final int minFieldCount;
+        private final int fieldCount;
+        private final RowMapper<T> mapper;
+        private final Consumer<? super T> consumer;
+        private final LineErrorListener errors;
+        private final int[] fieldStarts;
+        private final int[] fieldEnds;
+        private byte[] scratch;
+        private int currentFieldCount;
+        private long lineNumber;
+        private long imported;
+        private long rejected;
+
+        /**
+         * @param minFieldCount the least amount of fields of a row
+         * @param fieldCount the most amount of fields of a row
+         * @param mapper maps the fields of a row
+         * @param consumer receives the mapped rows
+         * @param errors receives the rejected rows
+         */
+        LineParser(int minFieldCount, int fieldCount, RowMapper<T> mapper, Consumer<? super T> consumer, LineErrorListener errors) {
+            this.minFieldCount = minFieldCount;
+            this.fieldCount = fieldCount;
+            this.mapper = mapper;
+            this.consumer = consumer;
+            this.errors = errors;
+            this.fieldStarts = new int[fieldCount];
+            this.fieldEnds = new int[fieldCount];
+            this.scratch = new byte[64];
+        }
+
+        /**
+         * Parses the complete rows between the position and the limit of the buffer, leaving the position at
+         * the first byte of the incomplete row if any
+         * @param buffer the buffer
+         * @param endOfInput true if no more bytes follow, the last row needs no line break then
+         */
+        void parse(ByteBuffer buffer, boolean endOfInput) {
+            int lineStart = buffer.position();
+            int limit = buffer.limit();
+            for (int i = lineStart; i < limit; i++) {
+                if (buffer.get(i) == '\n') {
+                    parseLine(buffer, lineStart, i);
+                    lineStart = i + 1;
+                }
+            }
+            if (endOfInput && lineStart < limit) {
+                parseLine(buffer, lineStart, limit);
+                lineStart = limit;
+            }
+            buffer.position(lineStart);
+        }
+
+        private void parseLine(ByteBuffer buffer, int from, int to) {
+            lineNumber++;
+            if (to > from && buffer.get(to - 1) == '\r') {
+                to--;
+            }
+            int fields = 0;
+            int fieldStart = from;
+            for (int i = from; i <= to; i++) {
+                if (i == to || buffer.get(i) == ',') {
+                    if (fields < fieldCount) {
+                        fieldStarts[fields] = fieldStart;
+                        fieldEnds[fields] = i;
+                        trim(buffer, fields);
+                    }
+                    fields++;
+                    fieldStart = i + 1;
+                }
+            }
+            if (fields == 1 && fieldStarts[0] == fieldEnds[0]) {
+                return;
+            }
+            if (fields < minFieldCount || fields > fieldCount) {
+                reject(minFieldCount == fieldCount
+                    ? String.format("Expected %d fields but found %d", fieldCount, fields)
+                    : String.format("Expected %d to %d fields but found %d", minFieldCount, fieldCount, fields));
+                return;
+            }
+            currentFieldCount = fields;
+            T record;
+            try {
+                record = mapper.map(this, buffer);
+            } catch (InputMismatchException | NullPointerException e) {
+                reject(e.getMessage());
+                return;
+            }
+            consumer.accept(record);
+            imported++;
+        }
+
+        private void trim(ByteBuffer buffer, int field) {
+            while (fieldStarts[field] < fieldEnds[field] && buffer.get(fieldStarts[field]) == ' ') fieldStarts[field]++;
+            while (fieldEnds[field] > fieldStarts[field] && buffer.get(fieldEnds[field] - 1) == ' ') fieldEnds[field]--;
+        }
+
+        /**
+         * The amount of fields of the current row
+         */
+        int countFields() {
+            return currentFieldCount;
+        }
+
+        /**
+         * The line number of the current row, from one
+         */
+        long getLineNumber() {
+            return lineNumber;
+        }
+
+        private void reject(String reason) {
+            rejected++;
+            errors.onError(lineNumber, reason);
+        }
+
+        /**
+         * Parses a non negative number from the bytes of the given field of the current row
+         */
+        int intField(ByteBuffer buffer, int field) {
+            int start = fieldStarts[field];
+            int end = fieldEnds[field];
+            if (start == end) {
+                throw new InputMismatchException(String.format("Field %d must be a number", field + 1));
+            }
+            int value = 0;
+            for (int i = start; i < end; i++) {
+                int digit = buffer.get(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    throw new InputMismatchException(String.format("Field %d must be a non negative number", field + 1));
+                }
+                if (value > (Integer.MAX_VALUE - digit) / 10) {
+                    throw new InputMismatchException(String.format("Field %d is too large", field + 1));
+                }
+                value = value * 10 + digit;
+            }
+            return value;
+        }
+
+        /**
+         * Decodes the given field of the current row as UTF-8
+         */
+        String stringField(ByteBuffer buffer, int field) {
+            int length = fieldEnds[field] - fieldStarts[field];
+            if (length == 0) {
+                throw new InputMismatchException(String.format("Field %d must not be empty", field + 1));
+            }
+            if (buffer.hasArray()) {
+                return new String(buffer.array(), buffer.arrayOffset() + fieldStarts[field], length, StandardCharsets.UTF_8);
+            }
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            for (int i = 0; i < length; i++) {
+                scratch[i] = buffer.get(fieldStarts[field] + i);
+            }
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+
+        ImportSummary summary() {
+            return new ImportSummary(imported, rejected);
+        }
+    }
+}
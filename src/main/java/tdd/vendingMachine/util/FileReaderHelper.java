@@ -1,13 +1,10 @@
 package tdd.vendingMachine.util;
 
-import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.Logger;
 import tdd.vendingMachine.dto.CashImport;
 import tdd.vendingMachine.dto.ProductImport;
 
-import java.io.BufferedReader;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -22,48 +19,38 @@ public class FileReaderHelper {
     private static final Logger logger = Logger.getLogger(FileReaderHelper.class);
 
     /**
-     * Given a CSV file representing imports build a list.
+     * Given a CSV file representing imports build a list, rows failing to parse are logged and skipped.
      * @param inputStream the stream containing the csv representing product imports.
      * @return an optional value containing empty in case of failure or the requested list of import objects.
      */
     public static Optional<List<ProductImport>> retrieveProductsImportFromFileStream(InputStream inputStream) {
-        try (BufferedReader bf = new BufferedReader(new InputStreamReader(inputStream))){
-            String line;
-            String prodImport[];
+        try (InputStream stream = inputStream) {
             List<ProductImport> list = new ArrayList<>();
-            while((line = bf.readLine())!=null) {
-                prodImport = StringUtils.split(line, ',');
-                list.add(new ProductImport(prodImport[0], asInt(prodImport[1]), asInt(prodImport[2])));
-            }
+            CsvImportReader.readProductImports(stream, list::add, FileReaderHelper::logRejectedLine);
             return Optional.of(list);
-        }catch (Exception e) {
+        } catch (Exception e) {
             logger.error(e);
             return Optional.empty();
         }
     }
 
     /**
-     * Given a CSV file representing cash imports to build a list.
+     * Given a CSV file representing cash imports to build a list, rows failing to parse are logged and skipped.
      * @param inputStream the stream containing the csv representing cash imports.
      * @return an optional value containing empty in case of failure or the requested list of import objects.
      */
     public static Optional<List<CashImport>> retrieveCashImportFromFileStream(InputStream inputStream) {
-        try (BufferedReader bf = new BufferedReader(new InputStreamReader(inputStream))){
-            String line;
-            String cashImport[];
+        try (InputStream stream = inputStream) {
             List<CashImport> list = new ArrayList<>();
-            while((line = bf.readLine())!=null) {
-                cashImport = StringUtils.split(line, ',');
-                list.add(new CashImport(cashImport[0], asInt(cashImport[1])));
-            }
+            CsvImportReader.readCashImports(stream, list::add, FileReaderHelper::logRejectedLine);
             return Optional.of(list);
-        }catch (Exception e) {
+        } catch (Exception e) {
             logger.error(e);
             return Optional.empty();
         }
     }
 
-    private static int asInt(String input) {
-        return Integer.parseInt(input);
+    private static void logRejectedLine(long lineNumber, String reason) {
+        logger.warn(String.format("Skipped line %d: %s", lineNumber, reason));
     }
 }
@@ -0,0 +1,360 @@
+package tdd.vendingMachine.util;
+
+import lombok.NonNull;
+import tdd.vendingMachine.dto.CashImport;
+import tdd.vendingMachine.dto.MachineImport;
+import tdd.vendingMachine.dto.ProductImport;
+import tdd.vendingMachine.util.CsvImportReader.ImportSummary;
+import tdd.vendingMachine.util.CsvImportReader.LineErrorListener;
+import tdd.vendingMachine.util.CsvImportReader.LineParser;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.InputMismatchException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * @author Agustin Cabra on 3/9/2017.
+ * @since 2.1
+ * Parallel reader of fleet import files, one file holding the products and cash of every machine of a fleet.
+ * Rows are {@code machineId,P,type,price,itemCount} for a product shelf and {@code machineId,C,label,amount} for
+ * coins, the rows of a machine must be contiguous.
+ *
+ * The file is split in chunks at machine boundaries, so every machine belongs to exactly one chunk, and chunks
+ * are memory mapped and parsed on a fork join pool. The rows of every machine are handed to the consumer as
+ * soon as the machine ends, from the worker parsing its chunk, so the consumer must be thread safe. Rejected
+ * rows and machines the consumer fails to accept are reported in line order once every chunk is parsed.
+ *
+ * Rows of a machine id repeated further on the file reach the consumer from whichever chunk ends first, so the
+ * consumer keeps the accepted import of lowest {@link MachineImport#getOrder()} and the reader reports every
+ * later one as rejected.
+ */
+public final class FleetImportReader {
+
+    /**
+     * Chunks created per worker of the pool, a few per worker balance chunks of uneven cost
+     */
+    private static final int CHUNKS_PER_WORKER = 4;
+
+    /**
+     * Bytes read at once while looking for a chunk boundary
+     */
+    private static final int BOUNDARY_SCAN_SIZE = 4096;
+
+    private FleetImportReader() {
+        throw new AssertionError("FleetImportReader should not be instantiated");
+    }
+
+    /**
+     * Reads the given fleet import file on the given pool
+     * @param file the fleet import file
+     * @param pool the pool parsing the chunks
+     * @param consumer receives the imports of every machine, invoked concurrently
+     * @param errors receives every rejected row or machine, invoked in line order after parsing
+     * @return the amount of machines imported and rejected
+     * @throws IOException if the file can not be read
+     */
+    public static ImportSummary read(@NonNull Path file, @NonNull ForkJoinPool pool, @NonNull Consumer<? super MachineImport> consumer,
+                                     @NonNull LineErrorListener errors) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long[] boundaries = findChunkBoundaries(channel, pool.getParallelism() * CHUNKS_PER_WORKER);
+            ChunkResult[] results = new ChunkResult[boundaries.length - 1];
+            try {
+                pool.invoke(new ChunkAction(channel, boundaries, results, 0, results.length, consumer));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            long imported = 0;
+            long rejected = 0;
+            long firstLine = 0;
+            //ids are read from the file, a set keeps memory proportional to the machines and not to the highest id
+            Set<Integer> importedMachineIds = new HashSet<>();
+            for (ChunkResult result : results) {
+                for (ImportedMachine machine : result.machines) {
+                    if (!importedMachineIds.add(machine.machineId)) {
+                        result.reject(machine.lineNumber, String.format("Machine %d rejected: %s", machine.machineId,
+                            "Rows of the machine must be contiguous, duplicated machine id"));
+                        result.imported--;
+                    }
+                }
+                result.errors.sort(Comparator.comparingLong(error -> error.lineNumber));
+                for (LineError error : result.errors) {
+                    errors.onError(firstLine + error.lineNumber, error.reason);
+                }
+                imported += result.imported;
+                rejected += result.errors.size();
+                firstLine += result.lineCount;
+            }
+            return new ImportSummary(imported, rejected);
+        }
+    }
+
+    /**
+     * Splits the file in about the given amount of chunks, every boundary is moved forward to the first line of a
+     * machine so no machine spans two chunks
+     * @return the offsets where chunks start followed by the size of the file
+     */
+    static long[] findChunkBoundaries(FileChannel channel, int chunks) throws IOException {
+        long size = channel.size();
+        long maxChunkSize = Integer.MAX_VALUE;
+        int chunkCount = (int) Math.max(Math.max(1, chunks), (size + maxChunkSize - 1) / maxChunkSize);
+        List<Long> boundaries = new ArrayList<>(chunkCount + 1);
+        boundaries.add(0L);
+        ByteBuffer scan = ByteBuffer.allocate(BOUNDARY_SCAN_SIZE);
+        for (int i = 1; i < chunkCount; i++) {
+            long target = Math.max(size / chunkCount * i, boundaries.get(boundaries.size() - 1));
+            long boundary = nextMachineStart(channel, target, scan);
+            if (boundary > boundaries.get(boundaries.size() - 1) && boundary < size) {
+                if (boundary - boundaries.get(boundaries.size() - 1) > maxChunkSize) {
+                    throw new IOException("Machine rows exceed the maximum chunk size at offset " + boundary);
+                }
+                boundaries.add(boundary);
+            }
+        }
+        boundaries.add(size);
+        long[] result = new long[boundaries.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = boundaries.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Finds the first line at or after the line following the given offset whose machine id differs from the
+     * machine id of the line before it
+     */
+    private static long nextMachineStart(FileChannel channel, long offset, ByteBuffer scan) throws IOException {
+        long lineStart = skipLine(channel, offset == 0 ? 0 : offset - 1, scan);
+        long previousLineStart = lineStartBefore(channel, lineStart, scan);
+        String previousMachine = readMachineId(channel, previousLineStart, scan);
+        while (lineStart < channel.size()) {
+            String machine = readMachineId(channel, lineStart, scan);
+            if (!machine.equals(previousMachine)) {
+                return lineStart;
+            }
+            lineStart = skipLine(channel, lineStart, scan);
+        }
+        return channel.size();
+    }
+
+    /**
+     * The offset following the first line break at or after the given offset, or the file size if none
+     */
+    private static long skipLine(FileChannel channel, long offset, ByteBuffer scan) throws IOException {
+        long position = offset;
+        while (position < channel.size()) {
+            scan.clear();
+            int read = channel.read(scan, position);
+            for (int i = 0; i < read; i++) {
+                if (scan.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return channel.size();
+    }
+
+    /**
+     * The offset where the line ending right before the given line start begins
+     */
+    private static long lineStartBefore(FileChannel channel, long lineStart, ByteBuffer scan) throws IOException {
+        long end = lineStart - 1;
+        while (end > 0) {
+            long from = Math.max(0, end - BOUNDARY_SCAN_SIZE);
+            scan.clear();
+            scan.limit((int) (end - from));
+            channel.read(scan, from);
+            for (int i = scan.position() - 1; i >= 0; i--) {
+                if (scan.get(i) == '\n') {
+                    return from + i + 1;
+                }
+            }
+            end = from;
+        }
+        return 0;
+    }
+
+    private static String readMachineId(FileChannel channel, long lineStart, ByteBuffer scan) throws IOException {
+        scan.clear();
+        int read = Math.max(0, channel.read(scan, lineStart));
+        StringBuilder machineId = new StringBuilder();
+        for (int i = 0; i < read; i++) {
+            byte b = scan.get(i);
+            if (b == ',' || b == '\n') {
+                break;
+            }
+            machineId.append((char) b);
+        }
+        return machineId.toString().trim();
+    }
+
+    /**
+     * A row of a fleet import file
+     */
+    private static final class FleetRow {
+        final int machineId;
+        final long lineNumber;
+        final ProductImport productImport;
+        final CashImport cashImport;
+
+        FleetRow(int machineId, long lineNumber, ProductImport productImport, CashImport cashImport) {
+            this.machineId = machineId;
+            this.lineNumber = lineNumber;
+            this.productImport = productImport;
+            this.cashImport = cashImport;
+        }
+    }
+
+    private static FleetRow toFleetRow(LineParser<?> parser, ByteBuffer buffer) {
+        int machineId = parser.intField(buffer, 0);
+        String kind = parser.stringField(buffer, 1);
+        if ("P".equals(kind) && parser.countFields() == 5) {
+            return new FleetRow(machineId, parser.getLineNumber(), CsvImportReader.toProductImport(parser, buffer, 2), null);
+        }
+        if ("C".equals(kind) && parser.countFields() == 4) {
+            return new FleetRow(machineId, parser.getLineNumber(), null, CsvImportReader.toCashImport(parser, buffer, 2));
+        }
+        throw new InputMismatchException("Rows must be machineId,P,type,price,itemCount or machineId,C,label,amount");
+    }
+
+    private static final class LineError {
+        final long lineNumber;
+        final String reason;
+
+        LineError(long lineNumber, String reason) {
+            this.lineNumber = lineNumber;
+            this.reason = reason;
+        }
+    }
+
+    private static final class ImportedMachine {
+        final int machineId;
+        final long lineNumber;
+
+        ImportedMachine(int machineId, long lineNumber) {
+            this.machineId = machineId;
+            this.lineNumber = lineNumber;
+        }
+    }
+
+    /**
+     * Outcome of parsing a chunk, line numbers are relative to the first line of the chunk
+     */
+    private static final class ChunkResult {
+        final List<LineError> errors = new ArrayList<>();
+        final List<ImportedMachine> machines = new ArrayList<>();
+        long imported;
+        long lineCount;
+
+        void reject(long lineNumber, String reason) {
+            errors.add(new LineError(lineNumber, reason));
+        }
+    }
+
+    /**
+     * Groups the rows of a chunk by machine and hands every machine to the consumer once its rows end
+     */
+    private static final class MachineGrouper implements Consumer<FleetRow> {
+        private final Consumer<? super MachineImport> consumer;
+        private final ChunkResult result;
+        private final int chunkIndex;
+        private int machineId = -1;
+        private long firstLineNumber;
+        private List<ProductImport> productImports = new ArrayList<>();
+        private List<CashImport> cashImports = new ArrayList<>();
+
+        MachineGrouper(Consumer<? super MachineImport> consumer, ChunkResult result, int chunkIndex) {
+            this.consumer = consumer;
+            this.result = result;
+            this.chunkIndex = chunkIndex;
+        }
+
+        @Override
+        public void accept(FleetRow row) {
+            if (row.machineId != machineId) {
+                flush();
+                machineId = row.machineId;
+                firstLineNumber = row.lineNumber;
+            }
+            if (row.productImport != null) {
+                productImports.add(row.productImport);
+            } else {
+                cashImports.add(row.cashImport);
+            }
+        }
+
+        void flush() {
+            if (machineId < 0) {
+                return;
+            }
+            try {
+                consumer.accept(new MachineImport(machineId, (long) chunkIndex << 32 | firstLineNumber, productImports, cashImports));
+                result.machines.add(new ImportedMachine(machineId, firstLineNumber));
+                result.imported++;
+            } catch (RuntimeException e) {
+                result.reject(firstLineNumber, String.format("Machine %d rejected: %s", machineId, e.getMessage()));
+            }
+            machineId = -1;
+            productImports = new ArrayList<>();
+            cashImports = new ArrayList<>();
+        }
+    }
+
+    /**
+     * Parses the chunks in the given range, splitting the range in halves until a single chunk is left
+     */
+    private static final class ChunkAction extends RecursiveAction {
+        private final FileChannel channel;
+        private final long[] boundaries;
+        private final ChunkResult[] results;
+        private final int from;
+        private final int to;
+        private final Consumer<? super MachineImport> consumer;
+
+        ChunkAction(FileChannel channel, long[] boundaries, ChunkResult[] results, int from, int to,
+                    Consumer<? super MachineImport> consumer) {
+            this.channel = channel;
+            this.boundaries = boundaries;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+            this.consumer = consumer;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ChunkAction(channel, boundaries, results, from, middle, consumer),
+                    new ChunkAction(channel, boundaries, results, middle, to, consumer));
+                return;
+            }
+            ChunkResult result = new ChunkResult();
+            MachineGrouper grouper = new MachineGrouper(consumer, result, from);
+            LineParser<FleetRow> parser = new LineParser<>(4, 5, FleetImportReader::toFleetRow, grouper, result::reject);
+            try {
+                long start = boundaries[from];
+                MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, boundaries[from + 1] - start);
+                parser.parse(chunk, true);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            grouper.flush();
+            result.lineCount = parser.getLineNumber();
+            results[from] = result;
+        }
+    }
+}
@@ -1,7 +1,7 @@
 package tdd.vendingMachine.validation;
 
 import lombok.NonNull;
-import tdd.vendingMachine.domain.Coin;
+import tdd.vendingMachine.domain.CoinDispenser;
 import tdd.vendingMachine.domain.Product;
 import tdd.vendingMachine.domain.Shelf;
 import tdd.vendingMachine.domain.VendingMachineConfiguration;
@@ -24,7 +24,7 @@ public class VendingMachineValidator {
                 vendingMachineConfiguration.getProductShelfCount(), productShelves.size());
         }
         int maxShelfCountFound = productShelves.values().stream()
-            .mapToInt(shelf -> shelf.capacity)
+            .mapToInt(shelf -> shelf.getCapacity())
             .max().orElse(0);
         if (maxShelfCountFound > vendingMachineConfiguration.getProductShelfCapacity()) {
             throw new InvalidShelfSizeException(VendingMachineMessages.UNABLE_TO_CREATE_VENDING_MACHINE_EXCEEDED_PRODUCT_SHELF_CAPACITY.label,
@@ -33,19 +33,11 @@ public class VendingMachineValidator {
         }
     }
 
-    private static void validateCoinShelves(VendingMachineConfiguration vendingMachineConfiguration, Map<Coin, Shelf<Coin>> coinShelves) {
-        int maxCoinShelvesSize = Coin.values().length;
-        if (coinShelves.size() != maxCoinShelvesSize) {
-            throw new InvalidShelfSizeException(VendingMachineMessages.COIN_SHELF_SIZE_INCOMPATIBLE.label,
-                maxCoinShelvesSize, coinShelves.size());
-        }
-        int maxShelfCountFound = coinShelves.values().stream()
-            .mapToInt(shelf -> shelf.capacity)
-            .max().orElse(0);
-        if (maxShelfCountFound > vendingMachineConfiguration.getCoinShelfCapacity()) {
+    private static void validateCoinDispenser(VendingMachineConfiguration vendingMachineConfiguration, CoinDispenser coinDispenser) {
+        if (coinDispenser.getCapacity() > vendingMachineConfiguration.getCoinShelfCapacity()) {
             throw new InvalidShelfSizeException(VendingMachineMessages.UNABLE_TO_CREATE_VENDING_MACHINE_EXCEEDED_COIN_SHELF_CAPACITY.label,
                 vendingMachineConfiguration.getCoinShelfCapacity(),
-                maxShelfCountFound);
+                coinDispenser.getCapacity());
         }
     }
 
@@ -55,11 +47,11 @@ public class VendingMachineValidator {
      *
      * @param vendingMachineConfiguration current configuration to validate parameters from
      * @param productShelves              the given product shelves
-     * @param coinShelves                 the given coin dispenser
+     * @param coinDispenser               the given coin dispenser
      */
     public static void validateNewVendingMachineParameters(@NonNull VendingMachineConfiguration vendingMachineConfiguration,
-                                                           @NonNull Map<Integer, Shelf<Product>> productShelves, @NonNull Map<Coin, Shelf<Coin>> coinShelves) {
-        validateCoinShelves(vendingMachineConfiguration, coinShelves);
+                                                           @NonNull Map<Integer, Shelf<Product>> productShelves, @NonNull CoinDispenser coinDispenser) {
+        validateCoinDispenser(vendingMachineConfiguration, coinDispenser);
         validateProductShelves(vendingMachineConfiguration, productShelves);
     }
 
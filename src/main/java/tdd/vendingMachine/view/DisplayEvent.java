@@ -0,0 +1,158 @@
+package tdd.vendingMachine.view;
+
+import lombok.NonNull;
+
+/**
+ * @author Agustin Cabra on 3/7/2017.
+ * @since 2.1
+ * Immutable message to show on the vending machine display, it carries a {@link VendingMachineMessages} key,
+ * an optional subject and an amount in cents, the text is built only the first time it is rendered.
+ *
+ * The layout describes where the subject, the message label and the amount are placed on the text:
+ *   LABEL                      label
+ *   SUBJECT_LABEL              [subject] label
+ *   SUBJECT_LABEL_CASH         [subject] label: amount
+ *   SUBJECT_COMMA_LABEL_CASH   [subject], label: amount
+ *   INLINE_SUBJECT_LABEL_CASH  subject label: amount
+ *   TEXT                       free text already built by the caller
+ */
+public final class DisplayEvent {
+
+    /**
+     * Event shown by a display before any update
+     */
+    public static final DisplayEvent EMPTY = text("");
+
+    public enum Layout {
+        LABEL,
+        SUBJECT_LABEL,
+        SUBJECT_LABEL_CASH,
+        SUBJECT_COMMA_LABEL_CASH,
+        INLINE_SUBJECT_LABEL_CASH,
+        TEXT
+    }
+
+    private static final int NO_SUBJECT_CASH = Integer.MIN_VALUE;
+
+    public final Layout layout;
+    public final VendingMachineMessages message;
+    private final String subject;
+    private final int subjectCash;
+    public final int amount;
+    private String rendered;
+
+    private DisplayEvent(Layout layout, VendingMachineMessages message, String subject, int subjectCash, int amount) {
+        this.layout = layout;
+        this.message = message;
+        this.subject = subject;
+        this.subjectCash = subjectCash;
+        this.amount = amount;
+    }
+
+    /**
+     * Event showing only the label of the given message
+     * @param message the message key
+     * @return the event
+     */
+    public static DisplayEvent of(@NonNull VendingMachineMessages message) {
+        return new DisplayEvent(Layout.LABEL, message, null, NO_SUBJECT_CASH, 0);
+    }
+
+    /**
+     * Event showing a subject followed by the label of the given message
+     * @param subject the subject e.g. a product type
+     * @param message the message key
+     * @return the event
+     */
+    public static DisplayEvent of(@NonNull String subject, @NonNull VendingMachineMessages message) {
+        return new DisplayEvent(Layout.SUBJECT_LABEL, message, subject, NO_SUBJECT_CASH, 0);
+    }
+
+    /**
+     * Event showing a subject, the label of the given message and an amount of cash
+     * @param layout one of the layouts carrying cash
+     * @param subject the subject e.g. a coin label
+     * @param message the message key
+     * @param amount the amount of cents to show
+     * @return the event
+     */
+    public static DisplayEvent of(@NonNull Layout layout, @NonNull String subject, @NonNull VendingMachineMessages message, int amount) {
+        return new DisplayEvent(layout, message, subject, NO_SUBJECT_CASH, amount);
+    }
+
+    /**
+     * Event showing an amount of cash as subject, the label of the given message and an amount of cash
+     * @param subjectCash the amount of cents shown as subject
+     * @param message the message key
+     * @param amount the amount of cents to show
+     * @return the event
+     */
+    public static DisplayEvent ofCash(int subjectCash, @NonNull VendingMachineMessages message, int amount) {
+        return new DisplayEvent(Layout.SUBJECT_LABEL_CASH, message, null, subjectCash, amount);
+    }
+
+    /**
+     * Event showing the given text as is
+     * @param text the text to show
+     * @return the event
+     */
+    public static DisplayEvent text(@NonNull String text) {
+        DisplayEvent event = new DisplayEvent(Layout.TEXT, null, null, NO_SUBJECT_CASH, 0);
+        event.rendered = text;
+        return event;
+    }
+
+    /**
+     * Builds the text of the event the first time and returns the same text afterwards
+     * @return the text to show on the display
+     */
+    public String render() {
+        String text = rendered;
+        if (text == null) {
+            text = build();
+            rendered = text;
+        }
+        return text;
+    }
+
+    private String build() {
+        StringBuilder builder = new StringBuilder(64);
+        switch (layout) {
+            case LABEL:
+                return message.label;
+            case SUBJECT_LABEL:
+                appendBracketedSubject(builder).append(' ').append(message.label);
+                break;
+            case SUBJECT_LABEL_CASH:
+                appendBracketedSubject(builder).append(' ').append(message.label).append(": ");
+                VendingMachineMessages.appendCash(builder, amount);
+                break;
+            case SUBJECT_COMMA_LABEL_CASH:
+                appendBracketedSubject(builder).append(", ").append(message.label).append(": ");
+                VendingMachineMessages.appendCash(builder, amount);
+                break;
+            case INLINE_SUBJECT_LABEL_CASH:
+                builder.append(subject).append(' ').append(message.label).append(": ");
+                VendingMachineMessages.appendCash(builder, amount);
+                break;
+            default:
+                throw new IllegalStateException("text events are rendered on creation");
+        }
+        return builder.toString();
+    }
+
+    private StringBuilder appendBracketedSubject(StringBuilder builder) {
+        builder.append('[');
+        if (subject != null) {
+            builder.append(subject);
+        } else {
+            VendingMachineMessages.appendCash(builder, subjectCash);
+        }
+        return builder.append(']');
+    }
+
+    @Override
+    public String toString() {
+        return render();
+    }
+}
@@ -77,6 +77,27 @@ public enum VendingMachineMessages { //TODO TODO02 evaluate the possibility to i
      * @return a string representing the amount required
      */
     public static String provideCashToDisplay(int cash) {
-        return String.format("%.2f$", cash/100.0);
+        return appendCash(new StringBuilder(8), cash).toString();
+    }
+
+    /**
+     * Appends the given amount of cents as units with two decimals followed by the currency symbol, e.g. 190
+     * is appended as 1.90$, without parsing a format or boxing the amount.
+     * @param builder the builder receiving the text
+     * @param cash the amount of cents to append
+     * @return the given builder
+     */
+    public static StringBuilder appendCash(StringBuilder builder, int cash) {
+        long cents = cash;
+        if (cents < 0) {
+            builder.append('-');
+            cents = -cents;
+        }
+        long decimals = cents % 100;
+        builder.append(cents / 100).append('.');
+        if (decimals < 10) {
+            builder.append('0');
+        }
+        return builder.append(decimals).append('$');
     }
 }
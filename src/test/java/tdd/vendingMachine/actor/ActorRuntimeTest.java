@@ -0,0 +1,66 @@
+package tdd.vendingMachine.actor;
+
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+import tdd.vendingMachine.domain.Coin;
+import tdd.vendingMachine.domain.Product;
+import tdd.vendingMachine.state.VendingMachineFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.InputMismatchException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Agustin Cabra on 3/7/2017.
+ * @since 2.1
+ */
+public class ActorRuntimeTest {
+
+    private static final Logger logger = Logger.getLogger(ActorRuntimeTest.class);
+
+    @Test
+    public void should_report_throughput_and_tail_latency_as_fleet_grows() throws Exception {
+        Product product = new Product(100, "product_100");
+        for (int fleetSize : new int[]{10, 100, 1000}) {
+            ActorRuntime runtime = new ActorRuntime(4);
+            List<MachineActor> fleet = new ArrayList<>(fleetSize);
+            for (int i = 0; i < fleetSize; i++) {
+                fleet.add(runtime.spawn(VendingMachineFactory.buildMultiPanelVendingMachine(
+                    Collections.singletonList(product), 5, 5, 1).getPanel(0)));
+            }
+            long start = System.nanoTime();
+            List<CompletableFuture<Integer>> answers = new ArrayList<>(fleetSize);
+            for (MachineActor actor : fleet) {
+                actor.tell(MachineCommand.selectShelfNumber(0));
+                actor.tell(MachineCommand.insertCoin(Coin.ONE));
+                answers.add(actor.ask(machine -> machine.countTotalAmountProducts()));
+            }
+            for (CompletableFuture<Integer> answer : answers) {
+                Assert.assertEquals(Integer.valueOf(4), answer.get(30, TimeUnit.SECONDS));
+            }
+            long elapsed = System.nanoTime() - start;
+            //answers complete before their command is counted, shutting down waits for the workers to count them
+            Assert.assertTrue(runtime.shutdown(5, TimeUnit.SECONDS));
+
+            Assert.assertEquals(3L * fleetSize, runtime.countProcessedCommands());
+            Assert.assertEquals(3L * fleetSize, runtime.getLatencyHistogram().count());
+            logger.info(String.format("fleet %d: %.0f commands/s, p50 %d ns, p99 %d ns", fleetSize,
+                runtime.countProcessedCommands() * 1e9 / elapsed,
+                runtime.getLatencyHistogram().percentile(50), runtime.getLatencyHistogram().percentile(99)));
+        }
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void should_fail_runtime_without_workers() {
+        new ActorRuntime(0);
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void should_fail_non_positive_batch_size() {
+        new ActorRuntime(1, 0);
+    }
+}
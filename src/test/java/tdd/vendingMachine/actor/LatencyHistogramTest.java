@@ -0,0 +1,50 @@
+package tdd.vendingMachine.actor;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.InputMismatchException;
+
+/**
+ * @author Agustin Cabra on 3/7/2017.
+ * @since 2.1
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void should_report_zero_without_records() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        Assert.assertEquals(0, histogram.count());
+        Assert.assertEquals(0, histogram.percentile(99));
+    }
+
+    @Test
+    public void should_report_percentiles_as_bucket_upper_bounds() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(100);
+        }
+        histogram.record(5000);
+
+        Assert.assertEquals(100, histogram.count());
+        Assert.assertEquals(127, histogram.percentile(50));
+        Assert.assertEquals(127, histogram.percentile(99));
+        Assert.assertEquals(8191, histogram.percentile(100));
+    }
+
+    @Test
+    public void should_record_negative_and_huge_latencies() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+
+        Assert.assertEquals(0, histogram.percentile(50));
+        Assert.assertEquals(Long.MAX_VALUE, histogram.percentile(100));
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void should_fail_invalid_percentile() {
+        new LatencyHistogram().percentile(101);
+    }
+}
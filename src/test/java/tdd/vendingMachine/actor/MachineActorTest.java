@@ -0,0 +1,120 @@
+package tdd.vendingMachine.actor;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import tdd.vendingMachine.domain.Coin;
+import tdd.vendingMachine.domain.Product;
+import tdd.vendingMachine.state.VendingMachineFactory;
+import tdd.vendingMachine.state.VendingSession;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Agustin Cabra on 3/7/2017.
+ * @since 2.1
+ */
+public class MachineActorTest {
+
+    private ActorRuntime runtime;
+
+    @Before
+    public void setup() {
+        runtime = new ActorRuntime(2, 4);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        runtime.shutdown(5, TimeUnit.SECONDS);
+        runtime = null;
+    }
+
+    private VendingSession buildSession(int productItemCount) {
+        return VendingMachineFactory.buildMultiPanelVendingMachine(
+            Collections.singletonList(new Product(100, "product_100")), productItemCount, 5, 1).getPanel(0);
+    }
+
+    @Test
+    public void should_run_commands_in_order() throws Exception {
+        MachineActor actor = runtime.spawn(buildSession(2));
+
+        actor.tell(MachineCommand.selectShelfNumber(0));
+        actor.tell(MachineCommand.insertCoin(Coin.FIFTY_CENTS));
+        actor.tell(MachineCommand.insertCoin(Coin.FIFTY_CENTS));
+
+        Assert.assertEquals(Integer.valueOf(1), actor.ask(VendingSession::countTotalAmountProducts).get(5, TimeUnit.SECONDS));
+        Assert.assertEquals(Integer.valueOf(0), actor.ask(VendingSession::provideCredit).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void should_restock_sold_out_machine() throws Exception {
+        MachineActor actor = runtime.spawn(buildSession(0));
+
+        actor.tell(MachineCommand.restock(0, 3));
+        actor.tell(MachineCommand.insertCoin(Coin.ONE));
+        actor.tell(MachineCommand.selectShelfNumber(0));
+
+        Assert.assertEquals(Integer.valueOf(2), actor.ask(VendingSession::countTotalAmountProducts).get(5, TimeUnit.SECONDS));
+        actor.tell(MachineCommand.cancel());
+        Assert.assertEquals(Integer.valueOf(0), actor.ask(VendingSession::provideCredit).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void should_keep_processing_after_failing_command() throws Exception {
+        MachineActor actor = runtime.spawn(buildSession(1));
+
+        actor.tell(session -> {
+            throw new IllegalStateException("failing command");
+        });
+        actor.tell(MachineCommand.insertCoin(Coin.ONE));
+
+        Assert.assertEquals(Integer.valueOf(Coin.ONE.denomination), actor.ask(VendingSession::provideCredit).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test(expected = ExecutionException.class)
+    public void should_complete_exceptionally_failing_query() throws Exception {
+        MachineActor actor = runtime.spawn(buildSession(1));
+
+        CompletableFuture<Integer> answer = actor.ask(session -> session.countProductsOnShelf(99));
+
+        answer.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void should_process_machine_on_one_worker_at_a_time() throws Exception {
+        VendingSession session = Mockito.mock(VendingSession.class);
+        MachineActor actor = runtime.spawn(session);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger overlaps = new AtomicInteger();
+        int commands = 2000;
+
+        Thread[] producers = new Thread[4];
+        for (int p = 0; p < producers.length; p++) {
+            producers[p] = new Thread(() -> {
+                for (int i = 0; i < commands / producers.length; i++) {
+                    actor.tell(machine -> {
+                        if (running.incrementAndGet() > 1) {
+                            overlaps.incrementAndGet();
+                        }
+                        running.decrementAndGet();
+                    });
+                }
+            });
+            producers[p].start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        long processedBeforeQuery = actor.ask(machine -> runtime.countProcessedCommands()).get(5, TimeUnit.SECONDS);
+
+        Assert.assertEquals(0, overlaps.get());
+        Assert.assertFalse(actor.hasPendingCommands());
+        Assert.assertEquals(commands, processedBeforeQuery);
+    }
+}
@@ -0,0 +1,143 @@
+package tdd.vendingMachine.domain;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.InputMismatchException;
+import java.util.Optional;
+
+/**
+ * @author Agustin Cabra on 3/4/2017.
+ * @since 2.1
+ */
+public class BoundedChangeMakerTest {
+
+    private BoundedChangeMaker changeMaker;
+
+    @Before
+    public void setup() {
+        changeMaker = new BoundedChangeMaker();
+    }
+
+    @After
+    public void tearDown() {
+        changeMaker = null;
+    }
+
+    /**
+     * Builds an inventory indexed by coin order
+     * @param tenCents amount of TEN_CENTS coins
+     * @param twentyCents amount of TWENTY_CENTS coins
+     * @param fiftyCents amount of FIFTY_CENTS coins
+     * @param one amount of ONE coins
+     * @param two amount of TWO coins
+     * @param five amount of FIVE coins
+     * @return the inventory
+     */
+    private int[] inventory(int tenCents, int twentyCents, int fiftyCents, int one, int two, int five) {
+        int[] coins = new int[Coin.values().length];
+        coins[Coin.TEN_CENTS.order] = tenCents;
+        coins[Coin.TWENTY_CENTS.order] = twentyCents;
+        coins[Coin.FIFTY_CENTS.order] = fiftyCents;
+        coins[Coin.ONE.order] = one;
+        coins[Coin.TWO.order] = two;
+        coins[Coin.FIVE.order] = five;
+        return coins;
+    }
+
+    private int sum(ChangePlan plan) {
+        int total = 0;
+        for (Coin coin : Coin.values()) {
+            total += plan.coinsOf(coin) * coin.denomination;
+        }
+        return total;
+    }
+
+    @Test
+    public void should_give_change_greedy_would_refuse() {
+        int[] available = inventory(0, 3, 1, 0, 0, 0);
+
+        Optional<ChangePlan> change = changeMaker.makeChange(available, 60);
+
+        Assert.assertTrue(change.isPresent());
+        Assert.assertEquals(3, change.get().coinsOf(Coin.TWENTY_CENTS));
+        Assert.assertEquals(0, change.get().coinsOf(Coin.FIFTY_CENTS));
+        Assert.assertEquals(60, sum(change.get()));
+    }
+
+    @Test
+    public void should_use_fewest_coins_available() {
+        int[] available = inventory(10, 10, 10, 10, 10, 10);
+
+        Optional<ChangePlan> change = changeMaker.makeChange(available, 880);
+
+        Assert.assertTrue(change.isPresent());
+        Assert.assertEquals(1, change.get().coinsOf(Coin.FIVE));
+        Assert.assertEquals(1, change.get().coinsOf(Coin.TWO));
+        Assert.assertEquals(1, change.get().coinsOf(Coin.ONE));
+        Assert.assertEquals(1, change.get().coinsOf(Coin.FIFTY_CENTS));
+        Assert.assertEquals(1, change.get().coinsOf(Coin.TWENTY_CENTS));
+        Assert.assertEquals(1, change.get().coinsOf(Coin.TEN_CENTS));
+    }
+
+    @Test
+    public void should_never_use_more_coins_than_available() {
+        int[] available = inventory(1, 2, 0, 1, 0, 0);
+
+        Optional<ChangePlan> change = changeMaker.makeChange(available, 150);
+
+        Assert.assertTrue(change.isPresent());
+        for (Coin coin : Coin.values()) {
+            Assert.assertTrue(change.get().coinsOf(coin) <= available[coin.order]);
+        }
+        Assert.assertEquals(150, sum(change.get()));
+    }
+
+    @Test
+    public void should_return_empty_amount_not_buildable() {
+        Assert.assertFalse(changeMaker.makeChange(inventory(1, 1, 2, 5, 1, 2), 140).isPresent());
+        Assert.assertFalse(changeMaker.makeChange(inventory(10, 10, 10, 10, 10, 10), 15).isPresent());
+        Assert.assertFalse(changeMaker.makeChange(inventory(0, 0, 0, 0, 0, 0), 10).isPresent());
+    }
+
+    @Test
+    public void should_return_empty_plan_for_zero_change() {
+        Optional<ChangePlan> change = changeMaker.makeChange(inventory(0, 0, 0, 0, 0, 0), 0);
+
+        Assert.assertTrue(change.isPresent());
+        Assert.assertTrue(change.get().isEmpty());
+        Assert.assertEquals(0, change.get().countCoins());
+    }
+
+    @Test
+    public void should_not_reuse_memo_after_inventory_changed() {
+        int[] available = inventory(0, 3, 1, 0, 0, 0);
+        Assert.assertTrue(changeMaker.makeChange(available, 60).isPresent());
+
+        available[Coin.TWENTY_CENTS.order] = 2;
+
+        Assert.assertFalse(changeMaker.makeChange(available, 60).isPresent());
+    }
+
+    @Test
+    public void should_build_amounts_beyond_memo_ceiling() {
+        int[] available = inventory(0, 0, 0, 0, 0, 100);
+
+        Optional<ChangePlan> change = changeMaker.makeChange(available, 25000);
+
+        Assert.assertTrue(change.isPresent());
+        Assert.assertEquals(50, change.get().coinsOf(Coin.FIVE));
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void should_fail_negative_amount() {
+        changeMaker.makeChange(inventory(1, 1, 1, 1, 1, 1), -10);
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void should_fail_inventory_not_covering_every_coin() {
+        changeMaker.makeChange(new int[]{1, 1}, 10);
+    }
+}
@@ -0,0 +1,57 @@
+package tdd.vendingMachine.domain;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.InputMismatchException;
+
+/**
+ * @author Agustin Cabra on 3/5/2017.
+ * @since 2.1
+ */
+public class ChangePlanTest {
+
+    private ChangePlan planOf(int amount, Coin coin, int count) {
+        int[] coins = new int[Coin.values().length];
+        coins[coin.order] = count;
+        return new ChangePlan(amount, coins);
+    }
+
+    @Test
+    public void should_describe_coins_to_dispense() {
+        ChangePlan plan = planOf(60, Coin.TWENTY_CENTS, 3);
+
+        Assert.assertEquals(60, plan.getAmount());
+        Assert.assertEquals(3, plan.coinsOf(Coin.TWENTY_CENTS));
+        Assert.assertEquals(0, plan.coinsOf(Coin.TEN_CENTS));
+        Assert.assertEquals(3, plan.countCoins());
+        Assert.assertFalse(plan.isEmpty());
+        Assert.assertTrue(ChangePlan.NO_CHANGE.isEmpty());
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void should_fail_plan_not_covering_every_coin() {
+        new ChangePlan(10, new int[]{1});
+    }
+
+    @Test
+    public void should_build_plan_from_recorded_coins() {
+        int[] coins = new int[Coin.countDenominations()];
+        coins[Coin.FIFTY_CENTS.order] = 1;
+        coins[Coin.TEN_CENTS.order] = 2;
+
+        ChangePlan plan = ChangePlan.of(coins);
+        coins[Coin.TEN_CENTS.order] = 0;
+
+        Assert.assertEquals(70, plan.getAmount());
+        Assert.assertEquals(2, plan.coinsOf(Coin.TEN_CENTS));
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void should_fail_recorded_plan_with_negative_coins() {
+        int[] coins = new int[Coin.countDenominations()];
+        coins[Coin.ONE.order] = -1;
+
+        ChangePlan.of(coins);
+    }
+}
@@ -0,0 +1,127 @@
+package tdd.vendingMachine.domain;
+
+import org.junit.Assert;
+import org.junit.Test;
+import tdd.vendingMachine.util.TestUtils.TestUtils;
+
+import java.util.InputMismatchException;
+import java.util.Optional;
+import java.util.Random;
+
+/**
+ * @author Agustin Cabra on 3/5/2017.
+ * @since 2.1
+ */
+public class ChangeReachabilityTest {
+
+    @Test
+    public void should_track_amounts_payable_from_initial_coins() {
+        CoinDispenser coinDispenser = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(10, 0);
+        coinDispenser.provision(Coin.TWENTY_CENTS, 3);
+        coinDispenser.provision(Coin.FIFTY_CENTS, 1);
+
+        ChangeReachability changeReachability = new ChangeReachability(1000, coinDispenser);
+
+        Assert.assertTrue(changeReachability.isReachable(0));
+        Assert.assertTrue(changeReachability.isReachable(60));
+        Assert.assertTrue(changeReachability.isReachable(110));
+        Assert.assertFalse(changeReachability.isReachable(10));
+        Assert.assertFalse(changeReachability.isReachable(30));
+        Assert.assertFalse(changeReachability.isReachable(120));
+        Assert.assertFalse(changeReachability.isReachable(15));
+    }
+
+    @Test
+    public void should_update_reachability_on_provision_and_dispense() {
+        CoinDispenser coinDispenser = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(10, 0);
+        ChangeReachability changeReachability = new ChangeReachability(1000, coinDispenser);
+        Assert.assertFalse(changeReachability.isReachable(10));
+
+        coinDispenser.provision(Coin.TEN_CENTS);
+        Assert.assertTrue(changeReachability.isReachable(10));
+
+        coinDispenser.provision(Coin.TWENTY_CENTS, 2);
+        Assert.assertTrue(changeReachability.isReachable(50));
+
+        coinDispenser.dispense(Coin.TEN_CENTS);
+        Assert.assertFalse(changeReachability.isReachable(10));
+        Assert.assertFalse(changeReachability.isReachable(50));
+        Assert.assertTrue(changeReachability.isReachable(40));
+    }
+
+    @Test
+    public void should_agree_with_exact_change_maker() {
+        CoinDispenser coinDispenser = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(10, 0);
+        ChangeReachability changeReachability = new ChangeReachability(1000, coinDispenser);
+        BoundedChangeMaker changeMaker = new BoundedChangeMaker();
+        int[][] operations = {{0, 2}, {2, 1}, {1, 3}, {3, 1}, {0, -1}, {5, 1}, {1, -2}, {4, 2}, {2, -1}};
+
+        for (int[] operation : operations) {
+            Coin coin = Coin.values()[operation[0]];
+            if (operation[1] > 0) {
+                coinDispenser.provision(coin, operation[1]);
+            } else {
+                coinDispenser.dispense(coin, -operation[1]);
+            }
+            int[] counts = coinDispenser.copyCoinCountsTo(new int[Coin.values().length]);
+            for (int amount = 0; amount <= changeReachability.getCeiling(); amount += 10) {
+                Optional<ChangePlan> plan = changeMaker.makeChange(counts, amount);
+                Assert.assertEquals("amount " + amount, plan.isPresent(), changeReachability.isReachable(amount));
+            }
+        }
+    }
+
+    @Test
+    public void should_answer_unreachable_amounts_conclusively_with_many_coins() {
+        CoinDispenser coinDispenser = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(100, 0);
+        ChangeReachability changeReachability = new ChangeReachability(2000, coinDispenser);
+        BoundedChangeMaker changeMaker = new BoundedChangeMaker();
+        Random random = new Random(17);
+
+        for (int step = 0; step < 200; step++) {
+            Coin coin = Coin.retrieveCoinByOrder(random.nextInt(Coin.countDenominations()));
+            int amount = random.nextInt(40);
+            if (random.nextBoolean()) {
+                coinDispenser.provision(coin, Math.min(amount, coinDispenser.countFreeSlots(coin)));
+            } else {
+                coinDispenser.dispense(coin, Math.min(amount, coinDispenser.getItemCount(coin)));
+            }
+            int[] counts = coinDispenser.copyCoinCountsTo(new int[Coin.values().length]);
+            int change = 10 * random.nextInt(201);
+            Assert.assertEquals("change " + change, changeMaker.makeChange(counts, change).isPresent(),
+                changeReachability.isReachable(change));
+        }
+    }
+
+    @Test
+    public void should_report_exact_change_only_until_every_small_amount_is_payable() {
+        CoinDispenser coinDispenser = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(10, 0);
+        ChangeReachability changeReachability = new ChangeReachability(1000, coinDispenser);
+        Assert.assertTrue(changeReachability.isExactChangeOnly());
+
+        coinDispenser.provision(Coin.TEN_CENTS, 1);
+        coinDispenser.provision(Coin.TWENTY_CENTS, 2);
+        coinDispenser.provision(Coin.FIFTY_CENTS, 1);
+        coinDispenser.provision(Coin.ONE, 1);
+        coinDispenser.provision(Coin.TWO, 2);
+        Assert.assertFalse(changeReachability.isExactChangeOnly());
+
+        coinDispenser.dispense(Coin.TEN_CENTS);
+        Assert.assertTrue(changeReachability.isExactChangeOnly());
+    }
+
+    @Test
+    public void should_not_answer_amounts_beyond_ceiling() {
+        CoinDispenser coinDispenser = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(10, 10);
+        ChangeReachability changeReachability = new ChangeReachability(100, coinDispenser);
+
+        Assert.assertTrue(changeReachability.isTracked(100));
+        Assert.assertFalse(changeReachability.isTracked(110));
+        Assert.assertFalse(changeReachability.isReachable(200));
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void should_fail_ceiling_lower_than_denomination_unit() {
+        new ChangeReachability(5, TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(10, 10));
+    }
+}
@@ -16,7 +16,6 @@ import tdd.vendingMachine.util.TestUtils.TestUtils;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 
 /**
  * @author Agustin Cabra on 2/21/2017.
@@ -66,18 +65,16 @@ public class CoinDispenserFactoryTest {
     @Test
     public void should_build_empty_cashDispenser_with_shelf_capacity_1() {
         final int expectedCapacity = 1;
-        int expectedSize = Coin.values().length;
         VendingMachineConfiguration configMock = getConfigMock(1, 0, 0);
 
         PowerMockito.spy(CoinDispenserFactory.class);
         PowerMockito.when(CoinDispenserFactory.getConfig()).thenReturn(configMock);
 
-        Map<Coin, Shelf<Coin>> cashDispenser = CoinDispenserFactory.buildShelfWithGivenCoinItemCount(0);
-        Assert.assertEquals(expectedSize, cashDispenser.size());
-        cashDispenser.values().forEach(coinShelf -> {
-            Assert.assertEquals(expectedCapacity, coinShelf.capacity);
-            Assert.assertEquals(0, coinShelf.getItemCount());
-        });
+        CoinDispenser cashDispenser = CoinDispenserFactory.buildShelfWithGivenCoinItemCount(0);
+        Assert.assertEquals(expectedCapacity, cashDispenser.getCapacity());
+        for (Coin coin : Coin.values()) {
+            Assert.assertEquals(0, cashDispenser.getItemCount(coin));
+        }
 
         PowerMockito.verifyStatic(Mockito.times(1));
         CoinDispenserFactory.getConfig();
@@ -87,7 +84,6 @@ public class CoinDispenserFactoryTest {
     @Test
     public void should_build_full_cashDispenser_with_shelf_capacity_5() throws Exception {
         final int expectedCapacity = 5;
-        final int expectedSize = Coin.values().length;
         final int expectedAmount = 5;
         Collection<CashImport> stubCashImportsFull = TestUtils.getStubCashImportsFull(expectedAmount);
         VendingMachineConfiguration configMock = getConfigMock(expectedCapacity, 0, 0);
@@ -95,13 +91,12 @@ public class CoinDispenserFactoryTest {
         PowerMockito.spy(CoinDispenserFactory.class);
         PowerMockito.when(CoinDispenserFactory.getConfig()).thenReturn(configMock);
 
-        Map<Coin, Shelf<Coin>> cashDispenser = CoinDispenserFactory.buildShelf(stubCashImportsFull);
-        Assert.assertEquals(expectedSize, cashDispenser.size());
-        cashDispenser.values().forEach(coinShelf -> {
-            Assert.assertEquals(expectedCapacity, coinShelf.capacity);
-            Assert.assertEquals(expectedAmount, coinShelf.getItemCount());
-            Assert.assertTrue(coinShelf.countFreeSlots() == 0);
-        });
+        CoinDispenser cashDispenser = CoinDispenserFactory.buildShelf(stubCashImportsFull);
+        Assert.assertEquals(expectedCapacity, cashDispenser.getCapacity());
+        for (Coin coin : Coin.values()) {
+            Assert.assertEquals(expectedAmount, cashDispenser.getItemCount(coin));
+            Assert.assertTrue(cashDispenser.countFreeSlots(coin) == 0);
+        }
 
         PowerMockito.verifyStatic(Mockito.times(1));
         CoinDispenserFactory.getConfig();
@@ -110,7 +105,6 @@ public class CoinDispenserFactoryTest {
 
     @Test
     public void should_discard_items_since_shelf_got_full()  throws Exception {
-        final int expectedSize = Coin.values().length;
         final int expectedCapacity = 4;
         final int givenAmount = 7;
         final int expectedDiscardedItems = givenAmount - expectedCapacity;
@@ -122,11 +116,10 @@ public class CoinDispenserFactoryTest {
         PowerMockito.spy(CoinDispenserFactory.class);
         PowerMockito.when(CoinDispenserFactory.getConfig()).thenReturn(configMock);
 
-        Map<Coin, Shelf<Coin>> cashDispenser = CoinDispenserFactory.buildShelf(stubCashImport);
-        Assert.assertEquals(expectedSize, cashDispenser.size());
-        Assert.assertEquals(expectedCapacity, cashDispenser.get(fiftyCents).getItemCount());
-        Assert.assertEquals(expectedDiscardedItems, stubCashImport.getAmount() - cashDispenser.get(fiftyCents).getItemCount());
-        Assert.assertEquals(0, cashDispenser.get(fiftyCents).countFreeSlots());
+        CoinDispenser cashDispenser = CoinDispenserFactory.buildShelf(stubCashImport);
+        Assert.assertEquals(expectedCapacity, cashDispenser.getItemCount(fiftyCents));
+        Assert.assertEquals(expectedDiscardedItems, stubCashImport.getAmount() - cashDispenser.getItemCount(fiftyCents));
+        Assert.assertEquals(0, cashDispenser.countFreeSlots(fiftyCents));
 
         PowerMockito.verifyStatic(Mockito.times(1));
         CoinDispenserFactory.getConfig();
@@ -135,7 +128,6 @@ public class CoinDispenserFactoryTest {
 
     @Test
     public void should_build_non_full_shelf_since_import_amount_less_than_capacity()  throws Exception {
-        final int expectedSize = Coin.values().length;
         final int expectedCapacity = 4;
         final int givenAmount = 3;
         final int expectedDiscardedItems = 0;
@@ -146,12 +138,11 @@ public class CoinDispenserFactoryTest {
         PowerMockito.spy(CoinDispenserFactory.class);
         PowerMockito.when(CoinDispenserFactory.getConfig()).thenReturn(configMock);
 
-        Map<Coin, Shelf<Coin>> cashDispenser = CoinDispenserFactory.buildShelf(stubCashImport);
+        CoinDispenser cashDispenser = CoinDispenserFactory.buildShelf(stubCashImport);
 
-        Assert.assertEquals(expectedSize, cashDispenser.size());
-        Assert.assertEquals(stubCashImport.getAmount(), cashDispenser.get(fiftyCents).getItemCount());
-        Assert.assertEquals(expectedDiscardedItems, stubCashImport.getAmount() - cashDispenser.get(fiftyCents).getItemCount());
-        Assert.assertEquals(expectedCapacity - stubCashImport.getAmount(), cashDispenser.get(fiftyCents).countFreeSlots());
+        Assert.assertEquals(stubCashImport.getAmount(), cashDispenser.getItemCount(fiftyCents));
+        Assert.assertEquals(expectedDiscardedItems, stubCashImport.getAmount() - cashDispenser.getItemCount(fiftyCents));
+        Assert.assertEquals(expectedCapacity - stubCashImport.getAmount(), cashDispenser.countFreeSlots(fiftyCents));
 
         PowerMockito.verifyStatic(Mockito.times(1));
         CoinDispenserFactory.getConfig();
@@ -166,13 +157,12 @@ public class CoinDispenserFactoryTest {
         PowerMockito.spy(CoinDispenserFactory.class);
         PowerMockito.when(CoinDispenserFactory.getConfig()).thenReturn(configMock);
 
-        Map<Coin, Shelf<Coin>> coinShelfMap = CoinDispenserFactory.buildShelfWithGivenCoinItemCount(initialCount);
+        CoinDispenser coinDispenser = CoinDispenserFactory.buildShelfWithGivenCoinItemCount(initialCount);
 
-        Assert.assertEquals(Coin.values().length, coinShelfMap.size());
-        coinShelfMap.values().forEach(coinShelf -> {
-            Assert.assertEquals(expectedCapacity, coinShelf.capacity);
-            Assert.assertEquals(initialCount, coinShelf.getItemCount());
-        });
+        Assert.assertEquals(expectedCapacity, coinDispenser.getCapacity());
+        for (Coin coin : Coin.values()) {
+            Assert.assertEquals(initialCount, coinDispenser.getItemCount(coin));
+        }
 
         PowerMockito.verifyStatic(Mockito.times(1));
         CoinDispenserFactory.getConfig();
@@ -192,18 +182,18 @@ public class CoinDispenserFactoryTest {
 
         List<CashImport> cashImportsCollectionStub = Arrays.asList(new CashImport(fiftyCents.label, firstImportAmount),
             new CashImport(fiftyCents.label, secondImportAmount));
-        Map<Coin, Shelf<Coin>> coinShelf = CoinDispenserFactory.buildShelf(cashImportsCollectionStub);
-        coinShelf.values().forEach(shelf -> {
-            Assert.assertEquals(expectedCapacity, shelf.capacity);
-            if (shelf.getType() == fiftyCents) { //the only loaded coin shelf
-                Assert.assertEquals(expectedCapacity, shelf.getItemCount());
-                Assert.assertFalse(shelf.isEmpty());
-                Assert.assertEquals(expectedDiscardedItems, (firstImportAmount + secondImportAmount) - shelf.capacity);
+        CoinDispenser coinDispenser = CoinDispenserFactory.buildShelf(cashImportsCollectionStub);
+        Assert.assertEquals(expectedCapacity, coinDispenser.getCapacity());
+        for (Coin coin : Coin.values()) {
+            if (coin == fiftyCents) { //the only loaded coin shelf
+                Assert.assertEquals(expectedCapacity, coinDispenser.getItemCount(coin));
+                Assert.assertFalse(coinDispenser.isEmpty(coin));
+                Assert.assertEquals(expectedDiscardedItems, (firstImportAmount + secondImportAmount) - coinDispenser.getCapacity());
             } else {//other shelves must empty
-                Assert.assertEquals(0, shelf.getItemCount());
-                Assert.assertTrue(shelf.isEmpty());
+                Assert.assertEquals(0, coinDispenser.getItemCount(coin));
+                Assert.assertTrue(coinDispenser.isEmpty(coin));
             }
-        });
+        }
 
         PowerMockito.verifyStatic(Mockito.times(1));
         CoinDispenserFactory.getConfig();
@@ -0,0 +1,164 @@
+package tdd.vendingMachine.domain;
+
+import org.junit.Assert;
+import org.junit.Test;
+import tdd.vendingMachine.domain.exception.NotEnoughSlotsAvailableDispenserException;
+
+import java.util.InputMismatchException;
+
+/**
+ * @author Agustin Cabra on 3/6/2017.
+ * @since 2.1
+ */
+public class CoinDispenserTest {
+
+    private ChangePlan planOf(int amount, Coin coin, int count) {
+        int[] coins = new int[Coin.values().length];
+        coins[coin.order] = count;
+        return new ChangePlan(amount, coins);
+    }
+
+    @Test
+    public void should_build_dispenser_with_given_coins_per_denomination() {
+        CoinDispenser coinDispenser = new CoinDispenser(10, 4);
+
+        Assert.assertEquals(10, coinDispenser.getCapacity());
+        for (Coin coin : Coin.values()) {
+            Assert.assertEquals(4, coinDispenser.getItemCount(coin));
+            Assert.assertEquals(6, coinDispenser.countFreeSlots(coin));
+            Assert.assertFalse(coinDispenser.isEmpty(coin));
+        }
+    }
+
+    @Test
+    public void should_provision_and_dispense_only_given_coin() {
+        CoinDispenser coinDispenser = new CoinDispenser(10, 0);
+
+        Assert.assertEquals(3, coinDispenser.provision(Coin.FIFTY_CENTS, 3));
+        Assert.assertEquals(4, coinDispenser.provision(Coin.FIFTY_CENTS));
+        Assert.assertEquals(1, coinDispenser.dispense(Coin.FIFTY_CENTS, 3));
+        Assert.assertEquals(0, coinDispenser.dispense(Coin.FIFTY_CENTS));
+
+        Assert.assertTrue(coinDispenser.isEmpty(Coin.FIFTY_CENTS));
+        Assert.assertTrue(coinDispenser.isEmpty(Coin.ONE));
+    }
+
+    @Test
+    public void should_copy_coin_counts_indexed_by_order() {
+        CoinDispenser coinDispenser = new CoinDispenser(10, 1);
+        coinDispenser.provision(Coin.TWO, 2);
+
+        int[] counts = coinDispenser.copyCoinCountsTo(new int[Coin.countDenominations()]);
+
+        Assert.assertEquals(3, counts[Coin.TWO.order]);
+        Assert.assertEquals(1, counts[Coin.TEN_CENTS.order]);
+    }
+
+    @Test
+    public void should_keep_running_total_cash() {
+        CoinDispenser coinDispenser = new CoinDispenser(10, 1);
+        Assert.assertEquals(880, coinDispenser.totalCash());
+
+        coinDispenser.provision(Coin.FIVE, 2);
+        coinDispenser.dispense(Coin.TWENTY_CENTS);
+        coinDispenser.dispense(planOf(100, Coin.ONE, 1));
+
+        Assert.assertEquals(880 + 1000 - 20 - 100, coinDispenser.totalCash());
+    }
+
+    @Test
+    public void should_notify_listener_on_provision_and_dispense() {
+        CoinDispenser coinDispenser = new CoinDispenser(10, 5);
+        int[] notified = new int[2];
+        coinDispenser.setListener(new CoinDispenserListener() {
+            @Override
+            public void onProvision(Coin coin, int amount) {
+                notified[0] += coin.denomination * amount;
+            }
+
+            @Override
+            public void onDispense(Coin coin, int amount) {
+                notified[1] += coin.denomination * amount;
+            }
+        });
+
+        coinDispenser.provision(Coin.ONE, 2);
+        coinDispenser.dispense(Coin.TWENTY_CENTS, 3);
+
+        Assert.assertEquals(200, notified[0]);
+        Assert.assertEquals(60, notified[1]);
+    }
+
+    @Test
+    public void should_dispense_change_plan() {
+        CoinDispenser coinDispenser = new CoinDispenser(10, 5);
+
+        coinDispenser.dispense(planOf(60, Coin.TWENTY_CENTS, 3));
+
+        Assert.assertEquals(2, coinDispenser.getItemCount(Coin.TWENTY_CENTS));
+        Assert.assertEquals(5, coinDispenser.getItemCount(Coin.TEN_CENTS));
+    }
+
+    @Test
+    public void should_leave_dispenser_untouched_when_plan_not_applicable() {
+        CoinDispenser coinDispenser = new CoinDispenser(10, 2);
+        boolean exceptionThrown = false;
+
+        try {
+            coinDispenser.dispense(planOf(60, Coin.TWENTY_CENTS, 3));
+        } catch (InputMismatchException e) {
+            exceptionThrown = true;
+        }
+
+        Assert.assertTrue(exceptionThrown);
+        Assert.assertEquals(2, coinDispenser.getItemCount(Coin.TWENTY_CENTS));
+    }
+
+    @Test(expected = NotEnoughSlotsAvailableDispenserException.class)
+    public void should_fail_provision_exceeding_capacity() {
+        new CoinDispenser(2, 1).provision(Coin.TWO, 2);
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void should_fail_dispense_more_coins_than_available() {
+        new CoinDispenser(2, 1).dispense(Coin.TWO, 2);
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void should_fail_negative_amount() {
+        new CoinDispenser(2, 1).provision(Coin.TWO, -1);
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void should_fail_item_count_exceeding_capacity() {
+        new CoinDispenser(2, 3);
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void should_fail_non_positive_capacity() {
+        new CoinDispenser(0, 0);
+    }
+
+    @Test
+    public void should_accept_coins_up_to_new_capacity_after_resize() {
+        CoinDispenser coinDispenser = new CoinDispenser(5, 5);
+
+        coinDispenser.resize(6);
+        coinDispenser.provision(Coin.ONE);
+        Assert.assertEquals(6, coinDispenser.getCapacity());
+        Assert.assertEquals(0, coinDispenser.countFreeSlots(Coin.ONE));
+        Assert.assertEquals(1, coinDispenser.countFreeSlots(Coin.TWO));
+
+        coinDispenser.resize(2);
+        Assert.assertEquals(0, coinDispenser.countFreeSlots(Coin.TWO));
+        Assert.assertEquals(5, coinDispenser.getItemCount(Coin.TWO));
+    }
+
+    @Test(expected = NotEnoughSlotsAvailableDispenserException.class)
+    public void should_reject_coins_over_reduced_capacity() {
+        CoinDispenser coinDispenser = new CoinDispenser(5, 3);
+
+        coinDispenser.resize(3);
+        coinDispenser.provision(Coin.ONE);
+    }
+}
@@ -92,4 +92,19 @@ public class CoinTest {
         }
         Assert.assertFalse(coinIterator.hasNext());
     }
+
+    @Test
+    public void should_retrieve_coins_by_order_ascending_denomination() {
+        Assert.assertEquals(Coin.values().length, Coin.countDenominations());
+        Assert.assertEquals(Coin.TEN_CENTS, Coin.retrieveCoinByOrder(0));
+        Assert.assertEquals(Coin.FIVE, Coin.retrieveCoinByOrder(Coin.countDenominations() - 1));
+        for (int order = 0; order < Coin.countDenominations(); order++) {
+            Assert.assertEquals(order, Coin.retrieveCoinByOrder(order).order);
+        }
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void should_fail_retrieving_coin_since_order_does_not_exist() {
+        Coin.retrieveCoinByOrder(Coin.countDenominations());
+    }
 }
@@ -0,0 +1,133 @@
+package tdd.vendingMachine.domain;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Agustin Cabra on 3/8/2017.
+ * @since 2.1
+ */
+public class ConfigurationWatcherTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private VendingMachineConfiguration previous;
+    private Path configFile;
+
+    @Before
+    public void setup() throws IOException {
+        previous = VendingMachineConfiguration.current();
+        configFile = temporaryFolder.getRoot().toPath().resolve("vending.properties");
+        writeConfig(20, 8);
+    }
+
+    @After
+    public void tearDown() {
+        VendingMachineConfiguration.publish(previous);
+    }
+
+    private void writeConfig(int coinShelfCapacity, int productShelfCapacity) throws IOException {
+        writeConfig(String.valueOf(coinShelfCapacity), String.valueOf(productShelfCapacity));
+    }
+
+    private void writeConfig(String coinShelfCapacity, String productShelfCapacity) throws IOException {
+        String content = VendingMachineConfiguration.COIN_SHELF_CAPACITY_KEY + "=" + coinShelfCapacity + "\n"
+            + VendingMachineConfiguration.SHELF_CAPACITY_KEY + "=" + productShelfCapacity + "\n";
+        Path temporary = configFile.resolveSibling("vending.properties.tmp");
+        Files.write(temporary, content.getBytes(StandardCharsets.ISO_8859_1));
+        Files.move(temporary, configFile, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void awaitReloads(ConfigurationWatcher watcher, long reloads) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (watcher.countReloads() < reloads && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        Assert.assertTrue("configuration was not reloaded", watcher.countReloads() >= reloads);
+    }
+
+    private void awaitRejectedReloads(ConfigurationWatcher watcher, long rejectedReloads) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (watcher.countRejectedReloads() < rejectedReloads && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        Assert.assertTrue("configuration was not rejected", watcher.countRejectedReloads() >= rejectedReloads);
+    }
+
+    @Test
+    public void should_publish_file_on_start() throws Exception {
+        long generation = VendingMachineConfiguration.currentGeneration();
+        try (ConfigurationWatcher watcher = ConfigurationWatcher.start(configFile)) {
+            Assert.assertEquals(1, watcher.countReloads());
+            Assert.assertEquals(20, VendingMachineConfiguration.current().getCoinShelfCapacity());
+            Assert.assertEquals(8, VendingMachineConfiguration.current().getProductShelfCapacity());
+            Assert.assertTrue(VendingMachineConfiguration.currentGeneration() > generation);
+        }
+    }
+
+    @Test
+    public void should_publish_new_snapshot_when_file_changes() throws Exception {
+        try (ConfigurationWatcher watcher = ConfigurationWatcher.start(configFile)) {
+            VendingMachineConfiguration started = VendingMachineConfiguration.current();
+
+            writeConfig(30, 9);
+            awaitReloads(watcher, 2);
+
+            VendingMachineConfiguration reloaded = VendingMachineConfiguration.current();
+            Assert.assertNotSame(started, reloaded);
+            Assert.assertEquals(30, reloaded.getCoinShelfCapacity());
+            Assert.assertEquals(9, reloaded.getProductShelfCapacity());
+            Assert.assertTrue(watcher.getLastReloadLatencyNanos() > 0);
+            Assert.assertEquals(0, watcher.countMachinesAffectedByLastReload());
+        }
+    }
+
+    @Test
+    public void should_keep_snapshot_when_file_is_removed() throws Exception {
+        try (ConfigurationWatcher watcher = ConfigurationWatcher.start(configFile)) {
+            VendingMachineConfiguration started = VendingMachineConfiguration.current();
+
+            Files.delete(configFile);
+            writeConfig(40, 10);
+            awaitReloads(watcher, 2);
+            Files.delete(configFile);
+            Thread.sleep(100);
+
+            Assert.assertNotSame(started, VendingMachineConfiguration.current());
+            Assert.assertEquals(40, VendingMachineConfiguration.current().getCoinShelfCapacity());
+        }
+    }
+
+    @Test
+    public void should_reject_capacity_lower_than_one_and_values_not_numbers_and_keep_watching() throws Exception {
+        try (ConfigurationWatcher watcher = ConfigurationWatcher.start(configFile)) {
+            VendingMachineConfiguration started = VendingMachineConfiguration.current();
+
+            writeConfig(0, 8);
+            awaitRejectedReloads(watcher, 1);
+            Assert.assertSame(started, VendingMachineConfiguration.current());
+            long rejected = watcher.countRejectedReloads();
+            writeConfig("20", "eight");
+            awaitRejectedReloads(watcher, rejected + 1);
+            Assert.assertSame(started, VendingMachineConfiguration.current());
+            writeConfig(30, 9);
+            awaitReloads(watcher, 2);
+
+            Assert.assertEquals(30, VendingMachineConfiguration.current().getCoinShelfCapacity());
+            Assert.assertEquals(9, VendingMachineConfiguration.current().getProductShelfCapacity());
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package tdd.vendingMachine.domain;
+
+import org.junit.Assert;
+import org.junit.Test;
+import tdd.vendingMachine.domain.exception.NotEnoughSlotsAvailableDispenserException;
+
+/**
+ * @author Agustin Cabra on 3/6/2017.
+ * @since 2.1
+ */
+public class CreditEscrowTest {
+
+    @Test
+    public void should_count_coins_per_denomination() {
+        CreditEscrow creditEscrow = new CreditEscrow();
+        Assert.assertTrue(creditEscrow.isEmpty());
+
+        creditEscrow.add(Coin.TEN_CENTS);
+        creditEscrow.add(Coin.TEN_CENTS);
+        creditEscrow.add(Coin.TWO);
+
+        Assert.assertFalse(creditEscrow.isEmpty());
+        Assert.assertEquals(3, creditEscrow.countCoins());
+        Assert.assertEquals(2, creditEscrow.countCoins(Coin.TEN_CENTS));
+        Assert.assertEquals(1, creditEscrow.countCoins(Coin.TWO));
+        Assert.assertEquals(0, creditEscrow.countCoins(Coin.FIVE));
+    }
+
+    @Test
+    public void should_remove_every_coin_of_denomination() {
+        CreditEscrow creditEscrow = new CreditEscrow();
+        creditEscrow.add(Coin.ONE);
+        creditEscrow.add(Coin.ONE);
+        creditEscrow.add(Coin.FIVE);
+
+        Assert.assertEquals(2, creditEscrow.removeAll(Coin.ONE));
+        Assert.assertEquals(0, creditEscrow.countCoins(Coin.ONE));
+        Assert.assertEquals(1, creditEscrow.countCoins());
+
+        creditEscrow.clear();
+        Assert.assertTrue(creditEscrow.isEmpty());
+    }
+
+    @Test
+    public void should_provision_coins_to_dispenser_keeping_escrow() {
+        CoinDispenser coinDispenser = new CoinDispenser(10, 0);
+        CreditEscrow creditEscrow = new CreditEscrow();
+        creditEscrow.add(Coin.FIFTY_CENTS);
+        creditEscrow.add(Coin.FIFTY_CENTS);
+        creditEscrow.add(Coin.ONE);
+
+        creditEscrow.provisionTo(coinDispenser);
+
+        Assert.assertEquals(2, coinDispenser.getItemCount(Coin.FIFTY_CENTS));
+        Assert.assertEquals(1, coinDispenser.getItemCount(Coin.ONE));
+        Assert.assertEquals(3, creditEscrow.countCoins());
+    }
+
+    @Test
+    public void should_leave_dispenser_untouched_when_coins_do_not_fit() {
+        CoinDispenser coinDispenser = new CoinDispenser(2, 1);
+        CreditEscrow creditEscrow = new CreditEscrow();
+        creditEscrow.add(Coin.TEN_CENTS);
+        creditEscrow.add(Coin.TWO);
+        creditEscrow.add(Coin.TWO);
+        boolean exceptionThrown = false;
+
+        try {
+            creditEscrow.provisionTo(coinDispenser);
+        } catch (NotEnoughSlotsAvailableDispenserException e) {
+            exceptionThrown = true;
+        }
+
+        Assert.assertTrue(exceptionThrown);
+        Assert.assertEquals(1, coinDispenser.getItemCount(Coin.TEN_CENTS));
+        Assert.assertEquals(1, coinDispenser.getItemCount(Coin.TWO));
+    }
+}
@@ -0,0 +1,65 @@
+package tdd.vendingMachine.domain;
+
+import org.junit.Assert;
+import org.junit.Test;
+import tdd.vendingMachine.view.DisplayEvent;
+
+import java.util.ArrayList;
+import java.util.InputMismatchException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Agustin Cabra on 3/7/2017.
+ * @since 2.1
+ */
+public class DisplayRendererTest {
+
+    @Test
+    public void should_render_published_messages_in_order() {
+        List<String> rendered = new CopyOnWriteArrayList<>();
+        DisplayRenderer renderer = new DisplayRenderer(4, rendered::add);
+        List<String> expected = new ArrayList<>();
+
+        for (int i = 0; i < 50; i++) {
+            expected.add("message " + i);
+            while (!renderer.publish(DisplayEvent.text("message " + i))) {
+                Thread.yield();
+            }
+        }
+
+        Assert.assertTrue(renderer.awaitRendered(5, TimeUnit.SECONDS));
+        Assert.assertEquals(expected, rendered);
+    }
+
+    @Test
+    public void should_drop_messages_instead_of_blocking_when_ring_is_full() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch rendering = new CountDownLatch(1);
+        DisplayRenderer renderer = new DisplayRenderer(2, message -> {
+            rendering.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        Assert.assertTrue(renderer.publish(DisplayEvent.text("blocking sink")));
+        Assert.assertTrue(rendering.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(renderer.publish(DisplayEvent.text("first")));
+        Assert.assertTrue(renderer.publish(DisplayEvent.text("second")));
+        Assert.assertFalse(renderer.publish(DisplayEvent.text("dropped")));
+        Assert.assertEquals(1, renderer.countDroppedMessages());
+
+        release.countDown();
+        Assert.assertTrue(renderer.awaitRendered(5, TimeUnit.SECONDS));
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void should_fail_capacity_not_power_of_two() {
+        new DisplayRenderer(3, message -> {});
+    }
+}
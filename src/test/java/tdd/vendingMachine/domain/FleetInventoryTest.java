@@ -0,0 +1,124 @@
+package tdd.vendingMachine.domain;
+
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.InputMismatchException;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * @author Agustin Cabra on 3/8/2017.
+ * @since 2.1
+ */
+public class FleetInventoryTest {
+
+    private static final Logger logger = Logger.getLogger(FleetInventoryTest.class);
+
+    private List<Product> products;
+
+    @Before
+    public void setup() {
+        products = Arrays.asList(new Product(100, "product_100"), new Product(250, "product_250"));
+    }
+
+    @Test
+    public void should_load_every_machine_with_given_counts() {
+        FleetInventory fleetInventory = new FleetInventory(products, 10, 3, 20, 5, 4);
+
+        Assert.assertEquals(4, fleetInventory.countMachines());
+        Assert.assertEquals(2, fleetInventory.countShelvesPerMachine());
+        Assert.assertEquals(6, fleetInventory.countProducts(3));
+        Assert.assertEquals(24, fleetInventory.countTotalProducts());
+        Assert.assertEquals(5, fleetInventory.countCoins(2, Coin.TWO));
+        Assert.assertEquals(0, fleetInventory.countSoldOutMachines());
+    }
+
+    @Test
+    public void should_write_shelf_views_through_to_store() {
+        FleetInventory fleetInventory = new FleetInventory(products, 10, 1, 20, 5, 3);
+        Map<Integer, Shelf<Product>> shelves = fleetInventory.provideProductShelves(1);
+
+        shelves.get(0).dispense();
+        shelves.get(1).dispense();
+        fleetInventory.provideProductShelves(2).get(1).provision(4);
+
+        Assert.assertEquals(10, shelves.get(1).getCapacity());
+        Assert.assertEquals("product_250", shelves.get(1).getType().getType());
+        Assert.assertEquals(0, fleetInventory.countProducts(1));
+        Assert.assertEquals(5, fleetInventory.countProductsOnShelf(2, 1));
+        Assert.assertEquals(1, fleetInventory.countProductsOnShelf(0, 1));
+        Assert.assertEquals(1, fleetInventory.countSoldOutMachines());
+    }
+
+    @Test
+    public void should_write_coin_dispenser_views_through_to_store() {
+        FleetInventory fleetInventory = new FleetInventory(products, 10, 1, 20, 5, 2);
+        CoinDispenser coinDispenser = fleetInventory.provideCoinDispenser(1);
+        int cashBefore = coinDispenser.totalCash();
+
+        coinDispenser.provision(Coin.FIFTY_CENTS, 2);
+        coinDispenser.dispense(Coin.FIVE);
+
+        Assert.assertEquals(cashBefore + 100 - 500, coinDispenser.totalCash());
+        Assert.assertEquals(7, fleetInventory.countCoins(1, Coin.FIFTY_CENTS));
+        Assert.assertEquals(4, fleetInventory.countCoins(1, Coin.FIVE));
+        Assert.assertEquals(5, fleetInventory.countCoins(0, Coin.FIVE));
+        Assert.assertEquals(coinDispenser.totalCash(), fleetInventory.provideCoinDispenser(1).totalCash());
+    }
+
+    @Test
+    public void should_provide_the_same_views_on_every_call() {
+        FleetInventory fleetInventory = new FleetInventory(products, 10, 3, 20, 5, 2);
+
+        Assert.assertSame(fleetInventory.provideProductShelves(1), fleetInventory.provideProductShelves(1));
+        Assert.assertSame(fleetInventory.provideCoinDispenser(1), fleetInventory.provideCoinDispenser(1));
+        Assert.assertNotSame(fleetInventory.provideCoinDispenser(0), fleetInventory.provideCoinDispenser(1));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void should_fail_claiming_machine_twice() {
+        FleetInventory fleetInventory = new FleetInventory(products, 10, 3, 20, 5, 2);
+        fleetInventory.claimMachine(1);
+
+        fleetInventory.claimMachine(1);
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void should_fail_unknown_machine() {
+        new FleetInventory(products, 10, 1, 20, 5, 2).provideCoinDispenser(2);
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void should_fail_unknown_shelf() {
+        new FleetInventory(products, 10, 1, 20, 5, 2).countProductsOnShelf(0, 2);
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void should_fail_item_count_over_capacity() {
+        new FleetInventory(products, 10, 11, 20, 5, 2);
+    }
+
+    @Test
+    public void should_report_memory_per_machine() {
+        int machineCount = 100_000;
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long usedBefore = runtime.totalMemory() - runtime.freeMemory();
+
+        FleetInventory fleetInventory = new FleetInventory(products, 10, 5, 20, 5, machineCount);
+        long start = System.nanoTime();
+        long total = fleetInventory.countTotalProducts();
+        long scan = System.nanoTime() - start;
+
+        System.gc();
+        long usedAfter = runtime.totalMemory() - runtime.freeMemory();
+        Assert.assertEquals(10L * machineCount, total);
+        logger.info(String.format("fleet inventory of %d machines: ~%d bytes per machine, full scan in %d us", machineCount,
+            (usedAfter - usedBefore) / machineCount, scan / 1000));
+    }
+}
@@ -0,0 +1,81 @@
+package tdd.vendingMachine.domain;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.InputMismatchException;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Agustin Cabra on 3/8/2017.
+ * @since 2.1
+ */
+public class ProductCatalogTest {
+
+    private ProductCatalog productCatalog;
+
+    @Before
+    public void setup() {
+        productCatalog = new ProductCatalog();
+    }
+
+    @Test
+    public void should_share_one_instance_per_type_and_price() {
+        Product cola = productCatalog.intern(200, "Cola drink 0.25l");
+
+        Assert.assertSame(cola, productCatalog.intern(200, "Cola drink 0.25l"));
+        Assert.assertSame(cola, productCatalog.intern(new Product(200, "Cola drink 0.25l")));
+        Assert.assertNotSame(cola, productCatalog.intern(250, "Cola drink 0.25l"));
+        Assert.assertEquals(2, productCatalog.size());
+    }
+
+    @Test
+    public void should_assign_compact_ids_in_interning_order() {
+        Product cola = productCatalog.intern(200, "Cola drink 0.25l");
+        Product chocolate = productCatalog.intern(250, "chocolate bar");
+        productCatalog.intern(200, "Cola drink 0.25l");
+
+        Assert.assertEquals(0, productCatalog.idOf(cola));
+        Assert.assertEquals(1, productCatalog.idOf(new Product(250, "chocolate bar")));
+        Assert.assertSame(chocolate, productCatalog.provideProduct(1));
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void should_fail_id_of_unknown_product() {
+        productCatalog.idOf(new Product(100, "unknown"));
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void should_fail_unknown_id() {
+        productCatalog.intern(100, "known");
+        productCatalog.provideProduct(1);
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void should_fail_product_without_type() {
+        productCatalog.intern(100, "");
+    }
+
+    @Test
+    public void should_intern_concurrently_into_one_instance() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Product>> interned = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            final int price = 100 + (i % 10) * 10;
+            interned.add(executor.submit(() -> productCatalog.intern(price, "product_" + price)));
+        }
+        for (Future<Product> product : interned) {
+            Assert.assertSame(product.get(), productCatalog.provideProduct(productCatalog.idOf(product.get())));
+        }
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        Assert.assertEquals(10, productCatalog.size());
+    }
+}
@@ -0,0 +1,82 @@
+package tdd.vendingMachine.domain;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.InputMismatchException;
+import java.util.Map;
+
+/**
+ * @author Agustin Cabra on 3/6/2017.
+ * @since 2.1
+ */
+public class ProductInventoryTest {
+
+    private Map<Integer, Shelf<Product>> productShelves;
+
+    @Before
+    public void setup() {
+        productShelves = new HashMap<>();
+        Product product = new Product(100, "product_100");
+        productShelves.put(0, ShelfFactory.buildShelf(0, product, 10, 2));
+        productShelves.put(1, ShelfFactory.buildShelf(1, product, 10, 0));
+        productShelves.put(2, ShelfFactory.buildShelf(2, product, 10, 3));
+    }
+
+    @Test
+    public void should_aggregate_existing_products() {
+        ProductInventory productInventory = new ProductInventory(productShelves);
+
+        Assert.assertEquals(5, productInventory.countProducts());
+        Assert.assertFalse(productInventory.isSoldOut());
+        Assert.assertTrue(productInventory.hasProducts(0));
+        Assert.assertFalse(productInventory.hasProducts(1));
+        Assert.assertTrue(productInventory.hasProducts(2));
+        Assert.assertFalse(productInventory.hasProducts(-1));
+    }
+
+    @Test
+    public void should_find_next_available_shelf() {
+        ProductInventory productInventory = new ProductInventory(productShelves);
+
+        Assert.assertEquals(0, productInventory.nextAvailableShelf(-5));
+        Assert.assertEquals(2, productInventory.nextAvailableShelf(1));
+        Assert.assertEquals(-1, productInventory.nextAvailableShelf(3));
+    }
+
+    @Test
+    public void should_track_dispense_and_provision_on_shelves() {
+        ProductInventory productInventory = new ProductInventory(productShelves);
+
+        productShelves.get(0).dispense(2);
+        Assert.assertEquals(3, productInventory.countProducts());
+        Assert.assertFalse(productInventory.hasProducts(0));
+        Assert.assertEquals(2, productInventory.nextAvailableShelf(0));
+
+        productShelves.get(2).dispense(3);
+        Assert.assertTrue(productInventory.isSoldOut());
+        Assert.assertEquals(-1, productInventory.nextAvailableShelf(0));
+
+        productShelves.get(1).provision(4);
+        Assert.assertEquals(4, productInventory.countProducts());
+        Assert.assertEquals(1, productInventory.nextAvailableShelf(0));
+    }
+
+    @Test
+    public void should_keep_shelf_available_on_partial_dispense() {
+        ProductInventory productInventory = new ProductInventory(productShelves);
+
+        productShelves.get(2).dispense();
+
+        Assert.assertEquals(4, productInventory.countProducts());
+        Assert.assertTrue(productInventory.hasProducts(2));
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void should_fail_negative_shelf_id() {
+        productShelves.put(-1, ShelfFactory.buildShelf(-1, new Product(100, "product_100"), 10, 1));
+        new ProductInventory(productShelves);
+    }
+}
@@ -22,4 +22,13 @@ public class ProductTest {
         Assert.assertEquals(productPrice, productStub.provideValue());
         Assert.assertEquals(productType, productStub.provideType());
     }
+
+    @Test
+    public void should_provide_equal_hash_code_for_equal_products() {
+        Product product = new Product(150, "Cola drink 0.25l");
+
+        Assert.assertEquals(new Product(150, "Cola drink 0.25l"), product);
+        Assert.assertEquals(new Product(150, "Cola drink 0.25l").hashCode(), product.hashCode());
+        Assert.assertNotEquals(new Product(160, "Cola drink 0.25l"), product);
+    }
 }
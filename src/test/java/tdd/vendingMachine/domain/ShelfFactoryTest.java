@@ -40,7 +40,7 @@ public class ShelfFactoryTest {
         Shelf<Product> shelfStub = ShelfFactory.<Product>buildShelf(shelfId, product, capacity);
 
         Assert.assertEquals(type, shelfStub.getType().getType());
-        Assert.assertEquals(capacity, shelfStub.capacity);
+        Assert.assertEquals(capacity, shelfStub.getCapacity());
         Assert.assertEquals(0, shelfStub.getItemCount());
         Assert.assertTrue(shelfStub.isEmpty());
     }
@@ -50,7 +50,7 @@ public class ShelfFactoryTest {
         Shelf<Product> shelfStub = ShelfFactory.buildShelf(shelfId, product, capacity, itemCount);
 
         Assert.assertEquals(type, shelfStub.getType().getType());
-        Assert.assertEquals(capacity, shelfStub.capacity);
+        Assert.assertEquals(capacity, shelfStub.getCapacity());
         Assert.assertEquals(itemCount, shelfStub.getItemCount());
         Assert.assertFalse(shelfStub.isEmpty());
     }
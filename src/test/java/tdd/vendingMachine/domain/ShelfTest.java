@@ -7,7 +7,14 @@ import org.junit.Test;
 import org.mockito.Mockito;
 import tdd.vendingMachine.domain.exception.NotEnoughSlotsAvailableDispenserException;
 
+import java.util.ArrayList;
 import java.util.InputMismatchException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author Agustin Cabra on 2/20/2017.
@@ -61,21 +68,21 @@ public class ShelfTest {
     @Test(expected = NotEnoughSlotsAvailableDispenserException.class)
     public void should_fail_to_provision_many_items_to_full_shelf() {
         Shelf<Product> shelf = this.fullShelf;
-        Assert.assertTrue(shelf.capacity == shelf.getItemCount());
+        Assert.assertTrue(shelf.getCapacity() == shelf.getItemCount());
         shelf.provision(2);
     }
 
     @Test(expected = NotEnoughSlotsAvailableDispenserException.class)
     public void should_fail_to_provision_one_item_to_full_shelf() {
         Shelf<Product> shelf = this.fullShelf;
-        Assert.assertTrue(shelf.capacity == shelf.getItemCount());
+        Assert.assertTrue(shelf.getCapacity() == shelf.getItemCount());
         shelf.provision();
     }
 
     @Test(expected = InputMismatchException.class)
     public void should_fail_to_provision_negative_items_to_full_shelf() {
         Shelf<Product> shelf = this.fullShelf;
-        Assert.assertTrue(shelf.capacity == shelf.getItemCount());
+        Assert.assertTrue(shelf.getCapacity() == shelf.getItemCount());
         shelf.provision(-2);
     }
 
@@ -83,7 +90,7 @@ public class ShelfTest {
     @Test(expected = InputMismatchException.class)
     public void should_fail_to_provision_negative_items_to_non_empty_shelf() {
         Shelf<Product> shelf = this.nonEmptyShelf;
-        Assert.assertTrue(shelf.capacity >= shelf.getItemCount());
+        Assert.assertTrue(shelf.getCapacity() >= shelf.getItemCount());
         shelf.provision(-2);
     }
 
@@ -138,14 +145,14 @@ public class ShelfTest {
     @Test(expected = InputMismatchException.class)
     public void should_fail_to_dispense_negative_item_from_full_shelf() {
         Shelf<Product> shelf = this.fullShelf;
-        Assert.assertTrue(shelf.getItemCount() == shelf.capacity);
+        Assert.assertTrue(shelf.getItemCount() == shelf.getCapacity());
         shelf.dispense(-2);
     }
 
     @Test(expected = InputMismatchException.class)
     public void should_fail_to_dispense_negative_item_from_non_empty_shelf() {
         Shelf<Product> shelf = this.fullShelf;
-        Assert.assertTrue(shelf.capacity == shelf.getItemCount());
+        Assert.assertTrue(shelf.getCapacity() == shelf.getItemCount());
         shelf.dispense(-2);
     }
 
@@ -192,4 +199,68 @@ public class ShelfTest {
         Shelf<Product> productShelf2 = ShelfFactory.buildShelf(1, product, 1);
         Assert.assertEquals(productShelf.hashCode(), productShelf2.hashCode());
     }
+
+    @Test
+    public void should_notify_listener_on_provision_and_dispense() {
+        @SuppressWarnings("unchecked")
+        ShelfListener<Product> listener = Mockito.mock(ShelfListener.class);
+        nonEmptyShelf.setListener(listener);
+
+        nonEmptyShelf.provision(3);
+        nonEmptyShelf.dispense(2);
+        nonEmptyShelf.provision(0);
+
+        Mockito.verify(listener, Mockito.times(1)).onProvision(nonEmptyShelf, 3);
+        Mockito.verify(listener, Mockito.times(1)).onDispense(nonEmptyShelf, 2);
+        Mockito.verifyNoMoreInteractions(listener);
+    }
+
+    @Test
+    public void should_never_dispense_more_items_than_available_concurrently() throws Exception {
+        int threads = 4;
+        Shelf<Product> shelf = ShelfFactory.buildShelf(1, productMock, 1000, 1000);
+        AtomicInteger dispensed = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(() -> {
+                for (int j = 0; j < 400; j++) {
+                    try {
+                        shelf.dispense();
+                        dispensed.incrementAndGet();
+                    } catch (InputMismatchException e) {
+                        return;
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        Assert.assertEquals(1000, dispensed.get());
+        Assert.assertEquals(0, shelf.getItemCount());
+    }
+
+    @Test
+    public void should_accept_items_up_to_new_capacity_after_resize() {
+        Shelf<Product> shelf = ShelfFactory.buildShelf(0, new Product(100, "product_100"), 5, 5);
+
+        shelf.resize(7);
+        shelf.provision(2);
+        Assert.assertEquals(7, shelf.getCapacity());
+        Assert.assertEquals(0, shelf.countFreeSlots());
+
+        shelf.resize(3);
+        Assert.assertEquals(7, shelf.getItemCount());
+        Assert.assertEquals(0, shelf.countFreeSlots());
+        shelf.dispense(5);
+        Assert.assertEquals(1, shelf.countFreeSlots());
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void should_fail_resize_to_non_positive_capacity() {
+        ShelfFactory.buildShelf(0, new Product(100, "product_100"), 5, 5).resize(0);
+    }
 }
@@ -22,6 +22,8 @@ public class VendingMachineConfigurationTest {
 
         Assert.assertEquals(expectedCapacity, vendingMachineConfiguration.getProductShelfCapacity());
         Assert.assertEquals(expectedCount, vendingMachineConfiguration.getProductShelfCount());
+        Assert.assertEquals(Boolean.parseBoolean(VendingMachineConfiguration.FAST_TRANSITIONS_DEFAULT),
+            vendingMachineConfiguration.isFastTransitionsEnabled());
     }
 
     @Test
@@ -30,11 +32,13 @@ public class VendingMachineConfigurationTest {
         prop.load(this.getClass().getClassLoader().getResourceAsStream(VendingMachineConfiguration.DEFAULT_CONFIG_FILE));
         int capacityInConfigFile = Integer.parseInt(prop.getProperty(VendingMachineConfiguration.SHELF_CAPACITY_KEY));
         int countInConfigFile = Integer.parseInt(prop.getProperty(VendingMachineConfiguration.SHELF_COUNT_KEY));
+        boolean fastTransitionsInConfigFile = Boolean.parseBoolean(prop.getProperty(VendingMachineConfiguration.FAST_TRANSITIONS_KEY));
 
         VendingMachineConfiguration vendingMachineConfiguration = new VendingMachineConfiguration();
 
         Assert.assertEquals(capacityInConfigFile, vendingMachineConfiguration.getProductShelfCapacity());
         Assert.assertEquals(countInConfigFile, vendingMachineConfiguration.getProductShelfCount());
+        Assert.assertEquals(fastTransitionsInConfigFile, vendingMachineConfiguration.isFastTransitionsEnabled());
     }
 
     @Test
@@ -50,4 +54,25 @@ public class VendingMachineConfigurationTest {
         Assert.assertEquals(capacityInConfigFile, vendingMachineConfiguration.getProductShelfCapacity());
         Assert.assertEquals(countInConfigFile, vendingMachineConfiguration.getProductShelfCount());
     }
+
+    @Test
+    public void should_share_one_snapshot_until_a_new_one_is_published() {
+        VendingMachineConfiguration current = VendingMachineConfiguration.current();
+        VendingMachineConfiguration replacement = new VendingMachineConfiguration("config_test.properties");
+
+        Assert.assertSame(current, VendingMachineConfiguration.current());
+        try {
+            Assert.assertSame(current, VendingMachineConfiguration.publish(replacement));
+            Assert.assertSame(replacement, VendingMachineConfiguration.current());
+        } finally {
+            VendingMachineConfiguration.publish(current);
+        }
+        Assert.assertSame(current, VendingMachineConfiguration.current());
+    }
+
+    @Test
+    public void should_tell_whether_properties_were_loaded_from_file() {
+        Assert.assertTrue(new VendingMachineConfiguration().isLoadedFromFile());
+        Assert.assertFalse(new VendingMachineConfiguration("inexistent.file").isLoadedFromFile());
+    }
 }
@@ -5,6 +5,11 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
 /**
  * @author Agustin Cabra on 2/20/2017.
  * @since 1.0
@@ -33,4 +38,33 @@ public class VendingMachineDisplayTest {
 
         Assert.assertEquals(notification, vmd.getCurrentMessage());
     }
+
+    @Test
+    public void should_keep_bounded_history_of_recent_messages() {
+        int published = VendingMachineDisplay.HISTORY_SIZE + 3;
+        for (int i = 0; i < published; i++) {
+            vmd.update("message " + i);
+        }
+
+        List<String> recentMessages = vmd.getRecentMessages();
+
+        Assert.assertEquals(VendingMachineDisplay.HISTORY_SIZE, recentMessages.size());
+        Assert.assertEquals("message 3", recentMessages.get(0));
+        Assert.assertEquals("message " + (published - 1), recentMessages.get(recentMessages.size() - 1));
+        Assert.assertEquals("message " + (published - 1), vmd.getCurrentMessage());
+    }
+
+    @Test
+    public void should_render_messages_on_given_renderer() {
+        List<String> rendered = new CopyOnWriteArrayList<>();
+        DisplayRenderer renderer = new DisplayRenderer(8, rendered::add);
+        VendingMachineDisplay display = new VendingMachineDisplay(renderer);
+
+        display.update("first");
+        display.update("second");
+
+        Assert.assertTrue(display.getRecentMessages().containsAll(Arrays.asList("first", "second")));
+        Assert.assertTrue(renderer.awaitRendered(5, TimeUnit.SECONDS));
+        Assert.assertEquals(Arrays.asList("first", "second"), rendered);
+    }
 }
@@ -0,0 +1,96 @@
+package tdd.vendingMachine.persistence;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.Handle;
+
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author Agustin Cabra on 3/12/2017.
+ * @since 2.1
+ */
+public class MachineDaoTest {
+
+    private static final String RUN = "00000000-0000-0000-0000-000000000001";
+    private static final String OTHER_RUN = "00000000-0000-0000-0000-000000000002";
+
+    private Handle handle;
+    private MachineDao machineDao;
+
+    @Before
+    public void setup() {
+        handle = new DBI("jdbc:h2:mem:machine_dao_test").open();
+        machineDao = handle.attach(MachineDao.class);
+        machineDao.createTransactionTable();
+        machineDao.createShelfLevelTable();
+        machineDao.createCoinLevelTable();
+    }
+
+    @After
+    public void tearDown() {
+        handle.close();
+    }
+
+    @Test
+    public void should_insert_transactions_in_batch() {
+        machineDao.insertTransactions(Arrays.asList(
+            new TransactionRow(RUN, 0, 1, "COIN_CREDITED", "1.0$", null, null, null),
+            new TransactionRow(RUN, 1, 1, "CREDIT_REFUNDED", "1.0$", null, 1, null),
+            new TransactionRow(RUN, 2, 2, "PRODUCT_SOLD", null, 0, null, 50)));
+
+        Assert.assertEquals(3, machineDao.countTransactions());
+        Assert.assertEquals(1, machineDao.countTransactionsOfType("PRODUCT_SOLD"));
+    }
+
+    @Test
+    public void should_keep_same_sequences_of_different_runs() {
+        machineDao.insertTransactions(Collections.singletonList(new TransactionRow(RUN, 0, 1, "COIN_CREDITED", "1.0$", null, null, null)));
+        machineDao.insertTransactions(Collections.singletonList(new TransactionRow(OTHER_RUN, 0, 1, "COIN_CREDITED", "1.0$", null, null, null)));
+
+        Assert.assertEquals(2, machineDao.countTransactions());
+        Assert.assertEquals(1, machineDao.countTransactionsOfRun(OTHER_RUN));
+    }
+
+    @Test
+    public void should_keep_last_shelf_level_merged() {
+        machineDao.mergeShelfLevels(Collections.singletonList(new ShelfLevelRow(3, 0, "product_100", 100, 5)));
+        machineDao.mergeShelfLevels(Arrays.asList(new ShelfLevelRow(3, 0, "product_100", 100, 4),
+            new ShelfLevelRow(3, 1, "product_250", 250, 2)));
+
+        Assert.assertEquals(Integer.valueOf(4), machineDao.findShelfItemCount(3, 0));
+        Assert.assertEquals(Integer.valueOf(2), machineDao.findShelfItemCount(3, 1));
+        Assert.assertEquals(6, machineDao.sumShelfItemCounts());
+    }
+
+    @Test
+    public void should_keep_last_coin_level_merged() {
+        machineDao.mergeCoinLevels(Collections.singletonList(new CoinLevelRow(3, "0.5$", 7)));
+        machineDao.mergeCoinLevels(Collections.singletonList(new CoinLevelRow(3, "0.5$", 6)));
+
+        Assert.assertEquals(Integer.valueOf(6), machineDao.findCoinItemCount(3, "0.5$"));
+    }
+
+    @Test
+    public void should_look_up_levels_of_updates_reporting_no_count() {
+        List<CoinLevelRow> rows = Arrays.asList(new CoinLevelRow(3, "0.5$", 1), new CoinLevelRow(3, "1.0$", 1),
+            new CoinLevelRow(3, "2.0$", 1), new CoinLevelRow(3, "5.0$", 1));
+
+        List<CoinLevelRow> missing = MachineDao.notUpdated(rows,
+            new int[]{0, 1, Statement.SUCCESS_NO_INFO, Statement.SUCCESS_NO_INFO}, row -> row.getCoin().equals("2.0$"));
+
+        Assert.assertEquals(Arrays.asList(rows.get(0), rows.get(3)), missing);
+    }
+
+    @Test
+    public void should_find_no_level_of_unknown_machine() {
+        Assert.assertNull(machineDao.findShelfItemCount(9, 0));
+        Assert.assertNull(machineDao.findCoinItemCount(9, "0.5$"));
+    }
+}
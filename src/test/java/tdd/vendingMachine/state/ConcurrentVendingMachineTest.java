@@ -0,0 +1,182 @@
+package tdd.vendingMachine.state;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import tdd.vendingMachine.VendingMachine;
+import tdd.vendingMachine.domain.Coin;
+import tdd.vendingMachine.domain.CoinDispenser;
+import tdd.vendingMachine.domain.Product;
+import tdd.vendingMachine.util.TestUtils.TestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.InputMismatchException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Agustin Cabra on 3/6/2017.
+ * @since 2.1
+ */
+public class ConcurrentVendingMachineTest {
+
+    private static final int THREADS = 4;
+
+    private Product product100;
+
+    @Before
+    public void setup() {
+        product100 = new Product(100, "product_100");
+    }
+
+    private ConcurrentVendingMachine buildMachine(int productsOnShelf, CoinDispenser coinDispenser) {
+        VendingMachineImpl vendingMachine = new VendingMachineImpl(
+            TestUtils.buildShelvesWithItems(Collections.singletonList(product100), productsOnShelf, 10), coinDispenser);
+        return VendingMachineFactory.buildConcurrentVendingMachine(vendingMachine);
+    }
+
+    /**
+     * Runs the given task on every thread at once and waits for all of them to finish
+     * @param task the task to run
+     */
+    private void runConcurrently(Runnable task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                task.run();
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    public void should_not_lose_coins_inserted_concurrently() throws Exception {
+        int coinsPerThread = 20;
+        ConcurrentVendingMachine vendingMachine = buildMachine(1, TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(100, 0));
+
+        runConcurrently(() -> {
+            for (int i = 0; i < coinsPerThread; i++) {
+                vendingMachine.insertCoin(Coin.ONE);
+            }
+        });
+
+        Assert.assertEquals(THREADS * coinsPerThread * Coin.ONE.denomination, vendingMachine.provideCredit());
+        Assert.assertEquals(THREADS * coinsPerThread, vendingMachine.getCreditStackSize());
+        Assert.assertEquals(StateEnum.CREDIT_NOT_SELECTED_PRODUCT, vendingMachine.provideCurrentStateEnum());
+    }
+
+    @Test
+    public void should_sell_linearizably_under_contention() throws Exception {
+        int productsOnShelf = 10;
+        int attemptsPerThread = 10;
+        CoinDispenser coinDispenser = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(100, 20);
+        ConcurrentVendingMachine vendingMachine = buildMachine(productsOnShelf, coinDispenser);
+        int cashBefore = vendingMachine.countCashInDispenser();
+
+        runConcurrently(() -> {
+            for (int i = 0; i < attemptsPerThread; i++) {
+                vendingMachine.insertCoin(Coin.ONE);
+                vendingMachine.selectShelfNumber(0);
+            }
+        });
+
+        int sold = productsOnShelf - vendingMachine.countTotalAmountProducts();
+        Assert.assertTrue(sold > 0);
+        Assert.assertEquals(sold * product100.getPrice(), vendingMachine.countCashInDispenser() - cashBefore);
+        Assert.assertEquals(vendingMachine.countProductsOnShelf(0), vendingMachine.countTotalAmountProducts());
+        Assert.assertNotEquals(StateEnum.TECHNICAL_ERROR, vendingMachine.provideCurrentStateEnum());
+        if (vendingMachine.isSoldOut()) {
+            Assert.assertEquals(StateEnum.SOLD_OUT, vendingMachine.provideCurrentStateEnum());
+        }
+    }
+
+    @Test
+    public void should_publish_reads_after_each_operation() throws Exception {
+        ConcurrentVendingMachine vendingMachine = buildMachine(1, TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(100, 5));
+
+        Assert.assertEquals(StateEnum.READY, vendingMachine.provideCurrentStateEnum());
+        vendingMachine.selectShelfNumber(0);
+        Assert.assertEquals(product100, vendingMachine.provideSelectedProduct());
+        vendingMachine.insertCoin(Coin.TWO);
+
+        Assert.assertEquals(0, vendingMachine.provideCredit());
+        Assert.assertTrue(vendingMachine.isSoldOut());
+        Assert.assertEquals(0, vendingMachine.countTotalAmountProducts());
+        Assert.assertEquals(StateEnum.SOLD_OUT, vendingMachine.provideCurrentStateEnum());
+    }
+
+    @Test
+    public void should_run_provided_state_holding_the_lock() throws Exception {
+        ConcurrentVendingMachine vendingMachine = buildMachine(1, TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(100, 5));
+        State readyState = vendingMachine.provideCurrentState();
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> holder = executor.submit(() -> vendingMachine.runLocked(machine -> {
+            locked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        locked.await();
+
+        Thread inserting = new Thread(() -> readyState.insertCoin(Coin.ONE));
+        inserting.start();
+        inserting.join(200);
+        Assert.assertTrue(inserting.isAlive());
+        Assert.assertEquals(0, vendingMachine.provideCredit());
+
+        release.countDown();
+        inserting.join(30_000);
+        holder.get(30, TimeUnit.SECONDS);
+        executor.shutdown();
+        Assert.assertEquals(Coin.ONE.denomination, vendingMachine.provideCredit());
+        Assert.assertEquals(StateEnum.CREDIT_NOT_SELECTED_PRODUCT, vendingMachine.provideCurrentStateEnum());
+        Assert.assertEquals("CREDIT_NOT_SELECTED_PRODUCT", vendingMachine.provideCurrentState().toString());
+    }
+
+    @Test
+    public void should_run_current_state_when_provided_state_is_outdated() throws Exception {
+        ConcurrentVendingMachine vendingMachine = buildMachine(1, TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(100, 5));
+        State readyState = vendingMachine.provideCurrentState();
+        Thread inserting = new Thread(() -> vendingMachine.insertCoin(Coin.FIFTY_CENTS));
+        inserting.start();
+        inserting.join(30_000);
+
+        readyState.selectShelfNumber(0);
+
+        Assert.assertEquals(Coin.FIFTY_CENTS.denomination, vendingMachine.provideCredit());
+        Assert.assertEquals(StateEnum.INSUFFICIENT_CREDIT, vendingMachine.provideCurrentStateEnum());
+        vendingMachine.insertCoin(Coin.FIFTY_CENTS);
+        Assert.assertEquals(0, vendingMachine.countProductsOnShelf(0));
+        Assert.assertEquals(0, vendingMachine.provideCredit());
+    }
+
+    @Test
+    public void should_return_same_machine_when_already_concurrent() {
+        ConcurrentVendingMachine vendingMachine = buildMachine(1, TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(100, 5));
+
+        Assert.assertSame(vendingMachine, VendingMachineFactory.buildConcurrentVendingMachine(vendingMachine));
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void should_fail_wrapping_unknown_implementation() {
+        VendingMachineFactory.buildConcurrentVendingMachine(Mockito.mock(VendingMachine.class));
+    }
+}
@@ -12,6 +12,7 @@ import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 import tdd.vendingMachine.VendingMachine;
 import tdd.vendingMachine.domain.Coin;
+import tdd.vendingMachine.domain.CoinDispenser;
 import tdd.vendingMachine.domain.Product;
 import tdd.vendingMachine.domain.Shelf;
 import tdd.vendingMachine.domain.VendingMachineConfiguration;
@@ -192,7 +193,7 @@ public class CreditNotSelectedProductStateTest implements StateTest {
         PowerMockito.spy(VendingMachineFactory.class);
         PowerMockito.when(VendingMachineFactory.getConfig()).thenReturn(configMock);
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_199_025, 2);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(initialCoinsOnShelf, 5);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(initialCoinsOnShelf, 5);
         VendingMachine vendingMachine = VendingMachineFactory.customVendingMachineForTesting(productShelves, coinShelves);
         creditNotSelectedProductState = transformToAndValidateInitialState(vendingMachine);
 
@@ -219,7 +220,7 @@ public class CreditNotSelectedProductStateTest implements StateTest {
         PowerMockito.spy(VendingMachineFactory.class);
         PowerMockito.when(VendingMachineFactory.getConfig()).thenReturn(configMock);
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_199_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(initialCoinsOnShelf, 5);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(initialCoinsOnShelf, 5);
         VendingMachine vendingMachine = VendingMachineFactory.customVendingMachineForTesting(productShelves, coinShelves);
         creditNotSelectedProductState = transformToAndValidateInitialState(vendingMachine);
 
@@ -271,7 +272,7 @@ public class CreditNotSelectedProductStateTest implements StateTest {
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelfStubFromProductImports(
             Arrays.asList(new ProductImport("p1", 100, 0), new ProductImport("p2", 100, 1)), 10);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(initialCoinsOnShelf, 5);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(initialCoinsOnShelf, 5);
         VendingMachine vendingMachine = VendingMachineFactory.customVendingMachineForTesting(productShelves, coinShelves);
         creditNotSelectedProductState = transformToAndValidateInitialState(vendingMachine);
 
@@ -350,7 +351,7 @@ public class CreditNotSelectedProductStateTest implements StateTest {
         PowerMockito.spy(VendingMachineFactory.class);
         PowerMockito.when(VendingMachineFactory.getConfig()).thenReturn(configMock);
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_199_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(initialCoinsOnShelf, 0);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(initialCoinsOnShelf, 0);
         VendingMachine vendingMachine = VendingMachineFactory.customVendingMachineForTesting(productShelves, coinShelves);
         creditNotSelectedProductState = transformToAndValidateInitialState(vendingMachine);
 
@@ -374,7 +375,7 @@ public class CreditNotSelectedProductStateTest implements StateTest {
         PowerMockito.spy(VendingMachineFactory.class);
         PowerMockito.when(VendingMachineFactory.getConfig()).thenReturn(configMock);
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_199_025, 2);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(initialCoinsOnShelf, 5);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(initialCoinsOnShelf, 5);
         VendingMachine vendingMachine = VendingMachineFactory.customVendingMachineForTesting(productShelves,
             coinShelves);
         creditNotSelectedProductState = transformToAndValidateInitialState(vendingMachine);
@@ -401,7 +402,7 @@ public class CreditNotSelectedProductStateTest implements StateTest {
         PowerMockito.spy(VendingMachineFactory.class);
         PowerMockito.when(VendingMachineFactory.getConfig()).thenReturn(configMock);
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_199_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(initialCoinsOnShelf, 5);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(initialCoinsOnShelf, 5);
         VendingMachine vendingMachine = VendingMachineFactory.customVendingMachineForTesting(productShelves,
             coinShelves);
         creditNotSelectedProductState = transformToAndValidateInitialState(vendingMachine);
@@ -431,7 +432,7 @@ public class CreditNotSelectedProductStateTest implements StateTest {
 
         VendingMachine spied = PowerMockito.spy(VendingMachineFactory.customVendingMachineForTesting(TestUtils.buildShelvesWithItems(COLA_199_025, 1),
             TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(10, 5)));
-        PowerMockito.doThrow(new RuntimeException("fail to error")).when(spied, "addCoinToCredit", fiftyCents);
+        PowerMockito.doThrow(new RuntimeException("fail to error")).when(spied, "tryAddCoinToCredit", fiftyCents);
 
         creditNotSelectedProductState = new CreditNotSelectedProductState((VendingMachineImpl) spied);
 
@@ -441,7 +442,7 @@ public class CreditNotSelectedProductStateTest implements StateTest {
 
         PowerMockito.verifyStatic(Mockito.times(1));
         VendingMachineFactory.getConfig();
-        Mockito.verify(spied, Mockito.times(1)).addCoinToCredit(fiftyCents);
+        Mockito.verify(spied, Mockito.times(1)).tryAddCoinToCredit(fiftyCents);
         verifyConfigMock(configMock, 1, 1, 1);
     }
 
@@ -456,7 +457,7 @@ public class CreditNotSelectedProductStateTest implements StateTest {
 
         VendingMachine spied = PowerMockito.spy(VendingMachineFactory.customVendingMachineForTesting(TestUtils.buildShelvesWithItems(COLA_199_025, 1),
             TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(10, 5)));
-        PowerMockito.doThrow(new RuntimeException("fail to error")).when(spied, "selectProductGivenShelfNumber", shelfNumber);
+        PowerMockito.doThrow(new RuntimeException("fail to error")).when(spied, "trySelectProductGivenShelfNumber", shelfNumber);
 
         creditNotSelectedProductState = new CreditNotSelectedProductState((VendingMachineImpl)spied);
 
@@ -466,7 +467,7 @@ public class CreditNotSelectedProductStateTest implements StateTest {
 
         PowerMockito.verifyStatic(Mockito.times(1));
         VendingMachineFactory.getConfig();
-        Mockito.verify(spied, Mockito.times(1)).selectProductGivenShelfNumber(shelfNumber);
+        Mockito.verify(spied, Mockito.times(1)).trySelectProductGivenShelfNumber(shelfNumber);
         verifyConfigMock(configMock, 1, 1, 1);
     }
 
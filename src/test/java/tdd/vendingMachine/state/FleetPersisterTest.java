@@ -0,0 +1,202 @@
+package tdd.vendingMachine.state;
+
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.Handle;
+import tdd.vendingMachine.domain.Coin;
+import tdd.vendingMachine.domain.Product;
+import tdd.vendingMachine.persistence.MachineDao;
+
+import java.util.Arrays;
+import java.util.InputMismatchException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Agustin Cabra on 3/12/2017.
+ * @since 2.1
+ */
+public class FleetPersisterTest {
+
+    private static final Logger logger = Logger.getLogger(FleetPersisterTest.class);
+    private static final AtomicInteger databaseCount = new AtomicInteger();
+
+    private List<Product> products;
+    private DBI dbi;
+    private Handle handle;
+    private MachineDao machineDao;
+
+    @Before
+    public void setup() {
+        products = Arrays.asList(new Product(100, "product_100"), new Product(250, "product_250"));
+        //the open handle keeps the in memory database alive until the test ends
+        dbi = new DBI("jdbc:h2:mem:fleet_persister_" + databaseCount.incrementAndGet());
+        handle = dbi.open();
+        machineDao = handle.attach(MachineDao.class);
+    }
+
+    @After
+    public void tearDown() {
+        handle.close();
+    }
+
+    private static long countTransactionEvents(MachineEventLog eventLog) {
+        AtomicInteger transactions = new AtomicInteger();
+        eventLog.read(eventLog.firstRetainedSequence(), event -> {
+            if (event.type != MachineEvent.Type.SHELF_SELECTED && event.type != MachineEvent.Type.STATE_CHANGED) {
+                transactions.incrementAndGet();
+            }
+        });
+        return transactions.get();
+    }
+
+    @Test
+    public void should_persist_transactions_and_levels_on_flush() {
+        Fleet fleet = VendingMachineFactory.buildFleet(products, 3, 5, 2);
+        try (MachineEventLog eventLog = MachineEventLog.attach(fleet, 64, 16);
+             FleetPersister persister = FleetPersister.start(fleet, eventLog, dbi, 60_000, 16)) {
+            fleet.getMachine(1).selectShelfNumber(0);
+            fleet.getMachine(1).insertCoin(Coin.TWO);
+
+            Assert.assertEquals(countTransactionEvents(eventLog), persister.flush());
+
+            Assert.assertEquals(countTransactionEvents(eventLog), machineDao.countTransactions());
+            Assert.assertEquals(1, machineDao.countTransactionsOfType(MachineEvent.Type.PRODUCT_SOLD.name()));
+            Assert.assertEquals(Integer.valueOf(2), machineDao.findShelfItemCount(1, 0));
+            Assert.assertEquals(Integer.valueOf(3), machineDao.findShelfItemCount(0, 0));
+            Assert.assertEquals(Integer.valueOf(MachineSnapshotCodec.unwrap(fleet.getMachine(1)).getInventory()
+                .getCoinDispenser().getItemCount(Coin.TWO)), machineDao.findCoinItemCount(1, Coin.TWO.label));
+        }
+    }
+
+    @Test
+    public void should_write_only_new_events_on_each_flush() {
+        Fleet fleet = VendingMachineFactory.buildFleet(products, 3, 5, 1);
+        try (MachineEventLog eventLog = MachineEventLog.attach(fleet, 64, 16);
+             FleetPersister persister = FleetPersister.start(fleet, eventLog, dbi, 60_000, 2)) {
+            fleet.getMachine(0).insertCoin(Coin.ONE);
+            persister.flush();
+            fleet.getMachine(0).cancel();
+            persister.flush();
+
+            Assert.assertEquals(0, persister.flush());
+            Assert.assertEquals(countTransactionEvents(eventLog), machineDao.countTransactions());
+            Assert.assertEquals(countTransactionEvents(eventLog), persister.countPersistedTransactions());
+            Assert.assertEquals(2, persister.countFlushes());
+        }
+    }
+
+    @Test
+    public void should_flush_pending_events_when_closed() {
+        Fleet fleet = VendingMachineFactory.buildFleet(products, 3, 5, 1);
+        try (MachineEventLog eventLog = MachineEventLog.attach(fleet, 64, 16)) {
+            try (FleetPersister persister = FleetPersister.start(fleet, eventLog, dbi, 60_000, 16)) {
+                fleet.getMachine(0).restockShelf(1, 1);
+            }
+
+            Assert.assertEquals(1, machineDao.countTransactionsOfType(MachineEvent.Type.SHELF_RESTOCKED.name()));
+            Assert.assertEquals(Integer.valueOf(4), machineDao.findShelfItemCount(0, 1));
+        }
+    }
+
+    @Test
+    public void should_count_events_compacted_before_flush_and_rewrite_levels() {
+        Fleet fleet = VendingMachineFactory.buildFleet(products, 3, 5, 1);
+        try (MachineEventLog eventLog = MachineEventLog.attach(fleet, 1, 1_000);
+             FleetPersister persister = FleetPersister.start(fleet, eventLog, dbi, 60_000, 16)) {
+            fleet.getMachine(0).selectShelfNumber(0);
+            fleet.getMachine(0).insertCoin(Coin.ONE);
+            eventLog.compact();
+
+            persister.flush();
+
+            Assert.assertEquals(eventLog.nextSequence(), persister.countLostEvents());
+            Assert.assertEquals(0, machineDao.countTransactions());
+            Assert.assertEquals(Integer.valueOf(2), machineDao.findShelfItemCount(0, 0));
+        }
+    }
+
+    @Test
+    public void should_append_transactions_of_every_run() {
+        Fleet fleet = VendingMachineFactory.buildFleet(products, 3, 5, 1);
+        long firstRunTransactions;
+        String firstRunId;
+        try (MachineEventLog eventLog = MachineEventLog.attach(fleet, 64, 16);
+             FleetPersister persister = FleetPersister.start(fleet, eventLog, dbi, 60_000, 16)) {
+            fleet.getMachine(0).insertCoin(Coin.ONE);
+            fleet.getMachine(0).cancel();
+            persister.flush();
+            firstRunTransactions = countTransactionEvents(eventLog);
+            firstRunId = persister.getRunId();
+        }
+        try (MachineEventLog eventLog = MachineEventLog.attach(fleet, 64, 16);
+             FleetPersister persister = FleetPersister.start(fleet, eventLog, dbi, 60_000, 16)) {
+            fleet.getMachine(0).restockShelf(1, 1);
+            persister.flush();
+
+            Assert.assertNotEquals(firstRunId, persister.getRunId());
+            Assert.assertEquals(firstRunTransactions, machineDao.countTransactionsOfRun(firstRunId));
+            Assert.assertEquals(countTransactionEvents(eventLog), machineDao.countTransactionsOfRun(persister.getRunId()));
+            Assert.assertEquals(firstRunTransactions + countTransactionEvents(eventLog), machineDao.countTransactions());
+            Assert.assertEquals(Integer.valueOf(4), machineDao.findShelfItemCount(0, 1));
+        }
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void should_fail_batch_size_lower_than_one() {
+        Fleet fleet = VendingMachineFactory.buildFleet(products, 3, 5, 1);
+        try (MachineEventLog eventLog = MachineEventLog.attach(fleet, 64, 16)) {
+            FleetPersister.start(fleet, eventLog, dbi, 1, 0);
+        }
+    }
+
+    private static long sell(Fleet fleet, int machineCount, int sells) {
+        long start = System.nanoTime();
+        for (int i = 0; i < sells; i++) {
+            VendingSession machine = fleet.getMachine(i % machineCount);
+            if (machine.countProductsOnShelf(0) == 0) {
+                machine.restockShelf(0, 9);
+            }
+            machine.selectShelfNumber(0);
+            machine.insertCoin(Coin.ONE);
+        }
+        return System.nanoTime() - start;
+    }
+
+    @Test
+    public void should_report_sustained_sells_per_second_with_persistence() {
+        int machineCount = 1000;
+        int sells = 100_000;
+        long baseline = sell(VendingMachineFactory.buildFleet(products, 9, 9, machineCount), machineCount, sells);
+
+        Fleet fleet = VendingMachineFactory.buildFleet(products, 9, 9, machineCount);
+        long elapsed;
+        long drained;
+        try (MachineEventLog eventLog = MachineEventLog.attach(fleet, 4096, 1024);
+             FleetPersister persister = FleetPersister.start(fleet, eventLog, dbi, 50, 1000)) {
+            elapsed = sell(fleet, machineCount, sells);
+            long closeStart = System.nanoTime();
+            persister.close();
+            drained = System.nanoTime() - closeStart;
+
+            Assert.assertEquals(0, persister.countLostEvents());
+            Assert.assertEquals(countTransactionEvents(eventLog), machineDao.countTransactions());
+            AtomicInteger sold = new AtomicInteger();
+            eventLog.read(0, event -> {
+                if (event.type == MachineEvent.Type.PRODUCT_SOLD) sold.incrementAndGet();
+            });
+            Assert.assertEquals(sold.get(), machineDao.countTransactionsOfType(MachineEvent.Type.PRODUCT_SOLD.name()));
+            Assert.assertEquals(fleet.countTotalAmountProducts(), machineDao.sumShelfItemCounts());
+            logger.info(String.format("%d sell attempts (%d sold): %d attempts/s without persistence, %d attempts/s " +
+                    "with persistence, %d attempts/s sustained until persisted, %d transactions in %d flushes, " +
+                    "drained in %d ms", sells, sold.get(),
+                sells * 1_000_000_000L / Math.max(1, baseline), sells * 1_000_000_000L / Math.max(1, elapsed),
+                sells * 1_000_000_000L / Math.max(1, elapsed + drained),
+                persister.countPersistedTransactions(), persister.countFlushes(), drained / 1_000_000));
+        }
+    }
+}
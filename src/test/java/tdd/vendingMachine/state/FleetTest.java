@@ -0,0 +1,190 @@
+package tdd.vendingMachine.state;
+
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import tdd.vendingMachine.domain.Coin;
+import tdd.vendingMachine.domain.Product;
+import tdd.vendingMachine.domain.VendingMachineConfiguration;
+import tdd.vendingMachine.domain.exception.NotEnoughSlotsAvailableDispenserException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.InputMismatchException;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * @author Agustin Cabra on 3/8/2017.
+ * @since 2.1
+ */
+public class FleetTest {
+
+    private static final Logger logger = Logger.getLogger(FleetTest.class);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private List<Product> products;
+
+    @Before
+    public void setup() {
+        products = Arrays.asList(new Product(100, "product_100"), new Product(250, "product_250"));
+    }
+
+    @Test
+    public void should_build_independent_machines_keyed_by_id() {
+        Fleet fleet = VendingMachineFactory.buildFleet(products, 3, 5, 4);
+
+        fleet.getMachine(2).selectShelfNumber(0);
+        fleet.getMachine(2).insertCoin(Coin.ONE);
+
+        Assert.assertEquals(4, fleet.countMachines());
+        Assert.assertEquals(4 * 6 - 1, fleet.countTotalAmountProducts());
+        Assert.assertEquals(2, fleet.getMachine(2).countProductsOnShelf(0));
+        Assert.assertEquals(3, fleet.getMachine(3).countProductsOnShelf(0));
+        Assert.assertTrue(fleet.getMachine(0).provideCurrentState() instanceof ReadyState);
+    }
+
+    @Test
+    public void should_iterate_machines_in_id_order() {
+        Fleet fleet = VendingMachineFactory.buildFleet(products, 0, 0, 3);
+        fleet.getMachine(1).restockShelf(1, 2);
+
+        int[] counts = new int[3];
+        int i = 0;
+        for (VendingSession machine : fleet) {
+            counts[i++] = machine.countTotalAmountProducts();
+        }
+
+        Assert.assertArrayEquals(new int[]{0, 2, 0}, counts);
+        Assert.assertEquals(1, fleet.stream().filter(machine -> !machine.isSoldOut()).count());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void should_fail_unknown_machine_id() {
+        VendingMachineFactory.buildFleet(products, 1, 1, 2).getMachine(2);
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void should_fail_negative_machine_count() {
+        VendingMachineFactory.buildFleet(products, 1, 1, -1);
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void should_fail_invalid_template_once() {
+        VendingMachineFactory.buildFleet(Collections.singletonList(new Product(100, "product_100")),
+            VendingMachineFactory.getConfig().getProductShelfCapacity() + 1, 1, 1000);
+    }
+
+    @Test
+    public void should_report_build_time_and_memory_per_machine() {
+        int machineCount = 100_000;
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long usedBefore = runtime.totalMemory() - runtime.freeMemory();
+        long start = System.nanoTime();
+
+        Fleet fleet = VendingMachineFactory.buildFleet(products, 5, 5, machineCount);
+
+        long elapsed = System.nanoTime() - start;
+        System.gc();
+        long usedAfter = runtime.totalMemory() - runtime.freeMemory();
+        Assert.assertEquals(machineCount, fleet.countMachines());
+        Assert.assertEquals(10L * machineCount, fleet.countTotalAmountProducts());
+        logger.info(String.format("fleet of %d machines built in %d ms, ~%d bytes per machine", machineCount,
+            elapsed / 1_000_000, (usedAfter - usedBefore) / machineCount));
+    }
+
+    @Test
+    public void should_apply_published_configuration_on_next_transaction() {
+        Fleet fleet = VendingMachineFactory.buildFleet(products, 5, 5, 3);
+        VendingMachineConfiguration previous = VendingMachineConfiguration.current();
+        VendingMachineConfiguration reduced = new VendingMachineConfiguration("config_test.properties");
+        try {
+            VendingMachineConfiguration.publish(reduced);
+
+            fleet.getMachine(0).insertCoin(Coin.ONE);
+            Assert.assertEquals(0, fleet.getMachine(0).provideCredit());
+            try {
+                fleet.getMachine(1).restockShelf(0, 1);
+                Assert.fail("shelf capacity was not reduced");
+            } catch (NotEnoughSlotsAvailableDispenserException expected) {
+                Assert.assertEquals(5, fleet.getMachine(1).countProductsOnShelf(0));
+            }
+            fleet.getMachine(0).insertCoin(Coin.ONE);
+
+            Assert.assertEquals(2, reduced.countMachinesAffected());
+        } finally {
+            VendingMachineConfiguration.publish(previous);
+        }
+        fleet.getMachine(2).insertCoin(Coin.ONE);
+        Assert.assertEquals(Coin.ONE.denomination, fleet.getMachine(2).provideCredit());
+    }
+
+    @Test
+    public void should_build_fleet_from_import_file_keeping_machine_ids() throws IOException {
+        Path file = temporaryFolder.newFile().toPath();
+        Files.write(file, ("3,P,cola,200,4\n3,P,bar,250,2\n3,C,0.5$,10\n7,P,water,130,1\n7,C,1.0$,5\n")
+            .getBytes(StandardCharsets.UTF_8));
+
+        Fleet fleet = VendingMachineFactory.buildFleetFromImportFile(file, (line, reason) -> Assert.fail(reason));
+
+        Assert.assertEquals(2, fleet.countMachines());
+        Assert.assertEquals(7, fleet.countTotalAmountProducts());
+        Assert.assertEquals(4, fleet.getMachine(3).countProductsOnShelf(0));
+        Assert.assertEquals(1, fleet.getMachine(7).countTotalAmountProducts());
+        Assert.assertEquals(2, fleet.stream().count());
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void should_fail_machine_id_above_configured_bound() {
+        VendingMachineConfiguration config = new VendingMachineConfiguration("config_machine_id_test.properties");
+
+        Fleet.of(config, Collections.singletonMap(config.getMaxMachineId() + 1,
+            (VendingSession) VendingMachineFactory.buildVendingMachineGivenProductsAndInitialShelfItemCounts(products, 1, 1)));
+    }
+
+    @Test
+    public void should_reject_imported_machine_id_above_configured_bound() throws IOException {
+        Path file = temporaryFolder.newFile().toPath();
+        Files.write(file, ("1,P,cola,200,4\n2000000000,P,bar,250,2\n").getBytes(StandardCharsets.UTF_8));
+        List<Long> errorLines = new ArrayList<>();
+
+        Fleet fleet = VendingMachineFactory.buildFleetFromImportFile(file, (line, reason) -> errorLines.add(line));
+
+        Assert.assertEquals(1, fleet.countMachines());
+        Assert.assertEquals(Collections.singletonList(2L), errorLines);
+        Assert.assertEquals(2, fleet.machineIdBound());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void should_fail_missing_machine_id_of_imported_fleet() throws IOException {
+        Path file = temporaryFolder.newFile().toPath();
+        Files.write(file, "2,P,cola,200,4\n2,C,0.5$,10\n".getBytes(StandardCharsets.UTF_8));
+
+        VendingMachineFactory.buildFleetFromImportFile(file, (line, reason) -> Assert.fail(reason)).getMachine(1);
+    }
+
+    @Test
+    public void should_reject_non_contiguous_machine_rows_and_bad_rows() throws IOException {
+        Path file = temporaryFolder.newFile().toPath();
+        Files.write(file, ("0,P,cola,200,4\n0,C,0.5$,10\n1,P,bar,250,x\n1,P,bar,250,2\n0,P,water,130,1\n")
+            .getBytes(StandardCharsets.UTF_8));
+        List<Long> errorLines = new ArrayList<>();
+
+        Fleet fleet = VendingMachineFactory.buildFleetFromImportFile(file, (line, reason) -> errorLines.add(line));
+
+        Assert.assertEquals(2, fleet.countMachines());
+        Assert.assertEquals(Arrays.asList(3L, 5L), errorLines);
+        Assert.assertEquals(4, fleet.getMachine(0).countTotalAmountProducts());
+    }
+}
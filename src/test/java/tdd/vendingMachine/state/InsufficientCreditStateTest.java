@@ -12,6 +12,7 @@ import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 import tdd.vendingMachine.VendingMachine;
 import tdd.vendingMachine.domain.Coin;
+import tdd.vendingMachine.domain.CoinDispenser;
 import tdd.vendingMachine.domain.Product;
 import tdd.vendingMachine.domain.Shelf;
 import tdd.vendingMachine.domain.VendingMachineConfiguration;
@@ -111,7 +112,7 @@ public class InsufficientCreditStateTest implements StateTest {
 
         Collection<Product> myProducts = Arrays.asList(new Product(180, "p1"), new Product(600, "p2"));
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(myProducts, 3, 10);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, 0);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, 0);
         VendingMachine vendingMachine = VendingMachineFactory.customVendingMachineForTesting(productShelves, coinShelves);
         insufficientCreditState = transformToAndValidateInitialState(vendingMachine);
 
@@ -150,7 +151,7 @@ public class InsufficientCreditStateTest implements StateTest {
         PowerMockito.when(VendingMachineFactory.getConfig()).thenReturn(configMock);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(products, 3, 10);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, 5);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, 5);
         VendingMachine vendingMachine = VendingMachineFactory.customVendingMachineForTesting(productShelves, coinShelves);
         insufficientCreditState = transformToAndValidateInitialState(vendingMachine);
 
@@ -173,7 +174,7 @@ public class InsufficientCreditStateTest implements StateTest {
         PowerMockito.when(VendingMachineFactory.getConfig()).thenReturn(configMock);
 
        Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(products, 3, 10);
-       Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, 5);
+       CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, 5);
        VendingMachine vendingMachine = VendingMachineFactory.customVendingMachineForTesting(productShelves, coinShelves);
        insufficientCreditState = transformToAndValidateInitialState(vendingMachine);
 
@@ -199,7 +200,7 @@ public class InsufficientCreditStateTest implements StateTest {
         PowerMockito.when(VendingMachineFactory.getConfig()).thenReturn(configMock);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(products, 3, 10);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, 5);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, 5);
         VendingMachine vendingMachine = VendingMachineFactory.customVendingMachineForTesting(productShelves, coinShelves);
         insufficientCreditState = transformToAndValidateInitialState(vendingMachine);
 
@@ -238,7 +239,7 @@ public class InsufficientCreditStateTest implements StateTest {
         PowerMockito.when(VendingMachineFactory.getConfig()).thenReturn(configMock);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(products, 3, 10);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, 5);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, 5);
         VendingMachine vendingMachine = VendingMachineFactory.customVendingMachineForTesting(productShelves, coinShelves);
         insufficientCreditState = transformToAndValidateInitialState(vendingMachine);
 
@@ -279,7 +280,7 @@ public class InsufficientCreditStateTest implements StateTest {
 
         Collection<Product> myProducts = Arrays.asList(new Product(180, "p1"), new Product(190, "p2"));
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(myProducts, 3, 10);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, 0);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, 0);
         VendingMachine vendingMachine = VendingMachineFactory.customVendingMachineForTesting(productShelves, coinShelves);
         insufficientCreditState = transformToAndValidateInitialState(vendingMachine);
 
@@ -318,7 +319,7 @@ public class InsufficientCreditStateTest implements StateTest {
         int actualProductShelfCapacity = 5;
         Map<Integer, Shelf<Product>> productShelf = TestUtils.buildShelfStubFromProductImports(
             Arrays.asList(new ProductImport("p1", 100, 0), new ProductImport("p1", 100, 1)), actualProductShelfCapacity);
-        Map<Coin, Shelf<Coin>> fullShelfDispenser = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, coinShelfCapacity - 1);
+        CoinDispenser fullShelfDispenser = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, coinShelfCapacity - 1);
         VendingMachine vendingMachine = VendingMachineFactory.customVendingMachineForTesting(productShelf, fullShelfDispenser);
         insufficientCreditState = transformToAndValidateInitialState(vendingMachine);
         int stackBeforeInserting = vendingMachine.getCreditStackSize();
@@ -350,7 +351,7 @@ public class InsufficientCreditStateTest implements StateTest {
         int actualProductShelfCapacity = 5;
         Map<Integer, Shelf<Product>> productShelf = TestUtils.buildShelfStubFromProductImports(
             Arrays.asList(new ProductImport("p1", 100, 0), new ProductImport("p2", 100, 1)), actualProductShelfCapacity);
-        Map<Coin, Shelf<Coin>> fullShelfDispenser = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, coinShelfCapacity - 1);
+        CoinDispenser fullShelfDispenser = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, coinShelfCapacity - 1);
         VendingMachine vendingMachine = VendingMachineFactory.customVendingMachineForTesting(productShelf, fullShelfDispenser);
         insufficientCreditState = transformToAndValidateInitialState(vendingMachine);
         Product productBeforeAttempt = vendingMachine.provideSelectedProduct();
@@ -379,16 +380,16 @@ public class InsufficientCreditStateTest implements StateTest {
         PowerMockito.when(VendingMachineFactory.getConfig()).thenReturn(configMock);
         Map<Integer, Shelf<Product>> productShelf = TestUtils.buildShelfStubFromProductImports(
             Arrays.asList(new ProductImport("p1", 100, 0), new ProductImport("p2", 100, 1)), actualProductShelfCapacity);
-        Map<Coin, Shelf<Coin>> fullShelfDispenser = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, coinShelfCapacity - 1);
+        CoinDispenser fullShelfDispenser = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, coinShelfCapacity - 1);
         VendingMachine spied = PowerMockito.spy(VendingMachineFactory.customVendingMachineForTesting(productShelf, fullShelfDispenser));
-        PowerMockito.doThrow(new UnsupportedOperationException("not valid state for sell")).when(spied, "selectProductGivenShelfNumber", nonEmptyShelfId);
+        PowerMockito.doThrow(new UnsupportedOperationException("not valid state for sell")).when(spied, "trySelectProductGivenShelfNumber", nonEmptyShelfId);
 
         insufficientCreditState = new InsufficientCreditState((VendingMachineImpl) spied);
 
         insufficientCreditState.selectShelfNumber(nonEmptyShelfId);
 
         Assert.assertTrue(insufficientCreditState.vendingMachine.provideCurrentState() instanceof TechnicalErrorState);
-        Mockito.verify(spied, Mockito.times(1)).selectProductGivenShelfNumber(nonEmptyShelfId);
+        Mockito.verify(spied, Mockito.times(1)).trySelectProductGivenShelfNumber(nonEmptyShelfId);
 
 
         PowerMockito.verifyStatic(Mockito.times(1));
@@ -406,7 +407,7 @@ public class InsufficientCreditStateTest implements StateTest {
 
         VendingMachine spied = PowerMockito.spy(VendingMachineFactory.customVendingMachineForTesting(TestUtils.buildShelvesWithItems(products.get(0), 1),
             TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(10, 5)));
-        PowerMockito.doThrow(new RuntimeException("fail to error")).when(spied, "addCoinToCredit", fiftyCents);
+        PowerMockito.doThrow(new RuntimeException("fail to error")).when(spied, "tryAddCoinToCredit", fiftyCents);
 
         insufficientCreditState = new InsufficientCreditState((VendingMachineImpl) spied);
 
@@ -417,7 +418,7 @@ public class InsufficientCreditStateTest implements StateTest {
 
         PowerMockito.verifyStatic(Mockito.times(1));
         VendingMachineFactory.getConfig();
-        Mockito.verify(spied, Mockito.times(1)).addCoinToCredit(fiftyCents);
+        Mockito.verify(spied, Mockito.times(1)).tryAddCoinToCredit(fiftyCents);
         verifyConfigMock(configMock, 1, 1, 1);
     }
 
@@ -431,7 +432,7 @@ public class InsufficientCreditStateTest implements StateTest {
 
         VendingMachine spied = PowerMockito.spy(VendingMachineFactory.customVendingMachineForTesting(TestUtils.buildShelvesWithItems(products.get(0), 1),
             TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(10, 5)));
-        PowerMockito.doThrow(new RuntimeException("fail to error")).when(spied, "selectProductGivenShelfNumber", shelfNumber);
+        PowerMockito.doThrow(new RuntimeException("fail to error")).when(spied, "trySelectProductGivenShelfNumber", shelfNumber);
 
         insufficientCreditState = new InsufficientCreditState((VendingMachineImpl) spied);
 
@@ -442,7 +443,7 @@ public class InsufficientCreditStateTest implements StateTest {
 
         PowerMockito.verifyStatic(Mockito.times(1));
         VendingMachineFactory.getConfig();
-        Mockito.verify(spied, Mockito.times(1)).selectProductGivenShelfNumber(shelfNumber);
+        Mockito.verify(spied, Mockito.times(1)).trySelectProductGivenShelfNumber(shelfNumber);
         verifyConfigMock(configMock, 1, 1, 1);
     }
 
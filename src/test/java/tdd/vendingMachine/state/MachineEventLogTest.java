@@ -0,0 +1,217 @@
+package tdd.vendingMachine.state;
+
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import tdd.vendingMachine.domain.Coin;
+import tdd.vendingMachine.domain.Product;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.InputMismatchException;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * @author Agustin Cabra on 3/11/2017.
+ * @since 2.1
+ */
+public class MachineEventLogTest {
+
+    private static final Logger logger = Logger.getLogger(MachineEventLogTest.class);
+
+    private List<Product> products;
+
+    @Before
+    public void setup() {
+        products = Arrays.asList(new Product(100, "product_100"), new Product(250, "product_250"));
+    }
+
+    private void assertSameMachine(VendingSession expected, VendingSession actual) {
+        Assert.assertEquals(expected.provideCurrentState().getClass(), actual.provideCurrentState().getClass());
+        Assert.assertEquals(expected.provideCredit(), actual.provideCredit());
+        Assert.assertEquals(expected.getCreditStackSize(), actual.getCreditStackSize());
+        Assert.assertEquals(expected.provideSelectedProduct(), actual.provideSelectedProduct());
+        Assert.assertEquals(expected.countProductsOnShelf(0), actual.countProductsOnShelf(0));
+        Assert.assertEquals(expected.countProductsOnShelf(1), actual.countProductsOnShelf(1));
+        Assert.assertEquals(MachineSnapshotCodec.unwrap(expected).countCashInDispenser(),
+            MachineSnapshotCodec.unwrap(actual).countCashInDispenser());
+    }
+
+    private List<MachineEvent> readAll(MachineEventLog log, long fromSequence) {
+        List<MachineEvent> events = new ArrayList<>();
+        log.read(fromSequence, events::add);
+        return events;
+    }
+
+    @Test
+    public void should_emit_credit_and_state_events_in_sequence_order() {
+        Fleet fleet = VendingMachineFactory.buildFleet(products, 3, 5, 2);
+        try (MachineEventLog log = MachineEventLog.attach(fleet, 16, 4)) {
+            fleet.getMachine(1).insertCoin(Coin.ONE);
+
+            List<MachineEvent> events = readAll(log, 0);
+
+            Assert.assertEquals(2, events.size());
+            Assert.assertEquals(MachineEvent.Type.COIN_CREDITED, events.get(0).type);
+            Assert.assertEquals(Coin.ONE, events.get(0).coin);
+            Assert.assertEquals(1, events.get(0).machineId);
+            Assert.assertEquals(0, events.get(0).sequence);
+            Assert.assertEquals(MachineEvent.Type.STATE_CHANGED, events.get(1).type);
+            Assert.assertEquals(StateEnum.CREDIT_NOT_SELECTED_PRODUCT, events.get(1).state);
+            Assert.assertEquals(1, events.get(1).sequence);
+            Assert.assertEquals(2, log.nextSequence());
+        }
+    }
+
+    @Test
+    public void should_emit_one_product_sold_event_per_sell() {
+        Fleet fleet = VendingMachineFactory.buildFleet(products, 3, 5, 1);
+        try (MachineEventLog log = MachineEventLog.attach(fleet, 16, 4)) {
+            fleet.getMachine(0).selectShelfNumber(0);
+            fleet.getMachine(0).insertCoin(Coin.TWO);
+
+            long sold = readAll(log, 0).stream().filter(event -> event.type == MachineEvent.Type.PRODUCT_SOLD)
+                .peek(event -> {
+                    Assert.assertEquals(0, event.shelfNumber);
+                    Assert.assertEquals(Coin.ONE.denomination, event.changePlan.getAmount());
+                })
+                .count();
+
+            Assert.assertEquals(1, sold);
+        }
+    }
+
+    @Test
+    public void should_rebuild_fleet_folding_events_over_the_snapshot() {
+        Fleet fleet = VendingMachineFactory.buildFleet(products, 3, 5, 3);
+        try (MachineEventLog log = MachineEventLog.attach(fleet, 4, 100)) {
+            fleet.getMachine(0).selectShelfNumber(0);
+            fleet.getMachine(0).insertCoin(Coin.TWO);
+            fleet.getMachine(1).insertCoin(Coin.FIFTY_CENTS);
+            fleet.getMachine(1).selectShelfNumber(1);
+            fleet.getMachine(2).insertCoin(Coin.ONE);
+            fleet.getMachine(2).cancel();
+            fleet.getMachine(2).restockShelf(1, 2);
+
+            Fleet rebuilt = log.rebuildFleet();
+
+            for (int machineId = 0; machineId < 3; machineId++) {
+                assertSameMachine(fleet.getMachine(machineId), rebuilt.getMachine(machineId));
+            }
+        }
+    }
+
+    @Test
+    public void should_continue_reading_from_the_returned_sequence() {
+        Fleet fleet = VendingMachineFactory.buildFleet(products, 3, 5, 1);
+        try (MachineEventLog log = MachineEventLog.attach(fleet, 2, 100)) {
+            fleet.getMachine(0).insertCoin(Coin.ONE);
+            long next = log.read(0, event -> {});
+            fleet.getMachine(0).cancel();
+
+            List<MachineEvent> events = readAll(log, next);
+
+            Assert.assertFalse(events.isEmpty());
+            Assert.assertEquals(next, events.get(0).sequence);
+            Assert.assertEquals(log.nextSequence(), events.get(events.size() - 1).sequence + 1);
+        }
+    }
+
+    @Test
+    public void should_compact_sealed_segments_keeping_the_fleet() {
+        Fleet fleet = VendingMachineFactory.buildFleet(products, 3, 5, 1);
+        try (MachineEventLog log = MachineEventLog.attach(fleet, 2, 100)) {
+            fleet.getMachine(0).selectShelfNumber(0);
+            fleet.getMachine(0).insertCoin(Coin.TWO);
+            fleet.getMachine(0).insertCoin(Coin.FIFTY_CENTS);
+
+            long compacted = log.compact();
+
+            Assert.assertTrue(compacted > 0);
+            Assert.assertEquals(compacted, log.firstRetainedSequence());
+            Assert.assertEquals(1, log.countCompactions());
+            Assert.assertTrue(log.nextSequence() - log.firstRetainedSequence() < 2);
+            assertSameMachine(fleet.getMachine(0), log.rebuildFleet().getMachine(0));
+        }
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void should_fail_reading_compacted_events() {
+        Fleet fleet = VendingMachineFactory.buildFleet(products, 3, 5, 1);
+        try (MachineEventLog log = MachineEventLog.attach(fleet, 1, 100)) {
+            fleet.getMachine(0).insertCoin(Coin.ONE);
+            log.compact();
+            log.read(0, event -> {});
+        }
+    }
+
+    @Test
+    public void should_stop_background_compaction_after_a_fold_failure() throws InterruptedException {
+        Fleet fleet = VendingMachineFactory.buildFleet(products, 0, 5, 1);
+        try (MachineEventLog log = MachineEventLog.attach(fleet, 1, 0)) {
+            //a product restocked without an event, the sell can not be folded on the snapshot
+            MachineSnapshotCodec.unwrap(fleet.getMachine(0)).getInventory().getShelf(0).provision(1);
+            fleet.getMachine(0).selectShelfNumber(0);
+            fleet.getMachine(0).insertCoin(Coin.ONE);
+            long deadline = System.currentTimeMillis() + 30_000;
+            while (log.getCompactionFailure() == null && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Assert.assertNotNull(log.getCompactionFailure());
+            long compactions = log.countCompactions();
+            long firstRetainedSequence = log.firstRetainedSequence();
+
+            fleet.getMachine(0).insertCoin(Coin.ONE);
+            Thread.sleep(100);
+
+            Assert.assertEquals(compactions, log.countCompactions());
+            Assert.assertEquals(firstRetainedSequence, log.firstRetainedSequence());
+            Assert.assertEquals(log.nextSequence() - firstRetainedSequence, readAll(log, firstRetainedSequence).size());
+        }
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void should_fail_segment_size_lower_than_one() {
+        MachineEventLog.attach(VendingMachineFactory.buildFleet(products, 3, 5, 1), 0, 1);
+    }
+
+    @Test
+    public void should_bound_retained_events_compacting_in_background() throws InterruptedException {
+        int machineCount = 1000;
+        int sells = 100_000;
+        int segmentSize = 4096;
+        int maxSealedSegments = 8;
+        Fleet fleet = VendingMachineFactory.buildFleet(products, 9, 9, machineCount);
+        try (MachineEventLog log = MachineEventLog.attach(fleet, segmentSize, maxSealedSegments)) {
+            long start = System.nanoTime();
+            for (int i = 0; i < sells; i++) {
+                VendingSession machine = fleet.getMachine(i % machineCount);
+                if (machine.countProductsOnShelf(0) == 0) {
+                    machine.restockShelf(0, 9);
+                }
+                machine.selectShelfNumber(0);
+                machine.insertCoin(Coin.ONE);
+            }
+            long elapsed = System.nanoTime() - start;
+            long deadline = System.currentTimeMillis() + 30_000;
+            while (log.nextSequence() - log.firstRetainedSequence() > (long) (maxSealedSegments + 1) * segmentSize
+                && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            long retained = log.nextSequence() - log.firstRetainedSequence();
+
+            long replayStart = System.nanoTime();
+            Fleet rebuilt = log.rebuildFleet();
+            long replayElapsed = System.nanoTime() - replayStart;
+
+            Assert.assertTrue(log.countCompactions() > 0);
+            Assert.assertTrue(retained <= (long) (maxSealedSegments + 1) * segmentSize);
+            Assert.assertEquals(fleet.countTotalAmountProducts(), rebuilt.countTotalAmountProducts());
+            logger.info(String.format("%d events in %d ms (%d events/s), %d compactions, %d retained events rebuilt in %d ms",
+                log.nextSequence(), elapsed / 1_000_000, log.nextSequence() * 1_000_000_000L / Math.max(1, elapsed),
+                log.countCompactions(), retained, replayElapsed / 1_000_000));
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package tdd.vendingMachine.state;
+
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import tdd.vendingMachine.domain.Coin;
+import tdd.vendingMachine.domain.Product;
+import tdd.vendingMachine.domain.VendingMachineConfiguration;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.InputMismatchException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Agustin Cabra on 3/10/2017.
+ * @since 2.1
+ */
+public class MachineSnapshotCodecTest {
+
+    private static final Logger logger = Logger.getLogger(MachineSnapshotCodecTest.class);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private List<Product> products;
+
+    @Before
+    public void setup() {
+        products = Arrays.asList(new Product(100, "product_100"), new Product(250, "product_250"));
+    }
+
+    private byte[] writeSnapshot(VendingSession machine) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MachineSnapshotCodec.write(machine, Channels.newChannel(out));
+        return out.toByteArray();
+    }
+
+    private VendingSession readSnapshot(byte[] snapshot) throws IOException {
+        return MachineSnapshotCodec.read(Channels.newChannel(new ByteArrayInputStream(snapshot)));
+    }
+
+    @Test
+    public void should_restore_machine_in_the_middle_of_a_transaction() throws IOException {
+        VendingSession machine = (VendingSession) VendingMachineFactory.buildVendingMachineGivenProductsAndInitialShelfItemCounts(products, 3, 2);
+        machine.selectShelfNumber(1);
+        machine.insertCoin(Coin.TWO);
+        machine.insertCoin(Coin.TWENTY_CENTS);
+
+        VendingSession restored = readSnapshot(writeSnapshot(machine));
+
+        Assert.assertTrue(restored.provideCurrentState() instanceof InsufficientCreditState);
+        Assert.assertEquals(220, restored.provideCredit());
+        Assert.assertEquals(2, restored.getCreditStackSize());
+        Assert.assertEquals(products.get(1), restored.provideSelectedProduct());
+        Assert.assertEquals(6, restored.countTotalAmountProducts());
+        Assert.assertEquals(((VendingMachineImpl) machine).countCashInDispenser(), ((VendingMachineImpl) restored).countCashInDispenser());
+
+        restored.insertCoin(Coin.FIFTY_CENTS);
+
+        Assert.assertTrue(restored.provideCurrentState() instanceof ReadyState);
+        Assert.assertEquals(0, restored.provideCredit());
+        Assert.assertEquals(2, restored.countProductsOnShelf(1));
+    }
+
+    @Test
+    public void should_restore_partially_sold_stock_and_coins() throws IOException {
+        VendingSession machine = (VendingSession) VendingMachineFactory.buildVendingMachineGivenProductsAndInitialShelfItemCounts(products, 2, 0);
+        machine.selectShelfNumber(0);
+        machine.insertCoin(Coin.ONE);
+        machine.restockShelf(1, 1);
+
+        VendingSession restored = readSnapshot(writeSnapshot(machine));
+
+        Assert.assertTrue(restored.provideCurrentState() instanceof ReadyState);
+        Assert.assertEquals(1, restored.countProductsOnShelf(0));
+        Assert.assertEquals(3, restored.countProductsOnShelf(1));
+        Assert.assertNull(restored.provideSelectedProduct());
+        Assert.assertEquals(Coin.ONE.denomination, ((VendingMachineImpl) restored).countCashInDispenser());
+    }
+
+    @Test
+    public void should_share_interned_products_between_restored_machines() throws IOException {
+        Fleet fleet = VendingMachineFactory.buildFleet(products, 1, 1, 2);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MachineSnapshotCodec.writeFleet(fleet, Channels.newChannel(out));
+
+        Fleet restored = MachineSnapshotCodec.readFleet(Channels.newChannel(new ByteArrayInputStream(out.toByteArray())));
+        restored.getMachine(0).selectShelfNumber(1);
+        restored.getMachine(1).selectShelfNumber(1);
+
+        Assert.assertSame(restored.getMachine(0).provideSelectedProduct(), restored.getMachine(1).provideSelectedProduct());
+        Assert.assertSame(VendingMachineFactory.getProductCatalog().intern(products.get(1)), restored.getMachine(0).provideSelectedProduct());
+    }
+
+    @Test
+    public void should_snapshot_concurrent_machine() throws IOException {
+        ConcurrentVendingMachine machine = VendingMachineFactory.buildConcurrentVendingMachine(
+            VendingMachineFactory.buildVendingMachineGivenProductsAndInitialShelfItemCounts(products, 1, 1));
+        machine.insertCoin(Coin.FIFTY_CENTS);
+
+        VendingSession restored = readSnapshot(writeSnapshot(machine));
+
+        Assert.assertTrue(restored.provideCurrentState() instanceof CreditNotSelectedProductState);
+        Assert.assertEquals(Coin.FIFTY_CENTS.denomination, restored.provideCredit());
+    }
+
+    @Test
+    public void should_restore_fleet_keeping_sparse_machine_ids() throws IOException {
+        Map<Integer, VendingSession> machines = new HashMap<>();
+        machines.put(2, (VendingSession) VendingMachineFactory.buildVendingMachineGivenProductsAndInitialShelfItemCounts(products, 1, 0));
+        machines.put(9, (VendingSession) VendingMachineFactory.buildVendingMachineGivenProductsAndInitialShelfItemCounts(products, 4, 0));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MachineSnapshotCodec.writeFleet(Fleet.of(VendingMachineFactory.getConfig(), machines), Channels.newChannel(out));
+
+        Fleet restored = MachineSnapshotCodec.readFleet(Channels.newChannel(new ByteArrayInputStream(out.toByteArray())));
+
+        Assert.assertEquals(2, restored.countMachines());
+        Assert.assertEquals(2, restored.getMachine(2).countTotalAmountProducts());
+        Assert.assertEquals(8, restored.getMachine(9).countTotalAmountProducts());
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void should_fail_reading_fleet_with_machine_id_above_configured_bound() throws IOException {
+        Map<Integer, VendingSession> machines = new HashMap<>();
+        machines.put(9, (VendingSession) VendingMachineFactory.buildVendingMachineGivenProductsAndInitialShelfItemCounts(products, 1, 0));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MachineSnapshotCodec.writeFleet(Fleet.of(VendingMachineFactory.getConfig(), machines), Channels.newChannel(out));
+        VendingMachineConfiguration previous = VendingMachineConfiguration.publish(
+            new VendingMachineConfiguration("config_machine_id_test.properties"));
+        try {
+            MachineSnapshotCodec.readFleet(Channels.newChannel(new ByteArrayInputStream(out.toByteArray())));
+        } finally {
+            VendingMachineConfiguration.publish(previous);
+        }
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void should_fail_reading_unknown_format() throws IOException {
+        readSnapshot(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void should_fail_reading_unsupported_version() throws IOException {
+        byte[] snapshot = writeSnapshot((VendingSession) VendingMachineFactory.buildVendingMachineGivenProductsAndInitialShelfItemCounts(products, 1, 1));
+        ByteBuffer.wrap(snapshot).putShort(Integer.BYTES, (short) (MachineSnapshotCodec.VERSION + 1));
+
+        readSnapshot(snapshot);
+    }
+
+    @Test(expected = EOFException.class)
+    public void should_fail_reading_truncated_snapshot() throws IOException {
+        byte[] snapshot = writeSnapshot((VendingSession) VendingMachineFactory.buildVendingMachineGivenProductsAndInitialShelfItemCounts(products, 1, 1));
+
+        readSnapshot(Arrays.copyOf(snapshot, snapshot.length - 1));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void should_fail_restoring_state_the_session_does_not_qualify_for() {
+        VendingMachineImpl machine = (VendingMachineImpl) VendingMachineFactory.buildVendingMachineGivenProductsAndInitialShelfItemCounts(products, 1, 1);
+
+        machine.restoreSession(0, new int[Coin.countDenominations()], -1, StateEnum.INSUFFICIENT_CREDIT, true);
+    }
+
+    @Test
+    public void should_report_save_and_restore_time_of_large_fleet() throws IOException {
+        int machineCount = 100_000;
+        Fleet fleet = VendingMachineFactory.buildFleet(products, 5, 5, machineCount);
+        fleet.getMachine(42).selectShelfNumber(0);
+        Path file = temporaryFolder.newFile().toPath();
+
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MachineSnapshotCodec.writeFleet(fleet, channel);
+        }
+        long saved = System.nanoTime();
+        Fleet restored;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            restored = MachineSnapshotCodec.readFleet(channel);
+        }
+        long elapsed = System.nanoTime();
+
+        Assert.assertEquals(machineCount, restored.countMachines());
+        Assert.assertEquals(fleet.countTotalAmountProducts(), restored.countTotalAmountProducts());
+        Assert.assertTrue(restored.getMachine(42).provideCurrentState() instanceof NoCreditSelectedProductState);
+        logger.info(String.format("snapshot of %d machines, %d bytes per machine, saved in %d ms, restored in %d ms",
+            machineCount, file.toFile().length() / machineCount, (saved - start) / 1_000_000, (elapsed - saved) / 1_000_000));
+    }
+}
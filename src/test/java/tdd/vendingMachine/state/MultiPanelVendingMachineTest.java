@@ -0,0 +1,217 @@
+package tdd.vendingMachine.state;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import tdd.vendingMachine.domain.Coin;
+import tdd.vendingMachine.domain.Product;
+import tdd.vendingMachine.domain.VendingMachineConfiguration;
+import tdd.vendingMachine.domain.exception.NotEnoughSlotsAvailableDispenserException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.InputMismatchException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Agustin Cabra on 3/7/2017.
+ * @since 2.1
+ */
+public class MultiPanelVendingMachineTest {
+
+    private Product product100;
+
+    @Before
+    public void setup() {
+        product100 = new Product(100, "product_100");
+    }
+
+    @Test
+    public void should_keep_credit_and_selection_per_panel() {
+        MultiPanelVendingMachine vendingMachine = VendingMachineFactory.buildMultiPanelVendingMachine(
+            Arrays.asList(product100, new Product(200, "product_200")), 2, 5, 2);
+        VendingSession first = vendingMachine.getPanel(0);
+        VendingSession second = vendingMachine.getPanel(1);
+
+        first.insertCoin(Coin.FIFTY_CENTS);
+        second.selectShelfNumber(1);
+
+        Assert.assertEquals(2, vendingMachine.countPanels());
+        Assert.assertEquals(Coin.FIFTY_CENTS.denomination, first.provideCredit());
+        Assert.assertNull(first.provideSelectedProduct());
+        Assert.assertEquals(0, second.provideCredit());
+        Assert.assertEquals("product_200", second.provideSelectedProduct().getType());
+        Assert.assertTrue(first.provideCurrentState() instanceof CreditNotSelectedProductState);
+        Assert.assertTrue(second.provideCurrentState() instanceof NoCreditSelectedProductState);
+    }
+
+    @Test
+    public void should_sell_last_product_to_first_panel_committing() {
+        MultiPanelVendingMachine vendingMachine = VendingMachineFactory.buildMultiPanelVendingMachine(
+            Collections.singletonList(product100), 1, 5, 2);
+        VendingSession first = vendingMachine.getPanel(0);
+        VendingSession second = vendingMachine.getPanel(1);
+        int cashBefore = vendingMachine.countCashInDispenser();
+
+        first.selectShelfNumber(0);
+        second.selectShelfNumber(0);
+        first.insertCoin(Coin.ONE);
+        second.insertCoin(Coin.ONE);
+
+        Assert.assertEquals(0, vendingMachine.countTotalAmountProducts());
+        Assert.assertEquals(cashBefore + product100.getPrice(), vendingMachine.countCashInDispenser());
+        Assert.assertTrue(first.provideCurrentState() instanceof SoldOutState);
+        Assert.assertNull(second.provideSelectedProduct());
+        Assert.assertEquals(Coin.ONE.denomination, second.provideCredit());
+        Assert.assertTrue(second.provideCurrentState() instanceof CreditNotSelectedProductState);
+
+        second.cancel();
+
+        Assert.assertEquals(0, second.provideCredit());
+        Assert.assertTrue(second.provideCurrentState() instanceof SoldOutState);
+        Assert.assertEquals(cashBefore + product100.getPrice(), vendingMachine.countCashInDispenser());
+    }
+
+    @Test
+    public void should_follow_sells_and_restocks_of_other_panels_on_idle_panels() {
+        MultiPanelVendingMachine vendingMachine = VendingMachineFactory.buildMultiPanelVendingMachine(
+            Collections.singletonList(product100), 1, 5, 2);
+        VendingSession first = vendingMachine.getPanel(0);
+        VendingSession second = vendingMachine.getPanel(1);
+
+        second.selectShelfNumber(0);
+        second.insertCoin(Coin.ONE);
+
+        Assert.assertTrue(first.provideCurrentState() instanceof SoldOutState);
+        first.insertCoin(Coin.ONE);
+        Assert.assertEquals(0, first.provideCredit());
+
+        second.restockShelf(0, 3);
+
+        Assert.assertTrue(first.provideCurrentState() instanceof ReadyState);
+        first.insertCoin(Coin.ONE);
+        Assert.assertEquals(Coin.ONE.denomination, first.provideCredit());
+        Assert.assertTrue(first.provideCurrentState() instanceof CreditNotSelectedProductState);
+        first.selectShelfNumber(0);
+        Assert.assertEquals(2, vendingMachine.countTotalAmountProducts());
+        Assert.assertTrue(first.provideCurrentState() instanceof ReadyState);
+    }
+
+    @Test
+    public void should_reserve_dispenser_slots_for_coins_on_every_panel_escrow() {
+        int coinShelfCapacity = VendingMachineFactory.getConfig().getCoinShelfCapacity();
+        MultiPanelVendingMachine vendingMachine = VendingMachineFactory.buildMultiPanelVendingMachine(
+            Collections.singletonList(product100), 1, coinShelfCapacity - 1, 2);
+
+        Assert.assertEquals(TransactionOutcome.ACCEPTED, vendingMachine.getPanel(0).tryAddCoinToCredit(Coin.FIVE));
+        Assert.assertEquals(TransactionOutcome.DISPENSER_FULL, vendingMachine.getPanel(1).tryAddCoinToCredit(Coin.FIVE));
+    }
+
+    @Test
+    public void should_not_oversell_shared_inventory_from_concurrent_panels() throws Exception {
+        int panels = 3;
+        int productsOnShelf = 5;
+        MultiPanelVendingMachine vendingMachine = VendingMachineFactory.buildMultiPanelVendingMachine(
+            Collections.singletonList(product100), productsOnShelf, 10, panels);
+        int cashBefore = vendingMachine.countCashInDispenser();
+
+        ExecutorService executor = Executors.newFixedThreadPool(panels);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < panels; i++) {
+            VendingSession panel = vendingMachine.getPanel(i);
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < productsOnShelf; j++) {
+                    panel.selectShelfNumber(0);
+                    panel.insertCoin(Coin.ONE);
+                    panel.cancel();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        int sold = productsOnShelf - vendingMachine.countTotalAmountProducts();
+        Assert.assertEquals(productsOnShelf, sold);
+        Assert.assertEquals(cashBefore + sold * product100.getPrice(), vendingMachine.countCashInDispenser());
+        for (int i = 0; i < panels; i++) {
+            Assert.assertEquals(0, vendingMachine.getPanel(i).provideCredit());
+            Assert.assertFalse(vendingMachine.getPanel(i).provideCurrentState() instanceof TechnicalErrorState);
+        }
+    }
+
+    @Test
+    public void should_defer_published_configuration_while_a_panel_holds_coins_and_keep_held_items() {
+        MultiPanelVendingMachine vendingMachine = VendingMachineFactory.buildMultiPanelVendingMachine(
+            Collections.singletonList(product100), 5, 5, 2);
+        VendingSession first = vendingMachine.getPanel(0);
+        VendingSession second = vendingMachine.getPanel(1);
+        VendingMachineConfiguration previous = VendingMachineConfiguration.current();
+        VendingMachineConfiguration reduced = new VendingMachineConfiguration("config_test.properties");
+        first.insertCoin(Coin.FIFTY_CENTS);
+        try {
+            VendingMachineConfiguration.publish(reduced);
+
+            second.restockShelf(0, 3);
+            Assert.assertEquals(0, reduced.countMachinesAffected());
+            first.cancel();
+            first.selectShelfNumber(0);
+
+            Assert.assertEquals(1, reduced.countMachinesAffected());
+            Assert.assertEquals(8, first.countProductsOnShelf(0));
+            try {
+                second.restockShelf(0, 1);
+                Assert.fail("shelf capacity was not reduced to the items held");
+            } catch (NotEnoughSlotsAvailableDispenserException expected) {
+                Assert.assertEquals(8, second.countProductsOnShelf(0));
+            }
+        } finally {
+            VendingMachineConfiguration.publish(previous);
+        }
+    }
+
+    @Test
+    public void should_enforce_reduced_capacity_once_items_above_it_are_sold() {
+        MultiPanelVendingMachine vendingMachine = VendingMachineFactory.buildMultiPanelVendingMachine(
+            Collections.singletonList(product100), 8, 0, 1);
+        VendingSession panel = vendingMachine.getPanel(0);
+        VendingMachineConfiguration previous = VendingMachineConfiguration.current();
+        try {
+            VendingMachineConfiguration.publish(new VendingMachineConfiguration("config_test.properties"));
+            for (int i = 0; i < 3; i++) {
+                panel.selectShelfNumber(0);
+                panel.insertCoin(Coin.ONE);
+            }
+            Assert.assertEquals(5, panel.countProductsOnShelf(0));
+
+            try {
+                panel.restockShelf(0, 3);
+                Assert.fail("restock above the reduced shelf capacity was accepted");
+            } catch (NotEnoughSlotsAvailableDispenserException expected) {
+                Assert.assertEquals(5, panel.countProductsOnShelf(0));
+            }
+            panel.selectShelfNumber(0);
+            panel.insertCoin(Coin.ONE);
+            panel.restockShelf(0, 1);
+            Assert.assertEquals(5, panel.countProductsOnShelf(0));
+        } finally {
+            VendingMachineConfiguration.publish(previous);
+        }
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void should_fail_machine_without_panels() {
+        VendingMachineFactory.buildMultiPanelVendingMachine(Collections.singletonList(product100), 1, 1, 0);
+    }
+}
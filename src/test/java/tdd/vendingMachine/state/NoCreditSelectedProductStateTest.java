@@ -12,6 +12,7 @@ import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 import tdd.vendingMachine.VendingMachine;
 import tdd.vendingMachine.domain.Coin;
+import tdd.vendingMachine.domain.CoinDispenser;
 import tdd.vendingMachine.domain.Product;
 import tdd.vendingMachine.domain.Shelf;
 import tdd.vendingMachine.domain.VendingMachineConfiguration;
@@ -122,7 +123,7 @@ public class NoCreditSelectedProductStateTest implements StateTest {
         PowerMockito.when(VendingMachineFactory.getConfig()).thenReturn(configMock);
 
         Map<Integer, Shelf<Product>> productShelf = TestUtils.buildShelfStubFromProductImports(productImportList, productShelfCapacity);
-        Map<Coin, Shelf<Coin>> coinShelf = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialCoinsPerShelf);
+        CoinDispenser coinShelf = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialCoinsPerShelf);
         VendingMachine vendingMachine = VendingMachineFactory.customVendingMachineForTesting(productShelf, coinShelf);
         noCreditSelectedProductState = transformToAndValidateInitialState(vendingMachine);
         Product selectedBeforeAttempt = noCreditSelectedProductState.vendingMachine.provideSelectedProduct();
@@ -153,7 +154,7 @@ public class NoCreditSelectedProductStateTest implements StateTest {
         PowerMockito.when(VendingMachineFactory.getConfig()).thenReturn(configMock);
 
         Map<Integer, Shelf<Product>> productShelf = TestUtils.buildShelfStubFromProductImports(productImportList, productShelfCapacity);
-        Map<Coin, Shelf<Coin>> coinShelf = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialCoinsPerShelf);
+        CoinDispenser coinShelf = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialCoinsPerShelf);
         VendingMachine vendingMachine = VendingMachineFactory.customVendingMachineForTesting(productShelf, coinShelf);
         noCreditSelectedProductState = transformToAndValidateInitialState(vendingMachine);
         Product selectedBeforeAttempt = noCreditSelectedProductState.vendingMachine.provideSelectedProduct();
@@ -184,7 +185,7 @@ public class NoCreditSelectedProductStateTest implements StateTest {
         PowerMockito.when(VendingMachineFactory.getConfig()).thenReturn(configMock);
 
         Map<Integer, Shelf<Product>> productShelf = TestUtils.buildShelfStubFromProductImports(productImportList, productShelfCapacity);
-        Map<Coin, Shelf<Coin>> coinShelf = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialCoinsPerShelf);
+        CoinDispenser coinShelf = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialCoinsPerShelf);
         VendingMachine vendingMachine = VendingMachineFactory.customVendingMachineForTesting(productShelf, coinShelf);
         noCreditSelectedProductState = transformToAndValidateInitialState(vendingMachine);
         Product selectedBeforeAttempt = noCreditSelectedProductState.vendingMachine.provideSelectedProduct();
@@ -213,7 +214,7 @@ public class NoCreditSelectedProductStateTest implements StateTest {
         PowerMockito.when(VendingMachineFactory.getConfig()).thenReturn(configMock);
 
         Map<Integer, Shelf<Product>> productShelf = TestUtils.buildShelfStubFromProductImports(productImportList, productShelfCapacity);
-        Map<Coin, Shelf<Coin>> coinShelf = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, coinShelfCapacity);
+        CoinDispenser coinShelf = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, coinShelfCapacity);
         VendingMachine vendingMachine = VendingMachineFactory.customVendingMachineForTesting(productShelf, coinShelf);
         noCreditSelectedProductState = transformToAndValidateInitialState(vendingMachine);
         Product selectedBeforeAttempt = noCreditSelectedProductState.vendingMachine.provideSelectedProduct();
@@ -245,7 +246,7 @@ public class NoCreditSelectedProductStateTest implements StateTest {
         PowerMockito.when(VendingMachineFactory.getConfig()).thenReturn(configMock);
 
         Map<Integer, Shelf<Product>> productShelf = TestUtils.buildShelfStubFromProductImports(productImportList, productShelfCapacity);
-        Map<Coin, Shelf<Coin>> coinShelf = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialCoinsDispenser);
+        CoinDispenser coinShelf = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialCoinsDispenser);
         VendingMachine vendingMachine = VendingMachineFactory.customVendingMachineForTesting(productShelf, coinShelf);
         noCreditSelectedProductState = transformToAndValidateInitialState(vendingMachine);
 
@@ -274,7 +275,7 @@ public class NoCreditSelectedProductStateTest implements StateTest {
         PowerMockito.when(VendingMachineFactory.getConfig()).thenReturn(configMock);
 
         Map<Integer, Shelf<Product>> productShelf = TestUtils.buildShelfStubFromProductImports(productImportList, productShelfCapacity);
-        Map<Coin, Shelf<Coin>> coinShelf = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialCoinsDispenser);
+        CoinDispenser coinShelf = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialCoinsDispenser);
         VendingMachine vendingMachine = VendingMachineFactory.customVendingMachineForTesting(productShelf, coinShelf);
         noCreditSelectedProductState = transformToAndValidateInitialState(vendingMachine);
         int creditBefore = noCreditSelectedProductState.vendingMachine.provideCredit();
@@ -309,7 +310,7 @@ public class NoCreditSelectedProductStateTest implements StateTest {
         PowerMockito.when(VendingMachineFactory.getConfig()).thenReturn(configMock);
 
         Map<Integer, Shelf<Product>> productShelf = TestUtils.buildShelfStubFromProductImports(productImportList, productShelfCapacity);
-        Map<Coin, Shelf<Coin>> coinShelf = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialCoinsDispenser);
+        CoinDispenser coinShelf = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialCoinsDispenser);
         VendingMachine vendingMachine = VendingMachineFactory.customVendingMachineForTesting(productShelf, coinShelf);
         noCreditSelectedProductState = transformToAndValidateInitialState(vendingMachine);
 
@@ -339,7 +340,7 @@ public class NoCreditSelectedProductStateTest implements StateTest {
         PowerMockito.when(VendingMachineFactory.getConfig()).thenReturn(configMock);
 
         Map<Integer, Shelf<Product>> productShelf = TestUtils.buildShelfStubFromProductImports(productImportList, productShelfCapacity);
-        Map<Coin, Shelf<Coin>> coinShelf = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialCoinsDispenser);
+        CoinDispenser coinShelf = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialCoinsDispenser);
         VendingMachine vendingMachine = VendingMachineFactory.customVendingMachineForTesting(productShelf, coinShelf);
         noCreditSelectedProductState = transformToAndValidateInitialState(vendingMachine);
 
@@ -363,7 +364,7 @@ public class NoCreditSelectedProductStateTest implements StateTest {
 
         VendingMachine spied = PowerMockito.spy(VendingMachineFactory.customVendingMachineForTesting(TestUtils.buildShelvesWithItems(COLA_199_025, 1),
             TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(10, 5)));
-        PowerMockito.doThrow(new RuntimeException("fail to error")).when(spied, "addCoinToCredit", fiftyCents);
+        PowerMockito.doThrow(new RuntimeException("fail to error")).when(spied, "tryAddCoinToCredit", fiftyCents);
 
         noCreditSelectedProductState = new NoCreditSelectedProductState((VendingMachineImpl) spied);
 
@@ -373,7 +374,7 @@ public class NoCreditSelectedProductStateTest implements StateTest {
 
         PowerMockito.verifyStatic(Mockito.times(1));
         VendingMachineFactory.getConfig();
-        Mockito.verify(spied, Mockito.times(1)).addCoinToCredit(fiftyCents);
+        Mockito.verify(spied, Mockito.times(1)).tryAddCoinToCredit(fiftyCents);
         verifyConfigMock(configMock, 1, 1, 1);
     }
 
@@ -387,7 +388,7 @@ public class NoCreditSelectedProductStateTest implements StateTest {
 
         VendingMachine spied = PowerMockito.spy(VendingMachineFactory.customVendingMachineForTesting(TestUtils.buildShelvesWithItems(COLA_199_025, 1),
             TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(10, 5)));
-        PowerMockito.doThrow(new RuntimeException("fail to error")).when(spied, "selectProductGivenShelfNumber", shelfNumber);
+        PowerMockito.doThrow(new RuntimeException("fail to error")).when(spied, "trySelectProductGivenShelfNumber", shelfNumber);
 
         noCreditSelectedProductState = new NoCreditSelectedProductState((VendingMachineImpl) spied);
 
@@ -397,7 +398,7 @@ public class NoCreditSelectedProductStateTest implements StateTest {
 
         PowerMockito.verifyStatic(Mockito.times(1));
         VendingMachineFactory.getConfig();
-        Mockito.verify(spied, Mockito.times(1)).selectProductGivenShelfNumber(shelfNumber);
+        Mockito.verify(spied, Mockito.times(1)).trySelectProductGivenShelfNumber(shelfNumber);
         verifyConfigMock(configMock, 1, 1, 1);
     }
 
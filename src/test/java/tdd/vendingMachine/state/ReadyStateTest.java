@@ -11,6 +11,7 @@ import org.powermock.core.classloader.annotations.PowerMockIgnore;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 import tdd.vendingMachine.domain.Coin;
+import tdd.vendingMachine.domain.CoinDispenser;
 import tdd.vendingMachine.domain.Product;
 import tdd.vendingMachine.domain.Shelf;
 import tdd.vendingMachine.domain.VendingMachineConfiguration;
@@ -183,7 +184,7 @@ public class ReadyStateTest implements StateTest {
                                                             new ProductImport(COLA_199_025.getType(), COLA_199_025.getPrice(), 0));
 
         Map<Integer, Shelf<Product>> productImportStub = TestUtils.buildShelfStubFromProductImports(products, productShelfCapacity);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, coinShelfCapacity);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, coinShelfCapacity);
         VendingMachine vendingMachine = VendingMachineFactory.customVendingMachineForTesting(productImportStub, coinShelves);
         readyState = transformToAndValidateInitialState(vendingMachine);
         int emptyShelfId = 1;
@@ -223,7 +224,7 @@ public class ReadyStateTest implements StateTest {
 
         VendingMachine spied = PowerMockito.spy(VendingMachineFactory.customVendingMachineForTesting(TestUtils.buildShelvesWithItems(COLA_199_025, 1),
             TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(10, 5)));
-        PowerMockito.doThrow(new RuntimeException("fail to error")).when(spied, "addCoinToCredit", fiftyCents);
+        PowerMockito.doThrow(new RuntimeException("fail to error")).when(spied, "tryAddCoinToCredit", fiftyCents);
 
         readyState = new ReadyState(spied);
 
@@ -233,7 +234,7 @@ public class ReadyStateTest implements StateTest {
 
         PowerMockito.verifyStatic(Mockito.times(1));
         VendingMachineFactory.getConfig();
-        Mockito.verify(spied, Mockito.times(1)).addCoinToCredit(fiftyCents);
+        Mockito.verify(spied, Mockito.times(1)).tryAddCoinToCredit(fiftyCents);
         verifyConfigMock(configMock, 1, 1, 1);
     }
 
@@ -246,7 +247,7 @@ public class ReadyStateTest implements StateTest {
 
         VendingMachine spied = PowerMockito.spy(VendingMachineFactory.customVendingMachineForTesting(TestUtils.buildShelvesWithItems(COLA_199_025, 1),
             TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(10, 5)));
-        PowerMockito.doThrow(new RuntimeException("fail to error")).when(spied, "selectProductGivenShelfNumber", shelfNumber);
+        PowerMockito.doThrow(new RuntimeException("fail to error")).when(spied, "trySelectProductGivenShelfNumber", shelfNumber);
 
         readyState = new ReadyState(spied);
 
@@ -256,7 +257,7 @@ public class ReadyStateTest implements StateTest {
 
         PowerMockito.verifyStatic(Mockito.times(1));
         VendingMachineFactory.getConfig();
-        Mockito.verify(spied, Mockito.times(1)).selectProductGivenShelfNumber(shelfNumber);
+        Mockito.verify(spied, Mockito.times(1)).trySelectProductGivenShelfNumber(shelfNumber);
         verifyConfigMock(configMock, 1, 1, 1);
     }
 }
@@ -0,0 +1,220 @@
+package tdd.vendingMachine.state;
+
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import tdd.vendingMachine.VendingMachine;
+import tdd.vendingMachine.domain.Coin;
+import tdd.vendingMachine.domain.Product;
+import tdd.vendingMachine.domain.VendingMachineConfiguration;
+
+import java.util.Arrays;
+import java.util.InputMismatchException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Agustin Cabra on 3/6/2017.
+ * @since 2.1
+ */
+public class StateTransitionTableTest {
+
+    private static final Logger logger = Logger.getLogger(StateTransitionTableTest.class);
+
+    private State[] targets;
+    private StateTransitionTable.TransitionInvariant[] invariants;
+    private int[] allowedTargets;
+    private AtomicInteger checks;
+
+    @Before
+    public void setup() {
+        int statesCount = StateEnum.values().length;
+        targets = new State[statesCount];
+        invariants = new StateTransitionTable.TransitionInvariant[statesCount];
+        allowedTargets = new int[statesCount];
+        checks = new AtomicInteger();
+        for (int i = 0; i < statesCount; i++) {
+            targets[i] = Mockito.mock(State.class);
+        }
+        Arrays.fill(invariants, (StateTransitionTable.TransitionInvariant) vendingMachine -> checks.incrementAndGet());
+        Arrays.fill(allowedTargets, StateTransitionTable.maskOf(StateEnum.values()));
+    }
+
+    @Test
+    public void should_resolve_every_allowed_state_by_ordinal() {
+        StateTransitionTable table = new StateTransitionTable(targets, invariants, allowedTargets, true);
+        VendingMachine vendingMachine = Mockito.mock(VendingMachine.class);
+
+        for (StateEnum state : StateEnum.values()) {
+            Assert.assertSame(targets[state.ordinal()], table.transitionTo(targets[StateEnum.READY.ordinal()], state, vendingMachine));
+        }
+        Assert.assertEquals(StateEnum.values().length, checks.get());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void should_fail_transition_breaking_invariant() {
+        invariants[StateEnum.READY.ordinal()] = vendingMachine -> {
+            throw new IllegalStateException("not ready");
+        };
+        StateTransitionTable table = new StateTransitionTable(targets, invariants, allowedTargets, true);
+
+        table.transitionTo(targets[StateEnum.SOLD_OUT.ordinal()], StateEnum.READY, Mockito.mock(VendingMachine.class));
+    }
+
+    @Test
+    public void should_skip_invariants_when_not_validating() {
+        invariants[StateEnum.READY.ordinal()] = vendingMachine -> {
+            throw new IllegalStateException("not ready");
+        };
+        StateTransitionTable table = new StateTransitionTable(targets, invariants, allowedTargets, false);
+
+        Assert.assertSame(targets[StateEnum.READY.ordinal()],
+            table.transitionTo(targets[StateEnum.SOLD_OUT.ordinal()], StateEnum.READY, Mockito.mock(VendingMachine.class)));
+        Assert.assertEquals(0, checks.get());
+        Assert.assertFalse(table.isValidating());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void should_fail_transition_not_allowed_when_not_validating() {
+        allowedTargets[StateEnum.SOLD_OUT.ordinal()] = StateTransitionTable.maskOf(StateEnum.READY);
+        StateTransitionTable table = new StateTransitionTable(targets, invariants, allowedTargets, false);
+
+        table.transitionTo(targets[StateEnum.SOLD_OUT.ordinal()], StateEnum.INSUFFICIENT_CREDIT, Mockito.mock(VendingMachine.class));
+    }
+
+    @Test
+    public void should_enter_state_checking_its_invariant_when_not_validating() {
+        StateTransitionTable table = new StateTransitionTable(targets, invariants, allowedTargets, false);
+
+        table.enter(StateEnum.READY, Mockito.mock(VendingMachine.class));
+
+        Assert.assertEquals(1, checks.get());
+    }
+
+    @Test
+    public void should_fail_transition_not_allowed_without_checking_invariant() {
+        allowedTargets[StateEnum.SOLD_OUT.ordinal()] = StateTransitionTable.maskOf(StateEnum.READY);
+        StateTransitionTable table = new StateTransitionTable(targets, invariants, allowedTargets, true);
+
+        try {
+            table.transitionTo(targets[StateEnum.SOLD_OUT.ordinal()], StateEnum.INSUFFICIENT_CREDIT, Mockito.mock(VendingMachine.class));
+            Assert.fail("sold out must not move to insufficient credit");
+        } catch (IllegalStateException expected) {
+            Assert.assertEquals(0, checks.get());
+        }
+    }
+
+    @Test
+    public void should_always_allow_staying_on_the_same_state() {
+        Arrays.fill(allowedTargets, 0);
+        StateTransitionTable table = new StateTransitionTable(targets, invariants, allowedTargets, true);
+
+        for (StateEnum state : StateEnum.values()) {
+            Assert.assertTrue(table.isAllowed(state, state));
+            Assert.assertSame(targets[state.ordinal()], table.transitionTo(targets[state.ordinal()], state, Mockito.mock(VendingMachine.class)));
+        }
+    }
+
+    @Test
+    public void should_enter_state_checking_only_its_invariant() {
+        Arrays.fill(allowedTargets, 0);
+        StateTransitionTable table = new StateTransitionTable(targets, invariants, allowedTargets, true);
+
+        Assert.assertSame(targets[StateEnum.INSUFFICIENT_CREDIT.ordinal()],
+            table.enter(StateEnum.INSUFFICIENT_CREDIT, Mockito.mock(VendingMachine.class)));
+        Assert.assertEquals(1, checks.get());
+    }
+
+    @Test
+    public void should_describe_the_transitions_of_the_machine_states() {
+        StateTransitionTable table = StateTransitionTable.build(targets[0], targets[1], targets[2], targets[3],
+            targets[4], targets[5], true);
+
+        Assert.assertTrue(table.isAllowed(StateEnum.SOLD_OUT, StateEnum.READY));
+        Assert.assertTrue(table.isAllowed(StateEnum.READY, StateEnum.NO_CREDIT_SELECTED_PRODUCT));
+        Assert.assertTrue(table.isAllowed(StateEnum.NO_CREDIT_SELECTED_PRODUCT, StateEnum.INSUFFICIENT_CREDIT));
+        Assert.assertTrue(table.isAllowed(StateEnum.INSUFFICIENT_CREDIT, StateEnum.TECHNICAL_ERROR));
+        Assert.assertFalse(table.isAllowed(StateEnum.SOLD_OUT, StateEnum.INSUFFICIENT_CREDIT));
+        Assert.assertFalse(table.isAllowed(StateEnum.READY, StateEnum.INSUFFICIENT_CREDIT));
+        Assert.assertFalse(table.isAllowed(StateEnum.INSUFFICIENT_CREDIT, StateEnum.NO_CREDIT_SELECTED_PRODUCT));
+        for (StateEnum state : StateEnum.values()) {
+            Assert.assertEquals(state == StateEnum.TECHNICAL_ERROR, table.isAllowed(StateEnum.TECHNICAL_ERROR, state));
+        }
+    }
+
+    @Test
+    public void should_not_be_affected_by_changes_on_given_arrays() {
+        StateTransitionTable table = new StateTransitionTable(targets, invariants, allowedTargets, true);
+        State expected = targets[StateEnum.SOLD_OUT.ordinal()];
+
+        targets[StateEnum.SOLD_OUT.ordinal()] = Mockito.mock(State.class);
+        allowedTargets[StateEnum.READY.ordinal()] = 0;
+
+        Assert.assertSame(expected, table.transitionTo(targets[StateEnum.READY.ordinal()], StateEnum.SOLD_OUT, Mockito.mock(VendingMachine.class)));
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void should_fail_table_not_covering_every_state() {
+        new StateTransitionTable(new State[1], invariants, allowedTargets, true);
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void should_fail_table_with_missing_transition() {
+        invariants[StateEnum.SOLD_OUT.ordinal()] = null;
+        new StateTransitionTable(targets, invariants, allowedTargets, true);
+    }
+
+    /**
+     * Selects a shelf, inserts a coin short of its price and cancels, round robin over the shelves of the given
+     * machine, every cycle takes the machine from READY through the credit states back to READY
+     * @param machine the machine
+     * @param shelfCount the amount of shelves
+     * @param cycles the amount of cycles
+     * @return the elapsed nanoseconds
+     */
+    private static long cycle(VendingSession machine, int shelfCount, int cycles) {
+        long start = System.nanoTime();
+        for (int i = 0; i < cycles; i++) {
+            machine.selectShelfNumber(i % shelfCount);
+            machine.insertCoin(Coin.ONE);
+            machine.cancel();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static VendingSession buildMachine(List<Product> products, VendingMachineConfiguration configuration) {
+        VendingMachineConfiguration previous = VendingMachineConfiguration.current();
+        try {
+            VendingMachineConfiguration.publish(configuration);
+            return (VendingSession) VendingMachineFactory.buildVendingMachineGivenProductsAndInitialShelfItemCounts(products, 5, 5);
+        } finally {
+            VendingMachineConfiguration.publish(previous);
+        }
+    }
+
+    @Test
+    public void should_report_transitions_per_second_with_and_without_invariant_validation() {
+        List<Product> products = Arrays.asList(new Product(250, "product_250_a"), new Product(250, "product_250_b"),
+            new Product(250, "product_250_c"), new Product(250, "product_250_d"), new Product(250, "product_250_e"));
+        int cycles = 200_000;
+        VendingMachineConfiguration fastConfiguration = new VendingMachineConfiguration("config_fast_transitions_test.properties");
+        VendingSession validating = buildMachine(products, new VendingMachineConfiguration());
+        VendingSession fast = buildMachine(products, fastConfiguration);
+        cycle(validating, products.size(), cycles / 10);
+        cycle(fast, products.size(), cycles / 10);
+
+        long validatingElapsed = cycle(validating, products.size(), cycles);
+        long fastElapsed = cycle(fast, products.size(), cycles);
+
+        Assert.assertTrue(fastConfiguration.isFastTransitionsEnabled());
+        Assert.assertTrue(validating.provideCurrentState() instanceof ReadyState);
+        Assert.assertTrue(fast.provideCurrentState() instanceof ReadyState);
+        Assert.assertEquals(validating.countTotalAmountProducts(), fast.countTotalAmountProducts());
+        Assert.assertEquals(0, fast.provideCredit());
+        logger.info(String.format("%d select, insert and cancel cycles: %d cycles/s validating invariants, %d cycles/s "
+                + "skipping them", cycles, cycles * 1_000_000_000L / Math.max(1, validatingElapsed),
+            cycles * 1_000_000_000L / Math.max(1, fastElapsed)));
+    }
+}
@@ -12,6 +12,7 @@ import org.powermock.core.classloader.annotations.PowerMockIgnore;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 import tdd.vendingMachine.domain.Coin;
+import tdd.vendingMachine.domain.CoinDispenser;
 import tdd.vendingMachine.domain.Product;
 import tdd.vendingMachine.domain.Shelf;
 import tdd.vendingMachine.domain.VendingMachineConfiguration;
@@ -82,7 +83,7 @@ public class TechnicalErrorStateTest implements StateTest {
         }
 
         Map<Integer, Shelf<Product>> productShelf = TestUtils.buildShelvesWithItems(TestUtils.buildStubListOfProducts(3), 3, shelfCapacityProducts);
-        Map<Coin, Shelf<Coin>> coinShelf = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(shelfCapacityCoins, 5);
+        CoinDispenser coinShelf = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(shelfCapacityCoins, 5);
         VendingMachine vendingMachine = VendingMachineFactory.customVendingMachineForTesting(productShelf, coinShelf);
         technicalErrorState = transformToAndValidateInitialState(vendingMachine);
     }
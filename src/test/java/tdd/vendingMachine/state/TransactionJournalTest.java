@@ -0,0 +1,327 @@
+package tdd.vendingMachine.state;
+
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+import tdd.vendingMachine.domain.Coin;
+import tdd.vendingMachine.domain.CoinDispenser;
+import tdd.vendingMachine.domain.Product;
+import tdd.vendingMachine.domain.Shelf;
+import tdd.vendingMachine.domain.ShelfFactory;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.InputMismatchException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Agustin Cabra on 3/10/2017.
+ * @since 2.1
+ */
+public class TransactionJournalTest {
+
+    private static final Logger logger = Logger.getLogger(TransactionJournalTest.class);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private List<Product> products;
+    private Path journalFile;
+    private Path checkpointFile;
+
+    @Before
+    public void setup() throws IOException {
+        products = Arrays.asList(new Product(100, "product_100"), new Product(250, "product_250"));
+        journalFile = temporaryFolder.getRoot().toPath().resolve("journal");
+        checkpointFile = temporaryFolder.getRoot().toPath().resolve("checkpoint");
+    }
+
+    private void assertSameMachine(VendingSession expected, VendingSession actual) {
+        Assert.assertEquals(expected.provideCurrentState().getClass(), actual.provideCurrentState().getClass());
+        Assert.assertEquals(expected.provideCredit(), actual.provideCredit());
+        Assert.assertEquals(expected.getCreditStackSize(), actual.getCreditStackSize());
+        Assert.assertEquals(expected.provideSelectedProduct(), actual.provideSelectedProduct());
+        Assert.assertEquals(expected.countProductsOnShelf(0), actual.countProductsOnShelf(0));
+        Assert.assertEquals(expected.countProductsOnShelf(1), actual.countProductsOnShelf(1));
+        Assert.assertEquals(MachineSnapshotCodec.unwrap(expected).countCashInDispenser(),
+            MachineSnapshotCodec.unwrap(actual).countCashInDispenser());
+    }
+
+    @Test
+    public void should_recover_fleet_from_checkpoint_and_journal_tail() throws IOException {
+        Fleet fleet = VendingMachineFactory.buildFleet(products, 3, 5, 3);
+        try (TransactionJournal journal = TransactionJournal.open(journalFile, 4)) {
+            journal.checkpoint(fleet, checkpointFile);
+            journal.attach(fleet);
+
+            fleet.getMachine(0).selectShelfNumber(0);
+            fleet.getMachine(0).insertCoin(Coin.TWO);
+            fleet.getMachine(1).insertCoin(Coin.FIFTY_CENTS);
+            fleet.getMachine(1).selectShelfNumber(1);
+            fleet.getMachine(2).insertCoin(Coin.ONE);
+            fleet.getMachine(2).cancel();
+            fleet.getMachine(2).restockShelf(1, 2);
+        }
+
+        Fleet recovered = TransactionJournal.recover(checkpointFile, journalFile);
+
+        Assert.assertEquals(3, recovered.countMachines());
+        for (int machineId = 0; machineId < 3; machineId++) {
+            assertSameMachine(fleet.getMachine(machineId), recovered.getMachine(machineId));
+        }
+        Assert.assertTrue(recovered.getMachine(1).provideCurrentState() instanceof InsufficientCreditState);
+        recovered.getMachine(1).insertCoin(Coin.TWO);
+        Assert.assertEquals(2, recovered.getMachine(1).countProductsOnShelf(1));
+    }
+
+    @Test
+    public void should_recover_coins_provisioned_before_crashing_in_the_middle_of_a_sell() throws IOException {
+        Fleet fleet = VendingMachineFactory.buildFleet(products, 3, 5, 1);
+        VendingMachineImpl machine = MachineSnapshotCodec.unwrap(fleet.getMachine(0));
+        try (TransactionJournal journal = TransactionJournal.open(journalFile, 1)) {
+            journal.checkpoint(fleet, checkpointFile);
+            journal.attach(fleet);
+
+            machine.selectShelfNumber(0);
+            machine.insertCoin(Coin.FIFTY_CENTS);
+            machine.provisionCreditStackCashToDispenser();
+        }
+
+        VendingMachineImpl recovered = MachineSnapshotCodec.unwrap(TransactionJournal.recover(checkpointFile, journalFile).getMachine(0));
+
+        assertSameMachine(machine, recovered);
+        recovered.dispenseSelectedProductToBucketAndClearCreditStack();
+        Assert.assertEquals(2, recovered.countProductsOnShelf(0));
+        Assert.assertTrue(recovered.isCreditStackEmpty());
+    }
+
+    @Test
+    public void should_not_journal_sell_failing_to_provision_the_escrow() throws IOException {
+        Map<Integer, Shelf<Product>> productShelves = new HashMap<>();
+        productShelves.put(0, ShelfFactory.buildShelf(0, products.get(1), 10, 3));
+        CoinDispenser coinDispenser = Mockito.spy(new CoinDispenser(10, 5));
+        VendingMachineImpl machine = new VendingMachineImpl(productShelves, coinDispenser);
+        Fleet fleet = Fleet.of(VendingMachineFactory.getConfig(), Collections.singletonMap(0, machine));
+        try (TransactionJournal journal = TransactionJournal.open(journalFile, 1)) {
+            journal.checkpoint(fleet, checkpointFile);
+            journal.attach(fleet);
+            machine.selectShelfNumber(0);
+            machine.insertCoin(Coin.TWO);
+            Mockito.doReturn(0).when(coinDispenser).countFreeSlots(Coin.TWO);
+
+            machine.insertCoin(Coin.ONE);
+        }
+
+        VendingSession recovered = TransactionJournal.recover(checkpointFile, journalFile).getMachine(0);
+
+        Assert.assertEquals(3, machine.countProductsOnShelf(0));
+        Assert.assertTrue(machine.provideCurrentState() instanceof TechnicalErrorState);
+        Assert.assertEquals(3, recovered.countProductsOnShelf(0));
+        Assert.assertEquals(machine.provideCredit(), recovered.provideCredit());
+        Assert.assertEquals(machine.countCashInDispenser(), MachineSnapshotCodec.unwrap(recovered).countCashInDispenser());
+        Assert.assertTrue(recovered.provideCurrentState() instanceof TechnicalErrorState);
+    }
+
+    @Test
+    public void should_journal_and_emit_events_of_the_same_machine() throws IOException {
+        Fleet fleet = VendingMachineFactory.buildFleet(products, 3, 5, 1);
+        try (TransactionJournal journal = TransactionJournal.open(journalFile, 1);
+             MachineEventLog eventLog = MachineEventLog.attach(fleet, 64, 16)) {
+            journal.checkpoint(fleet, checkpointFile);
+            journal.attach(fleet);
+            fleet.getMachine(0).selectShelfNumber(0);
+            fleet.getMachine(0).insertCoin(Coin.TWO);
+
+            assertSameMachine(fleet.getMachine(0), eventLog.rebuildFleet().getMachine(0));
+            Assert.assertEquals(eventLog.nextSequence(), journal.countAppendedRecords());
+        }
+
+        assertSameMachine(fleet.getMachine(0), TransactionJournal.recover(checkpointFile, journalFile).getMachine(0));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void should_fail_adding_the_same_listener_twice() {
+        VendingMachineImpl machine = MachineSnapshotCodec.unwrap(VendingMachineFactory.buildFleet(products, 3, 5, 1).getMachine(0));
+        TransactionListener listener = machine.new Replay();
+        machine.addTransactionListener(listener);
+
+        machine.addTransactionListener(listener);
+    }
+
+    @Test
+    public void should_stop_recovery_at_torn_record() throws IOException {
+        Fleet fleet = VendingMachineFactory.buildFleet(products, 3, 5, 1);
+        try (TransactionJournal journal = TransactionJournal.open(journalFile, 1)) {
+            journal.checkpoint(fleet, checkpointFile);
+            journal.attach(fleet);
+            fleet.getMachine(0).insertCoin(Coin.ONE);
+            fleet.getMachine(0).insertCoin(Coin.TWENTY_CENTS);
+        }
+        try (RandomAccessFile file = new RandomAccessFile(journalFile.toFile(), "rw")) {
+            //header, first credit record and its state change, then the crc of the second credit record
+            file.seek(16 + 2 * 8 + 14 + 14 + 4);
+            file.writeInt(0xBADC0DE);
+        }
+
+        VendingSession recovered = TransactionJournal.recover(checkpointFile, journalFile).getMachine(0);
+
+        Assert.assertEquals(Coin.ONE.denomination, recovered.provideCredit());
+        Assert.assertTrue(recovered.provideCurrentState() instanceof CreditNotSelectedProductState);
+    }
+
+    @Test
+    public void should_append_after_the_tail_when_reopened() throws IOException {
+        Fleet fleet = VendingMachineFactory.buildFleet(products, 3, 5, 2);
+        try (TransactionJournal journal = TransactionJournal.open(journalFile, 1)) {
+            journal.checkpoint(fleet, checkpointFile);
+            journal.attach(fleet);
+            fleet.getMachine(0).insertCoin(Coin.ONE);
+        }
+        try (TransactionJournal journal = TransactionJournal.open(journalFile, 1)) {
+            journal.attach(fleet);
+            fleet.getMachine(0).selectShelfNumber(0);
+            fleet.getMachine(1).restockShelf(0, 1);
+        }
+
+        Fleet recovered = TransactionJournal.recover(checkpointFile, journalFile);
+
+        assertSameMachine(fleet.getMachine(0), recovered.getMachine(0));
+        assertSameMachine(fleet.getMachine(1), recovered.getMachine(1));
+        Assert.assertEquals(2, recovered.getMachine(0).countProductsOnShelf(0));
+    }
+
+    @Test
+    public void should_stop_journaling_machines_once_closed() throws IOException {
+        Fleet fleet = VendingMachineFactory.buildFleet(products, 3, 5, 1);
+        try (TransactionJournal journal = TransactionJournal.open(journalFile, 1)) {
+            journal.checkpoint(fleet, checkpointFile);
+            journal.attach(fleet);
+            fleet.getMachine(0).insertCoin(Coin.ONE);
+        }
+        fleet.getMachine(0).insertCoin(Coin.TWO);
+
+        VendingSession recovered = TransactionJournal.recover(checkpointFile, journalFile).getMachine(0);
+
+        Assert.assertEquals(Coin.ONE.denomination + Coin.TWO.denomination, fleet.getMachine(0).provideCredit());
+        Assert.assertEquals(Coin.ONE.denomination, recovered.provideCredit());
+    }
+
+    @Test
+    public void should_replay_only_records_after_the_last_checkpoint() throws IOException {
+        Fleet fleet = VendingMachineFactory.buildFleet(products, 3, 5, 1);
+        try (TransactionJournal journal = TransactionJournal.open(journalFile, 1)) {
+            journal.checkpoint(fleet, checkpointFile);
+            journal.attach(fleet);
+            fleet.getMachine(0).selectShelfNumber(0);
+            fleet.getMachine(0).insertCoin(Coin.ONE);
+            journal.checkpoint(fleet, checkpointFile);
+            fleet.getMachine(0).insertCoin(Coin.TEN_CENTS);
+        }
+
+        VendingSession recovered = TransactionJournal.recover(checkpointFile, journalFile).getMachine(0);
+
+        assertSameMachine(fleet.getMachine(0), recovered);
+        Assert.assertEquals(2, recovered.countProductsOnShelf(0));
+        Assert.assertEquals(Coin.TEN_CENTS.denomination, recovered.provideCredit());
+    }
+
+    @Test
+    public void should_force_records_once_per_group() throws IOException {
+        Fleet fleet = VendingMachineFactory.buildFleet(products, 3, 5, 1);
+        try (TransactionJournal journal = TransactionJournal.open(journalFile, 10)) {
+            journal.attach(fleet);
+            for (int i = 0; i < 12; i++) {
+                fleet.getMachine(0).restockShelf(0, 0 == i % 2 ? 1 : 0);
+            }
+
+            Assert.assertEquals(6, journal.countAppendedRecords());
+            Assert.assertEquals(0, journal.countCommits());
+            for (int i = 0; i < 5; i++) {
+                fleet.getMachine(0).restockShelf(1, 1);
+            }
+            Assert.assertEquals(1, journal.countCommits());
+            journal.commit();
+            Assert.assertEquals(2, journal.countCommits());
+        }
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void should_fail_group_commit_size_lower_than_one() throws IOException {
+        TransactionJournal.open(journalFile, 0);
+    }
+
+    @Test(expected = InputMismatchException.class)
+    public void should_fail_recovering_from_a_file_not_being_a_checkpoint() throws IOException {
+        try (TransactionJournal journal = TransactionJournal.open(journalFile, 1)) {
+            journal.commit();
+        }
+        TransactionJournal.recover(journalFile, journalFile);
+    }
+
+    @Test
+    public void should_extend_the_journal_over_several_windows() throws IOException {
+        Fleet fleet = VendingMachineFactory.buildFleet(products, 0, 5, 1);
+        try (TransactionJournal journal = TransactionJournal.open(journalFile, 100, 256)) {
+            journal.checkpoint(fleet, checkpointFile);
+            journal.attach(fleet);
+            for (int i = 0; i < 100; i++) {
+                if (fleet.getMachine(0).countProductsOnShelf(i % 2) == 0) {
+                    fleet.getMachine(0).restockShelf(i % 2, 1);
+                }
+                fleet.getMachine(0).selectShelfNumber(i % 2);
+                fleet.getMachine(0).insertCoin(Coin.FIVE);
+            }
+        }
+
+        Fleet recovered = TransactionJournal.recover(checkpointFile, journalFile);
+
+        assertSameMachine(fleet.getMachine(0), recovered.getMachine(0));
+    }
+
+    @Test
+    public void should_report_journal_throughput_and_recovery_time() throws IOException {
+        int machineCount = 1000;
+        int sells = 100_000;
+        for (int groupCommitSize : new int[]{1, 64, 4096}) {
+            Fleet fleet = VendingMachineFactory.buildFleet(products, 9, 9, machineCount);
+            Path journalPath = temporaryFolder.newFolder().toPath().resolve("journal");
+            int operations = groupCommitSize == 1 ? sells / 20 : sells;
+            long start;
+            long records;
+            try (TransactionJournal journal = TransactionJournal.open(journalPath, groupCommitSize)) {
+                journal.checkpoint(fleet, checkpointFile);
+                journal.attach(fleet);
+                start = System.nanoTime();
+                for (int i = 0; i < operations; i++) {
+                    VendingSession machine = fleet.getMachine(i % machineCount);
+                    if (machine.countProductsOnShelf(0) == 0) {
+                        machine.restockShelf(0, 9);
+                    }
+                    machine.selectShelfNumber(0);
+                    machine.insertCoin(Coin.ONE);
+                }
+                journal.commit();
+                records = journal.countAppendedRecords();
+            }
+            long elapsed = System.nanoTime() - start;
+
+            long recoveryStart = System.nanoTime();
+            Fleet recovered = TransactionJournal.recover(checkpointFile, journalPath);
+            long recoveryElapsed = System.nanoTime() - recoveryStart;
+
+            Assert.assertEquals(fleet.countTotalAmountProducts(), recovered.countTotalAmountProducts());
+            logger.info(String.format("group commit of %d: %d records in %d ms (%d records/s), recovered in %d ms",
+                groupCommitSize, records, elapsed / 1_000_000, records * 1_000_000_000L / Math.max(1, elapsed),
+                recoveryElapsed / 1_000_000));
+        }
+    }
+}
@@ -11,7 +11,9 @@ import org.powermock.core.classloader.annotations.PowerMockIgnore;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 import tdd.vendingMachine.VendingMachine;
+import tdd.vendingMachine.domain.Coin;
 import tdd.vendingMachine.domain.CoinDispenserFactory;
+import tdd.vendingMachine.domain.FleetInventory;
 import tdd.vendingMachine.domain.Product;
 import tdd.vendingMachine.domain.Shelf;
 import tdd.vendingMachine.domain.VendingMachineConfiguration;
@@ -134,11 +136,48 @@ public class VendingMachineFactoryTest {
         Assert.assertEquals(productImport2.getType(), productShelves.get(1).getType().getType());
         Assert.assertEquals(productImport2.getPrice(), productShelves.get(1).getType().getPrice());
 
-        productShelves.values().forEach(productShelf -> Assert.assertEquals(productShelfCapacity, productShelf.capacity));
+        productShelves.values().forEach(productShelf -> Assert.assertEquals(productShelfCapacity, productShelf.getCapacity()));
 
         PowerMockito.verifyStatic(Mockito.times(1));
         VendingMachineFactory.getConfig();
 
         verifyConfigMock(configMock, 0, 0, 1);
     }
+
+    @Test
+    public void should_build_vending_machine_on_fleet_inventory() {
+        FleetInventory fleetInventory = VendingMachineFactory.buildFleetInventory(
+            Arrays.asList(new Product(100, "product_100"), new Product(250, "product_250")), 2, 5, 3);
+        VendingSession vendingMachine = VendingMachineFactory.buildVendingMachineOnFleetInventory(fleetInventory, 1);
+
+        vendingMachine.selectShelfNumber(0);
+        vendingMachine.insertCoin(Coin.TWO);
+
+        Assert.assertEquals(1, fleetInventory.countProductsOnShelf(1, 0));
+        Assert.assertEquals(2, fleetInventory.countProductsOnShelf(0, 0));
+        Assert.assertEquals(6, fleetInventory.countCoins(1, Coin.TWO));
+        Assert.assertEquals(3, vendingMachine.countTotalAmountProducts());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void should_fail_second_vending_machine_on_same_fleet_inventory_machine() {
+        FleetInventory fleetInventory = VendingMachineFactory.buildFleetInventory(
+            Collections.singletonList(new Product(100, "product_100")), 2, 5, 2);
+        VendingMachineFactory.buildVendingMachineOnFleetInventory(fleetInventory, 1);
+
+        VendingMachineFactory.buildVendingMachineOnFleetInventory(fleetInventory, 1);
+    }
+
+    @Test
+    public void should_share_product_instances_between_duplicate_imports_and_machines() {
+        Collection<ProductImport> productImports = Arrays.asList(new ProductImport("p_dup", 120, 2),
+            new ProductImport("p_dup", 120, 3));
+        Map<Integer, Shelf<Product>> productShelves = VendingMachineFactory.buildProductShelfFromCashImports(productImports);
+        Fleet fleet = VendingMachineFactory.buildFleet(Collections.singletonList(new Product(120, "p_dup")), 1, 1, 2);
+
+        Assert.assertSame(productShelves.get(0).getType(), productShelves.get(1).getType());
+        Assert.assertSame(productShelves.get(0).getType(), VendingMachineFactory.getProductCatalog().intern(120, "p_dup"));
+        fleet.getMachine(1).selectShelfNumber(0);
+        Assert.assertSame(productShelves.get(0).getType(), fleet.getMachine(1).provideSelectedProduct());
+    }
 }
@@ -13,6 +13,7 @@ import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 import tdd.vendingMachine.VendingMachine;
 import tdd.vendingMachine.domain.Coin;
+import tdd.vendingMachine.domain.CoinDispenser;
 import tdd.vendingMachine.domain.Product;
 import tdd.vendingMachine.domain.Shelf;
 import tdd.vendingMachine.domain.VendingMachineConfiguration;
@@ -76,7 +77,7 @@ public class VendingMachineImplTest {
         VendingMachineConfiguration mockConfig = getConfigMock(coinShelfCapacity, 10, 10);
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
-        new VendingMachineImpl(null, Collections.emptyMap());
+        new VendingMachineImpl(null, TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, 0));
 
         PowerMockito.verifyNew(VendingMachineConfiguration.class, Mockito.times(2)).withNoArguments();
         verifyConfigMock(mockConfig, 1, 1, 1);
@@ -99,7 +100,7 @@ public class VendingMachineImplTest {
         int coinShelfCapacity = 10;
         VendingMachineConfiguration mockConfig = getConfigMock(coinShelfCapacity, 10, 10);
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, 5);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, 5);
 
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
@@ -114,7 +115,7 @@ public class VendingMachineImplTest {
         int coinShelfCapacity = 10;
         VendingMachineConfiguration mockConfig = getConfigMock(coinShelfCapacity, 10, 10);
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, 5);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, 5);
 
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
@@ -132,7 +133,7 @@ public class VendingMachineImplTest {
         int coinShelfCapacity = 10;
         VendingMachineConfiguration mockConfig = getConfigMock(coinShelfCapacity, 10, 10);
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItem(COLA_190_025, 1, coinShelfCapacity);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, 5);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, 5);
 
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
@@ -158,7 +159,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, 10);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, 10);
         VendingMachine vendingMachineCashDispenserFull = new VendingMachineImpl(productShelves, coinShelves);
 
         PowerMockito.verifyNew(VendingMachineConfiguration.class, Mockito.times(1)).withNoArguments();
@@ -176,7 +177,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachine vendingMachineCashDispenserFull = new VendingMachineImpl(productShelves, coinShelves);
 
         int insertsBeforeFull = capacity - initialShelfCount;
@@ -204,7 +205,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
 
         Assert.assertTrue(vendingMachine.isCreditStackEmpty());
@@ -221,7 +222,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
 
         Assert.assertTrue(StringUtils.isEmpty(vendingMachine.getDisplayCurrentMessage()));
@@ -239,7 +240,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
 
         vendingMachine.showMessageOnDisplay(message);
@@ -260,7 +261,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
 
         vendingMachine.addCoinToCredit(fiftyCents);
@@ -289,7 +290,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
 
         Assert.assertTrue(vendingMachine.isCreditStackEmpty());
@@ -312,7 +313,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
 
         Assert.assertNotNull(vendingMachine.provideCurrentState());
@@ -329,7 +330,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
 
         Assert.assertNull(vendingMachine.provideSelectedProduct());
@@ -348,7 +349,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
 
         Assert.assertNull(vendingMachine.provideSelectedProduct());
@@ -423,7 +424,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
 
         int creditBeforeInserting = vendingMachine.provideCredit();
@@ -458,7 +459,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
 
         int creditBeforeInserting = vendingMachine.provideCredit();
@@ -488,7 +489,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
 
         Assert.assertEquals(expectedProductsOnShelf, vendingMachine.countProductsOnShelf(0));
@@ -506,7 +507,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
         vendingMachine.countProductsOnShelf(invalidShelfNumber);
 
@@ -524,7 +525,7 @@ public class VendingMachineImplTest {
 
         List<Product> products = Arrays.asList(new Product(100, "PRODUCT1"), new Product(200, "PRODUCT2"));
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(products, amountOfProductsPerType, 10);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl myVendingMachine = new VendingMachineImpl(productShelves, coinShelves);
         int expectedAmountProducts = amountOfProductsPerType * products.size();
         Assert.assertEquals(expectedAmountProducts, myVendingMachine.countTotalAmountProducts());
@@ -542,7 +543,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
 
         int totalProductsBefore = vendingMachine.countTotalAmountProducts();
@@ -568,7 +569,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
 
         vendingMachine.dispenseSelectedProductToBucketAndClearCreditStack();
@@ -586,7 +587,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
 
         Assert.assertTrue(vendingMachine.dispenserHasCoinSlotAvailable(Coin.FIFTY_CENTS));
@@ -623,7 +624,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
 
         vendingMachine.undoProductSelection();
@@ -641,7 +642,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
 
         vendingMachine.selectProductGivenShelfNumber(0);
@@ -662,7 +663,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
 
         vendingMachine.selectProductGivenShelfNumber(0);
@@ -684,7 +685,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
 
         Assert.assertNull(vendingMachine.provideSelectedProduct());
@@ -874,25 +875,25 @@ public class VendingMachineImplTest {
     }
 
     @Test
-    public void should_fail_since_no_coin_shelves_are_provided() throws Exception {
+    public void should_fail_since_coin_dispenser_exceeds_capacity() throws Exception {
         int coinShelfCapacity = 6;
         VendingMachineConfiguration mockConfig = getConfigMock(coinShelfCapacity, 10, 10);
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         boolean thrownException = false;
         Map<Integer, Shelf<Product>> productShelves = Collections.emptyMap();
-        Map<Coin, Shelf<Coin>> coinShelves = Collections.emptyMap();
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity + 1, 0);
         try {
             new VendingMachineImpl(productShelves, coinShelves);
         } catch (InvalidShelfSizeException invalidShelfSizeException) {
             thrownException = true;
-            Assert.assertEquals(0, invalidShelfSizeException.getGivenSize());
+            Assert.assertEquals(coinShelfCapacity + 1, invalidShelfSizeException.getGivenSize());
             Assert.assertEquals(coinShelfCapacity, invalidShelfSizeException.getMaximumSize());
         }
         Assert.assertTrue(thrownException);
 
         PowerMockito.verifyNew(VendingMachineConfiguration.class, Mockito.times(1)).withNoArguments();
-        verifyConfigMock(mockConfig, 0, 0, 0);
+        verifyConfigMock(mockConfig, 2, 0, 0);
     }
 
     @Test
@@ -904,7 +905,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         boolean thrownException = false;
 
         try {
@@ -930,7 +931,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
 
         boolean thrownException = false;
         try {
@@ -954,7 +955,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
 
         vendingMachine.addCoinToCredit(Coin.TEN_CENTS);
@@ -974,7 +975,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
 
         vendingMachine.selectProductGivenShelfNumber(0);
@@ -995,7 +996,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
 
         int cashBeforeOperation = vendingMachine.countCashInDispenser();
@@ -1024,7 +1025,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
 
         int cashBeforeOperation = vendingMachine.countCashInDispenser();
@@ -1055,7 +1056,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 0);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
 
         vendingMachine.sendStateTo(SoldOutState.state);
@@ -1075,7 +1076,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
 
         PowerMockito.verifyNew(VendingMachineConfiguration.class, Mockito.times(1)).withNoArguments();
@@ -1092,12 +1093,13 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
         PowerMockito.verifyNew(VendingMachineConfiguration.class, Mockito.times(1)).withNoArguments();
         verifyConfigMock(mockConfig, 1, 1, 1);
 
         vendingMachine.selectProductGivenShelfNumber(0);
+        vendingMachine.sendStateTo(NoCreditSelectedProductState.state);
         vendingMachine.sendStateTo(InsufficientCreditState.state);
 
         Assert.assertTrue(vendingMachine.provideCurrentState() instanceof InsufficientCreditState);
@@ -1111,7 +1113,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
         PowerMockito.verifyNew(VendingMachineConfiguration.class, Mockito.times(1)).withNoArguments();
         verifyConfigMock(mockConfig, 1, 1, 1);
@@ -1127,7 +1129,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
         PowerMockito.verifyNew(VendingMachineConfiguration.class, Mockito.times(1)).withNoArguments();
         verifyConfigMock(mockConfig, 1, 1, 1);
@@ -1150,7 +1152,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
         PowerMockito.verifyNew(VendingMachineConfiguration.class, Mockito.times(1)).withNoArguments();
         verifyConfigMock(mockConfig, 1, 1, 1);
@@ -1173,7 +1175,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
         PowerMockito.verifyNew(VendingMachineConfiguration.class, Mockito.times(1)).withNoArguments();
         verifyConfigMock(mockConfig, 1, 1, 1);
@@ -1192,7 +1194,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
         PowerMockito.verifyNew(VendingMachineConfiguration.class, Mockito.times(1)).withNoArguments();
         verifyConfigMock(mockConfig, 1, 1, 1);
@@ -1208,7 +1210,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
         PowerMockito.verifyNew(VendingMachineConfiguration.class, Mockito.times(1)).withNoArguments();
         verifyConfigMock(mockConfig, 1, 1, 1);
@@ -1225,7 +1227,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
 
         PowerMockito.verifyNew(VendingMachineConfiguration.class, Mockito.times(1)).withNoArguments();
@@ -1244,7 +1246,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 0);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
 
         PowerMockito.verifyNew(VendingMachineConfiguration.class, Mockito.times(1)).withNoArguments();
@@ -1261,7 +1263,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
 
         PowerMockito.verifyNew(VendingMachineConfiguration.class, Mockito.times(1)).withNoArguments();
@@ -1279,7 +1281,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
 
         PowerMockito.verifyNew(VendingMachineConfiguration.class, Mockito.times(1)).withNoArguments();
@@ -1297,7 +1299,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
 
         PowerMockito.verifyNew(VendingMachineConfiguration.class, Mockito.times(1)).withNoArguments();
@@ -1317,7 +1319,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
 
         PowerMockito.verifyNew(VendingMachineConfiguration.class, Mockito.times(1)).withNoArguments();
@@ -1334,7 +1336,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
 
         PowerMockito.verifyNew(VendingMachineConfiguration.class, Mockito.times(1)).withNoArguments();
@@ -1352,7 +1354,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
 
         PowerMockito.verifyNew(VendingMachineConfiguration.class, Mockito.times(1)).withNoArguments();
@@ -1371,7 +1373,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
 
         PowerMockito.verifyNew(VendingMachineConfiguration.class, Mockito.times(1)).withNoArguments();
@@ -1403,7 +1405,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 2);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
 
         PowerMockito.verifyNew(VendingMachineConfiguration.class, Mockito.times(1)).withNoArguments();
@@ -1435,7 +1437,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
 
         PowerMockito.verifyNew(VendingMachineConfiguration.class, Mockito.times(1)).withNoArguments();
@@ -1467,7 +1469,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
 
         PowerMockito.verifyNew(VendingMachineConfiguration.class, Mockito.times(1)).withNoArguments();
@@ -1499,7 +1501,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 1);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
 
         PowerMockito.verifyNew(VendingMachineConfiguration.class, Mockito.times(1)).withNoArguments();
@@ -1521,7 +1523,7 @@ public class VendingMachineImplTest {
         PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(COLA_190_025, 2);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
         VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
 
         PowerMockito.verifyNew(VendingMachineConfiguration.class, Mockito.times(1)).withNoArguments();
@@ -1543,10 +1545,253 @@ public class VendingMachineImplTest {
         vendingMachine.rollBackSell("testing", totalBalance);
 
         Assert.assertEquals(productsBefore, vendingMachine.countTotalAmountProducts());
-        Assert.assertEquals(totalCashBefore - totalBalance, vendingMachine.countCashInDispenser());
+        Assert.assertEquals(totalCashBefore, vendingMachine.countCashInDispenser());
+        Assert.assertEquals(0, vendingMachine.provideCredit());
+        Assert.assertTrue(vendingMachine.isCreditStackEmpty());
+        Assert.assertTrue(vendingMachine.provideCurrentState() instanceof ReadyState);
+    }
+
+
+    @Test
+    public void should_give_change_with_twenty_cents_when_no_ten_cents_left() throws Exception {
+        int initialShelfCount = 3;
+        int coinShelfCapacity = 10;
+        Product product = new Product(140, "product_140");
+        VendingMachineConfiguration mockConfig = getConfigMock(coinShelfCapacity, 10, 10);
+        PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
+
+        Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(product, 2);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, initialShelfCount);
+        coinShelves.dispense(Coin.TEN_CENTS, initialShelfCount);
+        VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves, coinShelves);
+
+        PowerMockito.verifyNew(VendingMachineConfiguration.class, Mockito.times(1)).withNoArguments();
+        verifyConfigMock(mockConfig, 1, 1, 1);
+
+        int totalCashBefore = vendingMachine.countCashInDispenser();
+        vendingMachine.addCoinToCredit(Coin.TWO);
+        vendingMachine.selectProductGivenShelfNumber(0);
+        vendingMachine.attemptSell();
+
+        Assert.assertEquals(0, vendingMachine.provideCredit());
+        Assert.assertTrue(vendingMachine.isCreditStackEmpty());
+        Assert.assertEquals(1, vendingMachine.countTotalAmountProducts());
+        Assert.assertEquals(totalCashBefore + product.getPrice(), vendingMachine.countCashInDispenser());
+        Assert.assertEquals(0, coinShelves.getItemCount(Coin.TWENTY_CENTS));
+        Assert.assertEquals(initialShelfCount, coinShelves.getItemCount(Coin.FIFTY_CENTS));
+        Assert.assertTrue(vendingMachine.provideCurrentState() instanceof ReadyState);
+    }
+
+    @Test
+    public void should_require_exact_change_only_with_empty_dispenser() throws Exception {
+        int coinShelfCapacity = 10;
+        VendingMachineConfiguration mockConfig = getConfigMock(coinShelfCapacity, 10, 10);
+        PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
+
+        VendingMachineImpl emptyDispenserMachine = new VendingMachineImpl(TestUtils.buildShelvesWithItems(COLA_190_025, 1),
+            TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, 0));
+        VendingMachineImpl loadedDispenserMachine = new VendingMachineImpl(TestUtils.buildShelvesWithItems(COLA_190_025, 1),
+            TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, 5));
+
+        Assert.assertTrue(emptyDispenserMachine.isExactChangeOnly());
+        Assert.assertFalse(loadedDispenserMachine.isExactChangeOnly());
+
+        PowerMockito.verifyNew(VendingMachineConfiguration.class, Mockito.times(2)).withNoArguments();
+    }
+
+    @Test
+    public void should_report_dispenser_full_outcome_without_crediting_coin() throws Exception {
+        int coinShelfCapacity = 10;
+        VendingMachineConfiguration mockConfig = getConfigMock(coinShelfCapacity, 10, 10);
+        PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
+
+        VendingMachineImpl vendingMachine = new VendingMachineImpl(TestUtils.buildShelvesWithItems(COLA_190_025, 1),
+            TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, coinShelfCapacity));
+
+        Assert.assertEquals(TransactionOutcome.DISPENSER_FULL, vendingMachine.tryAddCoinToCredit(Coin.FIFTY_CENTS));
         Assert.assertEquals(0, vendingMachine.provideCredit());
         Assert.assertTrue(vendingMachine.isCreditStackEmpty());
+
+        PowerMockito.verifyNew(VendingMachineConfiguration.class, Mockito.times(1)).withNoArguments();
+        verifyConfigMock(mockConfig, 1, 1, 1);
+    }
+
+    @Test
+    public void should_report_accepted_outcome_crediting_coin() throws Exception {
+        int coinShelfCapacity = 10;
+        VendingMachineConfiguration mockConfig = getConfigMock(coinShelfCapacity, 10, 10);
+        PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
+
+        VendingMachineImpl vendingMachine = new VendingMachineImpl(TestUtils.buildShelvesWithItems(COLA_190_025, 1),
+            TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, 0));
+
+        Assert.assertEquals(TransactionOutcome.ACCEPTED, vendingMachine.tryAddCoinToCredit(Coin.FIFTY_CENTS));
+        Assert.assertEquals(Coin.FIFTY_CENTS.denomination, vendingMachine.provideCredit());
+
+        PowerMockito.verifyNew(VendingMachineConfiguration.class, Mockito.times(1)).withNoArguments();
+        verifyConfigMock(mockConfig, 1, 1, 1);
+    }
+
+    @Test
+    public void should_report_shelf_empty_outcome_without_selecting() throws Exception {
+        int coinShelfCapacity = 10;
+        VendingMachineConfiguration mockConfig = getConfigMock(coinShelfCapacity, 10, 10);
+        PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
+
+        VendingMachine soldOutVendingMachine = new VendingMachineImpl(TestUtils.buildShelvesWithItems(COLA_190_025, 0),
+            TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, 0));
+
+        Assert.assertEquals(TransactionOutcome.SHELF_EMPTY, soldOutVendingMachine.trySelectProductGivenShelfNumber(0));
+        Assert.assertNull(soldOutVendingMachine.provideSelectedProduct());
+
+        PowerMockito.verifyNew(VendingMachineConfiguration.class, Mockito.times(1)).withNoArguments();
+        verifyConfigMock(mockConfig, 1, 1, 1);
+    }
+
+    @Test
+    public void should_report_pending_credit_outcome_on_sell_without_enough_credit() throws Exception {
+        int coinShelfCapacity = 10;
+        VendingMachineConfiguration mockConfig = getConfigMock(coinShelfCapacity, 10, 10);
+        PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
+
+        VendingMachineImpl vendingMachine = new VendingMachineImpl(TestUtils.buildShelvesWithItems(COLA_190_025, 1),
+            TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, 5));
+
+        Assert.assertEquals(TransactionOutcome.PENDING_CREDIT, vendingMachine.trySell());
+        Assert.assertEquals(TransactionOutcome.SELECTED, vendingMachine.trySelectProductGivenShelfNumber(0));
+        vendingMachine.tryAddCoinToCredit(Coin.ONE);
+        Assert.assertEquals(TransactionOutcome.PENDING_CREDIT, vendingMachine.trySell());
+        Assert.assertEquals(Coin.ONE.denomination, vendingMachine.provideCredit());
+
+        PowerMockito.verifyNew(VendingMachineConfiguration.class, Mockito.times(1)).withNoArguments();
+        verifyConfigMock(mockConfig, 1, 1, 1);
+    }
+
+    @Test
+    public void should_report_no_change_outcome_keeping_selection() throws Exception {
+        int coinShelfCapacity = 10;
+        Product product = new Product(140, "product_140");
+        VendingMachineConfiguration mockConfig = getConfigMock(coinShelfCapacity, 10, 10);
+        PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
+
+        VendingMachineImpl vendingMachine = new VendingMachineImpl(TestUtils.buildShelvesWithItems(product, 1),
+            TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, 0));
+
+        vendingMachine.trySelectProductGivenShelfNumber(0);
+        vendingMachine.tryAddCoinToCredit(Coin.TWO);
+
+        Assert.assertEquals(TransactionOutcome.NO_CHANGE, vendingMachine.trySell());
+        Assert.assertEquals(product, vendingMachine.provideSelectedProduct());
+        Assert.assertEquals(1, vendingMachine.countTotalAmountProducts());
+
+        PowerMockito.verifyNew(VendingMachineConfiguration.class, Mockito.times(1)).withNoArguments();
+        verifyConfigMock(mockConfig, 1, 1, 1);
+    }
+
+    @Test
+    public void should_report_sold_outcome_giving_change() throws Exception {
+        int coinShelfCapacity = 10;
+        Product product = new Product(140, "product_140");
+        VendingMachineConfiguration mockConfig = getConfigMock(coinShelfCapacity, 10, 10);
+        PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
+
+        VendingMachineImpl vendingMachine = new VendingMachineImpl(TestUtils.buildShelvesWithItems(product, 2),
+            TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, 3));
+
+        vendingMachine.trySelectProductGivenShelfNumber(0);
+        vendingMachine.tryAddCoinToCredit(Coin.TWO);
+
+        Assert.assertEquals(TransactionOutcome.SOLD, vendingMachine.trySell());
+        Assert.assertNull(vendingMachine.provideSelectedProduct());
+        Assert.assertEquals(0, vendingMachine.provideCredit());
+        Assert.assertEquals(1, vendingMachine.countTotalAmountProducts());
+        Assert.assertTrue(vendingMachine.provideCurrentState() instanceof ReadyState);
+
+        PowerMockito.verifyNew(VendingMachineConfiguration.class, Mockito.times(1)).withNoArguments();
+        verifyConfigMock(mockConfig, 1, 1, 1);
+    }
+
+    @Test
+    public void should_fail_transition_not_allowed_from_current_state() throws Exception {
+        int coinShelfCapacity = 10;
+        VendingMachineConfiguration mockConfig = getConfigMock(coinShelfCapacity, 10, 10);
+        PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
+        VendingMachineImpl vendingMachine = new VendingMachineImpl(TestUtils.buildShelvesWithItems(COLA_190_025, 1),
+            TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, 5));
+        vendingMachine.sendStateTo(StateEnum.TECHNICAL_ERROR);
+
+        try {
+            vendingMachine.sendStateTo(StateEnum.READY);
+            Assert.fail("technical error must not move to ready");
+        } catch (IllegalStateException expected) {
+            Assert.assertTrue(vendingMachine.provideCurrentState() instanceof TechnicalErrorState);
+        }
+        PowerMockito.verifyNew(VendingMachineConfiguration.class, Mockito.times(1)).withNoArguments();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void should_fail_transition_breaking_invariant_of_target_state() throws Exception {
+        int coinShelfCapacity = 10;
+        VendingMachineConfiguration mockConfig = getConfigMock(coinShelfCapacity, 10, 10);
+        PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
+        VendingMachineImpl vendingMachine = new VendingMachineImpl(TestUtils.buildShelvesWithItems(COLA_190_025, 1),
+            TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, 5));
+
+        vendingMachine.sendStateTo(SoldOutState.state);
+    }
+
+    @Test
+    public void should_find_next_available_shelf_number() throws Exception {
+        int coinShelfCapacity = 10;
+        VendingMachineConfiguration mockConfig = getConfigMock(coinShelfCapacity, 10, 10);
+        PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
+
+        Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(Arrays.asList(COLA_190_025,
+            new Product(100, "product_100")), 1, 10);
+        VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves,
+            TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, 5));
+        Assert.assertEquals(0, vendingMachine.findNextAvailableShelfNumber(0));
+
+        vendingMachine.selectProductGivenShelfNumber(0);
+        vendingMachine.addCoinToCredit(Coin.TWO);
+        vendingMachine.attemptSell();
+
+        Assert.assertEquals(1, vendingMachine.findNextAvailableShelfNumber(0));
+        Assert.assertEquals(1, vendingMachine.countTotalAmountProducts());
+        Assert.assertFalse(vendingMachine.isSoldOut());
+        PowerMockito.verifyNew(VendingMachineConfiguration.class, Mockito.times(1)).withNoArguments();
+    }
+
+    @Test
+    public void should_restock_sold_out_machine_and_go_ready() throws Exception {
+        int coinShelfCapacity = 10;
+        VendingMachineConfiguration mockConfig = getConfigMock(coinShelfCapacity, 10, 10);
+        PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
+
+        Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(Arrays.asList(COLA_190_025,
+            new Product(100, "product_100")), 0, 10);
+        VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves,
+            TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, 5));
+        Assert.assertTrue(vendingMachine.provideCurrentState() instanceof SoldOutState);
+
+        vendingMachine.restockShelf(1, 3);
+
         Assert.assertTrue(vendingMachine.provideCurrentState() instanceof ReadyState);
+        Assert.assertEquals(3, vendingMachine.countProductsOnShelf(1));
+        Assert.assertEquals(1, vendingMachine.findNextAvailableShelfNumber(0));
+        PowerMockito.verifyNew(VendingMachineConfiguration.class, Mockito.times(1)).withNoArguments();
     }
 
+    @Test(expected = NoSuchElementException.class)
+    public void should_fail_restock_unknown_shelf() throws Exception {
+        int coinShelfCapacity = 10;
+        VendingMachineConfiguration mockConfig = getConfigMock(coinShelfCapacity, 10, 10);
+        PowerMockito.whenNew(VendingMachineConfiguration.class).withNoArguments().thenReturn(mockConfig);
+
+        Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(Arrays.asList(COLA_190_025), 1, 10);
+        VendingMachineImpl vendingMachine = new VendingMachineImpl(productShelves,
+            TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(coinShelfCapacity, 5));
+
+        vendingMachine.restockShelf(7, 1);
+    }
 }
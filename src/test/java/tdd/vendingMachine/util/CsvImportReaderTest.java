@@ -0,0 +1,119 @@
+package tdd.vendingMachine.util;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import tdd.vendingMachine.dto.CashImport;
+import tdd.vendingMachine.dto.ProductImport;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author Agustin Cabra on 3/9/2017.
+ * @since 2.1
+ */
+public class CsvImportReaderTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path writeFile(String content) throws IOException {
+        Path file = temporaryFolder.newFile().toPath();
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    @Test
+    public void should_stream_product_imports_and_report_bad_lines() throws IOException {
+        Path file = writeFile("Cola drink 0.25l,200,10\r\nchocolate bar,abc,10\n\n bar , 250 , 3 \nwater,130\nwater,130,-1\n,100,1\nlast,99,2");
+        List<ProductImport> productImports = new ArrayList<>();
+        List<String> errors = new ArrayList<>();
+
+        CsvImportReader.ImportSummary summary = CsvImportReader.readProductImports(file, productImports::add,
+            (line, reason) -> errors.add(line + ":" + reason));
+
+        Assert.assertEquals(3, summary.countImported());
+        Assert.assertEquals(4, summary.countRejected());
+        Assert.assertEquals("Cola drink 0.25l", productImports.get(0).getType());
+        Assert.assertEquals(200, productImports.get(0).getPrice());
+        Assert.assertEquals("bar", productImports.get(1).getType());
+        Assert.assertEquals(3, productImports.get(1).getItemCount());
+        Assert.assertEquals("last", productImports.get(2).getType());
+        Assert.assertEquals("2:Field 2 must be a non negative number", errors.get(0));
+        Assert.assertEquals("5:Expected 3 fields but found 2", errors.get(1));
+        Assert.assertTrue(errors.get(2).startsWith("6:"));
+        Assert.assertEquals("7:Field 1 must not be empty", errors.get(3));
+    }
+
+    @Test
+    public void should_stream_cash_imports_from_input_stream() throws IOException {
+        List<CashImport> cashImports = new ArrayList<>();
+        List<Long> errorLines = new ArrayList<>();
+
+        CsvImportReader.ImportSummary summary = CsvImportReader.readCashImports(
+            new ByteArrayInputStream("5.0$,10\n2.0$,99999999999\n0.1$,3\n".getBytes(StandardCharsets.UTF_8)),
+            cashImports::add, (line, reason) -> errorLines.add(line));
+
+        Assert.assertEquals(2, summary.countImported());
+        Assert.assertEquals(1, summary.countRejected());
+        Assert.assertEquals("0.1$", cashImports.get(1).getLabel());
+        Assert.assertEquals(3, cashImports.get(1).getAmount());
+        Assert.assertEquals(Long.valueOf(2), errorLines.get(0));
+    }
+
+    @Test
+    public void should_parse_rows_split_across_mapping_windows() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            content.append("product_").append(i).append(',').append(100 + i).append(",1\n");
+        }
+        Path file = writeFile(content.toString());
+        List<ProductImport> productImports = new ArrayList<>();
+
+        CsvImportReader.ImportSummary summary = CsvImportReader.read(file, new CsvImportReader.LineParser<>(3, 3,
+            (parser, buffer) -> new ProductImport(parser.stringField(buffer, 0), parser.intField(buffer, 1), parser.intField(buffer, 2)),
+            productImports::add, (line, reason) -> Assert.fail(reason)), 37);
+
+        Assert.assertEquals(500, summary.countImported());
+        Assert.assertEquals("product_499", productImports.get(499).getType());
+        Assert.assertEquals(599, productImports.get(499).getPrice());
+    }
+
+    @Test(expected = IOException.class)
+    public void should_fail_line_longer_than_mapping_window() throws IOException {
+        Path file = writeFile("a_very_long_product_type,100,1\nshort,1,1\n");
+
+        CsvImportReader.read(file, new CsvImportReader.LineParser<>(3, 3,
+            (parser, buffer) -> new ProductImport(parser.stringField(buffer, 0), 0, 0),
+            productImport -> {}, (line, reason) -> {}), 10);
+    }
+
+    @Test
+    public void should_stream_million_rows_without_collecting_them() throws IOException {
+        int rows = 1_000_000;
+        Path file = temporaryFolder.newFile().toPath();
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < rows; i++) {
+                writer.write("product_");
+                writer.write(Integer.toString(i % 100));
+                writer.write(",150,5\n");
+            }
+        }
+        AtomicLong itemCount = new AtomicLong();
+
+        CsvImportReader.ImportSummary summary = CsvImportReader.readProductImports(file,
+            productImport -> itemCount.addAndGet(productImport.getItemCount()), (line, reason) -> Assert.fail(reason));
+
+        Assert.assertEquals(rows, summary.countImported());
+        Assert.assertEquals(5L * rows, itemCount.get());
+    }
+}
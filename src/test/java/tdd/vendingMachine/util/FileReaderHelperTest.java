@@ -11,6 +11,7 @@ import org.powermock.modules.junit4.PowerMockRunner;
 import tdd.vendingMachine.dto.CashImport;
 import tdd.vendingMachine.dto.ProductImport;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.util.List;
 import java.util.Optional;
@@ -80,4 +81,15 @@ public class FileReaderHelperTest {
         Optional<List<CashImport>> productImports = FileReaderHelper.retrieveCashImportFromFileStream(resourceAsStream);
         Assert.assertFalse(productImports.isPresent());
     }
+
+    @Test
+    public void should_skip_bad_rows_and_keep_the_rest_of_the_import() {
+        InputStream inputStream = new ByteArrayInputStream("product1,90,10\nproduct2,x,10\nproduct3,100,1\n".getBytes());
+
+        Optional<List<ProductImport>> productImports = FileReaderHelper.retrieveProductsImportFromFileStream(inputStream);
+
+        Assert.assertTrue(productImports.isPresent());
+        Assert.assertEquals(2, productImports.get().size());
+        Assert.assertEquals("product3", productImports.get().get(1).getType());
+    }
 }
@@ -0,0 +1,162 @@
+package tdd.vendingMachine.util;
+
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import tdd.vendingMachine.dto.MachineImport;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author Agustin Cabra on 3/9/2017.
+ * @since 2.1
+ */
+public class FleetImportReaderTest {
+
+    private static final Logger logger = Logger.getLogger(FleetImportReaderTest.class);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path writeFleetFile(int machines, int productsPerMachine) throws IOException {
+        Path file = temporaryFolder.newFile().toPath();
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int machine = 0; machine < machines; machine++) {
+                for (int shelf = 0; shelf < productsPerMachine; shelf++) {
+                    writer.write(machine + ",P,product_" + shelf + "," + (100 + shelf * 10) + ",5\n");
+                }
+                writer.write(machine + ",C,0.5$,10\n");
+            }
+        }
+        return file;
+    }
+
+    @Test
+    public void should_hand_every_machine_once_with_all_its_rows() throws IOException {
+        Path file = writeFleetFile(200, 3);
+        Map<Integer, MachineImport> machines = new ConcurrentHashMap<>();
+        ForkJoinPool pool = new ForkJoinPool(8);
+        try {
+            CsvImportReader.ImportSummary summary = FleetImportReader.read(file, pool,
+                machineImport -> Assert.assertNull(machines.put(machineImport.getMachineId(), machineImport)),
+                (line, reason) -> Assert.fail(reason));
+
+            Assert.assertEquals(200, summary.countImported());
+            Assert.assertEquals(0, summary.countRejected());
+        } finally {
+            pool.shutdown();
+        }
+        for (MachineImport machineImport : machines.values()) {
+            Assert.assertEquals(3, machineImport.getProductImports().size());
+            Assert.assertEquals(1, machineImport.getCashImports().size());
+        }
+    }
+
+    @Test
+    public void should_split_chunks_at_machine_boundaries() throws IOException {
+        Path file = writeFleetFile(50, 4);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long[] boundaries = FleetImportReader.findChunkBoundaries(channel, 16);
+            byte[] content = Files.readAllBytes(file);
+
+            Assert.assertEquals(0, boundaries[0]);
+            Assert.assertEquals(content.length, boundaries[boundaries.length - 1]);
+            for (int i = 1; i < boundaries.length - 1; i++) {
+                Assert.assertEquals('\n', content[(int) boundaries[i] - 1]);
+                String next = new String(content, (int) boundaries[i], 4, StandardCharsets.UTF_8).split(",")[0];
+                int previousLineStart = (int) boundaries[i] - 2;
+                while (previousLineStart > 0 && content[previousLineStart - 1] != '\n') previousLineStart--;
+                String previous = new String(content, previousLineStart, 4, StandardCharsets.UTF_8).split(",")[0];
+                Assert.assertNotEquals(previous, next);
+            }
+        }
+    }
+
+    @Test
+    public void should_report_rejected_rows_with_file_line_numbers_in_order() throws IOException {
+        Path file = temporaryFolder.newFile().toPath();
+        Files.write(file, ("0,P,cola,200,5\n0,X,cola,200,5\n1,P,bar,250,5\n1,C,0.5$\n2,P,water,130,5\n2,C,bad,1\n")
+            .getBytes(StandardCharsets.UTF_8));
+        List<Long> errorLines = Collections.synchronizedList(new ArrayList<>());
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            CsvImportReader.ImportSummary summary = FleetImportReader.read(file, pool, machineImport -> {
+                if (machineImport.getMachineId() == 2) {
+                    throw new IllegalArgumentException("unknown coin");
+                }
+            }, (line, reason) -> errorLines.add(line));
+
+            Assert.assertEquals(2, summary.countImported());
+            Assert.assertEquals(3, summary.countRejected());
+            Assert.assertEquals(Long.valueOf(2), errorLines.get(0));
+            Assert.assertEquals(Long.valueOf(4), errorLines.get(1));
+            Assert.assertEquals(Long.valueOf(5), errorLines.get(2));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void should_reject_every_repeated_machine_id_but_the_first_one_whichever_chunk_ends_first() throws IOException {
+        Path file = temporaryFolder.newFile().toPath();
+        Files.write(file, ("0,P,cola,200,4\n0,C,0.5$,10\n1,P,bar,250,2\n0,P,water,130,1\n2,P,chips,90,3\n0,P,gum,50,8\n")
+            .getBytes(StandardCharsets.UTF_8));
+        for (int run = 0; run < 20; run++) {
+            Map<Integer, MachineImport> machines = new ConcurrentHashMap<>();
+            List<Long> errorLines = Collections.synchronizedList(new ArrayList<>());
+            ForkJoinPool pool = new ForkJoinPool(4);
+            try {
+                CsvImportReader.ImportSummary summary = FleetImportReader.read(file, pool,
+                    machineImport -> machines.merge(machineImport.getMachineId(), machineImport,
+                        (kept, imported) -> kept.getOrder() <= imported.getOrder() ? kept : imported),
+                    (line, reason) -> errorLines.add(line));
+
+                Assert.assertEquals(3, summary.countImported());
+                Assert.assertEquals(2, summary.countRejected());
+                Assert.assertEquals(Arrays.asList(4L, 6L), errorLines);
+                Assert.assertEquals("cola", machines.get(0).getProductImports().get(0).getType());
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void should_report_import_time_per_pool_size_on_million_rows() throws IOException {
+        Path file = writeFleetFile(100_000, 9);
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int parallelism : new int[]{1, cores}) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            AtomicLong rows = new AtomicLong();
+            try {
+                long start = System.nanoTime();
+                CsvImportReader.ImportSummary summary = FleetImportReader.read(file, pool,
+                    machineImport -> rows.addAndGet(machineImport.getProductImports().size() + machineImport.getCashImports().size()),
+                    (line, reason) -> Assert.fail(reason));
+                long elapsed = System.nanoTime() - start;
+
+                Assert.assertEquals(100_000, summary.countImported());
+                Assert.assertEquals(1_000_000, rows.get());
+                logger.info(String.format("imported 1000000 rows on %d workers in %d ms", parallelism, elapsed / 1_000_000));
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+}
@@ -28,14 +28,8 @@ public class TestUtils {
         return list;
     }
 
-    public static Map<Coin, Shelf<Coin>> buildStubCoinDispenserWithGivenItemsPerShelf(int shelfCapacity, int initialCoinsOnShelf) {
-        Map<Coin, Shelf<Coin>> coinDispenser = new HashMap<>();
-        int idCounter = 0;
-        for(Coin coin: Coin.ascendingDenominationIterable()) {
-            Shelf<Coin> shelf = ShelfFactory.buildShelf(idCounter++, coin, shelfCapacity, initialCoinsOnShelf);
-            coinDispenser.put(coin, shelf);
-        }
-        return coinDispenser;
+    public static CoinDispenser buildStubCoinDispenserWithGivenItemsPerShelf(int shelfCapacity, int initialCoinsOnShelf) {
+        return new CoinDispenser(shelfCapacity, initialCoinsOnShelf);
     }
 
     /**
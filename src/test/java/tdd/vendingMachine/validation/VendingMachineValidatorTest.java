@@ -105,27 +105,6 @@ public class VendingMachineValidatorTest {
         verifyConfigMock(mockConfig, 0, 0, 0);
     }
 
-    @Test
-    public void should_fail_no_shelves_available_in_coin_dispenser() {
-        boolean exceptionThrown = false;
-        int coinShelfCapacity = 1;
-        VendingMachineConfiguration mockConfig = getConfigMock(coinShelfCapacity, 1, 1);
-        Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelfStubFromProductImports(
-            Collections.singleton(new ProductImport("p1", 100, 1)), 5);
-        Map<Coin, Shelf<Coin>> coinShelves = Collections.emptyMap();
-        try {
-            VendingMachineValidator.validateNewVendingMachineParameters(mockConfig, productShelves, coinShelves);
-        } catch (InvalidShelfSizeException invalidShelfException) {
-            exceptionThrown = true;
-            Assert.assertEquals(VendingMachineMessages.COIN_SHELF_SIZE_INCOMPATIBLE.label, invalidShelfException.getMessage());
-            Assert.assertEquals(Coin.values().length, invalidShelfException.getMaximumSize());
-            Assert.assertEquals(coinShelves.size(), invalidShelfException.getGivenSize());
-        }
-        Assert.assertTrue(exceptionThrown);
-
-        verifyConfigMock(mockConfig, 0, 0, 0);
-    }
-
     @Test
     public void should_fail_coin_dispenser_exceeds_capacity() throws Exception {
         boolean exceptionThrown = false;
@@ -134,7 +113,7 @@ public class VendingMachineValidatorTest {
         VendingMachineConfiguration mockConfigValidation = getConfigMock(configCoinShelfCapacity, 1, 1);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelfStubFromProductImports(Collections.singleton(new ProductImport("p1", 100, 1)), 5);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(actualShelfCapacity, 2);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(actualShelfCapacity, 2);
 
         try {
             VendingMachineValidator.validateNewVendingMachineParameters(mockConfigValidation, productShelves, coinShelves);
@@ -159,7 +138,7 @@ public class VendingMachineValidatorTest {
         VendingMachineConfiguration mockConfigValidation = getConfigMock(configCoinShelfCapacity, configProductShelfCount, 1);
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(TestUtils.buildStubListOfProducts(currentProductShelfCount), 5, 10);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(actualCoinShelfCapacity, 2);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(actualCoinShelfCapacity, 2);
 
         try {
             VendingMachineValidator.validateNewVendingMachineParameters(mockConfigValidation, productShelves, coinShelves);
@@ -187,7 +166,7 @@ public class VendingMachineValidatorTest {
 
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(
             TestUtils.buildStubListOfProducts(actualProductShelfCount), 5, actualProductShelfCapacity);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(actualCoinShelfCapacity, 2);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(actualCoinShelfCapacity, 2);
 
         try {
             VendingMachineValidator.validateNewVendingMachineParameters(mockConfigValidation, productShelves, coinShelves);
@@ -210,7 +189,7 @@ public class VendingMachineValidatorTest {
 
         VendingMachineConfiguration configMock = getConfigMock(configCoinShelfCapacity, configProductShelfCount, configProductShelfCapacity);
         Map<Integer, Shelf<Product>> productShelves = TestUtils.buildShelvesWithItems(TestUtils.buildStubListOfProducts(3), 2, configProductShelfCapacity);
-        Map<Coin, Shelf<Coin>> coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(configCoinShelfCapacity, 5);
+        CoinDispenser coinShelves = TestUtils.buildStubCoinDispenserWithGivenItemsPerShelf(configCoinShelfCapacity, 5);
         VendingMachineValidator.validateNewVendingMachineParameters(configMock, productShelves, coinShelves);
 
         verifyConfigMock(configMock, 1, 1, 1);
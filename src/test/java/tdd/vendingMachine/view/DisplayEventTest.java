@@ -0,0 +1,36 @@
+package tdd.vendingMachine.view;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Agustin Cabra on 3/7/2017.
+ * @since 2.1
+ */
+public class DisplayEventTest {
+
+    @Test
+    public void should_render_every_layout_as_formatted_text() {
+        Assert.assertEquals(VendingMachineMessages.NO_CREDIT_AVAILABLE.label,
+            DisplayEvent.of(VendingMachineMessages.NO_CREDIT_AVAILABLE).render());
+        Assert.assertEquals(String.format("[%s] %s", "Cola", VendingMachineMessages.DISPENSED_TO_BUCKET.label),
+            DisplayEvent.of("Cola", VendingMachineMessages.DISPENSED_TO_BUCKET).render());
+        Assert.assertEquals(String.format("[%s] %s: %s", "Cola", VendingMachineMessages.PRICE.label, "1.90$"),
+            DisplayEvent.of(DisplayEvent.Layout.SUBJECT_LABEL_CASH, "Cola", VendingMachineMessages.PRICE, 190).render());
+        Assert.assertEquals(String.format("[%s], %s: %s", "Cola", VendingMachineMessages.PENDING.label, "-0.10$"),
+            DisplayEvent.of(DisplayEvent.Layout.SUBJECT_COMMA_LABEL_CASH, "Cola", VendingMachineMessages.PENDING, -10).render());
+        Assert.assertEquals(String.format("%s %s: %s", "0.5$", VendingMachineMessages.CASH_ACCEPTED_NEW_CREDIT.label, "0.50$"),
+            DisplayEvent.of(DisplayEvent.Layout.INLINE_SUBJECT_LABEL_CASH, "0.5$", VendingMachineMessages.CASH_ACCEPTED_NEW_CREDIT, 50).render());
+        Assert.assertEquals(String.format("[%s] %s: %s", "0.20$", VendingMachineMessages.PENDING_BALANCE_RETURNED_TO_BUCKET.label, "0.40$"),
+            DisplayEvent.ofCash(20, VendingMachineMessages.PENDING_BALANCE_RETURNED_TO_BUCKET, 40).render());
+        Assert.assertEquals("free text", DisplayEvent.text("free text").render());
+    }
+
+    @Test
+    public void should_render_text_only_once() {
+        DisplayEvent event = DisplayEvent.of(DisplayEvent.Layout.SUBJECT_LABEL_CASH, "Cola", VendingMachineMessages.PRICE, 190);
+
+        Assert.assertSame(event.render(), event.render());
+        Assert.assertEquals(event.render(), event.toString());
+    }
+}
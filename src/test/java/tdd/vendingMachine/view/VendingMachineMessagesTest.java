@@ -3,6 +3,8 @@ package tdd.vendingMachine.view;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.Locale;
+
 /**
  * @author Agustin Cabra on 2/23/2017.
  * @since 1.0
@@ -39,4 +41,14 @@ public class VendingMachineMessagesTest {
         Assert.assertEquals("0.78$", VendingMachineMessages.provideCashToDisplay(78));
         Assert.assertEquals("5.00$", VendingMachineMessages.provideCashToDisplay(500));
     }
+
+    @Test
+    public void should_convert_negative_and_large_values_to_screen_decimal() {
+        Assert.assertEquals("-0.50$", VendingMachineMessages.provideCashToDisplay(-50));
+        Assert.assertEquals("-1.05$", VendingMachineMessages.provideCashToDisplay(-105));
+        Assert.assertEquals("0.00$", VendingMachineMessages.provideCashToDisplay(0));
+        Assert.assertEquals("1234.10$", VendingMachineMessages.provideCashToDisplay(123410));
+        Assert.assertEquals(String.format(Locale.US, "%.2f$", Integer.MIN_VALUE / 100.0),
+            VendingMachineMessages.provideCashToDisplay(Integer.MIN_VALUE));
+    }
 }